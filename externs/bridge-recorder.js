@@ -0,0 +1,30 @@
+/*
+ * This file is part of the ZombieBox package.
+ *
+ * Copyright © 2015-2020, Interfaced
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+
+/**
+ * Only exposed when bridge recording is enabled
+ */
+class AndroidBridgeRecorderAPI {
+	/**
+	 * @param {number} pageTime performance.now() value to align page and native clocks
+	 */
+	start(pageTime) {}
+
+	/**
+	 * @param {string} batch JSON array of [time, interface, method, arguments, duration]
+	 */
+	record(batch) {}
+}
+
+
+/**
+ * @type {AndroidBridgeRecorderAPI|undefined}
+ */
+window.BridgeRecorder;
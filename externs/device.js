@@ -106,6 +106,32 @@ class AndroidDeviceAPI {
 	 */
 	getLocale() {}
 
+	/**
+	 * Requests native events to be delivered over a message channel transferred with a window message.
+	 */
+	openEventChannel() {}
+
+	/**
+	 * Adds a milestone to the startup trace, only the first mark of each name is kept.
+	 * @param {string} name
+	 */
+	markStartup(name) {}
+
+	/**
+	 * @return {string} JSON encoded {
+	 *     finished: boolean,
+	 *     marks: Array<{name: string, timeMs: number, deltaMs: number}>
+	 * }, times are in milliseconds since process start, deltas since the previous mark
+	 */
+	getStartupTrace() {}
+
+	/**
+	 * Recent native log records kept in memory for support, including debug ones in release builds.
+	 * The same log is written to a file with adb shell am broadcast -a <application id>.DUMP_LOG
+	 * @return {string} Records from the oldest, one per line: date, time, thread id, level, tag and message
+	 */
+	getLog() {}
+
 	/**
 	 */
 	exit() {}
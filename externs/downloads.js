@@ -0,0 +1,74 @@
+/*
+ * This file is part of the ZombieBox package.
+ *
+ * Copyright © 2015-2020, Interfaced
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+
+/**
+ * Downloads are identified by their URI
+ */
+class AndroidDownloadsAPI {
+	/**
+	 * Hook to be declared.
+	 * Events:
+	 *     state_changed(uri, state, percent, bytes)
+	 *     progress(uri, state, percent, bytes) every second while downloading
+	 *     removed(uri)
+	 *     prepare_failed(uri, message)
+	 * Percent is -1 while content length is unknown.
+	 * @param {string} event
+	 * @param {...?} args
+	 */
+	onEvent(event, args) {}
+
+	/**
+	 * Resolves stream structure and queues download.
+	 * By default tracks player would select are downloaded, options narrow the selection:
+	 * {
+	 *     maxVideoHeight: (number|undefined),
+	 *     maxVideoBitrate: (number|undefined),
+	 *     audioLanguages: (Array<string>|undefined),
+	 *     textLanguages: (Array<string>|undefined)
+	 * }
+	 * @param {string} uri
+	 * @param {string} mediaType Same as in Player.setMediaType, 'auto' detects type from uri extension
+	 * @param {?string} options JSON encoded
+	 */
+	download(uri, mediaType, options) {}
+
+	/**
+	 * Stops download and deletes downloaded data
+	 * @param {string} uri
+	 */
+	remove(uri) {}
+
+	/**
+	 */
+	pauseAll() {}
+
+	/**
+	 */
+	resumeAll() {}
+
+	/**
+	 * Limits are persisted across application restarts
+	 * @param {number} maxParallelDownloads
+	 * @param {number} maxBytesPerSecond Total bandwidth of all downloads, 0 for unlimited
+	 */
+	setLimits(maxParallelDownloads, maxBytesPerSecond) {}
+
+	/**
+	 * @return {string} JSON encoded Array<{uri: string, state: string, percent: number, bytes: number, length: number}>
+	 */
+	getDownloads() {}
+}
+
+
+/**
+ * @type {AndroidDownloadsAPI}
+ */
+window.Downloads;
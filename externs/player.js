@@ -11,9 +11,32 @@
  */
 class AndroidPlayerAPI {
 	/**
+	 * When the page has been reloaded after a WebView renderer loss, returns the player that kept playing,
+	 * see getSnapshot.
 	 */
 	create() {}
 
+	/**
+	 * Player state for a page reloaded after a WebView renderer loss to resync without restarting the stream.
+	 * @return {string} JSON encoded {
+	 *     recovered: boolean,
+	 *     created: boolean,
+	 *     uri: (string|undefined),
+	 *     cdn: (string|undefined),
+	 *     state: (string|undefined),
+	 *     playWhenReady: (boolean|undefined),
+	 *     positionMs: (number|undefined),
+	 *     durationMs: (number|undefined),
+	 *     live: (boolean|undefined),
+	 *     playbackRate: (number|undefined),
+	 *     volume: (number|undefined),
+	 *     subtitlesVisible: (boolean|undefined),
+	 *     tracks: (Array|undefined)
+	 * }, recovered is true once the page has been reloaded while the player kept playing,
+	 * state is one of idle, buffering, ready and ended, tracks are the same as in getTracks
+	 */
+	getSnapshot() {}
+
 	/**
 	 */
 	start() {}
@@ -37,6 +60,8 @@ class AndroidPlayerAPI {
 	/**
 	 * Content type to try ro render video as
 	 * @param {string} type If not set or set to 'auto', player will try to guess from url extension
+	 *     and, for http uris without a known extension, from a probe of the first bytes.
+	 *     Probe results are remembered per host and path pattern.
 	 */
 	setMediaType(type) {}
 
@@ -56,6 +81,69 @@ class AndroidPlayerAPI {
 	 */
 	getVideoURI() {}
 
+	/**
+	 * Plays a stream mirrored on several CDNs from the one delivering its manifest first
+	 * and switches between them during playback when the serving one fails or degrades.
+	 * CDNs are expected to serve the stream under the same paths relative to the manifest.
+	 * The serving CDN is reported with the cdn_changed event.
+	 * @param {string} candidates JSON encoded Array<string|{uri: string, cdn: (string|undefined)}>,
+	 *     cdn names the CDN for health scoring and defaults to the uri host
+	 */
+	setVideoURIs(candidates) {}
+
+	/**
+	 * @return {string} Name of the CDN serving the stream set with setVideoURIs or an empty string
+	 */
+	getVideoCDN() {}
+
+	/**
+	 * @return {string} JSON encoded Object<string, {
+	 *     successRate: number,
+	 *     latencyMs: number,
+	 *     score: number,
+	 *     updatedAtMs: number
+	 * }> health scores of CDNs by name, kept across sessions
+	 */
+	getCDNHealth() {}
+
+	/**
+	 * Manifests of listed streams, e.g. neighbouring channels, are fetched in background
+	 * and reused by setVideoURI while still valid. Can be called before create().
+	 * Pass an empty array to stop prefetching.
+	 * @param {string} targets JSON encoded Array<string|{uri: string, type: string}> in order of priority,
+	 *     type is the same as in setMediaType
+	 */
+	setPrefetchURIs(targets) {}
+
+	/**
+	 * Live HLS streams set afterwards are recorded to local storage while they play,
+	 * extending how far back they can be paused and rewound. Can be called before create().
+	 * The rendition being played is recorded, when adaptive selection switches to another one its buffer starts afresh.
+	 * Buffer changes are reported with the timeshift_updated event.
+	 * @param {string} options JSON encoded {
+	 *     enabled: boolean,
+	 *     maxDurationMs: (number|undefined),
+	 *     maxBytes: (number|undefined),
+	 *     maxWriteBytesPerHour: (number|undefined)
+	 * }, maxWriteBytesPerHour of 0 means unlimited
+	 */
+	setTimeshift(options) {}
+
+	/**
+	 * @return {string} JSON encoded {
+	 *     enabled: boolean,
+	 *     active: boolean,
+	 *     recording: boolean,
+	 *     durationMs: number,
+	 *     bytes: number,
+	 *     writtenBytes: number,
+	 *     maxDurationMs: number,
+	 *     maxBytes: number,
+	 *     maxWriteBytesPerHour: number
+	 * }
+	 */
+	getTimeshiftState() {}
+
 	/**
 	 * Hook to be declared
 	 * @param {string} event
@@ -83,6 +171,27 @@ class AndroidPlayerAPI {
 	 */
 	seekTo(time) {}
 
+	/**
+	 * Sets how committed seeks are resolved. Seeks issued between scrubStart and scrubEnd always use CLOSEST_SYNC.
+	 * @param {string} mode One of: EXACT|CLOSEST_SYNC|PREVIOUS_SYNC|NEXT_SYNC
+	 */
+	setSeekMode(mode) {}
+
+	/**
+	 * @return {string} See setSeekMode
+	 */
+	getSeekMode() {}
+
+	/**
+	 * Pauses rendering and switches seeks to fast sync frame previews until scrubEnd is called.
+	 */
+	scrubStart() {}
+
+	/**
+	 * Commits the last requested seek position and restores playback state.
+	 */
+	scrubEnd() {}
+
 	/**
 	 * @return {number} - integer from 0 to 100
 	 */
@@ -109,6 +218,8 @@ class AndroidPlayerAPI {
 	getPlaybackRate() {}
 
 	/**
+	 * Rates above 2 and negative rates switch to trick play: I-frame renditions when available,
+	 * sync frame stepping with muted audio otherwise. Effective rate is reported with playback_rate_changed.
 	 * @param {number} rate float
 	 */
 	setPlaybackRate(rate) {}
@@ -128,7 +239,8 @@ class AndroidPlayerAPI {
 
 	/**
 	 * @deprecated - This method is expected to misbehave
-	 * @param {string} type One of: FIT|FILL|DEFAULT|FIXED_HEIGHT|FIXED_WIDTH|FIXED_MIN|FIXED_MAX
+	 * FILL stretches video over the area, ZOOM covers the area keeping aspect ratio and crops the edges.
+	 * @param {string} type One of: FIT|FILL|ZOOM|DEFAULT|FIXED_HEIGHT|FIXED_WIDTH|FIXED_MIN|FIXED_MAX
 	 */
 	setResizeMode(type) {}
 
@@ -138,10 +250,114 @@ class AndroidPlayerAPI {
 	 */
 	setAspectRatio(ratio) {}
 
+	/**
+	 * Shows or hides natively rendered subtitles of the selected text track.
+	 * @param {boolean} visible
+	 */
+	setSubtitlesVisible(visible) {}
+
+	/**
+	 * @return {boolean}
+	 */
+	getSubtitlesVisible() {}
+
+	/**
+	 * Sets native subtitle style, all fields are optional:
+	 * {foregroundColor, backgroundColor, windowColor, edgeColor} as #RRGGBB or #AARRGGBB,
+	 * edgeType: NONE|OUTLINE|DROP_SHADOW|RAISED|DEPRESSED,
+	 * textSize and bottomPadding as fractions of the video height, applyEmbeddedStyles: boolean.
+	 * @param {string} style JSON
+	 */
+	setSubtitleStyle(style) {}
+
+	/**
+	 * Returns all track groups known to the player as JSON, rebuilt on every tracks_changed event:
+	 * [{renderer, type, disabled, overridden, groups: [{index, tracks: [{index, id, label, language, mimeType,
+	 * codecs, bitrate, width, height, frameRate, channelCount, sampleRate, passthrough, supported, selected}]}]}]
+	 * passthrough is true for compressed audio, e.g. AC-3 and E-AC-3, that the connected TV or AVR decodes itself,
+	 * it follows the audio output as HDMI devices are plugged in and out.
+	 * @return {string}
+	 */
+	getTracks() {}
+
+	/**
+	 * Applies a track selection override without reloading the media.
+	 * @param {number} renderer Integer, see getTracks
+	 * @param {number} group Integer
+	 * @param {number} track Integer
+	 */
+	selectTrack(renderer, group, track) {}
+
+	/**
+	 * Disables all tracks of the renderer, i.e. turns subtitles off.
+	 * @param {number} renderer Integer
+	 */
+	disableTracks(renderer) {}
+
+	/**
+	 * Returns renderer to automatic track selection.
+	 * @param {number} renderer Integer
+	 */
+	clearTrackOverride(renderer) {}
+
+	/**
+	 * Configures decoder selection, all fields are optional:
+	 * preferredDecoders and blockedDecoders: arrays of decoder name prefixes, i.e. ["OMX.google."];
+	 * preferHardware, preferSecure: ordering preferences;
+	 * decoderFallback: try next decoder when initialisation fails, applies to players created afterwards;
+	 * keepCodecsWarm: keep decoders configured between sources so compatible streams skip codec initialisation.
+	 * Can be called before create.
+	 * @param {string} policy JSON
+	 */
+	setCodecPolicy(policy) {}
+
+	/**
+	 * Configures retries of failed manifest, segment and DRM license loads, all fields are optional:
+	 * network, http_client, http_server, parser, other: error class rules as {retries: number, blacklist: boolean},
+	 *     blacklisted renditions are excluded from adaptive selection while other renditions are available;
+	 * initialBackoffMs, backoffMultiplier, maxBackoffMs: exponential delay between retries;
+	 * blacklistMs: how long renditions stay blacklisted.
+	 * Pass an empty object to restore defaults. Can be called before create.
+	 * @param {string} policy JSON
+	 */
+	setLoadErrorPolicy(policy) {}
+
+	/**
+	 * Once the application stays in background for longer than the timeout, the player saves its uri, position,
+	 * track selection and DRM settings and releases the stream with its decoders and buffers.
+	 * Shorter backgrounds only pause. Playback is restored on return, reported with hibernated,
+	 * restoring and restored events. Defaults to 5 minutes. Can be called before create.
+	 * @param {number} timeoutMs 0 to only pause
+	 */
+	setHibernateTimeout(timeoutMs) {}
+
+	/**
+	 * Hides the page while it shows nothing over fullscreen video, so that only video is composed.
+	 * The first key press or mouse movement shows it again before the page receives it.
+	 * Playback stopping shows it as well. Changes are reported with overlay_idle_changed event.
+	 * @param {boolean} idle
+	 */
+	setOverlayIdle(idle) {}
+
+	/**
+	 * Hides the page once video plays full screen without input for the timeout, see setOverlayIdle.
+	 * @param {number} timeoutMs 0 to only hide on setOverlayIdle
+	 */
+	setOverlayAutoIdle(timeoutMs) {}
+
+	/**
+	 * JSON with composition and video frame counts while the page is shown and hidden:
+	 * {idle, shown: {timeMs, uiFrames, uiFramesPerSecond, uiFrameMs, videoFramesRendered, videoFramesDropped},
+	 * hidden: {...}}. UI frames are only counted on Android 7 and newer.
+	 * @return {string}
+	 */
+	getOverlayStats() {}
+
 	/**
 	 * Sets video rendering engine type.
 	 * Can only be used after video is created, but before playback is started.
-	 * @param {string} type One of: SURFACE_VIEW|TEXTURE_VIEW
+	 * GL_SURFACE can't render DRM protected content and is refused with an error, same as setDRM once it's set.
+	 * @param {string} type One of: SURFACE_VIEW|TEXTURE_VIEW|GL_SURFACE
 	 */
 	setVideoType(type) {}
 
@@ -149,6 +365,38 @@ class AndroidPlayerAPI {
 	 * @return {string} See setVideoType
 	 */
 	getVideoType() {}
+
+	/**
+	 * Enables tunneled video playback where device, codecs and tracks support it.
+	 * Only applies to SURFACE_VIEW video type, other types silently fall back to regular playback.
+	 * AUTO enables it when the device has a tunneling decoder for the codec of the selected video track.
+	 * @param {string} mode One of: OFF|ON|AUTO
+	 */
+	setTunnelingMode(mode) {}
+
+	/**
+	 * @return {string} See setTunnelingMode
+	 */
+	getTunnelingMode() {}
+
+	/**
+	 * @return {boolean} Whether tunneled playback is actually used for current tracks
+	 */
+	isTunnelingActive() {}
+
+	/**
+	 * Switches display refresh rate to a multiple of content frame rate once per source.
+	 * SEAMLESS_ONLY only considers modes the display switches to without blanking: alternative refresh rates
+	 * of the current mode, which are known on Android 12 and newer only, before that the mode is never switched.
+	 * Display mode is reverted when playback stops.
+	 * @param {string} mode One of: OFF|SEAMLESS_ONLY|ALWAYS
+	 */
+	setFrameRateMatching(mode) {}
+
+	/**
+	 * @return {string} See setFrameRateMatching
+	 */
+	getFrameRateMatching() {}
 }
 
 
@@ -53,6 +53,7 @@ class PlatformAndroid extends AbstractPlatform {
 					useBundledHTML: true,
 					applicationURL: undefined,
 					webViewDebug: false,
+					bridgeRecording: false,
 					storeRelease: false,
 					resPath: undefined
 				}
@@ -62,7 +63,9 @@ class PlatformAndroid extends AbstractPlatform {
 					name: 'Android TV externs',
 					externs: [
 						path.join(__dirname, 'externs', 'player.js'),
-						path.join(__dirname, 'externs', 'device.js')
+						path.join(__dirname, 'externs', 'device.js'),
+						path.join(__dirname, 'externs', 'downloads.js'),
+						path.join(__dirname, 'externs', 'bridge-recorder.js')
 					]
 				}
 			]
@@ -165,7 +168,8 @@ class PlatformAndroid extends AbstractPlatform {
 			'versionName': `versionName "${config.versionName}"`,
 			'useBundledHTML': `buildConfigField 'Boolean', 'USE_BUNDLED_HTML', '${config.useBundledHTML}'`,
 			'applicationURL': `buildConfigField 'String', 'APPLICATION_URL', '"${config.applicationURL}"'`,
-			'webViewDebug': `buildConfigField 'Boolean', 'WEBVIEW_DEBUG', '${config.webViewDebug}'`
+			'webViewDebug': `buildConfigField 'Boolean', 'WEBVIEW_DEBUG', '${config.webViewDebug}'`,
+			'bridgeRecording': `buildConfigField 'Boolean', 'BRIDGE_RECORDING', '${config.bridgeRecording}'`
 		};
 
 		const properties = [
@@ -0,0 +1,121 @@
+/*
+ * This file is part of the ZombieBox package.
+ *
+ * Copyright © 2015-2020, Interfaced
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+
+/**
+ * Native interfaces which calls are recorded
+ * @const {Array<string>}
+ */
+const RECORDED_INTERFACES = ['Device', 'Downloads', 'Player'];
+
+
+/**
+ * Calls are sent to native side in batches of this size or once per FLUSH_INTERVAL
+ * @const {number}
+ */
+const BATCH_SIZE = 200;
+
+
+/**
+ * @const {number}
+ */
+const FLUSH_INTERVAL = 1000;
+
+
+/**
+ * [time, interface, method, arguments, duration], times are in milliseconds
+ * @type {Array<Array<?>>}
+ */
+let batch = [];
+
+
+/**
+ * @type {?AndroidBridgeRecorderAPI}
+ */
+let recorder = null;
+
+
+/**
+ * Wraps methods of native interfaces to record their calls when native side has recording enabled.
+ * Recorder interface is only exposed by native side when bridge recording was opted in,
+ * otherwise this is a no-op and native interfaces are left untouched.
+ */
+export const installBridgeRecorder = () => {
+	const api = /** @type {?AndroidBridgeRecorderAPI} */ (window['BridgeRecorder'] || null);
+
+	if (recorder || !api) {
+		return;
+	}
+
+	recorder = api;
+	recorder.start(performance.now());
+
+	RECORDED_INTERFACES.forEach((name) => {
+		const target = window[name];
+		if (target) {
+			wrapInterface(name, target);
+		}
+	});
+
+	setInterval(flush, FLUSH_INTERVAL);
+};
+
+
+/**
+ * @param {string} name
+ * @param {!Object} target
+ */
+const wrapInterface = (name, target) => {
+	Object.keys(target).forEach((method) => {
+		const original = target[method];
+
+		// onEvent is a hook assigned by this side and called by native side, not a native method
+		if (method === 'onEvent' || !(original instanceof Function)) {
+			return;
+		}
+
+		target[method] = (...args) => {
+			const start = performance.now();
+			try {
+				return original.apply(target, args);
+			} finally {
+				record(start, name, method, args, performance.now() - start);
+			}
+		};
+	});
+};
+
+
+/**
+ * @param {number} time
+ * @param {string} name
+ * @param {string} method
+ * @param {Array<?>} args
+ * @param {number} duration
+ */
+const record = (time, name, method, args, duration) => {
+	batch.push([time, name, method, args, duration]);
+
+	if (batch.length >= BATCH_SIZE) {
+		flush();
+	}
+};
+
+
+/**
+ */
+const flush = () => {
+	if (!batch.length) {
+		return;
+	}
+
+	const data = JSON.stringify(batch);
+	batch = [];
+	recorder.record(data);
+};
@@ -13,6 +13,8 @@ import UnsupportedFeature from 'zb/device/errors/unsupported-feature';
 import {ResolutionInfo} from 'zb/device/resolutions';
 import Info from './info';
 import Input from './input';
+import {openEventChannel} from './event-channel';
+import {installBridgeRecorder} from './bridge-recorder';
 import Video from './video';
 import StatefulVideo from './stateful-video';
 
@@ -210,12 +212,36 @@ export default class Device extends AbstractDevice {
 		return this._api.getPhysicalScreenWidth() >= 7680 && this._api.getPhysicalScreenHeight() >= 4320;
 	}
 
+	/**
+	 * Adds a milestone to the native startup trace which runs from process start to the first video frame.
+	 * Only the first mark of each name is kept.
+	 * @param {string} name
+	 */
+	markStartup(name) {
+		this._api.markStartup(name);
+	}
+
+	/**
+	 * @return {{
+	 *     finished: boolean,
+	 *     marks: Array<{name: string, timeMs: number, deltaMs: number}>
+	 * }}
+	 */
+	getStartupTrace() {
+		return /** @type {{finished: boolean, marks: Array<{name: string, timeMs: number, deltaMs: number}>}} */ (
+			JSON.parse(this._api.getStartupTrace())
+		);
+	}
+
 	/**
 	 * Listen to native events
 	 * @protected
 	 */
 	_bindListeners() {
 		this._api.onEvent = this._onDeviceEvent.bind(this);
+		this._api.markStartup('device_created');
+		installBridgeRecorder();
+		openEventChannel(this._api);
 	}
 
 	/**
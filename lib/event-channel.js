@@ -0,0 +1,79 @@
+/*
+ * This file is part of the ZombieBox package.
+ *
+ * Copyright © 2015-2020, Interfaced
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+
+/**
+ * Message data native side transfers the channel port with
+ * @const {string}
+ */
+const CHANNEL_MESSAGE = 'tvplatform-event-channel';
+
+
+/**
+ * @type {boolean}
+ */
+let isRequested = false;
+
+
+/**
+ * Asks native side to deliver events over a message channel instead of evaluating a script for each of them.
+ * Events are dispatched to the same onEvent hooks of native interfaces, so subscribers don't need to know
+ * which transport is used. Native side keeps using script evaluation until the channel is established
+ * or when it's not supported.
+ * @param {AndroidDeviceAPI} api
+ */
+export const openEventChannel = (api) => {
+	if (isRequested || !(api.openEventChannel instanceof Function)) {
+		return;
+	}
+
+	isRequested = true;
+
+	let isOpened = false;
+
+	window.addEventListener('message', (event) => {
+		if (isOpened || event.data !== CHANNEL_MESSAGE || !event.ports || !event.ports[0] || !isFromNative(event)) {
+			return;
+		}
+
+		isOpened = true;
+
+		const port = event.ports[0];
+		port.onmessage = (message) => dispatch(/** @type {string} */ (message.data));
+	});
+
+	api.openEventChannel();
+};
+
+
+/**
+ * Native side posts messages with no source window and an empty origin,
+ * frames can't do the same and are rejected, as well as messages from other origins.
+ * @param {MessageEvent} event
+ * @return {boolean}
+ */
+const isFromNative = (event) => {
+	const isSourceAllowed = event.source === null || event.source === window;
+	const isOriginAllowed = event.origin === '' || event.origin === 'null' || event.origin === window.location.origin;
+
+	return isSourceAllowed && isOriginAllowed;
+};
+
+
+/**
+ * @param {string} data JSON encoded {context, event, args}
+ */
+const dispatch = (data) => {
+	const message = /** @type {{context: string, event: string, args: Array<?>}} */ (JSON.parse(data));
+	const target = window[message.context];
+
+	if (target && target.onEvent instanceof Function) {
+		target.onEvent(message.event, ...message.args);
+	}
+};
@@ -24,6 +24,12 @@ export const Event = {
 	SEEK_PROCESSED: 'seek_processed',
 	VOLUME_CHANGED: 'volume_changed',
 	PLAYBACK_RATE_CHANGED: 'playback_rate_changed',
+	TIMESHIFT_UPDATED: 'timeshift_updated', // Fired with {number} buffered ms, {number} bytes and {boolean} recording
+	CDN_CHANGED: 'cdn_changed', // Fired with {string} cdn, {string} uri and {string} reason: race, failure or degraded
+	HIBERNATED: 'hibernated', // Player released the stream after a long time in background
+	RESTORING: 'restoring', // Player is loading the stream released by hibernation again
+	RESTORED: 'restored', // Stream released by hibernation is ready at its saved position
+	OVERLAY_IDLE_CHANGED: 'overlay_idle_changed', // Fired with {boolean} idle when the page is taken out of composition or back
 	ERROR: 'error' // Fired with {number} error code and {?string} error description
 };
 
@@ -43,7 +49,8 @@ export const Error = {
  */
 export const VideoType = {
 	SURFACE_VIEW: 'SURFACE_VIEW',
-	TEXTURE_VIEW: 'TEXTURE_VIEW'
+	TEXTURE_VIEW: 'TEXTURE_VIEW',
+	GL_SURFACE: 'GL_SURFACE'
 };
 
 
@@ -65,14 +72,61 @@ export const DRMType = {
 };
 
 
+/**
+ * @enum {string}
+ */
+export const TunnelingMode = {
+	OFF: 'OFF',
+	ON: 'ON',
+	AUTO: 'AUTO'
+};
+
+
+/**
+ * @enum {string}
+ */
+export const FrameRateMatching = {
+	OFF: 'OFF',
+	SEAMLESS_ONLY: 'SEAMLESS_ONLY',
+	ALWAYS: 'ALWAYS'
+};
+
+
+/**
+ * @enum {string}
+ */
+export const SeekMode = {
+	EXACT: 'EXACT',
+	CLOSEST_SYNC: 'CLOSEST_SYNC',
+	PREVIOUS_SYNC: 'PREVIOUS_SYNC',
+	NEXT_SYNC: 'NEXT_SYNC'
+};
+
+
+
+/**
+ * @enum {string}
+ */
+export const DownloadState = {
+	QUEUED: 'QUEUED',
+	STOPPED: 'STOPPED',
+	DOWNLOADING: 'DOWNLOADING',
+	COMPLETED: 'COMPLETED',
+	FAILED: 'FAILED',
+	REMOVING: 'REMOVING',
+	RESTARTING: 'RESTARTING'
+};
+
 /**
  * Android platforms has two options for video rendering engine,
  * unfortunately, one does not support rotations, while the other has poor performance.
+ * GL rendering gives rotation support at a cost close to smooth playback, but relies on device GL drivers.
  * It's up to application to choose which one to use.
  * Changing is only possible before play() is called.
  * @enum {symbol}
  */
 export const VideoOptimisation = {
 	ROTATION_SUPPORT: Symbol('Optimised for rotation support'),
-	SMOOTH_PLAYBACK: Symbol('Optimised for smooth playback')
+	SMOOTH_PLAYBACK: Symbol('Optimised for smooth playback'),
+	GL_ROTATION_SUPPORT: Symbol('Rotation support through GL composition')
 };
@@ -347,6 +347,10 @@ export default class StatefulVideo extends AbstractStatefulVideo {
 				this._engine.setVideoType(VideoType.TEXTURE_VIEW);
 				break;
 			}
+			case VideoOptimisation.GL_ROTATION_SUPPORT: {
+				this._engine.setVideoType(VideoType.GL_SURFACE);
+				break;
+			}
 			case VideoOptimisation.SMOOTH_PLAYBACK:
 			default: {
 				this._engine.setVideoType(VideoType.SURFACE_VIEW);
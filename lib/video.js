@@ -235,6 +235,10 @@ export default class Video extends AbstractVideo {
 				this._player.setVideoType(VideoType.TEXTURE_VIEW);
 				break;
 			}
+			case VideoOptimisation.GL_ROTATION_SUPPORT: {
+				this._player.setVideoType(VideoType.GL_SURFACE);
+				break;
+			}
 			case VideoOptimisation.SMOOTH_PLAYBACK:
 			default: {
 				this._player.setVideoType(VideoType.SURFACE_VIEW);
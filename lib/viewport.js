@@ -124,6 +124,7 @@ export const Orientation = {
 export const ResizeMode = {
 	FIT: 'FIT',
 	FILL: 'FILL',
+	ZOOM: 'ZOOM',
 	DEFAULT: 'DEFAULT',
 	FIXED_HEIGHT: 'FIXED_HEIGHT',
 	FIXED_WIDTH: 'FIXED_WIDTH',
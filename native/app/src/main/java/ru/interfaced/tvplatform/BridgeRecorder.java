@@ -0,0 +1,191 @@
+package ru.interfaced.tvplatform;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.webkit.JavascriptInterface;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import ru.interfaced.tvplatform.core.trace.BridgeTraceWriter;
+
+/**
+ * Records bridge traffic to a trace file for offline replay, see core BridgeTraceReader.
+ * Exposed to the page only when recording is opted in; the page then wraps native interfaces
+ * and reports their calls in batches, while events are recorded as they are dispatched.
+ * Traces are written to bridge-traces directory of application external files.
+ * Encoding and writing happen on a dedicated thread so that recording doesn't skew bridge timings much.
+ */
+class BridgeRecorder {
+    private static final String TAG = "BridgeRecorder";
+
+    /**
+     * Intent extra that enables recording in builds that have it disabled, e.g.
+     * adb shell am start -n <application id>/ru.interfaced.tvplatform.MainActivity --ez recordBridge true
+     */
+    static final String EXTRA_RECORD_BRIDGE = "recordBridge";
+
+    private static final String DIRECTORY = "bridge-traces";
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, TAG));
+    private final long startTimeUs = SystemClock.elapsedRealtimeNanos() / 1000;
+    private final BridgeTraceWriter writer;
+
+    // Difference between trace time and page performance.now() time, updated with every new document
+    private volatile long pageTimeOffsetUs = 0;
+    private volatile boolean closed = false;
+
+    private BridgeRecorder(BridgeTraceWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @return Recorder or null if trace file could not be created
+     */
+    static BridgeRecorder create(Context context) {
+        File root = context.getExternalFilesDir(null);
+        File directory = new File(root != null ? root : context.getFilesDir(), DIRECTORY);
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".zbt";
+        File file = new File(directory, name);
+
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Failed to create " + directory);
+            }
+
+            BridgeRecorder recorder = new BridgeRecorder(new BridgeTraceWriter(new FileOutputStream(file)));
+            Logger.i(TAG, "Recording bridge traffic", file.getPath());
+            return recorder;
+        } catch (IOException e) {
+            Logger.e(TAG, "Failed to start bridge recording", e);
+            return null;
+        }
+    }
+
+    /**
+     * Called by the page once per document before it starts reporting calls.
+     * @param pageTimeMs Page performance.now()
+     */
+    @JavascriptInterface
+    public void start(double pageTimeMs) {
+        pageTimeOffsetUs = getTimeUs() - (long) (pageTimeMs * 1000);
+        Logger.d(TAG, "Page started recording");
+    }
+
+    /**
+     * @param batch JSON array of [time, interface, method, arguments, duration] with times in page milliseconds
+     */
+    @JavascriptInterface
+    public void record(String batch) {
+        long offsetUs = pageTimeOffsetUs;
+        execute(() -> writeCalls(batch, offsetUs));
+    }
+
+    void recordEvent(String context, String event, String arguments) {
+        long timeUs = getTimeUs();
+        execute(() -> {
+            try {
+                writer.writeEvent(timeUs, context, event, arguments);
+            } catch (IOException e) {
+                Logger.e(TAG, "Failed to record event", event, e.toString());
+            }
+        });
+    }
+
+    void flush() {
+        execute(() -> {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                Logger.e(TAG, "Failed to flush trace", e);
+            }
+        });
+    }
+
+    /**
+     * Writes pending records and closes the trace, blocks for a limited time.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+
+        execute(() -> {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Logger.e(TAG, "Failed to close trace", e);
+            }
+        });
+        closed = true;
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Logger.w(TAG, "Timed out writing trace");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records coming after close are dropped, the page may keep reporting calls until it's torn down.
+     */
+    private void execute(Runnable task) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Closed concurrently
+        }
+    }
+
+    private void writeCalls(String batch, long offsetUs) {
+        try {
+            JSONArray calls = new JSONArray(batch);
+            for (int i = 0; i < calls.length(); i++) {
+                JSONArray call = calls.getJSONArray(i);
+                JSONArray arguments = call.getJSONArray(3);
+
+                List<Object> values = new ArrayList<>(arguments.length());
+                for (int j = 0; j < arguments.length(); j++) {
+                    Object value = arguments.get(j);
+                    values.add(value == JSONObject.NULL ? null : value);
+                }
+
+                writer.writeCall(
+                    (long) (call.getDouble(0) * 1000) + offsetUs,
+                    call.getString(1),
+                    call.getString(2),
+                    values,
+                    (long) (call.getDouble(4) * 1000)
+                );
+            }
+        } catch (JSONException | IOException e) {
+            Logger.e(TAG, "Failed to record calls", e);
+        }
+    }
+
+    private long getTimeUs() {
+        return SystemClock.elapsedRealtimeNanos() / 1000 - startTimeUs;
+    }
+}
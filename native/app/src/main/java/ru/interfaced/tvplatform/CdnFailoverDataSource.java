@@ -0,0 +1,118 @@
+package ru.interfaced.tvplatform;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads resources of a multi-CDN stream from the CDN currently serving it, see CdnRouter.
+ * A load failing to open is retried on the next CDN before the failure reaches the player,
+ * so that a CDN going down costs one extra request instead of a playback error.
+ * Resources not served by any of the CDNs, e.g. keys and licenses, are loaded as requested.
+ */
+class CdnFailoverDataSource implements DataSource {
+    private final DataSource upstream;
+    private final CdnRouter.Session session;
+
+    static class Factory implements DataSource.Factory {
+        private final DataSource.Factory upstreamFactory;
+        private final CdnRouter.Session session;
+
+        Factory(DataSource.Factory upstreamFactory, CdnRouter.Session session) {
+            this.upstreamFactory = upstreamFactory;
+            this.session = session;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new CdnFailoverDataSource(upstreamFactory.createDataSource(), session);
+        }
+    }
+
+    private CdnFailoverDataSource(DataSource upstream, CdnRouter.Session session) {
+        this.upstream = upstream;
+        this.session = session;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        CdnRouter.Candidate candidate = session.getActive();
+        Uri uri = session.rewrite(dataSpec.uri, candidate);
+        if (uri == null) {
+            return upstream.open(dataSpec);
+        }
+
+        // Each CDN gets one attempt, retries beyond that are up to the player's load error policy
+        int attemptsLeft = session.getCandidateCount();
+        while (true) {
+            long startMs = SystemClock.elapsedRealtime();
+            try {
+                long length = upstream.open(dataSpec.withUri(uri));
+                session.onLoadSucceeded(candidate, SystemClock.elapsedRealtime() - startMs);
+                return length;
+            } catch (IOException e) {
+                Util.closeQuietly(upstream);
+
+                if (!isFailoverWorthy(e)) {
+                    throw e;
+                }
+
+                CdnRouter.Candidate next = session.onLoadFailed(candidate, e);
+                if (--attemptsLeft == 0 || next == candidate) {
+                    throw e;
+                }
+
+                candidate = next;
+                uri = session.rewrite(dataSpec.uri, candidate);
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        return upstream.read(buffer, offset, readLength);
+    }
+
+    @Override
+    public @Nullable Uri getUri() {
+        return upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        upstream.close();
+    }
+
+    /**
+     * Malformed data and other local failures would fail the same on any CDN.
+     */
+    private static boolean isFailoverWorthy(IOException exception) {
+        switch (LoadErrorPolicy.classify(exception)) {
+            case NETWORK:
+            case HTTP_CLIENT:
+            case HTTP_SERVER:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
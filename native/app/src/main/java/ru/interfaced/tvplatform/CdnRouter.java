@@ -0,0 +1,300 @@
+package ru.interfaced.tvplatform;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ru.interfaced.tvplatform.core.CdnHealth;
+
+/**
+ * Plays streams available from several CDNs from the one responding best.
+ * Manifests are requested from all candidates at once and the first complete response wins the race.
+ * Every response and failure, including those of race losers and of segment loads during playback,
+ * feeds per-CDN health scores kept across sessions.
+ * During playback, loads failing on the serving CDN or repeatedly slow on it are redirected to the healthiest other one,
+ * which requires CDNs to mirror the stream under the same paths relative to the manifest.
+ */
+class CdnRouter {
+    private static final String TAG = "CdnRouter";
+
+    private static final String PREFERENCES = "cdn";
+    private static final String PREFERENCE_HEALTH = "health";
+
+    // Time to first byte past which a load counts towards degradation
+    private static final long DEGRADED_LATENCY_MS = 2000;
+    // Consecutive slow loads on the serving CDN to switch away from it
+    private static final int DEGRADED_LOADS = 3;
+
+    interface Listener {
+        /**
+         * Called on the thread of the load that caused the change.
+         * @param reason "race" when the stream starts, "failure" or "degraded" when switching during playback
+         */
+        void onCdnChanged(String cdn, String uri, String reason);
+    }
+
+    interface RaceCallback {
+        /**
+         * Called on a race thread.
+         * @param winner Null if no candidate responded
+         */
+        void onRaceFinished(@Nullable Candidate winner, @Nullable byte[] manifest);
+    }
+
+    static final class Candidate {
+        final String uri;
+        final String cdn;
+        // Uri up to the last path separator, paths of other resources relative to it are the same across CDNs
+        final String base;
+
+        /**
+         * @param cdn Name to keep health scores under, defaults to the uri host
+         */
+        Candidate(String uri, @Nullable String cdn) {
+            this.uri = uri;
+            String host = Uri.parse(uri).getHost();
+            this.cdn = cdn != null && !cdn.isEmpty() ? cdn : host != null ? host : uri;
+
+            int query = uri.indexOf('?');
+            int separator = uri.lastIndexOf('/', query >= 0 ? query : uri.length());
+            this.base = separator >= 0 ? uri.substring(0, separator + 1) : uri;
+        }
+    }
+
+    /**
+     * Failover state of one playback, all methods are thread safe.
+     */
+    final class Session {
+        private final List<Candidate> candidates;
+        private final Listener listener;
+        private Candidate active;
+        private int slowLoads = 0;
+
+        private Session(List<Candidate> candidates, Candidate active, Listener listener) {
+            this.candidates = candidates;
+            this.active = active;
+            this.listener = listener;
+        }
+
+        synchronized Candidate getActive() {
+            return active;
+        }
+
+        int getCandidateCount() {
+            return candidates.size();
+        }
+
+        /**
+         * @return Uri of the same resource on the target CDN or null if the uri isn't served by any of the candidates
+         */
+        @Nullable Uri rewrite(Uri uri, Candidate target) {
+            String uriString = uri.toString();
+            for (Candidate candidate: candidates) {
+                if (uriString.startsWith(candidate.base)) {
+                    return candidate == target ? uri : Uri.parse(target.base + uriString.substring(candidate.base.length()));
+                }
+            }
+            return null;
+        }
+
+        void onLoadSucceeded(Candidate candidate, long latencyMs) {
+            health.recordSuccess(candidate.cdn, latencyMs, System.currentTimeMillis());
+
+            Candidate next = null;
+            synchronized (this) {
+                if (candidate != active) {
+                    return;
+                }
+
+                slowLoads = latencyMs > DEGRADED_LATENCY_MS ? slowLoads + 1 : 0;
+                if (slowLoads >= DEGRADED_LOADS) {
+                    Candidate best = getBestAlternative();
+                    // Switching only helps if the alternative is known to do better
+                    if (best != null && health.getScore(best.cdn) > health.getScore(active.cdn)) {
+                        next = switchTo(best);
+                    }
+                }
+            }
+
+            if (next != null) {
+                onSwitched(next, "degraded");
+            }
+        }
+
+        /**
+         * @return Candidate to retry the load with
+         */
+        Candidate onLoadFailed(Candidate candidate, IOException exception) {
+            health.recordFailure(candidate.cdn, System.currentTimeMillis());
+
+            Candidate next = null;
+            Candidate current;
+            synchronized (this) {
+                if (candidate == active) {
+                    Candidate best = getBestAlternative();
+                    if (best != null) {
+                        Logger.w(TAG, "Load failed from", candidate.cdn, exception.getMessage());
+                        next = switchTo(best);
+                    }
+                }
+                current = active;
+            }
+
+            if (next != null) {
+                onSwitched(next, "failure");
+            }
+            return current;
+        }
+
+        private @Nullable Candidate getBestAlternative() {
+            Candidate best = null;
+            for (Candidate candidate: candidates) {
+                if (candidate != active && (best == null || health.getScore(candidate.cdn) > health.getScore(best.cdn))) {
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+
+        private Candidate switchTo(Candidate candidate) {
+            active = candidate;
+            slowLoads = 0;
+            return candidate;
+        }
+
+        private void onSwitched(Candidate candidate, String reason) {
+            Logger.i(TAG, "Switched to another CDN", candidate.cdn, reason);
+            save();
+            listener.onCdnChanged(candidate.cdn, candidate.uri, reason);
+        }
+    }
+
+    private final CdnHealth health = new CdnHealth();
+    private final SharedPreferences preferences;
+    private final DataSource.Factory dataSourceFactory;
+    private final ExecutorService executor;
+
+    CdnRouter(Context context, DataSource.Factory dataSourceFactory) {
+        this.dataSourceFactory = dataSourceFactory;
+
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        health.restore(preferences.getString(PREFERENCE_HEALTH, ""));
+
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return Candidates ordered from the healthiest CDN
+     */
+    List<Candidate> rank(List<Candidate> candidates) {
+        Map<String, List<Candidate>> byCdn = new LinkedHashMap<>();
+        for (Candidate candidate: candidates) {
+            List<Candidate> cdnCandidates = byCdn.get(candidate.cdn);
+            if (cdnCandidates == null) {
+                cdnCandidates = new ArrayList<>();
+                byCdn.put(candidate.cdn, cdnCandidates);
+            }
+            cdnCandidates.add(candidate);
+        }
+
+        List<Candidate> ranked = new ArrayList<>(candidates.size());
+        for (String cdn: health.rank(new ArrayList<>(byCdn.keySet()))) {
+            ranked.addAll(byCdn.get(cdn));
+        }
+        return ranked;
+    }
+
+    /**
+     * Fetches manifests of all candidates at once, the first one fetched wins.
+     * Losing fetches are let to finish to keep scoring their CDNs.
+     * CDNs are scored by time to first byte like segment loads are, so that manifest size doesn't skew the scores.
+     */
+    void race(List<Candidate> candidates, RaceCallback callback) {
+        Object lock = new Object();
+        int[] pending = {candidates.size()};
+        boolean[] finished = {false};
+        long startMs = SystemClock.elapsedRealtime();
+
+        for (Candidate candidate: candidates) {
+            executor.execute(() -> {
+                byte[] manifest = null;
+                DataSourceInputStream input = new DataSourceInputStream(dataSourceFactory.createDataSource(), new DataSpec(Uri.parse(candidate.uri)));
+                try {
+                    input.open();
+                    long latencyMs = SystemClock.elapsedRealtime() - startMs;
+
+                    manifest = Util.toByteArray(input);
+                    health.recordSuccess(candidate.cdn, latencyMs, System.currentTimeMillis());
+                } catch (IOException e) {
+                    Logger.w(TAG, "Failed to fetch manifest from", candidate.cdn, e.getMessage());
+                    health.recordFailure(candidate.cdn, System.currentTimeMillis());
+                } finally {
+                    Util.closeQuietly(input);
+                }
+
+                boolean won;
+                boolean lost;
+                boolean last;
+                synchronized (lock) {
+                    last = --pending[0] == 0;
+                    won = manifest != null && !finished[0];
+                    lost = !won && !finished[0] && last;
+                    finished[0] |= won || lost;
+                }
+
+                if (last) {
+                    save();
+                }
+
+                if (won) {
+                    Logger.i(TAG, "Manifest race won in {}ms", SystemClock.elapsedRealtime() - startMs);
+                    Logger.d(TAG, "Manifest race winner", candidate.cdn);
+                    callback.onRaceFinished(candidate, manifest);
+                } else if (lost) {
+                    callback.onRaceFinished(null, null);
+                }
+            });
+        }
+    }
+
+    /**
+     * Shuts down fetch threads, races under way are let to finish and race can't be called afterwards.
+     */
+    void release() {
+        executor.shutdown();
+    }
+
+    Session createSession(List<Candidate> candidates, Candidate active, Listener listener) {
+        return new Session(candidates, active, listener);
+    }
+
+    /**
+     * @return {cdn: {successRate, latencyMs, score, updatedAtMs}}
+     */
+    String getHealth() {
+        return health.toJson();
+    }
+
+    private void save() {
+        preferences.edit().putString(PREFERENCE_HEALTH, health.serialize()).apply();
+    }
+}
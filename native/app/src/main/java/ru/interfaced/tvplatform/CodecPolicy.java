@@ -0,0 +1,134 @@
+package ru.interfaced.tvplatform;
+
+
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decoder selection rules configurable from JavaScript.
+ * Selector is queried whenever a codec is about to be initialised, so changes apply to the next codec initialisation.
+ * Decoder fallback is only read when the player is created.
+ */
+class CodecPolicy implements MediaCodecSelector {
+    private static final String TAG = "CodecPolicy";
+
+    private static final String[] SOFTWARE_DECODER_PREFIXES = {
+        "omx.google.",
+        "omx.ffmpeg.",
+        "c2.android.",
+        "c2.google."
+    };
+
+    private volatile List<String> preferredDecoders = Collections.emptyList();
+    private volatile List<String> blockedDecoders = Collections.emptyList();
+    private volatile boolean preferHardware = true;
+    private volatile boolean preferSecure = false;
+    private volatile boolean decoderFallback = true;
+    private volatile boolean keepCodecsWarm = false;
+
+    /**
+     * Fields not present in the json keep their current values.
+     * Decoder names are matched case insensitively by prefix.
+     */
+    void update(String policyJson) throws JSONException {
+        JSONObject json = new JSONObject(policyJson);
+
+        if (json.has("preferredDecoders")) {
+            preferredDecoders = parseNames(json.getJSONArray("preferredDecoders"));
+        }
+        if (json.has("blockedDecoders")) {
+            blockedDecoders = parseNames(json.getJSONArray("blockedDecoders"));
+        }
+
+        preferHardware = json.optBoolean("preferHardware", preferHardware);
+        preferSecure = json.optBoolean("preferSecure", preferSecure);
+        decoderFallback = json.optBoolean("decoderFallback", decoderFallback);
+        keepCodecsWarm = json.optBoolean("keepCodecsWarm", keepCodecsWarm);
+    }
+
+    boolean isDecoderFallbackEnabled() {
+        return decoderFallback;
+    }
+
+    boolean isKeepCodecsWarm() {
+        return keepCodecsWarm;
+    }
+
+    @Override
+    public List<MediaCodecInfo> getDecoderInfos(String mimeType, boolean requiresSecureDecoder, boolean requiresTunnelingDecoder) throws MediaCodecUtil.DecoderQueryException {
+        List<MediaCodecInfo> decoders = MediaCodecUtil.getDecoderInfos(mimeType, requiresSecureDecoder, requiresTunnelingDecoder);
+        List<MediaCodecInfo> result = new ArrayList<>(decoders.size());
+
+        for (MediaCodecInfo decoder: decoders) {
+            if (matchesAny(decoder.name, blockedDecoders)) {
+                Logger.d(TAG, "Skipping blocked decoder", decoder.name);
+                continue;
+            }
+            result.add(decoder);
+        }
+
+        // Stable sort keeps platform order within equally ranked decoders
+        Collections.sort(result, (a, b) -> Integer.compare(rank(b), rank(a)));
+
+        return result;
+    }
+
+    @Override
+    public MediaCodecInfo getPassthroughDecoderInfo() throws MediaCodecUtil.DecoderQueryException {
+        return MediaCodecUtil.getPassthroughDecoderInfo();
+    }
+
+    private int rank(MediaCodecInfo decoder) {
+        int rank = 0;
+
+        if (matchesAny(decoder.name, preferredDecoders)) {
+            rank += 4;
+        }
+        if (preferHardware && !isSoftwareDecoder(decoder.name)) {
+            rank += 2;
+        }
+        if (preferSecure && decoder.secure) {
+            rank += 1;
+        }
+
+        return rank;
+    }
+
+    private static boolean isSoftwareDecoder(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.US);
+        for (String prefix: SOFTWARE_DECODER_PREFIXES) {
+            if (lowerCaseName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(String name, List<String> prefixes) {
+        String lowerCaseName = name.toLowerCase(Locale.US);
+        for (String prefix: prefixes) {
+            if (lowerCaseName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> parseNames(JSONArray array) throws JSONException {
+        List<String> names = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            names.add(array.getString(i).toLowerCase(Locale.US));
+        }
+        return Collections.unmodifiableList(names);
+    }
+}
@@ -173,8 +173,9 @@ class DeviceWebInterface {
         if (cumulativeMouseActivationState == null || !cumulativeMouseActivationState) {
             // Mouse slipped pas USB and Bluetooth checks somehow and we started getting mouse events.
             // Trigger mouseConnected and move on
+            // Connection checks would report it disconnected again, so dispatch directly
             cumulativeMouseActivationState = true;
-            onMouseConnectionChanged();
+            dispatchEvent("mouseConnected");
         }
     }
 
@@ -317,8 +318,39 @@ class DeviceWebInterface {
         return "{}";
     }
 
+    @JavascriptInterface
+    public void openEventChannel() {
+        Log.d(TAG, "Event channel requested");
+        ((MainActivity)context).openEventChannel();
+    }
+
+    /**
+     * Adds a page milestone to the startup trace, only the first mark of each name is kept.
+     */
+    @JavascriptInterface
+    public void markStartup(String name) {
+        StartupTracer.mark("js:" + name);
+    }
+
+    /**
+     * @return JSON encoded {finished, marks: [{name, timeMs, deltaMs}]}, times are counted from process start
+     */
+    @JavascriptInterface
+    public String getStartupTrace() {
+        return StartupTracer.toJson();
+    }
+
+    /**
+     * @return Recent native log records from the oldest, one per line, see Logger
+     */
+    @JavascriptInterface
+    public String getLog() {
+        return Logger.dump();
+    }
+
     @JavascriptInterface
     public void exit() {
+        ((MainActivity)context).closeBridgeRecorder();
         android.os.Process.killProcess(android.os.Process.myPid());
         System.exit(0);
     }
@@ -0,0 +1,25 @@
+package ru.interfaced.tvplatform;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.google.android.exoplayer2.offline.DownloadService;
+
+/**
+ * Restarts downloads that were in progress when the device was turned off.
+ * The service stops itself right away when there's nothing to download.
+ */
+public class DownloadBootReceiver extends BroadcastReceiver {
+    private static final String TAG = "DownloadBootReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            return;
+        }
+
+        Logger.d(TAG, "Resuming downloads after boot");
+        DownloadService.startForeground(context, PlatformDownloadService.class);
+    }
+}
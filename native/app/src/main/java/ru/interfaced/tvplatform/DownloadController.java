@@ -0,0 +1,267 @@
+package ru.interfaced.tvplatform;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.offline.Download;
+import com.google.android.exoplayer2.offline.DownloadCursor;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadRequest;
+import com.google.android.exoplayer2.scheduler.Requirements;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import ru.interfaced.tvplatform.core.MediaFormat;
+import ru.interfaced.tvplatform.core.RateLimiter;
+
+/**
+ * Process wide download state shared by DownloadWebInterface, PlatformDownloadService and playback.
+ * Downloads are kept in a cache that is never evicted and their index survives restarts,
+ * PlatformDownloadService resumes them after reboot or once requirements are met again.
+ * Getting the instance is cheap, opening the cache and the download index is deferred to the first use
+ * and runs on a thread of its own, which has no looper, so DownloadManager still delivers its callbacks on the main thread.
+ * Completed downloads are kept in memory, so that playback can look them up on every zap without querying the index.
+ */
+class DownloadController implements DownloadManager.Listener {
+    private static final String TAG = "DownloadController";
+
+    private static final String DIRECTORY = "downloads";
+
+    private static final String PREFERENCES = "downloads";
+    private static final String PREFERENCE_MAX_PARALLEL_DOWNLOADS = "maxParallelDownloads";
+    private static final String PREFERENCE_MAX_BYTES_PER_SECOND = "maxBytesPerSecond";
+
+    private static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 2;
+
+    private static @Nullable DownloadController instance;
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final HttpDataSource.Factory httpDataSourceFactory;
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private final FutureTask<Void> initialization = new FutureTask<>(this::initialize, null);
+
+    // Requests of completed downloads by id, written under the lock so that loading from the index can't undo a change
+    private final Map<String, DownloadRequest> completedDownloads = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private boolean initializationStarted = false;
+
+    // Assigned by initialize, read after awaitInitialization only
+    private @Nullable Cache cache;
+    private @Nullable DownloadManager downloadManager;
+
+    static synchronized DownloadController getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadController(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DownloadController(Context context) {
+        this.context = context;
+
+        httpDataSourceFactory = new DefaultHttpDataSourceFactory(Util.getUserAgent(context, BuildConfig.APPLICATION_ID));
+
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        rateLimiter.setBytesPerSecond(preferences.getLong(PREFERENCE_MAX_BYTES_PER_SECOND, 0));
+    }
+
+    /**
+     * Starts opening the cache and the download index unless that's already done or underway.
+     * @param onInitialized Posted to the main thread once the download manager is available
+     */
+    void initializeAsync(@Nullable Runnable onInitialized) {
+        synchronized (this) {
+            if (!initializationStarted) {
+                initializationStarted = true;
+                new Thread(initialization, TAG).start();
+            }
+        }
+
+        if (onInitialized != null) {
+            new Thread(() -> {
+                awaitInitialization();
+                handler.post(onInitialized);
+            }, TAG).start();
+        }
+    }
+
+    /**
+     * Blocks until the cache and the download index are open, avoid calling on the main thread before initializeAsync completes.
+     */
+    DownloadManager getDownloadManager() {
+        awaitInitialization();
+        return downloadManager;
+    }
+
+    HttpDataSource.Factory getHttpDataSourceFactory() {
+        return httpDataSourceFactory;
+    }
+
+    /**
+     * Limits are persisted and apply to downloads in progress. Can be called from any thread.
+     * @param maxBytesPerSecond Total bandwidth of all downloads, 0 for unlimited
+     */
+    void setLimits(int maxParallelDownloads, long maxBytesPerSecond) {
+        int parallelDownloads = Math.max(1, maxParallelDownloads);
+
+        Logger.d(TAG, "Limiting downloads to {} at {} bytes per second", parallelDownloads, maxBytesPerSecond);
+
+        preferences.edit()
+            .putInt(PREFERENCE_MAX_PARALLEL_DOWNLOADS, parallelDownloads)
+            .putLong(PREFERENCE_MAX_BYTES_PER_SECOND, maxBytesPerSecond)
+            .apply();
+
+        rateLimiter.setBytesPerSecond(maxBytesPerSecond);
+
+        synchronized (this) {
+            // Otherwise initialize reads the persisted value
+            if (downloadManager != null) {
+                DownloadManager manager = downloadManager;
+                handler.post(() -> manager.setMaxParallelDownloads(parallelDownloads));
+            }
+        }
+    }
+
+    /**
+     * Can be called from any thread, blocks until initialization completes.
+     * @return Request of a completed download of the uri or null if there's none
+     */
+    @Nullable DownloadRequest getCompletedDownload(String uri) {
+        awaitInitialization();
+        return completedDownloads.get(uri);
+    }
+
+    @Override
+    public void onDownloadChanged(DownloadManager downloadManager, Download download) {
+        synchronized (completedDownloads) {
+            if (download.state == Download.STATE_COMPLETED) {
+                completedDownloads.put(download.request.id, download.request);
+            } else {
+                completedDownloads.remove(download.request.id);
+            }
+        }
+    }
+
+    @Override
+    public void onDownloadRemoved(DownloadManager downloadManager, Download download) {
+        synchronized (completedDownloads) {
+            completedDownloads.remove(download.request.id);
+        }
+    }
+
+    /**
+     * Playback reads downloaded data from the cache and loads anything missing without caching it.
+     */
+    DataSource.Factory buildReadOnlyDataSourceFactory(DataSource.Factory upstreamFactory) {
+        awaitInitialization();
+        return new CacheDataSourceFactory(
+            cache,
+            upstreamFactory,
+            new FileDataSource.Factory(),
+            null,
+            CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
+            null
+        );
+    }
+
+    /**
+     * Runs on a thread without a looper.
+     */
+    private void initialize() {
+        DatabaseProvider databaseProvider = new ExoDatabaseProvider(context);
+
+        File root = context.getExternalFilesDir(null);
+        Cache downloadCache = new SimpleCache(new File(root != null ? root : context.getFilesDir(), DIRECTORY), new NoOpCacheEvictor(), databaseProvider);
+
+        DownloadManager manager;
+        synchronized (this) {
+            manager = new DownloadManager(
+                context,
+                databaseProvider,
+                downloadCache,
+                new ThrottledDataSource.Factory(httpDataSourceFactory, rateLimiter)
+            );
+            manager.setMaxParallelDownloads(preferences.getInt(PREFERENCE_MAX_PARALLEL_DOWNLOADS, DEFAULT_MAX_PARALLEL_DOWNLOADS));
+            manager.setRequirements(new Requirements(Requirements.NETWORK));
+
+            cache = downloadCache;
+            downloadManager = manager;
+        }
+
+        // Changes arrive on the main thread, the lock keeps them from being overwritten by what's loaded here
+        manager.addListener(this);
+        synchronized (completedDownloads) {
+            try (DownloadCursor cursor = manager.getDownloadIndex().getDownloads(Download.STATE_COMPLETED)) {
+                while (cursor.moveToNext()) {
+                    DownloadRequest request = cursor.getDownload().request;
+                    completedDownloads.put(request.id, request);
+                }
+            } catch (IOException e) {
+                Logger.w(TAG, "Failed to query download index", e.getMessage());
+            }
+        }
+
+        Logger.d(TAG, "Initialized with {} completed downloads", completedDownloads.size());
+    }
+
+    private void awaitInitialization() {
+        initializeAsync(null);
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    initialization.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to open downloads", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return Format to play the download as, AUTO stands for progressive
+     */
+    static MediaFormat getMediaFormat(DownloadRequest request) {
+        switch (request.type) {
+            case DownloadRequest.TYPE_DASH:
+                return MediaFormat.DASH;
+            case DownloadRequest.TYPE_HLS:
+                return MediaFormat.HLS;
+            case DownloadRequest.TYPE_SS:
+                return MediaFormat.SS;
+            default:
+                return MediaFormat.AUTO;
+        }
+    }
+}
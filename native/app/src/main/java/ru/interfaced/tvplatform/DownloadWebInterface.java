@@ -0,0 +1,365 @@
+package ru.interfaced.tvplatform;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import android.webkit.JavascriptInterface;
+
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.offline.Download;
+import com.google.android.exoplayer2.offline.DownloadCursor;
+import com.google.android.exoplayer2.offline.DownloadHelper;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadRequest;
+import com.google.android.exoplayer2.offline.DownloadService;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.interfaced.tvplatform.core.EnumParser;
+import ru.interfaced.tvplatform.core.ErrorChain;
+import ru.interfaced.tvplatform.core.JsonWriter;
+import ru.interfaced.tvplatform.core.MediaFormat;
+
+/**
+ * Background downloads of VOD content for offline playback.
+ * Downloads are identified by their URI, PlayerWebInterface plays completed ones from local storage
+ * when the same URI is set. Downloading itself runs in PlatformDownloadService and continues when
+ * the application is in background.
+ */
+class DownloadWebInterface implements DownloadManager.Listener {
+    private static final String TAG = "DownloadInterface";
+
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private enum Event {
+        STATE_CHANGED,
+        PROGRESS,
+        REMOVED,
+        PREPARE_FAILED
+    }
+
+    private final Context context;
+    private final DownloadController controller;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable progressRunnable = this::dispatchProgress;
+
+    // Downloads that are not completed or failed, their progress is updated live. Modified on main thread only
+    private final Map<String, Download> activeDownloads = new ConcurrentHashMap<>();
+
+    private boolean progressScheduled = false;
+    private boolean attached = false;
+    private boolean released = false;
+
+    /**
+     * Must be created on the main thread. Downloads are opened in background, events start once that's done.
+     */
+    DownloadWebInterface(Context aContext) {
+        context = aContext;
+        controller = DownloadController.getInstance(context);
+        controller.initializeAsync(this::attach);
+    }
+
+    /**
+     * Detaches from the process wide download manager, downloads themselves keep running.
+     */
+    void release() {
+        released = true;
+        if (attached) {
+            controller.getDownloadManager().removeListener(this);
+        }
+        handler.removeCallbacks(progressRunnable);
+    }
+
+    private void attach() {
+        if (released) {
+            return;
+        }
+        attached = true;
+
+        DownloadManager downloadManager = controller.getDownloadManager();
+        downloadManager.addListener(this);
+        if (downloadManager.isInitialized()) {
+            onInitialized(downloadManager);
+        }
+
+        // Picks up downloads that were interrupted while the application was not running
+        DownloadService.start(context, PlatformDownloadService.class);
+    }
+
+    private void dispatchEvent(Event event, @Nullable JSONArray params) {
+        ((MainActivity)context).notifyWebView(context.getString(R.string.download_interface), event.toString().toLowerCase(), params, null);
+    }
+
+    private void dispatchDownloadEvent(Event event, Download download) {
+        JSONArray arguments = new JSONArray();
+        arguments.put(download.request.id);
+        arguments.put(getStateName(download.state));
+        try {
+            arguments.put(getPercent(download));
+        } catch (JSONException e) {
+            // Only thrown for non finite numbers
+        }
+        arguments.put(download.getBytesDownloaded());
+
+        dispatchEvent(event, arguments);
+    }
+
+    /**
+     * Resolves the stream structure and queues the download.
+     * Options json: {maxVideoHeight, maxVideoBitrate, audioLanguages: [], textLanguages: []},
+     * all fields are optional; by default the tracks the player would choose are downloaded.
+     * @param mediaTypeString One of MediaFormat values, AUTO detects format from the URI
+     */
+    @JavascriptInterface
+    public void download(String uriString, String mediaTypeString, @Nullable String optionsJson) {
+        MediaFormat format = EnumParser.parse(MediaFormat.class, mediaTypeString);
+        if (format == null) {
+            Logger.w(TAG, "Failed to parse media type, defaulting to AUTO", mediaTypeString);
+            format = MediaFormat.AUTO;
+        }
+        if (format == MediaFormat.AUTO) {
+            format = MediaFormat.detect(uriString);
+        }
+
+        JSONObject options;
+        try {
+            options = optionsJson != null ? new JSONObject(optionsJson) : new JSONObject();
+        } catch (JSONException e) {
+            Logger.w(TAG, "Failed to parse download options", e.getMessage());
+            options = new JSONObject();
+        }
+
+        Logger.d(TAG, "Preparing download", format.name(), uriString);
+
+        MediaFormat downloadFormat = format;
+        JSONObject downloadOptions = options;
+        handler.post(() -> prepare(uriString, downloadFormat, downloadOptions));
+    }
+
+    @JavascriptInterface
+    public void remove(String uriString) {
+        DownloadService.sendRemoveDownload(context, PlatformDownloadService.class, uriString, false);
+    }
+
+    @JavascriptInterface
+    public void pauseAll() {
+        DownloadService.sendPauseDownloads(context, PlatformDownloadService.class, false);
+    }
+
+    @JavascriptInterface
+    public void resumeAll() {
+        DownloadService.sendResumeDownloads(context, PlatformDownloadService.class, false);
+    }
+
+    /**
+     * Limits are persisted across application restarts.
+     * @param maxBytesPerSecond Total bandwidth of all downloads, 0 for unlimited
+     */
+    @JavascriptInterface
+    public void setLimits(int maxParallelDownloads, long maxBytesPerSecond) {
+        controller.setLimits(maxParallelDownloads, maxBytesPerSecond);
+    }
+
+    /**
+     * @return JSON array of {uri, state, percent, bytes, length} for every known download
+     */
+    @JavascriptInterface
+    public String getDownloads() {
+        JsonWriter writer = new JsonWriter().beginArray();
+
+        try (DownloadCursor cursor = controller.getDownloadManager().getDownloadIndex().getDownloads()) {
+            while (cursor.moveToNext()) {
+                Download download = cursor.getDownload();
+                Download activeDownload = activeDownloads.get(download.request.id);
+                writeDownload(writer, activeDownload != null ? activeDownload : download);
+            }
+        } catch (IOException e) {
+            Logger.w(TAG, "Failed to query download index", e.getMessage());
+        }
+
+        return writer.endArray().toString();
+    }
+
+    @Override
+    public void onInitialized(DownloadManager downloadManager) {
+        for (Download download: downloadManager.getCurrentDownloads()) {
+            activeDownloads.put(download.request.id, download);
+        }
+        scheduleProgress();
+    }
+
+    @Override
+    public void onDownloadChanged(DownloadManager downloadManager, Download download) {
+        Logger.d(TAG, "Download state changed", download.request.id, getStateName(download.state));
+
+        if (download.state == Download.STATE_COMPLETED || download.state == Download.STATE_FAILED) {
+            activeDownloads.remove(download.request.id);
+        } else {
+            activeDownloads.put(download.request.id, download);
+        }
+
+        dispatchDownloadEvent(Event.STATE_CHANGED, download);
+        scheduleProgress();
+    }
+
+    @Override
+    public void onDownloadRemoved(DownloadManager downloadManager, Download download) {
+        activeDownloads.remove(download.request.id);
+
+        JSONArray arguments = new JSONArray();
+        arguments.put(download.request.id);
+        dispatchEvent(Event.REMOVED, arguments);
+    }
+
+    private void prepare(String uriString, MediaFormat format, JSONObject options) {
+        DownloadHelper helper = createHelper(Uri.parse(uriString), format);
+
+        helper.prepare(new DownloadHelper.Callback() {
+            @Override
+            public void onPrepared(DownloadHelper helper) {
+                selectTracks(helper, options);
+
+                DownloadRequest request = helper.getDownloadRequest(uriString, null);
+                helper.release();
+
+                Logger.d(TAG, "Queueing download with {} streams", request.streamKeys.size());
+                DownloadService.sendAddDownload(context, PlatformDownloadService.class, request, false);
+            }
+
+            @Override
+            public void onPrepareError(DownloadHelper helper, IOException e) {
+                helper.release();
+
+                Logger.w(TAG, "Failed to prepare download", uriString, e.toString());
+
+                JSONArray arguments = new JSONArray();
+                arguments.put(uriString);
+                arguments.put(ErrorChain.flatten(e));
+                dispatchEvent(Event.PREPARE_FAILED, arguments);
+            }
+        });
+    }
+
+    private DownloadHelper createHelper(Uri uri, MediaFormat format) {
+        DefaultRenderersFactory renderersFactory = new DefaultRenderersFactory(context);
+
+        switch (format) {
+            case DASH:
+                return DownloadHelper.forDash(context, uri, controller.getHttpDataSourceFactory(), renderersFactory);
+            case HLS:
+                return DownloadHelper.forHls(context, uri, controller.getHttpDataSourceFactory(), renderersFactory);
+            case SS:
+                return DownloadHelper.forSmoothStreaming(context, uri, controller.getHttpDataSourceFactory(), renderersFactory);
+            default:
+                return DownloadHelper.forProgressive(context, uri);
+        }
+    }
+
+    private void selectTracks(DownloadHelper helper, JSONObject options) {
+        JSONArray audioLanguages = options.optJSONArray("audioLanguages");
+        JSONArray textLanguages = options.optJSONArray("textLanguages");
+        boolean limitVideo = options.has("maxVideoHeight") || options.has("maxVideoBitrate");
+
+        if (limitVideo) {
+            DefaultTrackSelector.Parameters parameters = DownloadHelper.getDefaultTrackSelectorParameters(context)
+                .buildUpon()
+                .setMaxVideoSize(Integer.MAX_VALUE, options.optInt("maxVideoHeight", Integer.MAX_VALUE))
+                .setMaxVideoBitrate(options.optInt("maxVideoBitrate", Integer.MAX_VALUE))
+                .build();
+
+            for (int i = 0; i < helper.getPeriodCount(); i++) {
+                helper.clearTrackSelections(i);
+                helper.addTrackSelection(i, parameters);
+            }
+        }
+
+        if (audioLanguages != null) {
+            helper.addAudioLanguagesToSelection(toStringArray(audioLanguages));
+        }
+        if (textLanguages != null) {
+            helper.addTextLanguagesToSelection(false, toStringArray(textLanguages));
+        }
+    }
+
+    private void scheduleProgress() {
+        if (progressScheduled) {
+            return;
+        }
+
+        for (Download download: activeDownloads.values()) {
+            if (download.state == Download.STATE_DOWNLOADING) {
+                progressScheduled = true;
+                handler.postDelayed(progressRunnable, PROGRESS_INTERVAL_MS);
+                return;
+            }
+        }
+    }
+
+    private void dispatchProgress() {
+        progressScheduled = false;
+
+        for (Download download: activeDownloads.values()) {
+            if (download.state == Download.STATE_DOWNLOADING) {
+                dispatchDownloadEvent(Event.PROGRESS, download);
+            }
+        }
+
+        scheduleProgress();
+    }
+
+    private static void writeDownload(JsonWriter writer, Download download) {
+        writer.beginObject()
+            .name("uri").value(download.request.id)
+            .name("state").value(getStateName(download.state))
+            .name("percent").value(getPercent(download))
+            .name("bytes").value(download.getBytesDownloaded())
+            .name("length").value(download.contentLength)
+            .endObject();
+    }
+
+    /**
+     * @return Percentage or -1 when content length is not known yet
+     */
+    private static float getPercent(Download download) {
+        float percent = download.getPercentDownloaded();
+        return Float.isNaN(percent) || percent < 0 ? -1 : percent;
+    }
+
+    private static String getStateName(int state) {
+        switch (state) {
+            case Download.STATE_QUEUED:
+                return "QUEUED";
+            case Download.STATE_STOPPED:
+                return "STOPPED";
+            case Download.STATE_DOWNLOADING:
+                return "DOWNLOADING";
+            case Download.STATE_COMPLETED:
+                return "COMPLETED";
+            case Download.STATE_FAILED:
+                return "FAILED";
+            case Download.STATE_REMOVING:
+                return "REMOVING";
+            case Download.STATE_RESTARTING:
+                return "RESTARTING";
+            default:
+                return "UNKNOWN";
+        }
+    }
+
+    private static String[] toStringArray(JSONArray array) {
+        String[] result = new String[array.length()];
+        for (int i = 0; i < array.length(); i++) {
+            result[i] = array.optString(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,128 @@
+package ru.interfaced.tvplatform;
+
+import android.annotation.TargetApi;
+import android.net.Uri;
+import android.os.Build;
+import androidx.annotation.Nullable;
+import android.webkit.ValueCallback;
+import android.webkit.WebMessage;
+import android.webkit.WebMessagePort;
+import android.webkit.WebView;
+
+import org.json.JSONArray;
+
+import ru.interfaced.tvplatform.core.EventEncoder;
+
+/**
+ * Delivers native events to web interfaces' onEvent hooks.
+ * Once the page asks for it, events are posted as structured messages over a dedicated message channel,
+ * which avoids parsing and compiling a script for every event.
+ * Before that, on WebViews without message channels and when a result callback is needed,
+ * events are delivered by evaluating a script.
+ * All methods can be called from any thread.
+ */
+class EventTransport {
+    private static final String TAG = "EventTransport";
+
+    /**
+     * Message data the page recognises the transferred port by.
+     */
+    private static final String CHANNEL_MESSAGE = "tvplatform-event-channel";
+
+    private final WebView webView;
+
+    // Only accessed on UI thread
+    private @Nullable WebMessagePort port;
+
+    private volatile @Nullable BridgeRecorder recorder;
+
+    EventTransport(WebView webView) {
+        this.webView = webView;
+    }
+
+    static boolean isChannelSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    /**
+     * Creates a message channel and transfers one of its ports to the page.
+     * The page is expected to listen for window messages before requesting the channel.
+     */
+    void openChannel() {
+        if (!isChannelSupported()) {
+            Logger.d(TAG, "Message channels are not supported, keeping script evaluation");
+            return;
+        }
+
+        webView.post(this::createChannel);
+    }
+
+    void setRecorder(@Nullable BridgeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Drops the channel, to be called when a new document starts loading.
+     */
+    void reset() {
+        webView.post(this::closeChannel);
+    }
+
+    void send(String context, String event, @Nullable JSONArray arguments, @Nullable ValueCallback<String> callback) {
+        BridgeRecorder currentRecorder = recorder;
+        if (currentRecorder != null) {
+            currentRecorder.recordEvent(context, event, encodeArguments(arguments));
+        }
+
+        webView.post(() -> {
+            if (port != null && callback == null) {
+                postMessage(EventEncoder.toMessage(context, event, encodeArguments(arguments)));
+            } else {
+                webView.evaluateJavascript(EventEncoder.toScript(context, event, encodeArguments(arguments)), callback);
+            }
+        });
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private void createChannel() {
+        closeChannel();
+
+        WebMessagePort[] ports = webView.createWebMessageChannel();
+        port = ports[0];
+
+        Logger.d(TAG, "Opening event channel");
+
+        webView.postWebMessage(new WebMessage(CHANNEL_MESSAGE, new WebMessagePort[]{ports[1]}), getTargetOrigin());
+    }
+
+    /**
+     * @return Origin of the application page, so that the port isn't handed to a page navigated to elsewhere;
+     *         any origin for bundled content, which is loaded from file:// and has no origin to target
+     */
+    private static Uri getTargetOrigin() {
+        if (BuildConfig.USE_BUNDLED_HTML) {
+            return Uri.parse("*");
+        }
+
+        Uri url = Uri.parse(BuildConfig.APPLICATION_URL);
+        String authority = url.getPort() != -1 ? url.getHost() + ":" + url.getPort() : url.getHost();
+        return new Uri.Builder().scheme(url.getScheme()).encodedAuthority(authority).build();
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private void closeChannel() {
+        if (port != null) {
+            port.close();
+            port = null;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private void postMessage(String message) {
+        port.postMessage(new WebMessage(message));
+    }
+
+    private static String encodeArguments(@Nullable JSONArray arguments) {
+        return arguments != null ? arguments.toString() : "[]";
+    }
+}
@@ -0,0 +1,246 @@
+package ru.interfaced.tvplatform;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import android.view.Display;
+import android.view.Window;
+import android.view.WindowManager;
+
+import com.google.android.exoplayer2.Format;
+
+import ru.interfaced.tvplatform.core.PlayerOptions.FrameRateMatching;
+
+/**
+ * Switches display refresh rate to match content frame rate.
+ * Display mode is decided once per source after its frame rate settles, adaptive switches within
+ * the same source never cause another mode change.
+ */
+class FrameRateMatcher {
+    private static final String TAG = "FrameRateMatcher";
+
+    private static final long DEBOUNCE_MS = 500;
+    private static final float RATE_TOLERANCE = 0.05f;
+
+    // Display.Mode.getAlternativeRefreshRates is available from Android 12, above the compile SDK
+    private static final int SDK_ALTERNATIVE_REFRESH_RATES = 31;
+
+    private final Activity activity;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Set from the JavaBridge thread, read on main
+    private volatile FrameRateMatching mode = FrameRateMatching.OFF;
+    private volatile float pendingFrameRate = Format.NO_VALUE;
+    private volatile boolean decidedForSource = false;
+    private int originalModeId = 0;
+
+    private final Runnable applyRunnable = this::apply;
+
+    FrameRateMatcher(Activity activity) {
+        this.activity = activity;
+    }
+
+    void setMode(FrameRateMatching mode) {
+        this.mode = mode;
+
+        if (mode == FrameRateMatching.OFF) {
+            revert();
+        }
+    }
+
+    FrameRateMatching getMode() {
+        return mode;
+    }
+
+    /**
+     * To be called when a new source is prepared.
+     */
+    void onSourceChanged() {
+        decidedForSource = false;
+        pendingFrameRate = Format.NO_VALUE;
+        handler.removeCallbacks(applyRunnable);
+    }
+
+    void onVideoFormat(Format format) {
+        if (mode == FrameRateMatching.OFF || decidedForSource || format == null || format.frameRate == Format.NO_VALUE) {
+            return;
+        }
+
+        if (format.frameRate == pendingFrameRate) {
+            return;
+        }
+
+        pendingFrameRate = format.frameRate;
+        handler.removeCallbacks(applyRunnable);
+        handler.postDelayed(applyRunnable, DEBOUNCE_MS);
+    }
+
+    /**
+     * Returns display to its mode from before the first switch.
+     */
+    void revert() {
+        handler.removeCallbacks(applyRunnable);
+        decidedForSource = false;
+        pendingFrameRate = Format.NO_VALUE;
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return;
+        }
+
+        handler.post(() -> {
+            if (originalModeId != 0) {
+                Logger.d(TAG, "Reverting display mode to {}", originalModeId);
+                setPreferredModeId(originalModeId);
+                originalModeId = 0;
+            }
+        });
+    }
+
+    private void apply() {
+        decidedForSource = true;
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            Logger.d(TAG, "Display mode switching is not supported before Android 6.0");
+            return;
+        }
+
+        float frameRate = pendingFrameRate;
+        Display display = activity.getWindowManager().getDefaultDisplay();
+        Display.Mode currentMode = display.getMode();
+
+        float[] seamlessRates = null;
+        if (mode == FrameRateMatching.SEAMLESS_ONLY) {
+            seamlessRates = getAlternativeRefreshRates(currentMode);
+            if (seamlessRates == null) {
+                // Any other mode may blank the display
+                Logger.d(TAG, "Seamless display modes are unknown, keeping the current one");
+                return;
+            }
+        }
+
+        Display.Mode bestMode = findBestMode(display.getSupportedModes(), currentMode, frameRate, seamlessRates);
+
+        if (bestMode == null) {
+            Logger.d(TAG, "No display mode matches {f} fps", Logger.f(frameRate));
+            return;
+        }
+
+        if (bestMode.getModeId() == currentMode.getModeId()) {
+            Logger.d(TAG, "Current display mode already matches {f} fps", Logger.f(frameRate));
+            return;
+        }
+
+        Logger.d(TAG, "Switching display to {f}Hz for {f} fps content", Logger.f(bestMode.getRefreshRate()), Logger.f(frameRate));
+
+        if (originalModeId == 0) {
+            originalModeId = currentMode.getModeId();
+        }
+        setPreferredModeId(bestMode.getModeId());
+    }
+
+    /**
+     * @param seamlessRates Refresh rates reachable from the current mode seamlessly to only consider those,
+     *                      null to consider any mode
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private static Display.Mode findBestMode(
+        Display.Mode[] modes,
+        Display.Mode currentMode,
+        float frameRate,
+        @Nullable float[] seamlessRates
+    ) {
+        Display.Mode best = null;
+        int bestMultiple = Integer.MAX_VALUE;
+        boolean bestSameResolution = false;
+
+        for (Display.Mode candidate: modes) {
+            boolean sameResolution =
+                candidate.getPhysicalWidth() == currentMode.getPhysicalWidth() &&
+                candidate.getPhysicalHeight() == currentMode.getPhysicalHeight();
+
+            // Alternative refresh rates are those of modes with the same resolution
+            if (seamlessRates != null && candidate.getModeId() != currentMode.getModeId() &&
+                !(sameResolution && containsRate(seamlessRates, candidate.getRefreshRate()))) {
+                continue;
+            }
+
+            int multiple = getIntegerMultiple(candidate.getRefreshRate(), frameRate);
+            if (multiple == 0) {
+                continue;
+            }
+
+            // Prefer keeping resolution, then the lowest refresh rate that is a multiple of content rate
+            boolean better = best == null ||
+                (sameResolution && !bestSameResolution) ||
+                (sameResolution == bestSameResolution && multiple < bestMultiple);
+
+            if (better) {
+                best = candidate;
+                bestMultiple = multiple;
+                bestSameResolution = sameResolution;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return Refresh rates the display switches to from the mode without a visual interruption, null if unknown
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private static @Nullable float[] getAlternativeRefreshRates(Display.Mode mode) {
+        if (Build.VERSION.SDK_INT < SDK_ALTERNATIVE_REFRESH_RATES) {
+            return null;
+        }
+
+        try {
+            return (float[]) Display.Mode.class.getMethod("getAlternativeRefreshRates").invoke(mode);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            Logger.w(TAG, "Failed to get alternative refresh rates", e.toString());
+            return null;
+        }
+    }
+
+    private static boolean containsRate(float[] rates, float rate) {
+        for (float candidate: rates) {
+            if (Math.abs(candidate - rate) < RATE_TOLERANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return How many times refresh rate fits frame rate or 0 if it's not an integer multiple
+     */
+    private static int getIntegerMultiple(float refreshRate, float frameRate) {
+        if (frameRate <= 0) {
+            return 0;
+        }
+
+        float ratio = refreshRate / frameRate;
+        int rounded = Math.round(ratio);
+
+        if (rounded < 1 || Math.abs(ratio - rounded) > RATE_TOLERANCE) {
+            return 0;
+        }
+
+        return rounded;
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private void setPreferredModeId(int modeId) {
+        Window window = activity.getWindow();
+        WindowManager.LayoutParams params = window.getAttributes();
+
+        if (params.preferredDisplayModeId == modeId) {
+            return;
+        }
+
+        params.preferredDisplayModeId = modeId;
+        window.setAttributes(params);
+    }
+}
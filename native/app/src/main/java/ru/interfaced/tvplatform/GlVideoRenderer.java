@@ -0,0 +1,459 @@
+package ru.interfaced.tvplatform;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws decoder output onto a SurfaceView through a minimal GL pipeline.
+ * Decoder renders into a SurfaceTexture, every frame is then drawn as a single textured quad
+ * with rotation and scaling applied in the vertex transform, which keeps SurfaceView composition
+ * cost while allowing arbitrary orientation.
+ * Public methods can be called from any thread, all GL work happens on a dedicated thread.
+ */
+class GlVideoRenderer implements SurfaceHolder.Callback, SurfaceTexture.OnFrameAvailableListener {
+    private static final String TAG = "GlVideoRenderer";
+
+    private static final long SURFACE_TIMEOUT_MS = 2000;
+
+    private static final String VERTEX_SHADER =
+        "uniform mat4 uMvpMatrix;\n" +
+        "uniform mat4 uTexMatrix;\n" +
+        "attribute vec4 aPosition;\n" +
+        "attribute vec4 aTexCoord;\n" +
+        "varying vec2 vTexCoord;\n" +
+        "void main() {\n" +
+        "    gl_Position = uMvpMatrix * aPosition;\n" +
+        "    vTexCoord = (uTexMatrix * aTexCoord).xy;\n" +
+        "}\n";
+
+    private static final String FRAGMENT_SHADER =
+        "#extension GL_OES_EGL_image_external : require\n" +
+        "precision mediump float;\n" +
+        "varying vec2 vTexCoord;\n" +
+        "uniform samplerExternalOES uTexture;\n" +
+        "void main() {\n" +
+        "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
+        "}\n";
+
+    private static final float[] QUAD_POSITIONS = {
+        -1f, -1f,
+         1f, -1f,
+        -1f,  1f,
+         1f,  1f
+    };
+
+    private static final float[] QUAD_TEXTURE_COORDINATES = {
+        0f, 0f,
+        1f, 0f,
+        0f, 1f,
+        1f, 1f
+    };
+
+    private final SurfaceView surfaceView;
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;
+    private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;
+    private EGLConfig eglConfig;
+    private EGLSurface pbufferSurface = EGL14.EGL_NO_SURFACE;
+    private EGLSurface windowSurface = EGL14.EGL_NO_SURFACE;
+
+    private int program;
+    private int positionLocation;
+    private int texCoordLocation;
+    private int mvpMatrixLocation;
+    private int texMatrixLocation;
+    private int textureId;
+
+    private SurfaceTexture surfaceTexture;
+    private Surface inputSurface;
+
+    private final FloatBuffer positionBuffer = createFloatBuffer(QUAD_POSITIONS);
+    private final FloatBuffer texCoordBuffer = createFloatBuffer(QUAD_TEXTURE_COORDINATES);
+    private final float[] textureMatrix = new float[16];
+    private final float[] mvpMatrix = new float[16];
+
+    private int surfaceWidth;
+    private int surfaceHeight;
+
+    // Transform state, only accessed on GL thread
+    private int videoWidth;
+    private int videoHeight;
+    private float pixelWidthHeightRatio = 1f;
+    private int videoRotation;
+    private int rotation;
+    private ScaleMode scaleMode = ScaleMode.FIT;
+
+    enum ScaleMode {
+        FIT, // Letterboxed, keeping aspect ratio
+        FILL, // Stretched over the whole surface
+        ZOOM // Covering the whole surface keeping aspect ratio, edges cropped
+    }
+
+    GlVideoRenderer(SurfaceView surfaceView) {
+        this.surfaceView = surfaceView;
+
+        thread = new HandlerThread(TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Initialises GL and returns a surface to be used as decoder output. Blocks until GL is ready.
+     */
+    Surface start() {
+        CountDownLatch ready = new CountDownLatch(1);
+
+        handler.post(() -> {
+            initEgl();
+            initProgram();
+            ready.countDown();
+        });
+
+        try {
+            ready.await(SURFACE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        SurfaceHolder holder = surfaceView.getHolder();
+        holder.addCallback(this);
+        if (holder.getSurface() != null && holder.getSurface().isValid()) {
+            Surface surface = holder.getSurface();
+            handler.post(() -> attachWindowSurface(surface));
+        }
+
+        return inputSurface;
+    }
+
+    /**
+     * Releases all GL resources and stops the rendering thread. Renderer can't be used afterwards.
+     */
+    void release() {
+        surfaceView.getHolder().removeCallback(this);
+
+        handler.post(() -> {
+            detachWindowSurface();
+            releaseEgl();
+            thread.quit();
+        });
+    }
+
+    /**
+     * @param unAppliedRotationDegrees Rotation the decoder did not apply, see VideoListener
+     */
+    void setVideoSize(int width, int height, int unAppliedRotationDegrees, float pixelWidthHeightRatio) {
+        handler.post(() -> {
+            this.videoWidth = width;
+            this.videoHeight = height;
+            this.videoRotation = unAppliedRotationDegrees;
+            this.pixelWidthHeightRatio = pixelWidthHeightRatio;
+            draw(false);
+        });
+    }
+
+    /**
+     * @param rotation Clockwise rotation in degrees
+     */
+    void setTransform(int rotation, ScaleMode scaleMode) {
+        handler.post(() -> {
+            this.rotation = rotation;
+            this.scaleMode = scaleMode;
+            draw(false);
+        });
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        Surface surface = holder.getSurface();
+        handler.post(() -> attachWindowSurface(surface));
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        handler.post(() -> {
+            surfaceWidth = width;
+            surfaceHeight = height;
+            draw(false);
+        });
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // Window surface has to be released before this callback returns
+        CountDownLatch released = new CountDownLatch(1);
+
+        handler.post(() -> {
+            detachWindowSurface();
+            released.countDown();
+        });
+
+        try {
+            released.await(SURFACE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+        draw(true);
+    }
+
+    private void initEgl() {
+        eglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        EGL14.eglInitialize(eglDisplay, version, 0, version, 1);
+
+        int[] configAttributes = {
+            EGL14.EGL_RED_SIZE, 8,
+            EGL14.EGL_GREEN_SIZE, 8,
+            EGL14.EGL_BLUE_SIZE, 8,
+            EGL14.EGL_ALPHA_SIZE, 8,
+            EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+            EGL14.EGL_SURFACE_TYPE, EGL14.EGL_WINDOW_BIT | EGL14.EGL_PBUFFER_BIT,
+            EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        EGL14.eglChooseConfig(eglDisplay, configAttributes, 0, configs, 0, 1, configCount, 0);
+        eglConfig = configs[0];
+
+        int[] contextAttributes = {
+            EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
+            EGL14.EGL_NONE
+        };
+        eglContext = EGL14.eglCreateContext(eglDisplay, eglConfig, EGL14.EGL_NO_CONTEXT, contextAttributes, 0);
+
+        // GL needs a current surface before the window one is available
+        int[] pbufferAttributes = {
+            EGL14.EGL_WIDTH, 1,
+            EGL14.EGL_HEIGHT, 1,
+            EGL14.EGL_NONE
+        };
+        pbufferSurface = EGL14.eglCreatePbufferSurface(eglDisplay, eglConfig, pbufferAttributes, 0);
+        EGL14.eglMakeCurrent(eglDisplay, pbufferSurface, pbufferSurface, eglContext);
+
+        Logger.d(TAG, "EGL {}.{} initialised", version[0], version[1]);
+    }
+
+    private void initProgram() {
+        program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(program);
+
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] != GLES20.GL_TRUE) {
+            Logger.e(TAG, "Failed to link program", GLES20.glGetProgramInfoLog(program));
+        }
+
+        positionLocation = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordLocation = GLES20.glGetAttribLocation(program, "aTexCoord");
+        mvpMatrixLocation = GLES20.glGetUniformLocation(program, "uMvpMatrix");
+        texMatrixLocation = GLES20.glGetUniformLocation(program, "uTexMatrix");
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        textureId = textures[0];
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        surfaceTexture = new SurfaceTexture(textureId);
+        surfaceTexture.setOnFrameAvailableListener(this, handler);
+        inputSurface = new Surface(surfaceTexture);
+
+        Matrix.setIdentityM(textureMatrix, 0);
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+
+        int[] compileStatus = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+        if (compileStatus[0] != GLES20.GL_TRUE) {
+            Logger.e(TAG, "Failed to compile shader", GLES20.glGetShaderInfoLog(shader));
+        }
+
+        return shader;
+    }
+
+    private void attachWindowSurface(Surface surface) {
+        if (windowSurface != EGL14.EGL_NO_SURFACE || eglDisplay == EGL14.EGL_NO_DISPLAY) {
+            return;
+        }
+
+        int[] surfaceAttributes = {EGL14.EGL_NONE};
+        windowSurface = EGL14.eglCreateWindowSurface(eglDisplay, eglConfig, surface, surfaceAttributes, 0);
+        EGL14.eglMakeCurrent(eglDisplay, windowSurface, windowSurface, eglContext);
+
+        int[] size = new int[1];
+        EGL14.eglQuerySurface(eglDisplay, windowSurface, EGL14.EGL_WIDTH, size, 0);
+        surfaceWidth = size[0];
+        EGL14.eglQuerySurface(eglDisplay, windowSurface, EGL14.EGL_HEIGHT, size, 0);
+        surfaceHeight = size[0];
+
+        Logger.d(TAG, "Attached to window surface {}x{}", surfaceWidth, surfaceHeight);
+
+        draw(false);
+    }
+
+    private void detachWindowSurface() {
+        if (windowSurface == EGL14.EGL_NO_SURFACE) {
+            return;
+        }
+
+        EGL14.eglMakeCurrent(eglDisplay, pbufferSurface, pbufferSurface, eglContext);
+        EGL14.eglDestroySurface(eglDisplay, windowSurface);
+        windowSurface = EGL14.EGL_NO_SURFACE;
+    }
+
+    private void releaseEgl() {
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+        if (surfaceTexture != null) {
+            surfaceTexture.release();
+            surfaceTexture = null;
+        }
+
+        if (eglDisplay == EGL14.EGL_NO_DISPLAY) {
+            return;
+        }
+
+        GLES20.glDeleteTextures(1, new int[] {textureId}, 0);
+        GLES20.glDeleteProgram(program);
+
+        EGL14.eglMakeCurrent(eglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        EGL14.eglDestroySurface(eglDisplay, pbufferSurface);
+        EGL14.eglDestroyContext(eglDisplay, eglContext);
+        EGL14.eglTerminate(eglDisplay);
+
+        eglDisplay = EGL14.EGL_NO_DISPLAY;
+        eglContext = EGL14.EGL_NO_CONTEXT;
+        pbufferSurface = EGL14.EGL_NO_SURFACE;
+    }
+
+    /**
+     * @param newFrame Whether a new decoder frame should be latched, otherwise the last one is redrawn
+     */
+    private void draw(boolean newFrame) {
+        if (surfaceTexture == null) {
+            return;
+        }
+
+        if (newFrame) {
+            // Frame has to be consumed even if there's nowhere to draw it, otherwise decoder stalls
+            surfaceTexture.updateTexImage();
+            surfaceTexture.getTransformMatrix(textureMatrix);
+        }
+
+        if (windowSurface == EGL14.EGL_NO_SURFACE || surfaceWidth == 0 || surfaceHeight == 0) {
+            return;
+        }
+
+        updateMvpMatrix();
+
+        GLES20.glViewport(0, 0, surfaceWidth, surfaceHeight);
+        GLES20.glClearColor(0f, 0f, 0f, 1f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        if (videoWidth != 0 && videoHeight != 0) {
+            GLES20.glUseProgram(program);
+
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+
+            GLES20.glUniformMatrix4fv(mvpMatrixLocation, 1, false, mvpMatrix, 0);
+            GLES20.glUniformMatrix4fv(texMatrixLocation, 1, false, textureMatrix, 0);
+
+            GLES20.glEnableVertexAttribArray(positionLocation);
+            GLES20.glVertexAttribPointer(positionLocation, 2, GLES20.GL_FLOAT, false, 0, positionBuffer);
+            GLES20.glEnableVertexAttribArray(texCoordLocation);
+            GLES20.glVertexAttribPointer(texCoordLocation, 2, GLES20.GL_FLOAT, false, 0, texCoordBuffer);
+
+            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+            GLES20.glDisableVertexAttribArray(positionLocation);
+            GLES20.glDisableVertexAttribArray(texCoordLocation);
+        }
+
+        EGL14.eglSwapBuffers(eglDisplay, windowSurface);
+    }
+
+    /**
+     * Maps unit quad to the video rectangle rotated and fitted into the surface, in normalized device coordinates.
+     */
+    private void updateMvpMatrix() {
+        float width = videoWidth * pixelWidthHeightRatio;
+        float height = videoHeight;
+
+        int totalRotation = (rotation + videoRotation) % 360;
+        boolean swapsSides = totalRotation == 90 || totalRotation == 270;
+
+        float rotatedWidth = swapsSides ? height : width;
+        float rotatedHeight = swapsSides ? width : height;
+
+        float horizontalScale = 1f;
+        float verticalScale = 1f;
+        if (rotatedWidth > 0 && rotatedHeight > 0) {
+            float horizontalFit = surfaceWidth / rotatedWidth;
+            float verticalFit = surfaceHeight / rotatedHeight;
+
+            switch (scaleMode) {
+                case FILL:
+                    horizontalScale = horizontalFit;
+                    verticalScale = verticalFit;
+                    break;
+                case ZOOM:
+                    horizontalScale = verticalScale = Math.max(horizontalFit, verticalFit);
+                    break;
+                default:
+                    horizontalScale = verticalScale = Math.min(horizontalFit, verticalFit);
+            }
+        }
+
+        Matrix.setIdentityM(mvpMatrix, 0);
+        Matrix.scaleM(mvpMatrix, 0, 2f / surfaceWidth, 2f / surfaceHeight, 1f);
+        // Scaling along surface axes, after rotation
+        Matrix.scaleM(mvpMatrix, 0, horizontalScale, verticalScale, 1f);
+        // GL rotates counterclockwise while View rotation is clockwise
+        Matrix.rotateM(mvpMatrix, 0, -totalRotation, 0f, 0f, 1f);
+        Matrix.scaleM(mvpMatrix, 0, width / 2f, height / 2f, 1f);
+    }
+
+    private static FloatBuffer createFloatBuffer(float[] values) {
+        FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * 4)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+        buffer.put(values);
+        buffer.position(0);
+        return buffer;
+    }
+}
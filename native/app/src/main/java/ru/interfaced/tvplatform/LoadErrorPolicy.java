@@ -0,0 +1,169 @@
+package ru.interfaced.tvplatform;
+
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Retry and blacklisting rules for manifest, segment and DRM license loads, configurable from JavaScript.
+ * Failed loads are retried with exponential backoff up to a retry count set per error class,
+ * so that transient CDN failures show as stalls rather than playback errors.
+ * Renditions failing with error classes marked for blacklisting are excluded from adaptive selection for a while,
+ * provided the stream has other renditions to switch to.
+ * Until configured, ExoPlayer defaults apply. Changes apply to loads failing afterwards.
+ */
+class LoadErrorPolicy implements LoadErrorHandlingPolicy {
+    private static final String TAG = "LoadErrorPolicy";
+
+    enum ErrorClass {
+        NETWORK, // Connection failures and timeouts
+        HTTP_CLIENT, // 4xx responses
+        HTTP_SERVER, // 5xx responses
+        PARSER, // Malformed manifests and media
+        OTHER
+    }
+
+    private static final class Rule {
+        final int retries;
+        final boolean blacklist;
+
+        Rule(int retries, boolean blacklist) {
+            this.retries = retries;
+            this.blacklist = blacklist;
+        }
+    }
+
+    private final LoadErrorHandlingPolicy defaultPolicy = new DefaultLoadErrorHandlingPolicy();
+
+    // Null until configured
+    private volatile Map<ErrorClass, Rule> rules = null;
+    private volatile long initialBackoffMs = 500;
+    private volatile long maxBackoffMs = 8000;
+    private volatile float backoffMultiplier = 2;
+    private volatile long blacklistMs = DefaultLoadErrorHandlingPolicy.DEFAULT_TRACK_BLACKLIST_MS;
+
+    /**
+     * Fields not present in the json keep their current values, error classes not present keep default rules.
+     * Error class rules are {retries, blacklist} objects keyed by lowercased ErrorClass names.
+     * An empty object restores ExoPlayer defaults.
+     */
+    void update(String policyJson) throws JSONException {
+        JSONObject json = new JSONObject(policyJson);
+
+        if (json.length() == 0) {
+            rules = null;
+            return;
+        }
+
+        Map<ErrorClass, Rule> currentRules = rules != null ? rules : getDefaultRules();
+        Map<ErrorClass, Rule> newRules = new EnumMap<>(ErrorClass.class);
+        for (ErrorClass errorClass: ErrorClass.values()) {
+            Rule rule = currentRules.get(errorClass);
+            JSONObject ruleJson = json.optJSONObject(errorClass.name().toLowerCase(Locale.US));
+            if (ruleJson != null) {
+                rule = new Rule(
+                    Math.max(0, ruleJson.optInt("retries", rule.retries)),
+                    ruleJson.optBoolean("blacklist", rule.blacklist)
+                );
+            }
+            newRules.put(errorClass, rule);
+        }
+
+        initialBackoffMs = Math.max(0, json.optLong("initialBackoffMs", initialBackoffMs));
+        maxBackoffMs = Math.max(initialBackoffMs, json.optLong("maxBackoffMs", maxBackoffMs));
+        backoffMultiplier = Math.max(1, (float) json.optDouble("backoffMultiplier", backoffMultiplier));
+        blacklistMs = Math.max(0, json.optLong("blacklistMs", blacklistMs));
+        rules = newRules;
+    }
+
+    @Override
+    public long getBlacklistDurationMsFor(int dataType, long loadDurationMs, IOException exception, int errorCount) {
+        Map<ErrorClass, Rule> currentRules = rules;
+        if (currentRules == null) {
+            return defaultPolicy.getBlacklistDurationMsFor(dataType, loadDurationMs, exception, errorCount);
+        }
+
+        ErrorClass errorClass = classify(exception);
+        if (!currentRules.get(errorClass).blacklist || blacklistMs == 0) {
+            return C.TIME_UNSET;
+        }
+
+        Logger.w(TAG, "Blacklisting rendition after load error", errorClass.name(), exception.getMessage());
+        Logger.d(TAG, "Rendition blacklisted for {}ms", blacklistMs);
+        return blacklistMs;
+    }
+
+    @Override
+    public long getRetryDelayMsFor(int dataType, long loadDurationMs, IOException exception, int errorCount) {
+        Map<ErrorClass, Rule> currentRules = rules;
+        if (currentRules == null) {
+            return defaultPolicy.getRetryDelayMsFor(dataType, loadDurationMs, exception, errorCount);
+        }
+
+        ErrorClass errorClass = classify(exception);
+        if (errorCount > currentRules.get(errorClass).retries) {
+            Logger.w(TAG, "Giving up loading after {} errors", errorCount);
+            return C.TIME_UNSET;
+        }
+
+        long delayMs = (long) Math.min(maxBackoffMs, initialBackoffMs * Math.pow(backoffMultiplier, errorCount - 1));
+
+        Logger.d(TAG, "Retrying load of type {} in {}ms after error #{}", dataType, delayMs, errorCount);
+        return delayMs;
+    }
+
+    /**
+     * Loaders report errors as fatal once they fail more times than this, so it covers the largest retry count.
+     */
+    @Override
+    public int getMinimumLoadableRetryCount(int dataType) {
+        Map<ErrorClass, Rule> currentRules = rules;
+        if (currentRules == null) {
+            return defaultPolicy.getMinimumLoadableRetryCount(dataType);
+        }
+
+        int retries = 0;
+        for (Rule rule: currentRules.values()) {
+            retries = Math.max(retries, rule.retries);
+        }
+        return retries;
+    }
+
+    static ErrorClass classify(IOException exception) {
+        if (exception instanceof HttpDataSource.InvalidResponseCodeException) {
+            int responseCode = ((HttpDataSource.InvalidResponseCodeException) exception).responseCode;
+            return responseCode >= 500 ? ErrorClass.HTTP_SERVER : ErrorClass.HTTP_CLIENT;
+        }
+        if (exception instanceof HttpDataSource.HttpDataSourceException) {
+            return ErrorClass.NETWORK;
+        }
+        if (exception instanceof ParserException) {
+            return ErrorClass.PARSER;
+        }
+        return ErrorClass.OTHER;
+    }
+
+    /**
+     * Close to ExoPlayer defaults, except that parser errors are not retried and client errors are retried only once.
+     */
+    private static Map<ErrorClass, Rule> getDefaultRules() {
+        Map<ErrorClass, Rule> defaults = new EnumMap<>(ErrorClass.class);
+        defaults.put(ErrorClass.NETWORK, new Rule(6, false));
+        defaults.put(ErrorClass.HTTP_CLIENT, new Rule(1, true));
+        defaults.put(ErrorClass.HTTP_SERVER, new Rule(4, true));
+        defaults.put(ErrorClass.PARSER, new Rule(0, false));
+        defaults.put(ErrorClass.OTHER, new Rule(3, false));
+        return defaults;
+    }
+}
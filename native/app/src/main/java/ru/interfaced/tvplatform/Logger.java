@@ -0,0 +1,261 @@
+package ru.interfaced.tvplatform;
+
+import android.content.Context;
+import androidx.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import ru.interfaced.tvplatform.core.LogRing;
+
+/**
+ * Leveled logging to logcat and to an in-memory ring of recent records kept for support tickets, see LogRing.
+ * Messages are constant templates with {} placeholders for up to four integer arguments
+ * ({f} for Logger.f doubles, {b} for Logger.b booleans), so a call builds no strings unless logcat is going to print the line.
+ * Once-per-action records that need a string, e.g. a uri or an error, take it as a detail appended to the message,
+ * optionally followed by a reason such as an exception message; parts are joined with ": ".
+ * Verbose level is a compile time constant disabled in release builds, calls to it are then empty and stripped by R8;
+ * arguments that need computing should be guarded with if (Logger.VERBOSE) for javac to drop them as well.
+ * Debug records are kept in the ring in all builds, but reach logcat in debug builds only.
+ * The ring is dumped through DeviceWebInterface.getLog or to logs directory of application internal files with
+ * adb shell am broadcast -a <application id>.DUMP_LOG
+ * which only senders holding android.permission.DUMP, such as adb shell, can trigger.
+ * On debuggable builds dumps are read with adb shell run-as <application id> cat files/logs/<name>.
+ * All methods can be called from any thread.
+ */
+final class Logger {
+    private static final String TAG = "Logger";
+
+    static final boolean VERBOSE = BuildConfig.LOG_VERBOSE;
+
+    static final String ACTION_DUMP_LOG = BuildConfig.APPLICATION_ID + ".DUMP_LOG";
+
+    private static final int CAPACITY = 2048;
+    private static final String DIRECTORY = "logs";
+    private static final int LOGCAT_LEVEL = BuildConfig.DEBUG ? Log.VERBOSE : Log.INFO;
+
+    private static final LogRing ring = new LogRing(CAPACITY);
+
+    private Logger() {}
+
+    /**
+     * @return Double encoded for a {f} placeholder
+     */
+    static long f(double value) {
+        return LogRing.encodeDouble(value);
+    }
+
+    /**
+     * @return Boolean encoded for a {b} placeholder
+     */
+    static long b(boolean value) {
+        return LogRing.encodeBoolean(value);
+    }
+
+    static void v(String tag, String message) {
+        if (VERBOSE) {
+            write(Log.VERBOSE, tag, message, 0, 0, 0, 0, 0);
+        }
+    }
+
+    static void v(String tag, String message, long argument0) {
+        if (VERBOSE) {
+            write(Log.VERBOSE, tag, message, 1, argument0, 0, 0, 0);
+        }
+    }
+
+    /**
+     * @param message Template with a {b} placeholder
+     */
+    static void v(String tag, String message, boolean argument0) {
+        if (VERBOSE) {
+            write(Log.VERBOSE, tag, message, 1, b(argument0), 0, 0, 0);
+        }
+    }
+
+    static void v(String tag, String message, long argument0, long argument1) {
+        if (VERBOSE) {
+            write(Log.VERBOSE, tag, message, 2, argument0, argument1, 0, 0);
+        }
+    }
+
+    static void d(String tag, String message) {
+        write(Log.DEBUG, tag, message, 0, 0, 0, 0, 0);
+    }
+
+    static void d(String tag, String message, long argument0) {
+        write(Log.DEBUG, tag, message, 1, argument0, 0, 0, 0);
+    }
+
+    /**
+     * @param message Template with a {b} placeholder
+     */
+    static void d(String tag, String message, boolean argument0) {
+        write(Log.DEBUG, tag, message, 1, b(argument0), 0, 0, 0);
+    }
+
+    static void d(String tag, String message, long argument0, long argument1) {
+        write(Log.DEBUG, tag, message, 2, argument0, argument1, 0, 0);
+    }
+
+    static void d(String tag, String message, long argument0, long argument1, long argument2) {
+        write(Log.DEBUG, tag, message, 3, argument0, argument1, argument2, 0);
+    }
+
+    static void d(String tag, String message, long argument0, long argument1, long argument2, long argument3) {
+        write(Log.DEBUG, tag, message, 4, argument0, argument1, argument2, argument3);
+    }
+
+    static void d(String tag, String message, String detail) {
+        write(Log.DEBUG, tag, join(message, detail, null), 0, 0, 0, 0, 0);
+    }
+
+    static void d(String tag, String message, String detail, @Nullable String reason) {
+        write(Log.DEBUG, tag, join(message, detail, reason), 0, 0, 0, 0, 0);
+    }
+
+    static void i(String tag, String message) {
+        write(Log.INFO, tag, message, 0, 0, 0, 0, 0);
+    }
+
+    static void i(String tag, String message, long argument0) {
+        write(Log.INFO, tag, message, 1, argument0, 0, 0, 0);
+    }
+
+    static void i(String tag, String message, long argument0, long argument1) {
+        write(Log.INFO, tag, message, 2, argument0, argument1, 0, 0);
+    }
+
+    static void i(String tag, String message, String detail) {
+        write(Log.INFO, tag, join(message, detail, null), 0, 0, 0, 0, 0);
+    }
+
+    static void i(String tag, String message, String detail, @Nullable String reason) {
+        write(Log.INFO, tag, join(message, detail, reason), 0, 0, 0, 0, 0);
+    }
+
+    static void w(String tag, String message) {
+        write(Log.WARN, tag, message, 0, 0, 0, 0, 0);
+    }
+
+    static void w(String tag, String message, long argument0) {
+        write(Log.WARN, tag, message, 1, argument0, 0, 0, 0);
+    }
+
+    static void w(String tag, String message, long argument0, long argument1) {
+        write(Log.WARN, tag, message, 2, argument0, argument1, 0, 0);
+    }
+
+    static void w(String tag, String message, long argument0, long argument1, long argument2) {
+        write(Log.WARN, tag, message, 3, argument0, argument1, argument2, 0);
+    }
+
+    static void w(String tag, String message, String detail) {
+        write(Log.WARN, tag, join(message, detail, null), 0, 0, 0, 0, 0);
+    }
+
+    static void w(String tag, String message, String detail, @Nullable String reason) {
+        write(Log.WARN, tag, join(message, detail, reason), 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Logcat gets the stack trace, the ring only the exception itself.
+     */
+    static void w(String tag, String message, Throwable throwable) {
+        ring.write(System.currentTimeMillis(), Log.WARN, Thread.currentThread().getId(), tag, join(message, throwable.toString(), null), 0, 0, 0, 0, 0);
+        Log.w(tag, message, throwable);
+    }
+
+    static void e(String tag, String message) {
+        write(Log.ERROR, tag, message, 0, 0, 0, 0, 0);
+    }
+
+    static void e(String tag, String message, String detail) {
+        write(Log.ERROR, tag, join(message, detail, null), 0, 0, 0, 0, 0);
+    }
+
+    static void e(String tag, String message, String detail, @Nullable String reason) {
+        write(Log.ERROR, tag, join(message, detail, reason), 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Logcat gets the stack trace, the ring only the exception itself.
+     */
+    static void e(String tag, String message, Throwable throwable) {
+        ring.write(System.currentTimeMillis(), Log.ERROR, Thread.currentThread().getId(), tag, join(message, throwable.toString(), null), 0, 0, 0, 0, 0);
+        Log.e(tag, message, throwable);
+    }
+
+    /**
+     * @return Kept records from the oldest, one per line
+     */
+    static String dump() {
+        return ring.dump();
+    }
+
+    /**
+     * Blocks on file IO.
+     * @return Written file or null on failure
+     */
+    static @Nullable File dumpToFile(Context context) {
+        // Internal storage, records may hold stream uris and tokens other applications shouldn't read
+        File directory = new File(context.getFilesDir(), DIRECTORY);
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".log";
+        File file = new File(directory, name);
+
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Failed to create " + directory);
+            }
+
+            try (OutputStream output = new FileOutputStream(file)) {
+                output.write(ring.dump().getBytes(StandardCharsets.UTF_8));
+            }
+
+            Log.i(TAG, "Log dumped to " + file);
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to dump log", e);
+            return null;
+        }
+    }
+
+    private static String join(String message, String detail, @Nullable String reason) {
+        return reason != null ? message + ": " + detail + ": " + reason : message + ": " + detail;
+    }
+
+    private static void write(
+        int level,
+        String tag,
+        String message,
+        int argumentCount,
+        long argument0,
+        long argument1,
+        long argument2,
+        long argument3
+    ) {
+        ring.write(
+            System.currentTimeMillis(),
+            level,
+            Thread.currentThread().getId(),
+            tag,
+            message,
+            argumentCount,
+            argument0,
+            argument1,
+            argument2,
+            argument3
+        );
+
+        if (level >= LOGCAT_LEVEL) {
+            Log.println(level, tag, LogRing.format(message, argumentCount, argument0, argument1, argument2, argument3));
+        }
+    }
+}
@@ -1,23 +1,32 @@
 package ru.interfaced.tvplatform;
 
+import android.Manifest;
+import android.annotation.TargetApi;
 import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.media.AudioManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import androidx.annotation.Nullable;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.RenderProcessGoneDetail;
 import android.webkit.ValueCallback;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 
 import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.util.Arrays;
 
@@ -25,6 +34,51 @@ import java.util.Arrays;
 class CustomWebViewClient extends android.webkit.WebViewClient {
     private static String TAG = "CustomWebViewClient";
 
+    interface RendererListener {
+        /**
+         * Called on UI thread, the view can't be used anymore.
+         */
+        void onRendererGone(WebView view);
+    }
+
+    private final EventTransport eventTransport;
+    private final RendererListener rendererListener;
+
+    CustomWebViewClient(EventTransport eventTransport, RendererListener rendererListener) {
+        this.eventTransport = eventTransport;
+        this.rendererListener = rendererListener;
+    }
+
+    @Override
+    public void onPageStarted(WebView view, String url, Bitmap favicon) {
+        super.onPageStarted(view, url, favicon);
+
+        StartupTracer.mark("page_started");
+
+        // Channel belongs to the previous document
+        eventTransport.reset();
+    }
+
+    @Override
+    public void onPageFinished(WebView view, String url) {
+        super.onPageFinished(view, url);
+
+        StartupTracer.mark("page_finished");
+    }
+
+    /**
+     * Without handling, losing the renderer takes the whole application down, including playback.
+     */
+    @Override
+    @TargetApi(Build.VERSION_CODES.O)
+    public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+        Log.e(TAG, "WebView renderer " + (detail.didCrash() ? "crashed" : "was killed") +
+            ", priority at exit " + detail.rendererPriorityAtExit());
+
+        rendererListener.onRendererGone(view);
+        return true;
+    }
+
     @Override
     public void onScaleChanged(WebView view, float oldScale, float newScale) {
         Log.d(TAG, "onScaleChanged " + oldScale + " " + newScale);
@@ -39,27 +93,67 @@ class CustomWebViewClient extends android.webkit.WebViewClient {
 }
 
 
-public class MainActivity extends Activity {
+public class MainActivity extends Activity implements CustomWebViewClient.RendererListener {
     private WebView webView;
+    private volatile EventTransport eventTransport;
+    private OverlayController overlayController;
+    private @Nullable BridgeRecorder bridgeRecorder;
 
     private static String TAG = "MainActivity";
 
+    // Renderer losses within RENDERER_LOSS_PERIOD_MS to give up at, to not loop on a page that crashes it
+    private static final int MAX_RENDERER_LOSSES = 3;
+    private static final long RENDERER_LOSS_PERIOD_MS = 60 * 1000;
+
+    // Times of the latest losses, the next one is written over the oldest
+    private final long[] rendererLossTimesMs = new long[MAX_RENDERER_LOSSES];
+    private int rendererLossCount = 0;
+
     private DeviceWebInterface deviceWebInterface;
     private PlayerWebInterface playerWebInterface;
+    private DownloadWebInterface downloadWebInterface;
+
+    private final BroadcastReceiver logDumpReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Context applicationContext = context.getApplicationContext();
+            new Thread(() -> Logger.dumpToFile(applicationContext), TAG).start();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTracer.mark("activity_create");
 
         setVolumeControlStream(AudioManager.STREAM_MUSIC);
         setContentView(R.layout.activity_main);
 
+        // Layout holds the WebView, so this also covers its construction
+        StartupTracer.mark("content_view_set");
+
+        overlayController = new OverlayController(this, findViewById(R.id.viewport));
         playerWebInterface = new PlayerWebInterface(this);
         deviceWebInterface = new DeviceWebInterface(this);
+        downloadWebInterface = new DownloadWebInterface(this);
 
         webView = findViewById(R.id.webview);
+        overlayController.setWebView(webView);
+        eventTransport = new EventTransport(webView);
+        if (BuildConfig.BRIDGE_RECORDING || getIntent().getBooleanExtra(BridgeRecorder.EXTRA_RECORD_BRIDGE, false)) {
+            bridgeRecorder = BridgeRecorder.create(this);
+            eventTransport.setRecorder(bridgeRecorder);
+        }
         initWebView();
+        StartupTracer.mark("webview_initialized");
 
+        // Only adb shell and the system hold the permission
+        registerReceiver(logDumpReceiver, new IntentFilter(Logger.ACTION_DUMP_LOG), Manifest.permission.DUMP, null);
+
+        loadApplication();
+    }
+
+    private void loadApplication() {
         if (BuildConfig.USE_BUNDLED_HTML) {
             webView.loadUrl("file:///android_asset/html/index.html");
         } else {
@@ -100,6 +194,20 @@ public class MainActivity extends Activity {
 
         deviceWebInterface.suspend();
         playerWebInterface.suspend();
+
+        if (bridgeRecorder != null) {
+            bridgeRecorder.flush();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        downloadWebInterface.release();
+        playerWebInterface.release();
+        overlayController.release();
+        unregisterReceiver(logDumpReceiver);
+        closeBridgeRecorder();
+        super.onDestroy();
     }
 
     @Override
@@ -127,31 +235,93 @@ public class MainActivity extends Activity {
         webView.setBackgroundColor(Color.TRANSPARENT);
 
         webView.clearCache(true);
-        webView.setWebViewClient(new CustomWebViewClient());
+        webView.setWebViewClient(new CustomWebViewClient(eventTransport, this));
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // Keep the renderer alive while visible, in background let it go before the application process
+            webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_IMPORTANT, true);
+        }
 
         webView.addJavascriptInterface(playerWebInterface, getString(R.string.player_interface));
         webView.addJavascriptInterface(deviceWebInterface, getString(R.string.device_interface));
+        webView.addJavascriptInterface(downloadWebInterface, getString(R.string.download_interface));
+        if (bridgeRecorder != null) {
+            webView.addJavascriptInterface(bridgeRecorder, getString(R.string.bridge_recorder_interface));
+        }
     }
 
-    public void notifyWebView(String context, String event, @Nullable JSONArray arguments, final @Nullable ValueCallback<String> callback) {
-        String interfaceString = String.format("window.%s.onEvent", context);
-        String eventString = JSONObject.quote(event);
-        String argumentsString = "undefined";
-
-        if (arguments != null && arguments.length() > 0) {
-            try {
-                argumentsString = arguments.join(", ");
-            } catch (JSONException e) {
-                e.printStackTrace();
-                Log.e(TAG, e.getMessage());
-            }
+    /**
+     * Replaces the WebView with a new one loading the application again, while the player keeps playing underneath.
+     * The reloaded page finds the player state in PlayerWebInterface.getSnapshot.
+     */
+    @Override
+    public void onRendererGone(WebView view) {
+        if (view != webView || isFinishing()) {
+            return;
+        }
+
+        long nowMs = SystemClock.elapsedRealtime();
+        rendererLossTimesMs[rendererLossCount % MAX_RENDERER_LOSSES] = nowMs;
+        rendererLossCount++;
+
+        long oldestLossMs = rendererLossTimesMs[rendererLossCount % MAX_RENDERER_LOSSES];
+        if (rendererLossCount >= MAX_RENDERER_LOSSES && nowMs - oldestLossMs < RENDERER_LOSS_PERIOD_MS) {
+            Log.e(TAG, "WebView renderer lost " + MAX_RENDERER_LOSSES + " times within a minute, giving up");
+            finish();
+            return;
         }
 
-        final String call = String.format("%s && %s(%s, %s)", interfaceString, interfaceString, eventString, argumentsString);
+        Log.w(TAG, "Recreating WebView");
+
+        ViewGroup parent = (ViewGroup) webView.getParent();
+        int index = parent.indexOfChild(webView);
+        ViewGroup.LayoutParams layoutParams = webView.getLayoutParams();
+        parent.removeView(webView);
+        webView.destroy();
+
+        webView = new WebView(this);
+        webView.setId(R.id.webview);
+        parent.addView(webView, index, layoutParams);
+        webView.requestFocus();
+        overlayController.setWebView(webView);
+
+        EventTransport newEventTransport = new EventTransport(webView);
+        newEventTransport.setRecorder(bridgeRecorder);
+        eventTransport = newEventTransport;
 
-        webView.post(() -> {
-            webView.evaluateJavascript(call, callback);
-        });
+        playerWebInterface.onPageReloaded();
+        initWebView();
+        loadApplication();
+    }
+
+    public void notifyWebView(String context, String event, @Nullable JSONArray arguments, final @Nullable ValueCallback<String> callback) {
+        eventTransport.send(context, event, arguments, callback);
+    }
+
+    OverlayController getOverlayController() {
+        return overlayController;
+    }
+
+    void openEventChannel() {
+        eventTransport.openChannel();
+    }
+
+    /**
+     * Writes out recorded bridge traffic, to be called before the process goes away.
+     */
+    void closeBridgeRecorder() {
+        if (bridgeRecorder != null) {
+            eventTransport.setRecorder(null);
+            bridgeRecorder.close();
+            bridgeRecorder = null;
+        }
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        // Shows an idle overlay before the key reaches it
+        overlayController.onUserInput();
+        return super.dispatchKeyEvent(event);
     }
 
     @Override
@@ -178,6 +348,7 @@ public class MainActivity extends Activity {
 
         if (Arrays.asList(mouseActions).contains(action)) {
             deviceWebInterface.onMouseSuspicion();
+            overlayController.onUserInput();
         }
 
         return false;
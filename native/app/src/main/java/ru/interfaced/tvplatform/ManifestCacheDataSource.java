@@ -0,0 +1,88 @@
+package ru.interfaced.tvplatform;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import ru.interfaced.tvplatform.core.ExpiringCache;
+
+/**
+ * Serves manifests prefetched by ManifestPrefetcher, everything else is loaded from upstream.
+ * A prefetched manifest is served once, the player then refreshes it on its own schedule.
+ */
+class ManifestCacheDataSource implements DataSource {
+    private final DataSource upstream;
+    private final ExpiringCache<String, byte[]> cache;
+
+    private @Nullable DataSource current;
+
+    static class Factory implements DataSource.Factory {
+        private final DataSource.Factory upstreamFactory;
+        private final ExpiringCache<String, byte[]> cache;
+
+        Factory(DataSource.Factory upstreamFactory, ExpiringCache<String, byte[]> cache) {
+            this.upstreamFactory = upstreamFactory;
+            this.cache = cache;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new ManifestCacheDataSource(upstreamFactory.createDataSource(), cache);
+        }
+    }
+
+    private ManifestCacheDataSource(DataSource upstream, ExpiringCache<String, byte[]> cache) {
+        this.upstream = upstream;
+        this.cache = cache;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        // Cached bytes are not transferred and shouldn't affect bandwidth estimation
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        byte[] manifest = null;
+        if (dataSpec.position == 0 && dataSpec.length == C.LENGTH_UNSET) {
+            manifest = cache.take(dataSpec.uri.toString(), SystemClock.elapsedRealtime());
+        }
+
+        current = manifest != null ? new ByteArrayDataSource(manifest) : upstream;
+        return current.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        return current.read(buffer, offset, readLength);
+    }
+
+    @Override
+    public @Nullable Uri getUri() {
+        return current != null ? current.getUri() : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return current != null ? current.getResponseHeaders() : upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+}
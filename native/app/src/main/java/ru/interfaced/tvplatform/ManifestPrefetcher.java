@@ -0,0 +1,336 @@
+package ru.interfaced.tvplatform;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.source.smoothstreaming.manifest.SsManifest;
+import com.google.android.exoplayer2.source.smoothstreaming.manifest.SsManifestParser;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ru.interfaced.tvplatform.core.ExpiringCache;
+import ru.interfaced.tvplatform.core.MediaFormat;
+
+/**
+ * Fetches manifests of streams likely to be played next, so that switching to them doesn't wait for manifest loads.
+ * HLS master playlists are parsed to also fetch the media playlists the player is going to start with.
+ * Manifests expire as often as their streams update them and are refreshed for as long as they are still wanted.
+ * At most MAX_CONCURRENT_FETCHES loads run at once and fetching is held off while the playing stream is buffering,
+ * so that prefetching doesn't compete with playback for bandwidth.
+ * The playing stream is not refreshed even when listed, the player refreshes it itself
+ * and a prefetched copy would only delay live edge updates and load every manifest twice.
+ * Stopping cancels scheduled fetches while keeping the targets, e.g. while the application is in background.
+ */
+class ManifestPrefetcher {
+    private static final String TAG = "ManifestPrefetcher";
+
+    private static final int MAX_TARGETS = 8;
+    private static final int MAX_CONCURRENT_FETCHES = 2;
+    private static final int CACHE_CAPACITY = 32;
+
+    private static final long STATIC_TTL_MS = 5 * 60 * 1000;
+    private static final long DEFAULT_LIVE_TTL_MS = 2000;
+    private static final long MIN_LIVE_TTL_MS = 1000;
+    private static final long MAX_LIVE_TTL_MS = 10000;
+    private static final long MIN_REFRESH_INTERVAL_MS = 2000;
+    private static final long FAILURE_RETRY_MS = 30000;
+    private static final long PAUSED_RETRY_MS = 1000;
+
+    // Fraction of estimated bandwidth the player's adaptive selection starts with
+    private static final float BANDWIDTH_FRACTION = 0.7f;
+
+    private final ExpiringCache<String, byte[]> cache = new ExpiringCache<>(CACHE_CAPACITY);
+    private final ScheduledThreadPoolExecutor executor;
+    private final DataSource.Factory dataSourceFactory;
+    private final BandwidthMeter bandwidthMeter;
+
+    // Manifests to keep fresh, replaced as a whole by setTargets
+    private volatile Map<String, MediaFormat> targets = Collections.emptyMap();
+
+    // Fetches scheduled by uri, to avoid scheduling duplicates and to cancel them on stop. Guarded by itself
+    private final Map<String, ScheduledFuture<?>> scheduled = new HashMap<>();
+
+    // Uri of the stream the player plays, it and its media playlists are left to the player
+    private volatile @Nullable String playingUri;
+
+    private volatile boolean paused = false;
+    private volatile boolean stopped = false;
+
+    ManifestPrefetcher(DataSource.Factory dataSourceFactory, BandwidthMeter bandwidthMeter) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.bandwidthMeter = bandwidthMeter;
+
+        executor = new ScheduledThreadPoolExecutor(MAX_CONCURRENT_FETCHES, runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Cache to serve prefetched manifests from, see ManifestCacheDataSource.
+     */
+    ExpiringCache<String, byte[]> getCache() {
+        return cache;
+    }
+
+    /**
+     * Replaces manifests to prefetch, uris no longer listed stop being refreshed.
+     * @param newTargets Uris with their formats, in order of priority
+     */
+    void setTargets(Map<String, MediaFormat> newTargets) {
+        Map<String, MediaFormat> limitedTargets = new LinkedHashMap<>();
+        for (Map.Entry<String, MediaFormat> target: newTargets.entrySet()) {
+            if (limitedTargets.size() == MAX_TARGETS) {
+                Logger.w(TAG, "Too many prefetch targets, only first {} are prefetched", MAX_TARGETS);
+                break;
+            }
+            limitedTargets.put(target.getKey(), target.getValue());
+        }
+
+        targets = limitedTargets;
+        scheduleTargets();
+    }
+
+    /**
+     * Stops refreshing the stream being prepared, a copy fetched before is still served to the player's first load.
+     * The stream previously playing is refreshed again if it's still listed.
+     * @param uri Null when nothing plays
+     */
+    void setPlaying(@Nullable String uri) {
+        playingUri = uri;
+        scheduleTargets();
+    }
+
+    /**
+     * Holds off fetching, e.g. while playback is buffering.
+     */
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Cancels scheduled fetches, targets are kept for start to resume with.
+     */
+    void stop() {
+        stopped = true;
+        cancelScheduled();
+    }
+
+    /**
+     * Resumes fetching targets after stop.
+     */
+    void start() {
+        if (!stopped) {
+            return;
+        }
+
+        stopped = false;
+        scheduleTargets();
+    }
+
+    /**
+     * Forgets targets and prefetched manifests and cancels scheduled fetches, fetching resumes once targets are set again.
+     */
+    void clear() {
+        targets = Collections.emptyMap();
+        playingUri = null;
+        cancelScheduled();
+        cache.clear();
+    }
+
+    /**
+     * Stops prefetching for good and shuts down fetch threads, fetches under way are let to finish.
+     */
+    void release() {
+        stop();
+        clear();
+
+        synchronized (scheduled) {
+            executor.shutdown();
+        }
+    }
+
+    private void scheduleTargets() {
+        for (Map.Entry<String, MediaFormat> target: targets.entrySet()) {
+            if (!target.getKey().equals(playingUri)) {
+                schedule(target.getKey(), target.getValue(), null, 0);
+            }
+        }
+    }
+
+    private void cancelScheduled() {
+        synchronized (scheduled) {
+            for (ScheduledFuture<?> future: scheduled.values()) {
+                future.cancel(false);
+            }
+            scheduled.clear();
+        }
+    }
+
+    private boolean isListed(String uri, @Nullable String parentUri) {
+        return targets.containsKey(parentUri != null ? parentUri : uri);
+    }
+
+    private boolean isPlaying(String uri, @Nullable String parentUri) {
+        return (parentUri != null ? parentUri : uri).equals(playingUri);
+    }
+
+    private void schedule(String uri, MediaFormat format, @Nullable String parentUri, long delayMs) {
+        if (stopped) {
+            return;
+        }
+
+        // Held while scheduling, so that the fetch can't remove its entry before it's put
+        synchronized (scheduled) {
+            if (scheduled.containsKey(uri) || executor.isShutdown()) {
+                return;
+            }
+
+            scheduled.put(uri, executor.schedule(() -> {
+                synchronized (scheduled) {
+                    scheduled.remove(uri);
+                }
+                fetch(uri, format, parentUri);
+            }, delayMs, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private void fetch(String uri, MediaFormat format, @Nullable String parentUri) {
+        if (stopped) {
+            return;
+        }
+
+        if (!isListed(uri, parentUri)) {
+            cache.remove(uri);
+            return;
+        }
+        if (isPlaying(uri, parentUri)) {
+            // Rescheduled by setPlaying once another stream plays
+            return;
+        }
+
+        if (paused) {
+            schedule(uri, format, parentUri, PAUSED_RETRY_MS);
+            return;
+        }
+
+        long ttlMs;
+        try {
+            byte[] manifest = load(uri);
+            ttlMs = parse(uri, format, manifest);
+            if (isPlaying(uri, parentUri)) {
+                // The player started loading it meanwhile
+                return;
+            }
+
+            long nowMs = SystemClock.elapsedRealtime();
+            cache.put(uri, manifest, nowMs + ttlMs, nowMs);
+
+            Logger.v(TAG, "Prefetched for {}ms", ttlMs);
+        } catch (IOException e) {
+            Logger.w(TAG, "Failed to prefetch", uri, e.getMessage());
+            ttlMs = FAILURE_RETRY_MS;
+        }
+
+        schedule(uri, format, parentUri, Math.max(ttlMs, MIN_REFRESH_INTERVAL_MS));
+    }
+
+    private byte[] load(String uri) throws IOException {
+        DataSourceInputStream input = new DataSourceInputStream(dataSourceFactory.createDataSource(), new DataSpec(Uri.parse(uri)));
+        try {
+            return Util.toByteArray(input);
+        } finally {
+            Util.closeQuietly(input);
+        }
+    }
+
+    /**
+     * @return How long the manifest stays valid
+     */
+    private long parse(String uri, MediaFormat format, byte[] manifest) throws IOException {
+        InputStream input = new ByteArrayInputStream(manifest);
+
+        switch (format) {
+            case DASH: {
+                DashManifest dashManifest = new DashManifestParser().parse(Uri.parse(uri), input);
+                if (!dashManifest.dynamic) {
+                    return STATIC_TTL_MS;
+                }
+                return clampLiveTtl(dashManifest.minUpdatePeriodMs == C.TIME_UNSET ? DEFAULT_LIVE_TTL_MS : dashManifest.minUpdatePeriodMs);
+            }
+            case HLS: {
+                HlsPlaylist playlist = new HlsPlaylistParser().parse(Uri.parse(uri), input);
+                if (playlist instanceof HlsMasterPlaylist) {
+                    prefetchMediaPlaylists(uri, (HlsMasterPlaylist) playlist);
+                    return STATIC_TTL_MS;
+                }
+
+                HlsMediaPlaylist mediaPlaylist = (HlsMediaPlaylist) playlist;
+                return mediaPlaylist.hasEndTag ? STATIC_TTL_MS : clampLiveTtl(C.usToMs(mediaPlaylist.targetDurationUs));
+            }
+            case SS: {
+                SsManifest ssManifest = new SsManifestParser().parse(Uri.parse(uri), input);
+                return ssManifest.isLive ? DEFAULT_LIVE_TTL_MS : STATIC_TTL_MS;
+            }
+            default:
+                return STATIC_TTL_MS;
+        }
+    }
+
+    /**
+     * Fetches the variant adaptive selection is likely to start with and the first audio rendition.
+     */
+    private void prefetchMediaPlaylists(String masterUri, HlsMasterPlaylist master) {
+        long bitrateBudget = (long) (bandwidthMeter.getBitrateEstimate() * BANDWIDTH_FRACTION);
+
+        HlsMasterPlaylist.Variant selected = null;
+        for (HlsMasterPlaylist.Variant variant: master.variants) {
+            boolean fits = variant.format.bitrate <= bitrateBudget;
+            if (selected == null ||
+                (fits && (selected.format.bitrate > bitrateBudget || variant.format.bitrate > selected.format.bitrate)) ||
+                (!fits && selected.format.bitrate > bitrateBudget && variant.format.bitrate < selected.format.bitrate)) {
+                selected = variant;
+            }
+        }
+
+        if (selected != null) {
+            schedule(selected.url.toString(), MediaFormat.HLS, masterUri, 0);
+        }
+
+        for (HlsMasterPlaylist.Rendition audio: master.audios) {
+            if (audio.url != null) {
+                schedule(audio.url.toString(), MediaFormat.HLS, masterUri, 0);
+                break;
+            }
+        }
+    }
+
+    private static long clampLiveTtl(long ttlMs) {
+        return Math.max(MIN_LIVE_TTL_MS, Math.min(MAX_LIVE_TTL_MS, ttlMs));
+    }
+}
@@ -0,0 +1,147 @@
+package ru.interfaced.tvplatform;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ru.interfaced.tvplatform.core.ExpiringCache;
+import ru.interfaced.tvplatform.core.MediaFormat;
+import ru.interfaced.tvplatform.core.UriPattern;
+
+/**
+ * Resolves the format of streams whose uri doesn't tell it, e.g. tokenised CDN uris without an extension.
+ * The first bytes are requested with a range request, the format is taken from Content-Type
+ * and, when that's not conclusive, from how the data starts.
+ * Results are cached per UriPattern, so that switching between streams of the same CDN probes only once.
+ */
+class MediaFormatProbe {
+    private static final String TAG = "MediaFormatProbe";
+
+    private static final int PROBE_LENGTH = 1024;
+    private static final int CACHE_CAPACITY = 64;
+    private static final long RESULT_TTL_MS = 60 * 60 * 1000;
+
+    interface Callback {
+        /**
+         * Called on the probe thread.
+         * @param format AUTO stands for progressive or unknown
+         */
+        void onFormatResolved(MediaFormat format);
+    }
+
+    private final ExpiringCache<String, MediaFormat> cache = new ExpiringCache<>(CACHE_CAPACITY);
+    private final ExecutorService executor;
+    private final DataSource.Factory dataSourceFactory;
+
+    MediaFormatProbe(DataSource.Factory dataSourceFactory) {
+        this.dataSourceFactory = dataSourceFactory;
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return Whether the uri is worth probing, i.e. it's an http uri and its path doesn't tell the format
+     */
+    static boolean isProbeNeeded(Uri uri) {
+        String scheme = uri.getScheme();
+        return ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) &&
+            MediaFormat.detect(uri.toString()) == MediaFormat.AUTO;
+    }
+
+    /**
+     * @return Format probed earlier for a uri of the same pattern or null if there's none
+     */
+    @Nullable MediaFormat getCached(Uri uri) {
+        return cache.get(UriPattern.of(uri.toString()), SystemClock.elapsedRealtime());
+    }
+
+    void probe(Uri uri, Callback callback) {
+        executor.execute(() -> callback.onFormatResolved(resolve(uri)));
+    }
+
+    /**
+     * Shuts down the probe thread, a probe under way is let to finish and probe can't be called afterwards.
+     */
+    void release() {
+        executor.shutdown();
+    }
+
+    private MediaFormat resolve(Uri uri) {
+        String pattern = UriPattern.of(uri.toString());
+
+        MediaFormat cached = cache.get(pattern, SystemClock.elapsedRealtime());
+        if (cached != null) {
+            return cached;
+        }
+
+        long startMs = SystemClock.elapsedRealtime();
+        MediaFormat format;
+        try {
+            format = load(uri);
+        } catch (IOException e) {
+            // Not cached, the stream may just be temporarily unavailable
+            Logger.w(TAG, "Failed to probe", uri.toString(), e.getMessage());
+            return MediaFormat.AUTO;
+        }
+
+        long nowMs = SystemClock.elapsedRealtime();
+        cache.put(pattern, format, nowMs + RESULT_TTL_MS, nowMs);
+
+        Logger.d(TAG, "Probed in {}ms", nowMs - startMs);
+        Logger.d(TAG, "Probed format", pattern, format.name());
+        return format;
+    }
+
+    private MediaFormat load(Uri uri) throws IOException {
+        DataSource dataSource = dataSourceFactory.createDataSource();
+        try {
+            dataSource.open(new DataSpec(uri, 0, PROBE_LENGTH, null));
+
+            String contentType = getHeader(dataSource.getResponseHeaders(), "Content-Type");
+            if (contentType != null) {
+                MediaFormat format = MediaFormat.fromContentType(contentType);
+                if (format != MediaFormat.AUTO) {
+                    return format;
+                }
+            }
+
+            byte[] data = new byte[PROBE_LENGTH];
+            int length = 0;
+            while (length < data.length) {
+                int read = dataSource.read(data, length, data.length - length);
+                if (read == C.RESULT_END_OF_INPUT) {
+                    break;
+                }
+                length += read;
+            }
+
+            return MediaFormat.sniff(data, length);
+        } finally {
+            Util.closeQuietly(dataSource);
+        }
+    }
+
+    private static @Nullable String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header: headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+}
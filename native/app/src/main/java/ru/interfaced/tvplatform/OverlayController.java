@@ -0,0 +1,213 @@
+package ru.interfaced.tvplatform;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+import android.view.FrameMetrics;
+import android.view.View;
+import android.view.Window;
+import android.webkit.WebView;
+
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+
+import ru.interfaced.tvplatform.core.OverlayStats;
+
+/**
+ * Takes the transparent WebView out of composition while it has nothing to show over fullscreen video,
+ * so that the compositor only has the video layer to blend.
+ * The idle WebView is made fully transparent rather than hidden, which the renderer skips drawing all the same:
+ * a hidden WebView would stop the page's animation frames and timers and, with its renderer priority
+ * waived when not visible, let the system kill the renderer while the application is in foreground.
+ * The overlay goes idle when the page says so or, with auto idle enabled, after a period without input
+ * while video plays full screen. Any input shows it again before the input is dispatched,
+ * so the page handles the key already visible and draws on the next frame.
+ * Transparency doesn't affect layout or focus, so showing the overlay costs no layout pass.
+ * Idle state can be set from any thread, input and frame callbacks come on UI thread.
+ */
+class OverlayController {
+    private static final String TAG = "OverlayController";
+
+    interface Listener {
+        /**
+         * Called on UI thread.
+         */
+        void onOverlayIdleChanged(boolean idle);
+    }
+
+    private final Activity activity;
+    private final View viewport;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable autoIdleTask = this::onAutoIdleTimeout;
+    private final OverlayStats stats = new OverlayStats(SystemClock.elapsedRealtime());
+
+    // Only written on UI thread
+    private @Nullable WebView webView = null;
+    private volatile boolean idle = false;
+
+    private volatile @Nullable Listener listener = null;
+    private volatile @Nullable SimpleExoPlayer player = null;
+    private volatile boolean playing = false;
+    private volatile long autoIdleTimeoutMs = 0;
+
+    private @Nullable HandlerThread frameMetricsThread = null;
+    private @Nullable Window.OnFrameMetricsAvailableListener frameMetricsListener = null;
+
+    OverlayController(Activity activity, View viewport) {
+        this.activity = activity;
+        this.viewport = viewport;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            listenToFrameMetrics();
+        }
+    }
+
+    /**
+     * Must be called on UI thread, the overlay is shown.
+     */
+    void setWebView(WebView webView) {
+        this.webView = webView;
+        applyIdle(false);
+    }
+
+    void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Player to count video frames of, null when there's none.
+     */
+    void setPlayer(@Nullable SimpleExoPlayer player) {
+        this.player = player;
+    }
+
+    /**
+     * Playback stopping brings the overlay back, the page is likely to have something to show.
+     */
+    void setPlaying(boolean playing) {
+        this.playing = playing;
+        if (!playing && idle) {
+            setIdle(false);
+        }
+    }
+
+    void setIdle(boolean newIdle) {
+        handler.post(() -> applyIdle(newIdle));
+    }
+
+    /**
+     * @param timeoutMs Time without input during fullscreen playback after which the overlay goes idle, 0 to disable
+     */
+    void setAutoIdleTimeout(long timeoutMs) {
+        autoIdleTimeoutMs = Math.max(0, timeoutMs);
+        handler.post(this::scheduleAutoIdle);
+    }
+
+    /**
+     * To be called on UI thread before the input event is dispatched.
+     */
+    void onUserInput() {
+        if (idle) {
+            applyIdle(false);
+        }
+        if (autoIdleTimeoutMs > 0) {
+            scheduleAutoIdle();
+        }
+    }
+
+    /**
+     * Stops listening to frames, must be called on UI thread when the activity is destroyed.
+     */
+    void release() {
+        handler.removeCallbacksAndMessages(null);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && frameMetricsListener != null) {
+            activity.getWindow().removeOnFrameMetricsAvailableListener(frameMetricsListener);
+            frameMetricsListener = null;
+        }
+        if (frameMetricsThread != null) {
+            frameMetricsThread.quitSafely();
+            frameMetricsThread = null;
+        }
+    }
+
+    /**
+     * @return See OverlayStats.toJson
+     */
+    String getStats() {
+        DecoderCounters counters = getVideoDecoderCounters();
+        return stats.toJson(
+            SystemClock.elapsedRealtime(),
+            counters != null ? counters.renderedOutputBufferCount : 0,
+            counters != null ? counters.droppedBufferCount : 0
+        );
+    }
+
+    private void applyIdle(boolean newIdle) {
+        if (webView == null || newIdle == idle) {
+            return;
+        }
+
+        Logger.d(TAG, newIdle ? "Hiding overlay" : "Showing overlay");
+
+        DecoderCounters counters = getVideoDecoderCounters();
+        stats.setIdle(
+            newIdle,
+            SystemClock.elapsedRealtime(),
+            counters != null ? counters.renderedOutputBufferCount : 0,
+            counters != null ? counters.droppedBufferCount : 0
+        );
+
+        idle = newIdle;
+        webView.setAlpha(newIdle ? 0 : 1);
+
+        Listener currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onOverlayIdleChanged(newIdle);
+        }
+    }
+
+    private void scheduleAutoIdle() {
+        handler.removeCallbacks(autoIdleTask);
+        if (autoIdleTimeoutMs > 0 && !idle) {
+            handler.postDelayed(autoIdleTask, autoIdleTimeoutMs);
+        }
+    }
+
+    private void onAutoIdleTimeout() {
+        if (playing && isVideoFullscreen()) {
+            applyIdle(true);
+        } else {
+            scheduleAutoIdle();
+        }
+    }
+
+    private boolean isVideoFullscreen() {
+        View root = viewport.getRootView();
+        return viewport.getWidth() >= root.getWidth() && viewport.getHeight() >= root.getHeight();
+    }
+
+    private @Nullable DecoderCounters getVideoDecoderCounters() {
+        SimpleExoPlayer currentPlayer = player;
+        DecoderCounters counters = currentPlayer != null ? currentPlayer.getVideoDecoderCounters() : null;
+        if (counters != null) {
+            counters.ensureUpdated();
+        }
+        return counters;
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private void listenToFrameMetrics() {
+        frameMetricsThread = new HandlerThread(TAG);
+        frameMetricsThread.start();
+
+        frameMetricsListener = (Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) ->
+            stats.onUiFrame(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+        activity.getWindow().addOnFrameMetricsAvailableListener(frameMetricsListener, new Handler(frameMetricsThread.getLooper()));
+    }
+}
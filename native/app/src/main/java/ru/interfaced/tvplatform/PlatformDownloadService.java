@@ -0,0 +1,48 @@
+package ru.interfaced.tvplatform;
+
+import android.app.Notification;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.offline.Download;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadService;
+import com.google.android.exoplayer2.scheduler.PlatformScheduler;
+import com.google.android.exoplayer2.scheduler.Scheduler;
+import com.google.android.exoplayer2.ui.DownloadNotificationHelper;
+
+import java.util.List;
+
+/**
+ * Keeps downloads running while the application is in background.
+ * Downloads waiting for network are resumed by a persisted job, so they survive reboots.
+ */
+public class PlatformDownloadService extends DownloadService {
+    private static final int FOREGROUND_NOTIFICATION_ID = 1;
+    private static final int JOB_ID = 1;
+    private static final String CHANNEL_ID = "downloads";
+
+    private @Nullable DownloadNotificationHelper notificationHelper;
+
+    public PlatformDownloadService() {
+        super(FOREGROUND_NOTIFICATION_ID, DEFAULT_FOREGROUND_NOTIFICATION_UPDATE_INTERVAL, CHANNEL_ID, R.string.download_channel_name);
+    }
+
+    @Override
+    protected DownloadManager getDownloadManager() {
+        return DownloadController.getInstance(this).getDownloadManager();
+    }
+
+    @Override
+    protected @Nullable Scheduler getScheduler() {
+        return new PlatformScheduler(this, JOB_ID);
+    }
+
+    @Override
+    protected Notification getForegroundNotification(List<Download> downloads) {
+        if (notificationHelper == null) {
+            notificationHelper = new DownloadNotificationHelper(this, CHANNEL_ID);
+        }
+
+        return notificationHelper.buildProgressNotification(android.R.drawable.stat_sys_download, null, null, downloads);
+    }
+}
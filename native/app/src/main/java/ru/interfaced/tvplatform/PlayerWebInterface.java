@@ -3,73 +3,172 @@ package ru.interfaced.tvplatform;
 import android.app.Activity;
 import android.content.Context;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.SystemClock;
 import androidx.annotation.IntRange;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import android.util.Log;
 import android.view.SurfaceView;
 import android.view.TextureView;
 import android.view.View;
-import android.view.ViewGroup;
 import android.webkit.JavascriptInterface;
 import android.webkit.ValueCallback;
 import android.widget.RelativeLayout;
 
 import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.RendererCapabilities;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.audio.AudioCapabilities;
+import com.google.android.exoplayer2.audio.AudioCapabilitiesReceiver;
 import com.google.android.exoplayer2.audio.AudioListener;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+import com.google.android.exoplayer2.audio.AudioRendererEventListener;
+import com.google.android.exoplayer2.audio.MediaCodecAudioRenderer;
 import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
 import com.google.android.exoplayer2.drm.FrameworkMediaDrm;
 import com.google.android.exoplayer2.drm.HttpMediaDrmCallback;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.offline.DownloadRequest;
+import com.google.android.exoplayer2.offline.StreamKey;
+import com.google.android.exoplayer2.source.BehindLiveWindowException;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.ProgressiveMediaSource;
+import com.google.android.exoplayer2.source.TrackGroup;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.source.dash.DashMediaSource;
 import com.google.android.exoplayer2.source.hls.HlsMediaSource;
 import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.ui.AspectRatioFrameLayout;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.video.VideoListener;
 
 import org.json.JSONArray;
 import org.json.JSONException;
-
-import java.util.Locale;
+import org.json.JSONObject;
+
+import ru.interfaced.tvplatform.core.EnumParser;
+import ru.interfaced.tvplatform.core.ErrorChain;
+import ru.interfaced.tvplatform.core.MediaFormat;
+import ru.interfaced.tvplatform.core.PlayerOptions.DrmType;
+import ru.interfaced.tvplatform.core.PlayerOptions.FrameRateMatching;
+import ru.interfaced.tvplatform.core.PlayerOptions.Orientation;
+import ru.interfaced.tvplatform.core.PlayerOptions.ResizeMode;
+import ru.interfaced.tvplatform.core.PlayerOptions.SeekMode;
+import ru.interfaced.tvplatform.core.PlayerOptions.TunnelingMode;
+import ru.interfaced.tvplatform.core.PlayerOptions.VideoType;
+import ru.interfaced.tvplatform.core.TrackSnapshotBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 
 class PlayerWebInterface implements
         Player.EventListener,
-        VideoListener, AudioListener {
+        VideoListener, AudioListener,
+        TrickPlayController.Listener,
+        TimeshiftBuffer.Listener,
+        CdnRouter.Listener,
+        AudioCapabilitiesReceiver.Listener,
+        OverlayController.Listener {
     private Context context;
     private AspectRatioFrameLayout videoContainer;
     private RelativeLayout viewport;
+    private ViewportLayoutController layoutController;
     private SurfaceView videoSurfaceView;
     private TextureView videoTextureView;
     private View currentVideoView;
+    private GlVideoRenderer glVideoRenderer;
+    private int glRotation = 0;
+    private GlVideoRenderer.ScaleMode glScaleMode = GlVideoRenderer.ScaleMode.FIT;
     private View shutterView;
+    private SubtitleOverlay subtitleOverlay;
+    private FrameRateMatcher frameRateMatcher;
     private String uri;
 
     DefaultTrackSelector trackSelector;
+    private final CodecPolicy codecPolicy = new CodecPolicy();
+    private final LoadErrorPolicy loadErrorPolicy = new LoadErrorPolicy();
+    private final DownloadController downloadController;
+    // Shared by playback and everything loading ahead of it, it keeps no per-load state
+    private final HttpDataSource.Factory httpDataSourceFactory;
+    private final ManifestPrefetcher manifestPrefetcher;
+    private final TimeshiftBuffer timeshiftBuffer;
+    private final MediaFormatProbe formatProbe;
+    private final CdnRouter cdnRouter;
+    private final OverlayController overlayController;
+    private @Nullable CdnRouter.Session cdnSession = null;
     private SimpleExoPlayer player;
+    private @Nullable MediaSource currentSource = null;
+    private AudioCapabilitiesReceiver audioCapabilitiesReceiver;
+    private @Nullable AudioCapabilities audioCapabilities = null;
+    private @Nullable SwitchableAudioSink audioSink = null;
+    private SeekScheduler seekScheduler;
+    private TrickPlayController trickPlay;
     private boolean playbackStateBeforeSuspend;
-
-    private Format desiredVideoFormat = null;
-    private DRMType drmType = DRMType.NONE;
+    private volatile long hibernateTimeoutMs = DEFAULT_HIBERNATE_TIMEOUT_MS;
+    // Runs lifecycle changes on the player application thread, null while there's no player
+    private volatile @Nullable Handler lifecycleHandler = null;
+    private final Runnable suspendTask = this::suspendPlayback;
+    private final Runnable resumeTask = this::resumePlayback;
+    private final Runnable hibernateTask = this::hibernate;
+    // Accessed on the player application thread only, as is the player
+    private @Nullable HibernatedSession hibernatedSession = null;
+    private boolean restoring = false;
+    // Set when the page is reloaded over a playing player, consumed by the next create()
+    private volatile boolean pageReloaded = false;
+    // Whether the player has outlived a page reload, reported by getSnapshot until the player is destroyed
+    private volatile boolean recovered = false;
+    private @Nullable MediaFormat currentFormat = null;
+
+    // Incremented whenever the source is replaced or dropped, so that a late format probe doesn't prepare a stale one
+    private int sourceGeneration = 0;
+
+    private MediaFormat desiredVideoFormat = null;
+    private DrmType drmType = DrmType.NONE;
     private String drmLicenseServer;
 
-    private PlaybackParameters lastKnownPlaybackParameters = null;
+    private float lastKnownPlaybackRate = Float.NaN;
+
+    private String tracksSnapshot = "[]";
+
+    private TunnelingMode tunnelingMode = TunnelingMode.OFF;
+    private int tunnelingAudioSessionId = C.AUDIO_SESSION_ID_UNSET;
+    private boolean tunnelingActive = false;
+    // Codec of the last selected video track, AUTO tunneling is decided for it
+    private @Nullable String tunnelingVideoMimeType;
+    // Format support of the last track selection as renderers reported it, MappedTrackInfo masks out tunneling support
+    private volatile @Nullable int[][][] rendererFormatSupports = null;
 
     private static final String TAG = "PlayerWebInterface";
 
+    // Long enough for the player to load the manifest right after the race
+    private static final long RACE_MANIFEST_TTL_MS = 10000;
+    private static final long DEFAULT_HIBERNATE_TIMEOUT_MS = 5 * 60 * 1000;
+
     private enum Event {
         ERROR,
         DESTROYED,
@@ -84,33 +183,15 @@ class PlayerWebInterface implements
         SEEK_PROCESSED,
         VOLUME_CHANGED,
         PLAYBACK_RATE_CHANGED,
+        TIMESHIFT_UPDATED,
+        CDN_CHANGED,
+        HIBERNATED,
+        RESTORING,
+        RESTORED,
+        OVERLAY_IDLE_CHANGED,
         ENDED
     }
 
-    private enum Format {
-        AUTO,
-        DASH,
-        HLS,
-        SS,
-        RTMP
-    }
-
-    private enum DRMType {
-        PLAYREADY("playready", C.PLAYREADY_UUID),
-        NONE("none", C.UUID_NIL);
-
-        private final String name;
-        private final UUID uuid;
-
-        DRMType(String name, UUID uuid) {
-            this.name = name;
-            this.uuid = uuid;
-        }
-
-        public String getName() { return name; }
-        public UUID getUUID() { return uuid; }
-    }
-
     private enum InterfaceError {
         UNINITIALIZED (3, "Video is not initialized"),
         MEDIA_ERROR(5, "Media Error"),
@@ -129,40 +210,38 @@ class PlayerWebInterface implements
         public String getMessage() { return message; }
     }
 
-    private enum Orientation {
-        LANDSCAPE (0),
-        LANDSCAPE_INVERSE (180),
-        PORTRAIT (90),
-        PORTRAIT_INVERSE (270);
-
-        public final int angle;
-
-        Orientation(int angle) {
-            this.angle = angle;
-        }
-    }
-
-    private enum ResizeMode {
-        FIT (AspectRatioFrameLayout.RESIZE_MODE_FIT),
-        FILL (AspectRatioFrameLayout.RESIZE_MODE_FILL),
-        DEFAULT (AspectRatioFrameLayout.RESIZE_MODE_FIT),
-        FIXED_HEIGHT (AspectRatioFrameLayout.RESIZE_MODE_FIXED_HEIGHT),
-        FIXED_WIDTH (AspectRatioFrameLayout.RESIZE_MODE_FIXED_WIDTH),
-        FIXED_MIN (-897513599), // Chosen by mashing numpad. Guaranteed to be unique
-        FIXED_MAX (AspectRatioFrameLayout.RESIZE_MODE_FIT);
-
-        public final int mode;
-
-        ResizeMode(int mode) {
-            this.mode = mode;
+    /**
+     * What's needed to resume playback after the player has released its source, see hibernate().
+     */
+    private static final class HibernatedSession {
+        final String uri;
+        final @Nullable MediaFormat format;
+        final DrmType drmType;
+        final @Nullable String drmLicenseServer;
+        final DefaultTrackSelector.Parameters trackParameters;
+        // C.TIME_UNSET to start live streams from the live edge
+        final long positionMs;
+        final boolean playWhenReady;
+
+        HibernatedSession(
+            String uri,
+            @Nullable MediaFormat format,
+            DrmType drmType,
+            @Nullable String drmLicenseServer,
+            DefaultTrackSelector.Parameters trackParameters,
+            long positionMs,
+            boolean playWhenReady
+        ) {
+            this.uri = uri;
+            this.format = format;
+            this.drmType = drmType;
+            this.drmLicenseServer = drmLicenseServer;
+            this.trackParameters = trackParameters;
+            this.positionMs = positionMs;
+            this.playWhenReady = playWhenReady;
         }
     }
 
-    private enum VideoType {
-        SURFACE_VIEW,
-        TEXTURE_VIEW
-    }
-
     PlayerWebInterface(Context aContext) {
         context = aContext;
         Activity mainActivity = (Activity) context;
@@ -172,6 +251,17 @@ class PlayerWebInterface implements
         videoSurfaceView = mainActivity.findViewById(R.id.videoSurfaceView);
         videoTextureView = mainActivity.findViewById(R.id.videoTextureView);
         shutterView = mainActivity.findViewById(R.id.shutter);
+        subtitleOverlay = new SubtitleOverlay(mainActivity, videoContainer, shutterView);
+        frameRateMatcher = new FrameRateMatcher(mainActivity);
+        layoutController = new ViewportLayoutController(viewport, videoContainer);
+        downloadController = DownloadController.getInstance(context);
+        httpDataSourceFactory = new DefaultHttpDataSourceFactory(Util.getUserAgent(context, BuildConfig.APPLICATION_ID));
+        manifestPrefetcher = new ManifestPrefetcher(httpDataSourceFactory, DefaultBandwidthMeter.getSingletonInstance(context));
+        timeshiftBuffer = new TimeshiftBuffer(context, this);
+        formatProbe = new MediaFormatProbe(httpDataSourceFactory);
+        cdnRouter = new CdnRouter(context, httpDataSourceFactory);
+        overlayController = ((MainActivity) context).getOverlayController();
+        overlayController.setListener(this);
         uri = "";
     }
 
@@ -209,28 +299,25 @@ class PlayerWebInterface implements
     private void onFatalError(InterfaceError interfaceError, @Nullable String message) {
         dispatchError(interfaceError, message);
 
-        Log.e(TAG, "Fatal error " + interfaceError + ": " + message);
+        Logger.e(TAG, "Fatal error", interfaceError.name(), message);
 
         if (player != null) {
+            trickPlay.reset();
+            seekScheduler.reset();
+            timeshiftBuffer.detach();
+            sourceGeneration++;
+            cdnSession = null;
+            currentSource = null;
+            hibernatedSession = null;
+            restoring = false;
             player.stop(true);
+            frameRateMatcher.revert();
             hideVideo();
         }
     }
 
     private void onFatalError(InterfaceError interfaceError, Throwable exception) {
-        Throwable cause = null;
-        Throwable result = exception;
-        String message = "";
-
-        while(null != (cause = result.getCause())  && (result != cause) ) {
-            if (result.getMessage() != null) {
-                message += result.getMessage();
-                message += ". ";
-            }
-            result = cause;
-        }
-
-        onFatalError(interfaceError, message);
+        onFatalError(interfaceError, ErrorChain.flatten(exception));
     }
 
     private void onFatalError(InterfaceError interfaceError) {
@@ -246,23 +333,157 @@ class PlayerWebInterface implements
         return true;
     }
 
+    /**
+     * Called when the page is loaded anew after its WebView renderer was lost.
+     * The player keeps playing meanwhile, the reloaded page takes it over with create() and resyncs with getSnapshot().
+     */
+    void onPageReloaded() {
+        pageReloaded = player != null;
+        recovered |= pageReloaded;
+    }
+
+    /**
+     * Called on the main thread, the player is paused on its own thread.
+     */
     void suspend() {
+        // Prefetching is of no use until the application is back
+        manifestPrefetcher.stop();
+
+        // Tasks run in order of posting, so a quick suspend and resume still leaves the player as it was
+        Handler handler = lifecycleHandler;
+        if (handler != null) {
+            handler.post(suspendTask);
+        }
+    }
+
+    /**
+     * Called on the main thread, the player is resumed or restored on its own thread.
+     */
+    void resume() {
+        manifestPrefetcher.start();
+
+        Handler handler = lifecycleHandler;
+        if (handler != null) {
+            handler.post(resumeTask);
+        }
+    }
+
+    /**
+     * Called on the main thread when the activity is destroyed, releases the player if the page left it
+     * and shuts down background work along with caches holding their folders.
+     */
+    void release() {
+        Handler handler = lifecycleHandler;
+        if (handler != null) {
+            handler.post(this::releaseComponents);
+        } else {
+            releaseComponents();
+        }
+    }
+
+    private void releaseComponents() {
+        if (player != null) {
+            destroy();
+        }
+
+        timeshiftBuffer.release();
+        manifestPrefetcher.release();
+        formatProbe.release();
+        cdnRouter.release();
+    }
+
+    private void suspendPlayback() {
         if (player == null) {
             return;
         }
 
         playbackStateBeforeSuspend = player.getPlayWhenReady();
         player.setPlayWhenReady(false);
+
+        // Don't hold decoders other applications might need
+        player.setForegroundMode(false);
+
+        Handler handler = lifecycleHandler;
+        if (hibernateTimeoutMs > 0 && handler != null) {
+            handler.postDelayed(hibernateTask, hibernateTimeoutMs);
+        }
     }
 
-    void resume() {
+    private void resumePlayback() {
         if (player == null) {
             return;
         }
 
+        // Scheduled by the suspend task, which has run by now
+        lifecycleHandler.removeCallbacks(hibernateTask);
+
+        player.setForegroundMode(codecPolicy.isKeepCodecsWarm());
+
+        HibernatedSession session = hibernatedSession;
+        if (session != null) {
+            hibernatedSession = null;
+            restore(session);
+            return;
+        }
+
         player.setPlayWhenReady(playbackStateBeforeSuspend);
     }
 
+    /**
+     * Second tier of suspension: once in background for longer than the hibernate timeout,
+     * the source is released along with codecs and buffers, keeping what's needed to restore it on resume.
+     */
+    private void hibernate() {
+        if (player == null || currentSource == null || player.getPlaybackState() == Player.STATE_IDLE) {
+            return;
+        }
+
+        trickPlay.reset();
+        seekScheduler.reset();
+
+        // Live positions are likely to have left the window by the time playback resumes
+        long positionMs = player.isCurrentWindowDynamic() ? C.TIME_UNSET : player.getCurrentPosition();
+        hibernatedSession = new HibernatedSession(
+            uri,
+            currentFormat,
+            drmType,
+            drmLicenseServer,
+            trackSelector.getParameters(),
+            positionMs,
+            playbackStateBeforeSuspend
+        );
+
+        Log.i(TAG, "Hibernating " + uri + " at " + positionMs);
+
+        timeshiftBuffer.detach();
+        sourceGeneration++;
+        currentSource = null;
+        player.stop(true);
+
+        dispatchEvent(Event.HIBERNATED);
+    }
+
+    private void restore(HibernatedSession session) {
+        Log.i(TAG, "Restoring " + session.uri + " at " + session.positionMs);
+
+        dispatchEvent(Event.RESTORING);
+        restoring = true;
+
+        drmType = session.drmType;
+        drmLicenseServer = session.drmLicenseServer;
+        trackSelector.setParameters(session.trackParameters);
+
+        MediaSource source = generateMediaSource(Uri.parse(session.uri), session.format, drmType, drmLicenseServer);
+        if (session.positionMs != C.TIME_UNSET) {
+            player.seekTo(session.positionMs);
+        }
+        player.prepare(source, session.positionMs == C.TIME_UNSET, true);
+        player.setPlayWhenReady(session.playWhenReady);
+
+        currentSource = source;
+        currentFormat = session.format;
+    }
+
     private void hideVideo() {
         ((Activity)context).runOnUiThread(() -> {
             Log.d(TAG, "Hiding video");
@@ -280,20 +501,134 @@ class PlayerWebInterface implements
     @JavascriptInterface
     public void create() {
         if (player != null) {
+            if (pageReloaded) {
+                // The page lost with the WebView renderer created it, playback has gone on since
+                Log.i(TAG, "Reusing player of the page before reload");
+                pageReloaded = false;
+                return;
+            }
             throw new Error("Can't create more than one video player object");
         }
 
-        trackSelector = new DefaultTrackSelector(context);
-
-        player = new SimpleExoPlayer.Builder(context)
-            .setTrackSelector(trackSelector)
-            .build();
+        StartupTracer.mark("player_create");
+
+        // Receiver reports capabilities of the current audio output right away and follows HDMI audio plugs
+        audioCapabilitiesReceiver = new AudioCapabilitiesReceiver(context, this);
+        audioCapabilities = audioCapabilitiesReceiver.register();
+
+        trackSelector = new DefaultTrackSelector(context) {
+            @Override
+            protected TrackSelection.Definition[] selectAllTracks(
+                MappedTrackInfo mappedTrackInfo,
+                int[][][] formatSupports,
+                int[] mixedMimeTypeAdaptationSupports,
+                Parameters params
+            ) throws ExoPlaybackException {
+                rendererFormatSupports = formatSupports;
+                return super.selectAllTracks(mappedTrackInfo, formatSupports, mixedMimeTypeAdaptationSupports, params);
+            }
+        };
+        player = buildPlayer(trackSelector);
+        lifecycleHandler = new Handler(player.getApplicationLooper());
+        player.setForegroundMode(codecPolicy.isKeepCodecsWarm());
         player.addListener(this);
         player.addVideoListener(this);
         player.addAudioListener(this);
+        player.addTextOutput(subtitleOverlay);
         player.setPlayWhenReady(false);
+        seekScheduler = new SeekScheduler(player);
+        trickPlay = new TrickPlayController(player, trackSelector, seekScheduler, this);
+        overlayController.setPlayer(player);
         switchToSurfaceView();
         hideVideo();
+
+        StartupTracer.mark("player_created");
+    }
+
+    /**
+     * Overridden in tests to substitute a fake player.
+     */
+    @VisibleForTesting
+    SimpleExoPlayer buildPlayer(DefaultTrackSelector trackSelector) {
+        DefaultRenderersFactory renderersFactory = new DefaultRenderersFactory(context) {
+            @Override
+            protected void buildAudioRenderers(
+                Context context,
+                int extensionRendererMode,
+                MediaCodecSelector mediaCodecSelector,
+                @Nullable DrmSessionManager<FrameworkMediaCrypto> drmSessionManager,
+                boolean playClearSamplesWithoutKeys,
+                boolean enableDecoderFallback,
+                AudioProcessor[] audioProcessors,
+                Handler eventHandler,
+                AudioRendererEventListener eventListener,
+                ArrayList<Renderer> out
+            ) {
+                // Extension audio renderers are not bundled, the only one is backed by MediaCodec
+                audioSink = new SwitchableAudioSink(audioCapabilities, audioProcessors);
+                out.add(new MediaCodecAudioRenderer(
+                    context,
+                    mediaCodecSelector,
+                    drmSessionManager,
+                    playClearSamplesWithoutKeys,
+                    enableDecoderFallback,
+                    eventHandler,
+                    eventListener,
+                    audioSink
+                ));
+            }
+        }
+            .setMediaCodecSelector(codecPolicy)
+            .setEnableDecoderFallback(codecPolicy.isDecoderFallbackEnabled());
+
+        return new SimpleExoPlayer.Builder(context, renderersFactory)
+            .setTrackSelector(trackSelector)
+            .build();
+    }
+
+    /**
+     * Can be called before create(), decoder fallback setting only applies to players created afterwards.
+     */
+    @JavascriptInterface
+    public void setCodecPolicy(String policyJson) {
+        Log.d(TAG, "setCodecPolicy " + policyJson);
+
+        try {
+            codecPolicy.update(policyJson);
+        } catch (JSONException e) {
+            Logger.w(TAG, "Failed to parse codec policy", e.getMessage());
+            return;
+        }
+
+        if (player != null) {
+            // Foreground mode keeps renderers and their codecs enabled between sources
+            player.setForegroundMode(codecPolicy.isKeepCodecsWarm());
+        }
+    }
+
+    /**
+     * Can be called before create(), changes apply to loads failing afterwards.
+     */
+    @JavascriptInterface
+    public void setLoadErrorPolicy(String policyJson) {
+        Log.d(TAG, "setLoadErrorPolicy " + policyJson);
+
+        try {
+            loadErrorPolicy.update(policyJson);
+        } catch (JSONException e) {
+            Logger.w(TAG, "Failed to parse load error policy", e.getMessage());
+        }
+    }
+
+    /**
+     * Can be called before create(), applies from the next time the application goes to background.
+     * @param timeoutMs Time in background after which the player releases its source until resumed, 0 to only pause
+     */
+    @JavascriptInterface
+    public void setHibernateTimeout(long timeoutMs) {
+        Log.d(TAG, "setHibernateTimeout " + timeoutMs);
+
+        hibernateTimeoutMs = Math.max(0, timeoutMs);
     }
 
     @JavascriptInterface
@@ -308,14 +643,16 @@ class PlayerWebInterface implements
             return;
         }
 
-        VideoType type;
-
-        try {
-            type = VideoType.valueOf(typeString.toUpperCase(Locale.US));
-        } catch (IllegalArgumentException e) {
-            Log.w(TAG, "Failed to parse video type \"" + typeString + "\", defaulting to " + VideoType.SURFACE_VIEW);
+        VideoType type = EnumParser.parse(VideoType.class, typeString);
+        if (type == null) {
+            Logger.w(TAG, "Failed to parse video type, defaulting to SURFACE_VIEW", typeString);
             type = VideoType.SURFACE_VIEW;
         }
+        if (type == VideoType.GL_SURFACE && drmType != DrmType.NONE) {
+            // Protected output can only go to a secure surface, GL can't sample from it
+            onFatalError(InterfaceError.MEDIA_ERROR, "GL composited surface can't render DRM protected content.");
+            return;
+        }
 
         switch (type) {
             case TEXTURE_VIEW:
@@ -324,6 +661,9 @@ class PlayerWebInterface implements
             case SURFACE_VIEW:
                 switchToSurfaceView();
                 break;
+            case GL_SURFACE:
+                switchToGlSurface();
+                break;
             default:
                 Log.wtf(TAG, "Unknown video type " + type);
         }
@@ -333,6 +673,8 @@ class PlayerWebInterface implements
     public String getVideoType() {
         if (currentVideoView == videoTextureView) {
             return VideoType.TEXTURE_VIEW.toString();
+        } else if (currentVideoView == videoSurfaceView && glVideoRenderer != null) {
+            return VideoType.GL_SURFACE.toString();
         } else if (currentVideoView == videoSurfaceView) {
             return VideoType.SURFACE_VIEW.toString();
         } else {
@@ -342,20 +684,24 @@ class PlayerWebInterface implements
     }
 
     private void switchToSurfaceView() {
-        if (currentVideoView == videoSurfaceView) {
+        if (currentVideoView == videoSurfaceView && glVideoRenderer == null) {
             return;
         }
         Log.d(TAG, "Switching to SurfaceView");
 
+        releaseGlRenderer();
+
         player.clearVideoTextureView(videoTextureView);
         player.setVideoTextureView(null);
         player.setVideoSurfaceView(videoSurfaceView);
         currentVideoView = videoSurfaceView;
+        applyTunnelingMode();
+
+        layoutController.setRotation(0);
 
         ((Activity) context).runOnUiThread(() -> {
             videoSurfaceView.setVisibility(View.VISIBLE);
             videoTextureView.setVisibility(View.GONE);
-            videoContainer.setRotation(0);
         });
     }
 
@@ -365,10 +711,13 @@ class PlayerWebInterface implements
         }
         Log.d(TAG, "Switching to TextureView");
 
+        releaseGlRenderer();
+
         player.clearVideoSurfaceView(videoSurfaceView);
         player.setVideoSurfaceView(null);
         player.setVideoTextureView(videoTextureView);
         currentVideoView = videoTextureView;
+        applyTunnelingMode();
 
         ((Activity)context).runOnUiThread(() -> {
             videoTextureView.setVisibility(View.VISIBLE);
@@ -376,15 +725,199 @@ class PlayerWebInterface implements
         });
     }
 
+    private void switchToGlSurface() {
+        if (glVideoRenderer != null) {
+            return;
+        }
+        Log.d(TAG, "Switching to GL composited SurfaceView");
+
+        player.clearVideoTextureView(videoTextureView);
+        player.clearVideoSurfaceView(videoSurfaceView);
+
+        glVideoRenderer = new GlVideoRenderer(videoSurfaceView);
+        glVideoRenderer.setTransform(glRotation, glScaleMode);
+        player.setVideoSurface(glVideoRenderer.start());
+        currentVideoView = videoSurfaceView;
+        applyTunnelingMode();
+
+        // Rotation and scaling happen in GL, container just fills the viewport
+        layoutController.setRotation(0);
+        layoutController.setAspectRatio(0);
+
+        ((Activity) context).runOnUiThread(() -> {
+            videoSurfaceView.setVisibility(View.VISIBLE);
+            videoTextureView.setVisibility(View.GONE);
+        });
+    }
+
+    private void releaseGlRenderer() {
+        if (glVideoRenderer == null) {
+            return;
+        }
+
+        player.clearVideoSurface();
+        glVideoRenderer.release();
+        glVideoRenderer = null;
+    }
+
     @JavascriptInterface
-    public void setMediaType(String formatString) {
-        Format format;
+    public void setTunnelingMode(String modeString) {
+        Log.d(TAG, "Requested tunneling mode " + modeString);
+
+        if (!assertPlayer()) {
+            return;
+        }
+
+        TunnelingMode mode = EnumParser.parse(TunnelingMode.class, modeString);
+        if (mode == null) {
+            Logger.w(TAG, "Failed to parse tunneling mode, defaulting to OFF", modeString);
+            mode = TunnelingMode.OFF;
+        }
+
+        tunnelingMode = mode;
+        applyTunnelingMode();
+    }
 
+    @JavascriptInterface
+    public String getTunnelingMode() {
+        return tunnelingMode.toString();
+    }
+
+    /**
+     * Whether tunneled playback is actually used for current tracks.
+     * Track selector silently falls back to regular playback when selected tracks can't be tunneled.
+     */
+    @JavascriptInterface
+    public boolean isTunnelingActive() {
+        return tunnelingActive;
+    }
+
+    private void applyTunnelingMode() {
+        // GL composition needs decoder output in a SurfaceTexture which tunneled playback bypasses
+        boolean enable = Util.SDK_INT >= 21 && currentVideoView == videoSurfaceView && glVideoRenderer == null;
+
+        switch (tunnelingMode) {
+            case OFF:
+                enable = false;
+                break;
+            case AUTO:
+                // Until a video track is selected, the most common codec stands in for it
+                String mimeType = tunnelingVideoMimeType != null ? tunnelingVideoMimeType : MimeTypes.VIDEO_H264;
+                enable = enable && hasTunnelingDecoder(mimeType, drmType != DrmType.NONE);
+                break;
+        }
+
+        if (enable && tunnelingAudioSessionId == C.AUDIO_SESSION_ID_UNSET) {
+            tunnelingAudioSessionId = C.generateAudioSessionIdV21(context);
+        }
+
+        int sessionId = enable ? tunnelingAudioSessionId : C.AUDIO_SESSION_ID_UNSET;
+        if (trackSelector.getParameters().tunnelingAudioSessionId != sessionId) {
+            Log.d(TAG, (enable ? "Enabling" : "Disabling") + " tunneled playback");
+            trackSelector.setParameters(trackSelector.buildUponParameters().setTunnelingAudioSessionId(sessionId));
+        }
+    }
+
+    /**
+     * Repeats the decision DefaultTrackSelector makes when configuring renderers:
+     * tunneling is used when exactly one audio and one video renderer have tracks selected
+     * and each of the selected tracks is supported by its renderer in tunneled mode.
+     */
+    private void updateTunnelingActive(
+        @Nullable MappingTrackSelector.MappedTrackInfo mappedTrackInfo,
+        TrackSelectionArray trackSelections
+    ) {
+        boolean active = false;
+        int[][][] formatSupports = rendererFormatSupports;
+
+        if (
+            trackSelector.getParameters().tunnelingAudioSessionId != C.AUDIO_SESSION_ID_UNSET &&
+            mappedTrackInfo != null &&
+            formatSupports != null &&
+            formatSupports.length == mappedTrackInfo.getRendererCount()
+        ) {
+            int audioRenderers = 0;
+            int videoRenderers = 0;
+            boolean supported = true;
+
+            for (int rendererIndex = 0; rendererIndex < trackSelections.length; rendererIndex++) {
+                TrackSelection selection = trackSelections.get(rendererIndex);
+                int rendererType = mappedTrackInfo.getRendererType(rendererIndex);
+                if (selection == null || (rendererType != C.TRACK_TYPE_AUDIO && rendererType != C.TRACK_TYPE_VIDEO)) {
+                    continue;
+                }
+
+                if (rendererType == C.TRACK_TYPE_AUDIO) {
+                    audioRenderers++;
+                } else {
+                    videoRenderers++;
+                }
+
+                int groupIndex = mappedTrackInfo.getTrackGroups(rendererIndex).indexOf(selection.getTrackGroup());
+                for (int i = 0; i < selection.length() && groupIndex != C.INDEX_UNSET; i++) {
+                    int support = formatSupports[rendererIndex][groupIndex][selection.getIndexInTrackGroup(i)];
+                    supported &= (support & RendererCapabilities.TUNNELING_SUPPORT_MASK) == RendererCapabilities.TUNNELING_SUPPORTED;
+                }
+            }
+
+            active = supported && audioRenderers == 1 && videoRenderers == 1;
+        }
+
+        if (active != tunnelingActive) {
+            Log.d(TAG, "Tunneled playback " + (active ? "active" : "inactive"));
+        }
+        tunnelingActive = active;
+    }
+
+    private static @Nullable Format getSelectedFormat(TrackSelectionArray trackSelections, int trackType) {
+        for (int i = 0; i < trackSelections.length; i++) {
+            TrackSelection selection = trackSelections.get(i);
+            if (selection == null) {
+                continue;
+            }
+
+            Format format = selection.getSelectedFormat();
+            if (MimeTypes.getTrackType(format.sampleMimeType) == trackType) {
+                return format;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean hasTunnelingDecoder(String mimeType, boolean secure) {
         try {
-            format = Format.valueOf(formatString.toUpperCase(Locale.US));
-        } catch (IllegalArgumentException e) {
-            Log.w(TAG, "Failed to parse video format \"" + formatString + "\", defaulting to " + Format.AUTO);
-            format = Format.AUTO;
+            return MediaCodecUtil.getDecoderInfo(mimeType, secure, true) != null;
+        } catch (MediaCodecUtil.DecoderQueryException e) {
+            Logger.w(TAG, "Failed to query tunneling decoder for", mimeType, e.getMessage());
+            return false;
+        }
+    }
+
+    @JavascriptInterface
+    public void setFrameRateMatching(String modeString) {
+        Log.d(TAG, "Requested frame rate matching " + modeString);
+
+        FrameRateMatching mode = EnumParser.parse(FrameRateMatching.class, modeString);
+        if (mode == null) {
+            Logger.w(TAG, "Failed to parse frame rate matching mode, defaulting to OFF", modeString);
+            mode = FrameRateMatching.OFF;
+        }
+
+        frameRateMatcher.setMode(mode);
+    }
+
+    @JavascriptInterface
+    public String getFrameRateMatching() {
+        return frameRateMatcher.getMode().toString();
+    }
+
+    @JavascriptInterface
+    public void setMediaType(String formatString) {
+        MediaFormat format = EnumParser.parse(MediaFormat.class, formatString);
+        if (format == null) {
+            Logger.w(TAG, "Failed to parse video format, defaulting to AUTO", formatString);
+            format = MediaFormat.AUTO;
         }
 
         desiredVideoFormat = format;
@@ -396,13 +929,21 @@ class PlayerWebInterface implements
             return;
         }
 
-        try {
-            drmType = DRMType.valueOf(drmString.toUpperCase(Locale.US));
-            drmLicenseServer = licenseServer;
-        } catch (IllegalArgumentException e) {
-            Log.w(TAG, "Failed to parse drm type \"" + drmString);
-            drmType = DRMType.NONE;
+        DrmType type = EnumParser.parse(DrmType.class, drmString);
+        if (type == null) {
+            Logger.w(TAG, "Failed to parse drm type", drmString);
+            drmType = DrmType.NONE;
+            return;
+        }
+        if (type != DrmType.NONE && glVideoRenderer != null) {
+            onFatalError(InterfaceError.MEDIA_ERROR, "GL composited surface can't render DRM protected content.");
+            return;
         }
+
+        drmType = type;
+        drmLicenseServer = licenseServer;
+        // Protected content needs a secure tunneling decoder
+        applyTunnelingMode();
     }
 
     @JavascriptInterface
@@ -411,13 +952,157 @@ class PlayerWebInterface implements
             return;
         }
 
-        Log.d(TAG, "Playing " + uriString);
+        Logger.d(TAG, "Playing", uriString);
+        StartupTracer.mark("set_video_uri");
 
         final Uri uri = Uri.parse(uriString);
-        final MediaSource source = generateMediaSource(uri, desiredVideoFormat, drmType, drmLicenseServer);
 
-        player.prepare(source);
+        resetSource();
         this.uri = uriString;
+
+        int generation = ++sourceGeneration;
+        MediaFormat format = desiredVideoFormat;
+
+        if ((format == null || format == MediaFormat.AUTO) &&
+            MediaFormatProbe.isProbeNeeded(uri) &&
+            downloadController.getCompletedDownload(uriString) == null) {
+            MediaFormat probedFormat = formatProbe.getCached(uri);
+            if (probedFormat == null) {
+                Log.d(TAG, "Probing stream format");
+
+                Handler handler = new Handler(player.getApplicationLooper());
+                formatProbe.probe(uri, resolvedFormat -> handler.post(() -> {
+                    // Another source may have been set, or playback stopped, while probing
+                    if (player != null && generation == sourceGeneration) {
+                        StartupTracer.mark("format_probed");
+                        prepareSource(uri, resolvedFormat);
+                    }
+                }));
+                return;
+            }
+            format = probedFormat;
+        }
+
+        prepareSource(uri, format);
+    }
+
+    /**
+     * Plays a stream available from several CDNs from the one that delivers its manifest first,
+     * switching to another one during playback if it fails or degrades, see CdnRouter.
+     * The serving CDN is reported with the cdn_changed event.
+     * @param candidatesJson Array of uris or {uri, cdn} objects, cdn names the CDN to keep health scores for
+     *                       and defaults to the uri host
+     */
+    @JavascriptInterface
+    public void setVideoURIs(String candidatesJson) {
+        if (!assertPlayer()) {
+            return;
+        }
+
+        List<CdnRouter.Candidate> candidates = new ArrayList<>();
+        try {
+            JSONArray json = new JSONArray(candidatesJson);
+            for (int i = 0; i < json.length(); i++) {
+                JSONObject candidate = json.optJSONObject(i);
+                if (candidate != null) {
+                    candidates.add(new CdnRouter.Candidate(candidate.getString("uri"), candidate.optString("cdn", null)));
+                } else {
+                    candidates.add(new CdnRouter.Candidate(json.getString(i), null));
+                }
+            }
+        } catch (JSONException e) {
+            Logger.w(TAG, "Failed to parse video uris", e.getMessage());
+            return;
+        }
+
+        if (candidates.isEmpty()) {
+            Logger.w(TAG, "No video uris to play");
+            return;
+        }
+
+        if (candidates.size() == 1) {
+            setVideoURI(candidates.get(0).uri);
+            return;
+        }
+
+        Log.d(TAG, "Racing " + candidates.size() + " CDNs");
+        StartupTracer.mark("set_video_uri");
+
+        resetSource();
+        this.uri = candidates.get(0).uri;
+
+        int generation = ++sourceGeneration;
+        List<CdnRouter.Candidate> rankedCandidates = cdnRouter.rank(candidates);
+        Handler handler = new Handler(player.getApplicationLooper());
+
+        cdnRouter.race(rankedCandidates, (winner, manifest) -> handler.post(() -> {
+            // Another source may have been set, or playback stopped, while racing
+            if (player == null || generation != sourceGeneration) {
+                return;
+            }
+
+            if (winner == null) {
+                onFatalError(InterfaceError.MEDIA_ERROR, "None of the CDNs responded");
+                return;
+            }
+
+            StartupTracer.mark("cdn_race_won");
+
+            // The winning manifest is served to the player instead of being fetched again
+            long nowMs = SystemClock.elapsedRealtime();
+            manifestPrefetcher.getCache().put(winner.uri, manifest, nowMs + RACE_MANIFEST_TTL_MS, nowMs);
+
+            MediaFormat format = desiredVideoFormat;
+            if (format == null || format == MediaFormat.AUTO) {
+                format = MediaFormat.detect(winner.uri);
+                if (format == MediaFormat.AUTO) {
+                    format = MediaFormat.sniff(manifest, manifest.length);
+                }
+            }
+
+            this.uri = winner.uri;
+            cdnSession = cdnRouter.createSession(rankedCandidates, winner, this);
+            prepareSource(Uri.parse(winner.uri), format);
+            onCdnChanged(winner.cdn, winner.uri, "race");
+        }));
+    }
+
+    /**
+     * @return Name of the CDN serving the stream set with setVideoURIs or an empty string
+     */
+    @JavascriptInterface
+    public String getVideoCDN() {
+        CdnRouter.Session session = cdnSession;
+        return session != null ? session.getActive().cdn : "";
+    }
+
+    /**
+     * @return JSON object with health scores of CDNs seen by setVideoURIs, kept across sessions
+     */
+    @JavascriptInterface
+    public String getCDNHealth() {
+        return cdnRouter.getHealth();
+    }
+
+    private void resetSource() {
+        trickPlay.reset();
+        seekScheduler.reset();
+        tracksSnapshot = "[]";
+        subtitleOverlay.clear();
+        frameRateMatcher.onSourceChanged();
+        cdnSession = null;
+        hibernatedSession = null;
+        restoring = false;
+    }
+
+    private void prepareSource(Uri uri, @Nullable MediaFormat format) {
+        final MediaSource source = generateMediaSource(uri, format, drmType, drmLicenseServer);
+        manifestPrefetcher.setPlaying(uri.toString());
+
+        player.prepare(source);
+        currentSource = source;
+        currentFormat = format;
+        StartupTracer.mark("source_prepare");
     }
 
     @JavascriptInterface
@@ -425,34 +1110,120 @@ class PlayerWebInterface implements
         return uri;
     }
 
-    private MediaSource generateMediaSource(Uri uri, Format format, DRMType drm, String licenseServer) {
+    /**
+     * Manifests of listed streams are fetched in background and used by setVideoURI while still valid.
+     * Can be called before create().
+     * @param targetsJson Array of uris or {uri, type} objects in order of priority, type is one of MediaFormat values
+     */
+    @JavascriptInterface
+    public void setPrefetchURIs(String targetsJson) {
+        Map<String, MediaFormat> targets = new LinkedHashMap<>();
+
+        try {
+            JSONArray json = new JSONArray(targetsJson);
+            for (int i = 0; i < json.length(); i++) {
+                JSONObject target = json.optJSONObject(i);
+                String targetUri = target != null ? target.getString("uri") : json.getString(i);
+
+                MediaFormat format = target != null ? EnumParser.parse(MediaFormat.class, target.optString("type")) : null;
+                if (format == null || format == MediaFormat.AUTO) {
+                    format = MediaFormat.detect(targetUri);
+                }
+                if (format == MediaFormat.AUTO) {
+                    // Streams of a CDN probed before
+                    MediaFormat probedFormat = formatProbe.getCached(Uri.parse(targetUri));
+                    if (probedFormat != null) {
+                        format = probedFormat;
+                    }
+                }
+
+                targets.put(targetUri, format);
+            }
+        } catch (JSONException e) {
+            Logger.w(TAG, "Failed to parse prefetch uris", e.getMessage());
+            return;
+        }
+
+        manifestPrefetcher.setTargets(targets);
+    }
+
+    /**
+     * Live HLS streams set afterwards are recorded to local storage while they play,
+     * so that pausing and seeking back within the recorded window doesn't depend on the CDN.
+     * Can be called before create().
+     * @param optionsJson {enabled, maxDurationMs, maxBytes, maxWriteBytesPerHour} with omitted limits taking defaults,
+     *                    writes stop for the rest of an hour once maxWriteBytesPerHour is reached, 0 for unlimited
+     */
+    @JavascriptInterface
+    public void setTimeshift(String optionsJson) {
+        JSONObject options;
+        try {
+            options = new JSONObject(optionsJson);
+        } catch (JSONException e) {
+            Logger.w(TAG, "Failed to parse timeshift options", e.getMessage());
+            return;
+        }
+
+        timeshiftBuffer.configure(
+            options.optBoolean("enabled", true),
+            options.optLong("maxDurationMs", TimeshiftBuffer.DEFAULT_MAX_DURATION_MS),
+            options.optLong("maxBytes", TimeshiftBuffer.DEFAULT_MAX_BYTES),
+            options.optLong("maxWriteBytesPerHour", TimeshiftBuffer.DEFAULT_MAX_WRITE_BYTES_PER_HOUR)
+        );
+    }
+
+    /**
+     * @return JSON object with options set by setTimeshift and the fill state of the current stream's buffer
+     */
+    @JavascriptInterface
+    public String getTimeshiftState() {
+        return timeshiftBuffer.getState();
+    }
+
+    private static UUID getDrmUuid(DrmType drm) {
+        return drm == DrmType.PLAYREADY ? C.PLAYREADY_UUID : C.UUID_NIL;
+    }
+
+    private MediaSource generateMediaSource(Uri uri, MediaFormat format, DrmType drm, String licenseServer) {
         Log.d(TAG, "Generating media source for " + (format == null ? "automatic" : format));
 
-        String userAgent = Util.getUserAgent(context, BuildConfig.APPLICATION_ID);
-        HttpDataSource.Factory dataSourceFactory = new DefaultHttpDataSourceFactory(userAgent);
-
-        if (format == null || format == Format.AUTO) {
-            String uriString = uri.toString().toLowerCase();
-            if (uriString.endsWith(".m3u8")) {
-                format = Format.HLS;
-            } else if (uriString.endsWith(".mpd")) {
-                format = Format.DASH;
-            } else if (uriString.startsWith("rtmp://")) {
-                format = Format.RTMP;
-            } else  if (uriString.endsWith(".ism") || uriString.endsWith(".isml")) {
-                format = Format.SS;
-            } else {
-                format = Format.AUTO;
+        DataSource.Factory dataSourceFactory = httpDataSourceFactory;
+        List<StreamKey> streamKeys = Collections.emptyList();
+
+        DownloadRequest download = downloadController.getCompletedDownload(uri.toString());
+        if (download != null) {
+            // Downloaded renditions are played from local storage, format is known from the download
+            dataSourceFactory = downloadController.buildReadOnlyDataSourceFactory(httpDataSourceFactory);
+            streamKeys = download.streamKeys;
+            format = DownloadController.getMediaFormat(download);
+
+            Log.d(TAG, "Playing downloaded " + format + " with " + streamKeys.size() + " streams");
+        } else {
+            DataSource.Factory networkDataSourceFactory = httpDataSourceFactory;
+            if (cdnSession != null) {
+                networkDataSourceFactory = new CdnFailoverDataSource.Factory(httpDataSourceFactory, cdnSession);
+            }
+            dataSourceFactory = new ManifestCacheDataSource.Factory(networkDataSourceFactory, manifestPrefetcher.getCache());
+
+            if (format == null || format == MediaFormat.AUTO) {
+                format = MediaFormat.detect(uri.toString());
+
+                Log.d(TAG, "Guessed stream format to be " + format);
             }
+        }
 
-            Log.d(TAG, "Guessed stream format to be " + format);
+        if (download == null && format == MediaFormat.HLS && timeshiftBuffer.isEnabled()) {
+            dataSourceFactory = timeshiftBuffer.attach(uri, dataSourceFactory);
+        } else {
+            timeshiftBuffer.detach();
         }
 
         DefaultDrmSessionManager drmManager = null;
-        if (drm != DRMType.NONE) {
-            HttpMediaDrmCallback drmCallback = new HttpMediaDrmCallback(licenseServer, dataSourceFactory);
+        if (drm != DrmType.NONE) {
+            HttpMediaDrmCallback drmCallback = new HttpMediaDrmCallback(licenseServer, httpDataSourceFactory);
             drmManager = new DefaultDrmSessionManager.Builder()
-                .setUuidAndExoMediaDrmProvider(drm.getUUID(), FrameworkMediaDrm.DEFAULT_PROVIDER)
+                .setUuidAndExoMediaDrmProvider(getDrmUuid(drm), FrameworkMediaDrm.DEFAULT_PROVIDER)
+                .setLoadErrorHandlingPolicy(loadErrorPolicy)
                 .build(drmCallback);
         }
 
@@ -462,27 +1233,34 @@ class PlayerWebInterface implements
                 if (drmManager != null) {
                     dashFactory.setDrmSessionManager(drmManager);
                 }
+                dashFactory.setLoadErrorHandlingPolicy(loadErrorPolicy);
+                dashFactory.setStreamKeys(streamKeys);
                 return dashFactory.createMediaSource(uri);
             case HLS:
                 HlsMediaSource.Factory hlsFactory = new HlsMediaSource.Factory(dataSourceFactory);
                 if (drmManager != null) {
                     hlsFactory.setDrmSessionManager(drmManager);
                 }
+                hlsFactory.setLoadErrorHandlingPolicy(loadErrorPolicy);
+                hlsFactory.setStreamKeys(streamKeys);
                 return hlsFactory.createMediaSource(uri);
             case SS:
                 SsMediaSource.Factory ssFactory = new SsMediaSource.Factory(dataSourceFactory);
                 if (drmManager != null) {
                     ssFactory.setDrmSessionManager(drmManager);
                 }
+                ssFactory.setLoadErrorHandlingPolicy(loadErrorPolicy);
+                ssFactory.setStreamKeys(streamKeys);
                 return ssFactory.createMediaSource(uri);
             case RTMP:
-                Log.e(TAG, "Unsupported format " + format); // TODO
+                Logger.e(TAG, "Unsupported format", format.name()); // TODO
             case AUTO:
             default: {
                 ProgressiveMediaSource.Factory factory = new ProgressiveMediaSource.Factory(dataSourceFactory);
                 if (drmManager != null) {
                     factory.setDrmSessionManager(drmManager);
                 }
+                factory.setLoadErrorHandlingPolicy(loadErrorPolicy);
                 return factory.createMediaSource(uri);
             }
         }
@@ -494,6 +1272,7 @@ class PlayerWebInterface implements
             return;
         }
 
+        trickPlay.stop();
         player.setPlayWhenReady(true);
     }
 
@@ -503,6 +1282,7 @@ class PlayerWebInterface implements
             return;
         }
 
+        trickPlay.stop();
         player.setPlayWhenReady(false);
     }
 
@@ -512,7 +1292,17 @@ class PlayerWebInterface implements
             return;
         }
 
+        trickPlay.reset();
+        seekScheduler.reset();
+        timeshiftBuffer.detach();
+        sourceGeneration++;
+        cdnSession = null;
+        currentSource = null;
+        hibernatedSession = null;
+        restoring = false;
         player.stop(true);
+        subtitleOverlay.clear();
+        frameRateMatcher.revert();
         hideVideo();
     }
 
@@ -522,6 +1312,8 @@ class PlayerWebInterface implements
             return;
         }
 
+        trickPlay.reset();
+        seekScheduler.reset();
         player.stop();
         player.seekToDefaultPosition();
         player.setPlayWhenReady(true);
@@ -557,7 +1349,50 @@ class PlayerWebInterface implements
             return;
         }
 
-        player.seekTo(time);
+        trickPlay.stop();
+        seekScheduler.seekTo(time);
+    }
+
+    @JavascriptInterface
+    public void setSeekMode(String modeString) {
+        if (!assertPlayer()) {
+            return;
+        }
+
+        SeekMode mode = EnumParser.parse(SeekMode.class, modeString);
+        if (mode == null) {
+            Logger.w(TAG, "Failed to parse seek mode, defaulting to EXACT", modeString);
+            mode = SeekMode.EXACT;
+        }
+
+        seekScheduler.setMode(mode);
+    }
+
+    @JavascriptInterface
+    public String getSeekMode() {
+        if (!assertPlayer()) {
+            return "";
+        }
+
+        return seekScheduler.getMode().toString();
+    }
+
+    @JavascriptInterface
+    public void scrubStart() {
+        if (!assertPlayer()) {
+            return;
+        }
+
+        seekScheduler.scrubStart();
+    }
+
+    @JavascriptInterface
+    public void scrubEnd() {
+        if (!assertPlayer()) {
+            return;
+        }
+
+        seekScheduler.scrubEnd();
     }
 
     @JavascriptInterface
@@ -566,6 +1401,10 @@ class PlayerWebInterface implements
             return 1f;
         }
 
+        if (trickPlay.isActive()) {
+            return trickPlay.getRate();
+        }
+
         PlaybackParameters parameters = player.getPlaybackParameters();
         return parameters.speed;
     }
@@ -576,6 +1415,21 @@ class PlayerWebInterface implements
             return;
         }
 
+        if (rate == 0) {
+            Logger.w(TAG, "Playback rate of 0 is not supported, use pause instead");
+            return;
+        }
+
+        if (TrickPlayController.requiresTrickPlay(rate)) {
+            dispatchPlaybackRateChanged(trickPlay.start(rate));
+            return;
+        }
+
+        if (trickPlay.isActive()) {
+            trickPlay.stop();
+            dispatchPlaybackRateChanged(trickPlay.getRate());
+        }
+
         PlaybackParameters currentParameters = player.getPlaybackParameters();
         PlaybackParameters newParameters = new PlaybackParameters(
             rate,
@@ -615,13 +1469,42 @@ class PlayerWebInterface implements
             return;
         }
 
+        trickPlay.reset();
+        player.removeTextOutput(subtitleOverlay);
+        subtitleOverlay.clear();
+        frameRateMatcher.revert();
+        timeshiftBuffer.detach();
+        manifestPrefetcher.clear();
+        releaseGlRenderer();
+        glRotation = 0;
+        glScaleMode = GlVideoRenderer.ScaleMode.FIT;
         player.release();
+        audioCapabilitiesReceiver.unregister();
+        overlayController.setPlayer(null);
+        overlayController.setPlaying(false);
         uri = "";
         player = null;
+        currentSource = null;
+        audioSink = null;
+        if (lifecycleHandler != null) {
+            lifecycleHandler.removeCallbacks(suspendTask);
+            lifecycleHandler.removeCallbacks(resumeTask);
+            lifecycleHandler.removeCallbacks(hibernateTask);
+            lifecycleHandler = null;
+        }
+        hibernatedSession = null;
+        restoring = false;
+        pageReloaded = false;
+        recovered = false;
+        seekScheduler = null;
+        trickPlay = null;
         currentVideoView = null;
 
         desiredVideoFormat = null;
-        drmType = DRMType.NONE;
+        tracksSnapshot = "[]";
+        tunnelingMode = TunnelingMode.OFF;
+        tunnelingActive = false;
+        drmType = DrmType.NONE;
         drmLicenseServer = null;
 
         dispatchEvent(Event.DESTROYED);
@@ -633,15 +1516,37 @@ class PlayerWebInterface implements
             return;
         }
 
-        Log.d(TAG, "setArea " + x + " " + y + " " + width + " " + height);
+        Logger.d(TAG, "setArea {} {} {} {}", x, y, width, height);
 
-        ((Activity)context).runOnUiThread(() -> {
-            ViewGroup.LayoutParams surfaceParams = viewport.getLayoutParams();
-            surfaceParams.width = width;
-            surfaceParams.height = height;
-            ((ViewGroup.MarginLayoutParams)surfaceParams).setMargins(x, y, 0, 0);
-            viewport.requestLayout();
-        });
+        layoutController.setArea(x, y, width, height);
+    }
+
+    /**
+     * Takes the page out of composition while it shows nothing over fullscreen video, see OverlayController.
+     * Any input brings it back.
+     */
+    @JavascriptInterface
+    public void setOverlayIdle(boolean idle) {
+        overlayController.setIdle(idle);
+    }
+
+    /**
+     * @param timeoutMs Time without input during fullscreen playback after which the page is taken out of composition,
+     *                  0 to only do that on setOverlayIdle
+     */
+    @JavascriptInterface
+    public void setOverlayAutoIdle(long timeoutMs) {
+        Log.d(TAG, "setOverlayAutoIdle " + timeoutMs);
+
+        overlayController.setAutoIdleTimeout(timeoutMs);
+    }
+
+    /**
+     * @return JSON object with composed UI frames and decoded video frames while the page is shown and idle
+     */
+    @JavascriptInterface
+    public String getOverlayStats() {
+        return overlayController.getStats();
     }
 
     @JavascriptInterface
@@ -650,52 +1555,28 @@ class PlayerWebInterface implements
             return;
         }
 
-        Orientation orientation;
-        try {
-            orientation = Orientation.valueOf(orientationString.toUpperCase(Locale.US));
-        } catch (IllegalArgumentException e) {
-            Log.w(TAG, "Failed to parse orientation  \"" + orientationString + "\", defaulting to " + Orientation.LANDSCAPE);
+        Orientation orientation = EnumParser.parse(Orientation.class, orientationString);
+        if (orientation == null) {
+            Logger.w(TAG, "Failed to parse orientation, defaulting to LANDSCAPE", orientationString);
             orientation = Orientation.LANDSCAPE;
         }
 
-        if (currentVideoView == videoSurfaceView && orientation != Orientation.LANDSCAPE) {
-            Log.w(TAG, "Trying to rotate SurfaceView - this isn't going to work.");
-            return;
-        }
+        if (glVideoRenderer != null) {
+            Log.d(TAG, "Rotating GL surface to " + orientation.angle);
 
-        int horizontalDimension = 0,
-                verticalDimension = 0;
-        switch (orientation) {
-            case PORTRAIT:
-            case PORTRAIT_INVERSE:
-                horizontalDimension = videoContainer.getHeight();
-                verticalDimension = videoContainer.getWidth();
-                break;
-            case LANDSCAPE:
-            case LANDSCAPE_INVERSE:
-                horizontalDimension = videoContainer.getWidth();
-                verticalDimension = videoContainer.getHeight();
-                break;
+            glRotation = orientation.angle;
+            glVideoRenderer.setTransform(glRotation, glScaleMode);
+            return;
         }
 
-        if (horizontalDimension == 0 && verticalDimension == 0) {
+        if (currentVideoView == videoSurfaceView && orientation != Orientation.LANDSCAPE) {
+            Logger.w(TAG, "Trying to rotate SurfaceView - this isn't going to work.");
             return;
         }
 
-        final float scale = Math.min(
-                (float) viewport.getWidth() / horizontalDimension,
-                (float) viewport.getHeight() / verticalDimension
-        );
-
-        final Orientation finalOrientation = orientation;
-        ((Activity)context).runOnUiThread(() -> {
-            Log.d(TAG, "Rotating to " + finalOrientation.angle + " with a scale of " + scale);
+        Log.d(TAG, "Rotating to " + orientation.angle);
 
-            videoContainer.setRotation(finalOrientation.angle);
-            videoContainer.setScaleX(scale);
-            videoContainer.setScaleY(scale);
-            videoContainer.invalidate();
-        });
+        layoutController.setRotation(orientation.angle);
     }
 
     @JavascriptInterface
@@ -706,14 +1587,28 @@ class PlayerWebInterface implements
 
         Log.d(TAG, "setResizeMode " + modeString);
 
-        ResizeMode mode;
-        try {
-            mode = ResizeMode.valueOf(modeString.toUpperCase(Locale.US));
-        } catch (IllegalArgumentException e) {
-            Log.w(TAG, "Failed to parse resize mode \"" + modeString + "\", defaulting to " + ResizeMode.DEFAULT);
+        ResizeMode mode = EnumParser.parse(ResizeMode.class, modeString);
+        if (mode == null) {
+            Logger.w(TAG, "Failed to parse resize mode, defaulting to DEFAULT", modeString);
             mode = ResizeMode.DEFAULT;
         }
 
+        if (glVideoRenderer != null) {
+            // Same geometry as the container gives, fixed modes fit as the surface fills the viewport
+            switch (mode) {
+                case FILL:
+                    glScaleMode = GlVideoRenderer.ScaleMode.FILL;
+                    break;
+                case ZOOM:
+                    glScaleMode = GlVideoRenderer.ScaleMode.ZOOM;
+                    break;
+                default:
+                    glScaleMode = GlVideoRenderer.ScaleMode.FIT;
+            }
+            glVideoRenderer.setTransform(glRotation, glScaleMode);
+            return;
+        }
+
         if (mode == ResizeMode.FIXED_MIN) {
             int height = currentVideoView.getHeight();
             int width = currentVideoView.getWidth();
@@ -727,8 +1622,25 @@ class PlayerWebInterface implements
             Log.d(TAG, "Requested FIXED_MIN choosing " + mode + " (w:" + width + " h:" + height + ")");
         }
 
-        final int finalMode = mode.mode;
-        ((Activity)context).runOnUiThread(() -> videoContainer.setResizeMode(finalMode));
+        layoutController.setResizeMode(toAspectRatioResizeMode(mode));
+    }
+
+    /**
+     * @param mode Any but FIXED_MIN, which depends on the view size
+     */
+    private static int toAspectRatioResizeMode(ResizeMode mode) {
+        switch (mode) {
+            case FILL:
+                return AspectRatioFrameLayout.RESIZE_MODE_FILL;
+            case ZOOM:
+                return AspectRatioFrameLayout.RESIZE_MODE_ZOOM;
+            case FIXED_HEIGHT:
+                return AspectRatioFrameLayout.RESIZE_MODE_FIXED_HEIGHT;
+            case FIXED_WIDTH:
+                return AspectRatioFrameLayout.RESIZE_MODE_FIXED_WIDTH;
+            default:
+                return AspectRatioFrameLayout.RESIZE_MODE_FIT;
+        }
     }
 
     @JavascriptInterface
@@ -739,60 +1651,280 @@ class PlayerWebInterface implements
 
         Log.d(TAG, "setAspectRatio " + ratio);
 
-        ((Activity)context).runOnUiThread(() -> videoContainer.setAspectRatio(ratio));
+        if (glVideoRenderer != null) {
+            // GL scales video on its own, the container has to keep filling the viewport
+            Logger.w(TAG, "Aspect ratio is taken from the video with GL composited surface");
+            return;
+        }
+
+        layoutController.setAspectRatio(ratio);
     }
 
-    @Override
-    public void onVideoSizeChanged(final int width, final int height, int unAppliedRotationDegrees, final float pixelWidthHeightRatio) {
-        Log.d(TAG, "onVideoSizeChanged " +
-            width + " " +
-            height + " " +
-            unAppliedRotationDegrees + " " +
-            pixelWidthHeightRatio
+    @JavascriptInterface
+    public void setSubtitlesVisible(boolean visible) {
+        Log.d(TAG, "setSubtitlesVisible " + visible);
+
+        subtitleOverlay.setEnabled(visible);
+    }
+
+    @JavascriptInterface
+    public boolean getSubtitlesVisible() {
+        return subtitleOverlay.isEnabled();
+    }
+
+    @JavascriptInterface
+    public void setSubtitleStyle(String styleJson) {
+        Log.d(TAG, "setSubtitleStyle " + styleJson);
+
+        subtitleOverlay.setStyle(styleJson);
+    }
+
+    /**
+     * @return JSON object with the player state, for a page reloaded after a WebView renderer loss to resync with playback
+     */
+    @JavascriptInterface
+    public String getSnapshot() {
+        JSONObject snapshot = new JSONObject();
+
+        try {
+            snapshot.put("recovered", recovered);
+            snapshot.put("created", player != null);
+
+            if (player != null) {
+                long durationMs = player.getDuration();
+                snapshot.put("uri", uri);
+                snapshot.put("cdn", getVideoCDN());
+                snapshot.put("state", playbackStateToString(player.getPlaybackState()));
+                snapshot.put("playWhenReady", player.getPlayWhenReady());
+                snapshot.put("positionMs", player.getCurrentPosition());
+                snapshot.put("durationMs", durationMs == C.TIME_UNSET ? -1 : durationMs);
+                snapshot.put("live", isLiveStream());
+                snapshot.put("playbackRate", (double) getPlaybackRate());
+                snapshot.put("volume", getVolume());
+                snapshot.put("subtitlesVisible", getSubtitlesVisible());
+                snapshot.put("tracks", new JSONArray(tracksSnapshot));
+            }
+        } catch (JSONException e) {
+            Logger.e(TAG, "Failed to build snapshot", e.toString());
+        }
+
+        return snapshot.toString();
+    }
+
+    private static String playbackStateToString(int playbackState) {
+        switch (playbackState) {
+            case Player.STATE_BUFFERING:
+                return "buffering";
+            case Player.STATE_READY:
+                return "ready";
+            case Player.STATE_ENDED:
+                return "ended";
+            case Player.STATE_IDLE:
+            default:
+                return "idle";
+        }
+    }
+
+    @JavascriptInterface
+    public String getTracks() {
+        return tracksSnapshot;
+    }
+
+    @JavascriptInterface
+    public void selectTrack(int rendererIndex, int groupIndex, int trackIndex) {
+        if (!assertPlayer()) {
+            return;
+        }
+
+        MappingTrackSelector.MappedTrackInfo mappedTrackInfo = trackSelector.getCurrentMappedTrackInfo();
+        if (mappedTrackInfo == null || rendererIndex < 0 || rendererIndex >= mappedTrackInfo.getRendererCount()) {
+            Logger.w(TAG, "Can't select track, renderer {} is not available", rendererIndex);
+            return;
+        }
+
+        TrackGroupArray trackGroups = mappedTrackInfo.getTrackGroups(rendererIndex);
+        if (groupIndex < 0 || groupIndex >= trackGroups.length || trackIndex < 0 || trackIndex >= trackGroups.get(groupIndex).length) {
+            Logger.w(TAG, "Can't select track {}:{} of renderer {}", groupIndex, trackIndex, rendererIndex);
+            return;
+        }
+
+        Log.d(TAG, "Selecting track " + groupIndex + ":" + trackIndex + " of renderer " + rendererIndex);
+
+        trickPlay.onRendererOverridden(rendererIndex);
+        trackSelector.setParameters(
+            trackSelector.buildUponParameters()
+                .setRendererDisabled(rendererIndex, false)
+                .setSelectionOverride(rendererIndex, trackGroups, new DefaultTrackSelector.SelectionOverride(groupIndex, trackIndex))
         );
+    }
+
+    @JavascriptInterface
+    public void disableTracks(int rendererIndex) {
+        if (!assertPlayer()) {
+            return;
+        }
 
-        final int containerWidth = viewport.getWidth();
-        final int containerHeight = viewport.getHeight();
+        Log.d(TAG, "Disabling tracks of renderer " + rendererIndex);
 
-        float scale = Math.min(
-                (float) containerHeight / height,
-                (float) containerWidth / width
+        trickPlay.onRendererOverridden(rendererIndex);
+        trackSelector.setParameters(trackSelector.buildUponParameters().setRendererDisabled(rendererIndex, true));
+    }
+
+    @JavascriptInterface
+    public void clearTrackOverride(int rendererIndex) {
+        if (!assertPlayer()) {
+            return;
+        }
+
+        Log.d(TAG, "Clearing track override of renderer " + rendererIndex);
+
+        trickPlay.onRendererOverridden(rendererIndex);
+        trackSelector.setParameters(
+            trackSelector.buildUponParameters()
+                .setRendererDisabled(rendererIndex, false)
+                .clearSelectionOverrides(rendererIndex)
         );
+    }
 
-        // No idea why this is necessary. Applying aspect ratio changes video position for some reasons
-        // TODO: investigate
-        final float positionCorrectionX = containerWidth / 2 - scale * width / 2;
-        final float positionCorrectionY = containerHeight / 2 - scale * height / 2;
+    private String buildTracksSnapshot(MappingTrackSelector.MappedTrackInfo mappedTrackInfo, TrackSelectionArray trackSelections) {
+        TrackSnapshotBuilder snapshot = new TrackSnapshotBuilder();
+        TrackSnapshotBuilder.Track track = new TrackSnapshotBuilder.Track();
+        DefaultTrackSelector.Parameters parameters = trackSelector.getParameters();
 
-        ((Activity)context).runOnUiThread(() -> {
-            videoContainer.setAspectRatio(width * pixelWidthHeightRatio / height);
-            videoContainer.setX(positionCorrectionX);
-            videoContainer.setY(positionCorrectionY);
-        });
+        for (int rendererIndex = 0; rendererIndex < mappedTrackInfo.getRendererCount(); rendererIndex++) {
+            TrackGroupArray trackGroups = mappedTrackInfo.getTrackGroups(rendererIndex);
+            if (trackGroups.length == 0) {
+                continue;
+            }
+
+            TrackSelection selection = rendererIndex < trackSelections.length ? trackSelections.get(rendererIndex) : null;
+
+            snapshot.beginRenderer(
+                rendererIndex,
+                trackTypeToString(mappedTrackInfo.getRendererType(rendererIndex)),
+                parameters.getRendererDisabled(rendererIndex),
+                parameters.hasSelectionOverride(rendererIndex, trackGroups)
+            );
+
+            for (int groupIndex = 0; groupIndex < trackGroups.length; groupIndex++) {
+                TrackGroup group = trackGroups.get(groupIndex);
+                snapshot.beginGroup(groupIndex);
+
+                for (int trackIndex = 0; trackIndex < group.length; trackIndex++) {
+                    int support = mappedTrackInfo.getTrackSupport(rendererIndex, groupIndex, trackIndex);
+                    boolean selected = selection != null &&
+                        selection.getTrackGroup() == group &&
+                        selection.indexOf(trackIndex) != C.INDEX_UNSET;
+
+                    Format format = group.getFormat(trackIndex);
+                    fillTrack(track, format);
+                    track.passthrough = audioSink != null &&
+                        mappedTrackInfo.getRendererType(rendererIndex) == C.TRACK_TYPE_AUDIO &&
+                        audioSink.isPassthrough(format);
+                    snapshot.addTrack(
+                        track,
+                        trackIndex,
+                        (support & RendererCapabilities.FORMAT_SUPPORT_MASK) == RendererCapabilities.FORMAT_HANDLED,
+                        selected
+                    );
+                }
+
+                snapshot.endGroup();
+            }
+
+            snapshot.endRenderer();
+        }
+
+        return snapshot.build();
+    }
+
+    private static void fillTrack(TrackSnapshotBuilder.Track track, Format format) {
+        // Both use -1 for absent values
+        track.id = format.id;
+        track.label = format.label;
+        track.language = format.language;
+        track.mimeType = format.sampleMimeType;
+        track.codecs = format.codecs;
+        track.bitrate = format.bitrate;
+        track.width = format.width;
+        track.height = format.height;
+        track.frameRate = format.frameRate;
+        track.channelCount = format.channelCount;
+        track.sampleRate = format.sampleRate;
+    }
+
+    private static String trackTypeToString(int trackType) {
+        switch (trackType) {
+            case C.TRACK_TYPE_VIDEO:
+                return "video";
+            case C.TRACK_TYPE_AUDIO:
+                return "audio";
+            case C.TRACK_TYPE_TEXT:
+                return "text";
+            case C.TRACK_TYPE_METADATA:
+                return "metadata";
+            default:
+                return "unknown";
+        }
+    }
+
+    @Override
+    public void onVideoSizeChanged(final int width, final int height, int unAppliedRotationDegrees, final float pixelWidthHeightRatio) {
+        Logger.d(TAG, "onVideoSizeChanged {} {} {} {f}", width, height, unAppliedRotationDegrees, Logger.f(pixelWidthHeightRatio));
+
+        frameRateMatcher.onVideoFormat(player.getVideoFormat());
+
+        if (glVideoRenderer != null) {
+            glVideoRenderer.setVideoSize(width, height, unAppliedRotationDegrees, pixelWidthHeightRatio);
+            return;
+        }
+
+        if (height != 0) {
+            layoutController.setAspectRatio(width * pixelWidthHeightRatio / height);
+        }
     }
 
     @Override
     public void onRenderedFirstFrame() {
-        Log.d(TAG, "First frame of the video shown");
+        Logger.d(TAG, "First frame of the video shown");
+        StartupTracer.finish("first_frame");
         dispatchEvent(Event.FIRST_FRAME);
         showVideo();
     }
 
     @Override
     public void onTimelineChanged(Timeline timeline, int reason) {
+        if (reason == Player.TIMELINE_CHANGE_REASON_PREPARED) {
+            // Manifest is loaded
+            StartupTracer.mark("timeline_prepared");
+        }
+
         if (!timeline.isEmpty()) {
             dispatchEvent(Event.TIMELINE_CHANGED);
-            Log.v(TAG, "onTimelineChanged; reason: " + reason);
+            Logger.v(TAG, "onTimelineChanged; reason: {}", reason);
         }
     }
 
     @Override
     public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
-        dispatchEvent(Event.TRACKS_CHANGED);
-        Log.v(TAG, "onTracksChanged");
-
         MappingTrackSelector.MappedTrackInfo mappedTrackInfo = trackSelector.getCurrentMappedTrackInfo();
 
+        tracksSnapshot = mappedTrackInfo == null ? "[]" : buildTracksSnapshot(mappedTrackInfo, trackSelections);
+        updateTunnelingActive(mappedTrackInfo, trackSelections);
+
+        Format videoFormat = getSelectedFormat(trackSelections, C.TRACK_TYPE_VIDEO);
+        if (videoFormat != null && videoFormat.sampleMimeType != null && !videoFormat.sampleMimeType.equals(tunnelingVideoMimeType)) {
+            tunnelingVideoMimeType = videoFormat.sampleMimeType;
+            if (tunnelingMode == TunnelingMode.AUTO) {
+                // Tracks are selected again if the decision changes
+                applyTunnelingMode();
+            }
+        }
+        frameRateMatcher.onVideoFormat(videoFormat);
+
+        dispatchEvent(Event.TRACKS_CHANGED);
+        Logger.v(TAG, "onTracksChanged");
+
         if (mappedTrackInfo == null) {
             return;
         }
@@ -801,7 +1933,7 @@ class PlayerWebInterface implements
         int audioSupport = mappedTrackInfo.getTypeSupport(C.TRACK_TYPE_AUDIO);
         int textSupport = mappedTrackInfo.getTypeSupport(C.TRACK_TYPE_TEXT);
 
-        Log.d(TAG, String.format("Tracks support: video: %d, audio: %d, text: %d", videoSupport, audioSupport, textSupport));
+        Logger.d(TAG, "Tracks support: video: {}, audio: {}, text: {}", videoSupport, audioSupport, textSupport);
 
         if (
             videoSupport < MappingTrackSelector.MappedTrackInfo.RENDERER_SUPPORT_PLAYABLE_TRACKS &&
@@ -813,12 +1945,14 @@ class PlayerWebInterface implements
 
     @Override
     public void onLoadingChanged(boolean isLoading) {
-        Log.v(TAG, "onLoadingChanged " + isLoading);
+        Logger.v(TAG, "onLoadingChanged {b}", isLoading);
     }
 
     @Override
     public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
-        Log.d(TAG, "onPlayerStateChange " + playbackState + " " + playWhenReady);
+        Logger.d(TAG, "onPlayerStateChanged {} {b}", playbackState, Logger.b(playWhenReady));
+
+        manifestPrefetcher.setPaused(playbackState == Player.STATE_BUFFERING);
 
         switch (playbackState) {
             case Player.STATE_IDLE: {
@@ -830,9 +1964,15 @@ class PlayerWebInterface implements
                 break;
             }
             case Player.STATE_READY: {
+                StartupTracer.mark("player_ready");
                 JSONArray params = new JSONArray();
                 params.put(playWhenReady);
                 dispatchEvent(Event.READY, params);
+
+                if (restoring) {
+                    restoring = false;
+                    dispatchEvent(Event.RESTORED);
+                }
                 break;
             }
             case Player.STATE_ENDED: {
@@ -844,14 +1984,76 @@ class PlayerWebInterface implements
 
     @Override
     public void onPlayerError(ExoPlaybackException error) {
-        Log.e(TAG, "onError: " + error.getMessage() + " cause: " + error.getCause());
+        Logger.e(TAG, "Player error", ErrorChain.flatten(error));
+
+        if (timeshiftBuffer.isEnabled() && isBehindLiveWindow(error)) {
+            // Paused for longer than the buffer reaches back, catch up with the live edge
+            Logger.w(TAG, "Position left the timeshift window, restarting from live edge");
+            player.seekToDefaultPosition();
+            player.retry();
+            return;
+        }
+
         onFatalError(InterfaceError.MEDIA_ERROR, error);
         error.printStackTrace();
     }
 
+    private static boolean isBehindLiveWindow(ExoPlaybackException error) {
+        if (error.type != ExoPlaybackException.TYPE_SOURCE) {
+            return false;
+        }
+
+        for (Throwable cause = error.getSourceException(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof BehindLiveWindowException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onTimeshiftUpdated(long durationMs, long bytes, boolean recording) {
+        JSONArray params = new JSONArray();
+        params.put(durationMs);
+        params.put(bytes);
+        params.put(recording);
+        dispatchEvent(Event.TIMESHIFT_UPDATED, params);
+    }
+
+    @Override
+    public void onAudioCapabilitiesChanged(AudioCapabilities capabilities) {
+        audioCapabilities = capabilities;
+        if (audioSink == null || !audioSink.setCapabilities(capabilities)) {
+            return;
+        }
+
+        Log.i(TAG, "Audio output changed to " + capabilities);
+
+        if (player != null && currentSource != null && player.getPlaybackState() != Player.STATE_IDLE) {
+            // Track support depends on the output, preparing again selects tracks anew and reconfigures the sink
+            player.prepare(currentSource, false, false);
+        }
+    }
+
+    @Override
+    public void onOverlayIdleChanged(boolean idle) {
+        JSONArray params = new JSONArray();
+        params.put(idle);
+        dispatchEvent(Event.OVERLAY_IDLE_CHANGED, params);
+    }
+
+    @Override
+    public void onCdnChanged(String cdn, String uri, String reason) {
+        JSONArray params = new JSONArray();
+        params.put(cdn);
+        params.put(uri);
+        params.put(reason);
+        dispatchEvent(Event.CDN_CHANGED, params);
+    }
+
     @Override
     public void onPositionDiscontinuity(int reason) {
-        Log.v(TAG, "onPositionDiscontinuity; reason: " + reason);
+        Logger.v(TAG, "onPositionDiscontinuity; reason: {}", reason);
         dispatchEvent(Event.POSITION_DISCONTINUITY);
 
         if (reason == Player.DISCONTINUITY_REASON_SEEK) {
@@ -861,28 +2063,47 @@ class PlayerWebInterface implements
 
     @Override
     public void onSeekProcessed() {
-        Log.v(TAG, "onSeekProcessed");
+        Logger.v(TAG, "onSeekProcessed");
         dispatchEvent(Event.SEEK_PROCESSED);
+        seekScheduler.onSeekProcessed();
     }
 
     @Override
     public void onIsPlayingChanged(boolean isPlaying) {
-        Log.v(TAG, "onIsPlayingChanged, playing: " + isPlaying);
+        Logger.v(TAG, "onIsPlayingChanged, playing: {b}", isPlaying);
+
+        overlayController.setPlaying(isPlaying);
     }
 
     @Override
     public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
-        if (lastKnownPlaybackParameters == null || lastKnownPlaybackParameters.speed != playbackParameters.speed) {
-            JSONArray eventParams = new JSONArray();
-            try {
-                eventParams.put(playbackParameters.speed);
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-            dispatchEvent(Event.PLAYBACK_RATE_CHANGED, eventParams);
+        if (trickPlay.isActive()) {
+            // Trick play reports its own effective rate
+            return;
+        }
+
+        dispatchPlaybackRateChanged(playbackParameters.speed);
+    }
+
+    @Override
+    public void onTrickPlayRateChanged(float rate) {
+        dispatchPlaybackRateChanged(rate);
+    }
+
+    private void dispatchPlaybackRateChanged(float rate) {
+        if (lastKnownPlaybackRate == rate) {
+            return;
+        }
+
+        JSONArray eventParams = new JSONArray();
+        try {
+            eventParams.put(rate);
+        } catch (JSONException e) {
+            e.printStackTrace();
         }
+        dispatchEvent(Event.PLAYBACK_RATE_CHANGED, eventParams);
 
-        lastKnownPlaybackParameters = playbackParameters;
+        lastKnownPlaybackRate = rate;
     }
 
     @Override
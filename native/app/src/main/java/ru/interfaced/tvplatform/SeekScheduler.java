@@ -0,0 +1,139 @@
+package ru.interfaced.tvplatform;
+
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+
+import ru.interfaced.tvplatform.core.PlayerOptions.SeekMode;
+
+/**
+ * Coalesces seeks issued by the web layer.
+ * Only one seek is handed to the player at a time; requests arriving while it is being processed
+ * replace each other and only the latest one is executed once the player acknowledges the previous seek.
+ * All methods are expected to be called on the player application thread.
+ */
+class SeekScheduler {
+    private static final String TAG = "SeekScheduler";
+
+    private final SimpleExoPlayer player;
+
+    private SeekMode mode = SeekMode.EXACT;
+    private boolean scrubbing = false;
+    private boolean playWhenReadyBeforeScrub = false;
+
+    private boolean seekInFlight = false;
+    private long pendingPositionMs = C.TIME_UNSET;
+    private long lastIssuedPositionMs = C.TIME_UNSET;
+
+    SeekScheduler(SimpleExoPlayer player) {
+        this.player = player;
+    }
+
+    void setMode(SeekMode mode) {
+        this.mode = mode;
+    }
+
+    SeekMode getMode() {
+        return mode;
+    }
+
+    boolean isScrubbing() {
+        return scrubbing;
+    }
+
+    void seekTo(long positionMs) {
+        if (seekInFlight) {
+            if (pendingPositionMs != C.TIME_UNSET) {
+                Logger.v(TAG, "Dropping superseded seek to {}", pendingPositionMs);
+            }
+            pendingPositionMs = positionMs;
+            return;
+        }
+
+        issue(positionMs);
+    }
+
+    void scrubStart() {
+        if (scrubbing) {
+            return;
+        }
+
+        Logger.d(TAG, "Scrubbing started");
+
+        scrubbing = true;
+        playWhenReadyBeforeScrub = player.getPlayWhenReady();
+
+        // Keep loading but stop rendering so that the buffer is not consumed while the user drags
+        player.setPlayWhenReady(false);
+    }
+
+    void scrubEnd() {
+        if (!scrubbing) {
+            return;
+        }
+
+        Logger.d(TAG, "Scrubbing ended");
+
+        scrubbing = false;
+
+        long commitPositionMs = pendingPositionMs != C.TIME_UNSET ? pendingPositionMs : lastIssuedPositionMs;
+        pendingPositionMs = C.TIME_UNSET;
+
+        if (commitPositionMs != C.TIME_UNSET) {
+            // Previews were rough sync frame seeks, land exactly where the user stopped
+            lastIssuedPositionMs = C.TIME_UNSET;
+            seekTo(commitPositionMs);
+        }
+
+        player.setPlayWhenReady(playWhenReadyBeforeScrub);
+    }
+
+    void onSeekProcessed() {
+        seekInFlight = false;
+
+        if (pendingPositionMs != C.TIME_UNSET) {
+            long positionMs = pendingPositionMs;
+            pendingPositionMs = C.TIME_UNSET;
+            issue(positionMs);
+        }
+    }
+
+    void reset() {
+        seekInFlight = false;
+        scrubbing = false;
+        pendingPositionMs = C.TIME_UNSET;
+        lastIssuedPositionMs = C.TIME_UNSET;
+    }
+
+    private void issue(long positionMs) {
+        SeekParameters parameters = scrubbing ? SeekParameters.CLOSEST_SYNC : toSeekParameters(mode);
+
+        if (scrubbing && positionMs == lastIssuedPositionMs) {
+            return;
+        }
+
+        if (!parameters.equals(player.getSeekParameters())) {
+            player.setSeekParameters(parameters);
+        }
+
+        Logger.v(TAG, "Seeking to {}, scrubbing: {b}", positionMs, Logger.b(scrubbing));
+
+        seekInFlight = true;
+        lastIssuedPositionMs = positionMs;
+        player.seekTo(positionMs);
+    }
+
+    private static SeekParameters toSeekParameters(SeekMode mode) {
+        switch (mode) {
+            case CLOSEST_SYNC:
+                return SeekParameters.CLOSEST_SYNC;
+            case PREVIOUS_SYNC:
+                return SeekParameters.PREVIOUS_SYNC;
+            case NEXT_SYNC:
+                return SeekParameters.NEXT_SYNC;
+            default:
+                return SeekParameters.EXACT;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.interfaced.tvplatform;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+
+import ru.interfaced.tvplatform.core.StartupTrace;
+
+/**
+ * Process wide startup timeline from process start to the first rendered video frame.
+ * Milestones are marked by the activity, the WebView client, the player and the page through DeviceWebInterface.
+ * The finished timeline is logged as a single line and stays available to the page through getStartupTrace.
+ * All methods can be called from any thread.
+ */
+final class StartupTracer {
+    private static final String TAG = "StartupTrace";
+
+    private static final StartupTrace trace;
+
+    static {
+        long nowNs = SystemClock.elapsedRealtimeNanos();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            long processStartNs = Process.getStartElapsedRealtime() * 1000000L;
+            trace = new StartupTrace(processStartNs);
+            trace.mark("process_start", processStartNs);
+        } else {
+            // Process start time is not available, count from the first class to use the tracer
+            trace = new StartupTrace(nowNs);
+        }
+
+        trace.mark("tracer_loaded", nowNs);
+    }
+
+    private StartupTracer() {}
+
+    static void mark(String name) {
+        trace.mark(name, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * Marks the last milestone and logs the timeline, only the first call has any effect.
+     */
+    static void finish(String name) {
+        if (trace.finish(name, SystemClock.elapsedRealtimeNanos())) {
+            Logger.i(TAG, "Startup", trace.toLogLine());
+        }
+    }
+
+    static String toJson() {
+        return trace.toJson();
+    }
+}
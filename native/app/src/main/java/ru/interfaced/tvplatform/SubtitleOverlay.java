@@ -0,0 +1,188 @@
+package ru.interfaced.tvplatform;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.google.android.exoplayer2.text.CaptionStyleCompat;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.TextOutput;
+import com.google.android.exoplayer2.ui.SubtitleView;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import ru.interfaced.tvplatform.core.EnumParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders player text output natively on top of the video so that cues never cross the JavaScript bridge.
+ * The view is only created once subtitles are enabled for the first time.
+ */
+class SubtitleOverlay implements TextOutput {
+    private static final String TAG = "SubtitleOverlay";
+
+    private enum EdgeType {
+        NONE (CaptionStyleCompat.EDGE_TYPE_NONE),
+        OUTLINE (CaptionStyleCompat.EDGE_TYPE_OUTLINE),
+        DROP_SHADOW (CaptionStyleCompat.EDGE_TYPE_DROP_SHADOW),
+        RAISED (CaptionStyleCompat.EDGE_TYPE_RAISED),
+        DEPRESSED (CaptionStyleCompat.EDGE_TYPE_DEPRESSED);
+
+        public final int type;
+
+        EdgeType(int type) {
+            this.type = type;
+        }
+    }
+
+    private final Activity activity;
+    private final ViewGroup container;
+    private final View anchorView;
+
+    private SubtitleView subtitleView;
+    private boolean enabled = false;
+
+    private CaptionStyleCompat style = new CaptionStyleCompat(
+        Color.WHITE,
+        Color.TRANSPARENT,
+        Color.TRANSPARENT,
+        CaptionStyleCompat.EDGE_TYPE_DROP_SHADOW,
+        Color.BLACK,
+        null
+    );
+    private float textSizeFraction = SubtitleView.DEFAULT_TEXT_SIZE_FRACTION;
+    private float bottomPaddingFraction = SubtitleView.DEFAULT_BOTTOM_PADDING_FRACTION;
+    private boolean applyEmbeddedStyles = true;
+
+    /**
+     * @param container View group to add subtitles to
+     * @param anchorView Subtitles are placed right beneath this view so it keeps covering them
+     */
+    SubtitleOverlay(Activity activity, ViewGroup container, View anchorView) {
+        this.activity = activity;
+        this.container = container;
+        this.anchorView = anchorView;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+
+        activity.runOnUiThread(() -> {
+            if (enabled && subtitleView == null) {
+                createView();
+            }
+
+            if (subtitleView != null) {
+                subtitleView.setVisibility(enabled ? View.VISIBLE : View.GONE);
+                if (!enabled) {
+                    subtitleView.setCues(null);
+                }
+            }
+        });
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setStyle(String styleJson) {
+        try {
+            JSONObject json = new JSONObject(styleJson);
+
+            int edgeType = style.edgeType;
+            if (json.has("edgeType")) {
+                String edgeTypeString = json.getString("edgeType");
+                EdgeType parsedEdgeType = EnumParser.parse(EdgeType.class, edgeTypeString);
+                if (parsedEdgeType != null) {
+                    edgeType = parsedEdgeType.type;
+                } else {
+                    Logger.w(TAG, "Failed to parse edge type, keeping current one", edgeTypeString);
+                }
+            }
+
+            style = new CaptionStyleCompat(
+                parseColor(json, "foregroundColor", style.foregroundColor),
+                parseColor(json, "backgroundColor", style.backgroundColor),
+                parseColor(json, "windowColor", style.windowColor),
+                edgeType,
+                parseColor(json, "edgeColor", style.edgeColor),
+                null
+            );
+
+            textSizeFraction = (float) json.optDouble("textSize", textSizeFraction);
+            bottomPaddingFraction = (float) json.optDouble("bottomPadding", bottomPaddingFraction);
+            applyEmbeddedStyles = json.optBoolean("applyEmbeddedStyles", applyEmbeddedStyles);
+        } catch (JSONException e) {
+            Logger.w(TAG, "Failed to parse subtitle style", e.getMessage());
+            return;
+        }
+
+        activity.runOnUiThread(() -> {
+            if (subtitleView != null) {
+                applyStyle();
+            }
+        });
+    }
+
+    void clear() {
+        activity.runOnUiThread(() -> {
+            if (subtitleView != null) {
+                subtitleView.setCues(null);
+            }
+        });
+    }
+
+    @Override
+    public void onCues(List<Cue> cues) {
+        if (!enabled) {
+            return;
+        }
+
+        final List<Cue> cuesCopy = new ArrayList<>(cues);
+        activity.runOnUiThread(() -> {
+            if (subtitleView != null) {
+                subtitleView.setCues(cuesCopy);
+            }
+        });
+    }
+
+    private void createView() {
+        Logger.d(TAG, "Creating subtitle view");
+
+        subtitleView = new SubtitleView(activity);
+        applyStyle();
+
+        int index = container.indexOfChild(anchorView);
+        container.addView(
+            subtitleView,
+            index < 0 ? container.getChildCount() : index,
+            new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT)
+        );
+    }
+
+    private void applyStyle() {
+        subtitleView.setStyle(style);
+        subtitleView.setFractionalTextSize(textSizeFraction);
+        subtitleView.setBottomPaddingFraction(bottomPaddingFraction);
+        subtitleView.setApplyEmbeddedStyles(applyEmbeddedStyles);
+    }
+
+    private static int parseColor(JSONObject json, String key, int fallback) {
+        String value = json.optString(key, null);
+        if (value == null) {
+            return fallback;
+        }
+
+        try {
+            return Color.parseColor(value);
+        } catch (IllegalArgumentException e) {
+            Logger.w(TAG, "Failed to parse color", key, value);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package ru.interfaced.tvplatform;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.audio.AudioAttributes;
+import com.google.android.exoplayer2.audio.AudioCapabilities;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+import com.google.android.exoplayer2.audio.AudioSink;
+import com.google.android.exoplayer2.audio.AuxEffectInfo;
+import com.google.android.exoplayer2.audio.DefaultAudioSink;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Audio sink following capabilities of the connected audio output, e.g. a TV or an AVR plugged over HDMI.
+ * Compressed formats the output can decode, such as AC-3 and E-AC-3, are passed through undecoded.
+ * DefaultAudioSink fixes capabilities on creation, so on a change it's replaced with a new one
+ * the next time the renderer configures the sink, carrying over the state set on the old one.
+ * Capabilities can be changed from any thread, everything else is called on the playback thread.
+ */
+class SwitchableAudioSink implements AudioSink {
+    private static final String TAG = "SwitchableAudioSink";
+
+    private final AudioProcessor[] audioProcessors;
+    private volatile @Nullable AudioCapabilities capabilities;
+    private @Nullable AudioCapabilities sinkCapabilities;
+    private DefaultAudioSink sink;
+
+    // State set on the current sink, to carry over to the next one
+    private @Nullable Listener listener = null;
+    private @Nullable AudioAttributes audioAttributes = null;
+    private @Nullable AuxEffectInfo auxEffectInfo = null;
+    private @Nullable PlaybackParameters playbackParameters = null;
+    private int audioSessionId = C.AUDIO_SESSION_ID_UNSET;
+    private int tunnelingAudioSessionId = C.AUDIO_SESSION_ID_UNSET;
+    private float volume = 1;
+
+    SwitchableAudioSink(@Nullable AudioCapabilities capabilities, AudioProcessor[] audioProcessors) {
+        this.audioProcessors = audioProcessors;
+        this.capabilities = capabilities;
+        sinkCapabilities = capabilities;
+        sink = new DefaultAudioSink(capabilities, audioProcessors);
+    }
+
+    /**
+     * @return Whether passthrough support has changed, i.e. track support needs to be evaluated again
+     */
+    boolean setCapabilities(@Nullable AudioCapabilities newCapabilities) {
+        boolean changed = !Util.areEqual(capabilities, newCapabilities);
+        capabilities = newCapabilities;
+        return changed;
+    }
+
+    /**
+     * @return Whether the format is compressed audio the output decodes on its own
+     */
+    boolean isPassthrough(Format format) {
+        if (format.sampleMimeType == null) {
+            return false;
+        }
+
+        int encoding = MimeTypes.getEncoding(format.sampleMimeType);
+        return encoding != C.ENCODING_INVALID && supportsPassthrough(format.channelCount, encoding);
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        sink.setListener(new Listener() {
+            @Override
+            public void onAudioSessionId(int audioSessionId) {
+                SwitchableAudioSink.this.audioSessionId = audioSessionId;
+                listener.onAudioSessionId(audioSessionId);
+            }
+
+            @Override
+            public void onPositionDiscontinuity() {
+                listener.onPositionDiscontinuity();
+            }
+
+            @Override
+            public void onUnderrun(int bufferSize, long bufferSizeMs, long elapsedSinceLastFeedMs) {
+                listener.onUnderrun(bufferSize, bufferSizeMs, elapsedSinceLastFeedMs);
+            }
+        });
+    }
+
+    /**
+     * Tells support by the capabilities the next sink is going to have, so that track selection can rely on them.
+     */
+    @Override
+    public boolean supportsOutput(int channelCount, int encoding) {
+        if (Util.isEncodingLinearPcm(encoding)) {
+            return sink.supportsOutput(channelCount, encoding);
+        }
+        return supportsPassthrough(channelCount, encoding);
+    }
+
+    @Override
+    public long getCurrentPositionUs(boolean sourceEnded) {
+        return sink.getCurrentPositionUs(sourceEnded);
+    }
+
+    @Override
+    public void configure(
+        int inputEncoding,
+        int inputChannelCount,
+        int inputSampleRate,
+        int specifiedBufferSize,
+        @Nullable int[] outputChannels,
+        int trimStartFrames,
+        int trimEndFrames
+    ) throws ConfigurationException {
+        AudioCapabilities currentCapabilities = capabilities;
+        if (!Util.areEqual(sinkCapabilities, currentCapabilities)) {
+            replaceSink(currentCapabilities);
+        }
+
+        sink.configure(inputEncoding, inputChannelCount, inputSampleRate, specifiedBufferSize, outputChannels, trimStartFrames, trimEndFrames);
+    }
+
+    @Override
+    public void play() {
+        sink.play();
+    }
+
+    @Override
+    public void handleDiscontinuity() {
+        sink.handleDiscontinuity();
+    }
+
+    @Override
+    public boolean handleBuffer(ByteBuffer buffer, long presentationTimeUs) throws InitializationException, WriteException {
+        return sink.handleBuffer(buffer, presentationTimeUs);
+    }
+
+    @Override
+    public void playToEndOfStream() throws WriteException {
+        sink.playToEndOfStream();
+    }
+
+    @Override
+    public boolean isEnded() {
+        return sink.isEnded();
+    }
+
+    @Override
+    public boolean hasPendingData() {
+        return sink.hasPendingData();
+    }
+
+    @Override
+    public void setPlaybackParameters(PlaybackParameters playbackParameters) {
+        this.playbackParameters = playbackParameters;
+        sink.setPlaybackParameters(playbackParameters);
+    }
+
+    @Override
+    public PlaybackParameters getPlaybackParameters() {
+        return sink.getPlaybackParameters();
+    }
+
+    @Override
+    public void setAudioAttributes(AudioAttributes audioAttributes) {
+        this.audioAttributes = audioAttributes;
+        sink.setAudioAttributes(audioAttributes);
+    }
+
+    @Override
+    public void setAudioSessionId(int audioSessionId) {
+        this.audioSessionId = audioSessionId;
+        sink.setAudioSessionId(audioSessionId);
+    }
+
+    @Override
+    public void setAuxEffectInfo(AuxEffectInfo auxEffectInfo) {
+        this.auxEffectInfo = auxEffectInfo;
+        sink.setAuxEffectInfo(auxEffectInfo);
+    }
+
+    @Override
+    public void enableTunnelingV21(int tunnelingAudioSessionId) {
+        this.tunnelingAudioSessionId = tunnelingAudioSessionId;
+        sink.enableTunnelingV21(tunnelingAudioSessionId);
+    }
+
+    @Override
+    public void disableTunneling() {
+        tunnelingAudioSessionId = C.AUDIO_SESSION_ID_UNSET;
+        sink.disableTunneling();
+    }
+
+    @Override
+    public void setVolume(float volume) {
+        this.volume = volume;
+        sink.setVolume(volume);
+    }
+
+    @Override
+    public void pause() {
+        sink.pause();
+    }
+
+    @Override
+    public void flush() {
+        sink.flush();
+    }
+
+    @Override
+    public void reset() {
+        sink.reset();
+    }
+
+    private boolean supportsPassthrough(int channelCount, int encoding) {
+        AudioCapabilities currentCapabilities = capabilities;
+        return currentCapabilities != null &&
+            currentCapabilities.supportsEncoding(encoding) &&
+            (channelCount == Format.NO_VALUE || channelCount <= currentCapabilities.getMaxChannelCount());
+    }
+
+    private void replaceSink(@Nullable AudioCapabilities newCapabilities) {
+        Logger.i(TAG, "Audio output capabilities changed", String.valueOf(newCapabilities));
+
+        sink.reset();
+        sink = new DefaultAudioSink(newCapabilities, audioProcessors);
+        sinkCapabilities = newCapabilities;
+
+        if (listener != null) {
+            setListener(listener);
+        }
+        if (audioAttributes != null) {
+            sink.setAudioAttributes(audioAttributes);
+        }
+        if (auxEffectInfo != null) {
+            sink.setAuxEffectInfo(auxEffectInfo);
+        }
+        if (playbackParameters != null) {
+            sink.setPlaybackParameters(playbackParameters);
+        }
+        if (tunnelingAudioSessionId != C.AUDIO_SESSION_ID_UNSET) {
+            sink.enableTunnelingV21(tunnelingAudioSessionId);
+        } else if (audioSessionId != C.AUDIO_SESSION_ID_UNSET) {
+            sink.setAudioSessionId(audioSessionId);
+        }
+        sink.setVolume(volume);
+    }
+}
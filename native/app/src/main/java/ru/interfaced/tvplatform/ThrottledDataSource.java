@@ -0,0 +1,86 @@
+package ru.interfaced.tvplatform;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+
+import ru.interfaced.tvplatform.core.RateLimiter;
+
+/**
+ * Delays reads of the upstream source to keep within a rate limit shared by all sources of the factory.
+ * Reads block the loading thread, so this is meant for background transfers only.
+ */
+class ThrottledDataSource implements DataSource {
+    private final DataSource upstream;
+    private final RateLimiter limiter;
+
+    static class Factory implements DataSource.Factory {
+        private final DataSource.Factory upstreamFactory;
+        private final RateLimiter limiter;
+
+        Factory(DataSource.Factory upstreamFactory, RateLimiter limiter) {
+            this.upstreamFactory = upstreamFactory;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new ThrottledDataSource(upstreamFactory.createDataSource(), limiter);
+        }
+    }
+
+    private ThrottledDataSource(DataSource upstream, RateLimiter limiter) {
+        this.upstream = upstream;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        return upstream.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int read = upstream.read(buffer, offset, readLength);
+
+        long delayNs = limiter.onTransferred(read, System.nanoTime());
+        if (delayNs > 0) {
+            try {
+                Thread.sleep(delayNs / 1000000, (int) (delayNs % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        return read;
+    }
+
+    @Override
+    public @Nullable Uri getUri() {
+        return upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        upstream.close();
+    }
+}
@@ -0,0 +1,682 @@
+package ru.interfaced.tvplatform;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ru.interfaced.tvplatform.core.JsonWriter;
+import ru.interfaced.tvplatform.core.TimeshiftWindow;
+import ru.interfaced.tvplatform.core.WriteBudget;
+
+/**
+ * Records the live HLS stream being played into a capped on-disk ring buffer,
+ * so that pause, rewind and catch-up play from local storage instead of depending on the CDN's DVR window.
+ * Media playlists the player loads are replaced with ones spanning everything in the buffer,
+ * which extends the seekable live window as far back as the buffer reaches.
+ * Master playlists are served as they are, so adaptive selection keeps every variant, and the buffer records
+ * the media playlists the player actually loads: one per rendition group, switching variants starts the new one afresh.
+ * Segments the player loads are written to the buffer as they are read, segments it doesn't load, e.g. while paused,
+ * are downloaded in background; both share cache locks, so a segment is fetched from the network once.
+ * To keep flash wear bounded, each segment is written once and never rewritten, encryption keys are never stored
+ * and writes stop for the rest of the hour once the hourly budget, shared by all renditions, is spent.
+ * Unlike manifests served by ManifestCacheDataSource, recorded segments don't survive switching to another stream.
+ * The cache is opened when the first stream is attached, which happens off the main thread.
+ */
+class TimeshiftBuffer {
+    private static final String TAG = "TimeshiftBuffer";
+
+    private static final String DIRECTORY = "timeshift";
+
+    static final long DEFAULT_MAX_DURATION_MS = 30 * 60 * 1000;
+    static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+    static final long DEFAULT_MAX_WRITE_BYTES_PER_HOUR = 6L * 1024 * 1024 * 1024;
+
+    // Segments before the live edge to record when a stream starts, the player starts about this far behind it
+    private static final int INITIAL_SEGMENTS = 3;
+
+    private static final long MIN_REFRESH_INTERVAL_MS = 1000;
+    private static final long FAILURE_RETRY_MS = 2000;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Rendition groups of a master playlist, the player loads one media playlist of each at a time
+    private static final int GROUP_VARIANT = 0;
+    private static final int GROUP_AUDIO = 1;
+    private static final int GROUP_SUBTITLE = 2;
+
+    interface Listener {
+        /**
+         * Called on a background thread whenever the buffer changes.
+         */
+        void onTimeshiftUpdated(long durationMs, long bytes, boolean recording);
+    }
+
+    private static final class Playlist {
+        final String uri;
+        final int group;
+        final TimeshiftWindow window = new TimeshiftWindow();
+        long recordFromSequence = C.INDEX_UNSET;
+        long firstAvailableSequence = 0;
+        long refreshedAtMs = 0;
+
+        Playlist(String uri, int group) {
+            this.uri = uri;
+            this.group = group;
+        }
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Guarded by this
+    private boolean enabled = false;
+    private long maxDurationMs = DEFAULT_MAX_DURATION_MS;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private final WriteBudget writeBudget = new WriteBudget();
+    private int generation = 0;
+    private @Nullable DataSource.Factory upstreamFactory;
+    // Media playlists listed by the master playlist with their rendition groups, and the attached uri
+    private final Map<String, Integer> playlistGroups = new HashMap<>();
+    private final Map<String, Playlist> playlists = new LinkedHashMap<>();
+    private final Set<String> recordedInitSegments = new HashSet<>();
+    private boolean recording = false;
+    private @Nullable Cache cache;
+
+    TimeshiftBuffer(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+
+        writeBudget.setMaxBytesPerHour(DEFAULT_MAX_WRITE_BYTES_PER_HOUR);
+
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Polls still scheduled at release would record into the released cache
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Bounds apply to streams set afterwards, the write budget applies at once,
+     * disabling also drops the buffer of the current stream.
+     * @param maxWriteBytesPerHour 0 for unlimited
+     */
+    synchronized void configure(boolean enabled, long maxDurationMs, long maxBytes, long maxWriteBytesPerHour) {
+        Logger.d(TAG, "Configuring timeshift, enabled: {b}, for {}ms or {} bytes", Logger.b(enabled), maxDurationMs, maxBytes);
+
+        this.enabled = enabled;
+        this.maxDurationMs = Math.max(0, maxDurationMs);
+        this.maxBytes = Math.max(0, maxBytes);
+        writeBudget.setMaxBytesPerHour(maxWriteBytesPerHour);
+
+        if (!enabled) {
+            detach();
+        }
+    }
+
+    synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts buffering a new HLS stream, whatever was buffered for the previous one is dropped.
+     * @return Factory for the media source to load the stream with
+     */
+    synchronized DataSource.Factory attach(Uri uri, DataSource.Factory upstreamFactory) {
+        detach();
+
+        this.upstreamFactory = upstreamFactory;
+        playlistGroups.put(uri.toString(), GROUP_VARIANT);
+
+        Cache attachedCache = openCache();
+        int attachedGeneration = generation;
+        return () -> new TimeshiftDataSource(this, upstreamFactory.createDataSource(), attachedCache, attachedGeneration);
+    }
+
+    /**
+     * Stops buffering and drops the buffer.
+     */
+    synchronized void detach() {
+        generation++;
+        upstreamFactory = null;
+        playlistGroups.clear();
+        playlists.clear();
+        recordedInitSegments.clear();
+
+        if (recording) {
+            recording = false;
+            listener.onTimeshiftUpdated(0, 0, false);
+        }
+
+        executor.execute(this::clearCache);
+    }
+
+    /**
+     * Drops the buffer, releases the cache with its folder lock and shuts down the recording thread.
+     * The buffer can't be used afterwards.
+     */
+    void release() {
+        detach();
+        executor.execute(() -> {
+            Cache openedCache = getCache();
+            if (openedCache != null) {
+                openedCache.release();
+            }
+        });
+        executor.shutdown();
+    }
+
+    synchronized String getState() {
+        long durationUs = 0;
+        long bytes = 0;
+        for (Playlist playlist: playlists.values()) {
+            durationUs = Math.max(durationUs, playlist.window.getDurationUs());
+            bytes += playlist.window.getBytes();
+        }
+
+        return new JsonWriter()
+            .beginObject()
+            .name("enabled").value(enabled)
+            .name("active").value(!playlists.isEmpty())
+            .name("recording").value(recording)
+            .name("durationMs").value(C.usToMs(durationUs))
+            .name("bytes").value(bytes)
+            .name("writtenBytes").value(writeBudget.getTotalBytes())
+            .name("maxDurationMs").value(maxDurationMs)
+            .name("maxBytes").value(maxBytes)
+            .name("maxWriteBytesPerHour").value(writeBudget.getMaxBytesPerHour())
+            .endObject()
+            .toString();
+    }
+
+    /**
+     * Called by TimeshiftDataSource on a loader thread.
+     * @return Playlist to serve instead of the requested uri or null if the uri is not a playlist
+     */
+    @Nullable byte[] loadPlaylist(Uri uri, DataSource upstream, int attachedGeneration) throws IOException {
+        String uriString = uri.toString();
+
+        synchronized (this) {
+            if (attachedGeneration != generation) {
+                return null;
+            }
+
+            Playlist playlist = playlists.get(uriString);
+            if (playlist != null && SystemClock.elapsedRealtime() - playlist.refreshedAtMs < C.usToMs(playlist.window.getTargetDurationUs())) {
+                return render(playlist);
+            }
+
+            if (playlist == null && !playlistGroups.containsKey(uriString) && !isPlaylistPath(uri)) {
+                return null;
+            }
+        }
+
+        byte[] data = load(upstream, uri);
+        HlsPlaylist parsed = new HlsPlaylistParser().parse(uri, new ByteArrayInputStream(data));
+
+        if (parsed instanceof HlsMasterPlaylist) {
+            addPlaylistGroups((HlsMasterPlaylist) parsed, attachedGeneration);
+            return data;
+        }
+
+        HlsMediaPlaylist mediaPlaylist = (HlsMediaPlaylist) parsed;
+        if (!isSupported(mediaPlaylist)) {
+            Logger.d(TAG, "Not buffering, it's not a plain live playlist", uriString);
+            return data;
+        }
+
+        synchronized (this) {
+            if (attachedGeneration != generation) {
+                return data;
+            }
+
+            Playlist existing = playlists.get(uriString);
+            Integer group = playlistGroups.get(uriString);
+            Playlist playlist = existing != null ? existing : new Playlist(uriString, group != null ? group : GROUP_VARIANT);
+            if (existing == null) {
+                Logger.d(TAG, "Buffering", uriString);
+
+                dropGroup(playlist.group);
+                playlists.put(uriString, playlist);
+                schedulePoll(playlist, attachedGeneration, C.usToMs(mediaPlaylist.targetDurationUs));
+            }
+            update(playlist, mediaPlaylist);
+
+            executor.execute(() -> record(playlist, attachedGeneration));
+            return render(playlist);
+        }
+    }
+
+    private synchronized void addPlaylistGroups(HlsMasterPlaylist master, int attachedGeneration) {
+        if (attachedGeneration != generation) {
+            return;
+        }
+
+        for (HlsMasterPlaylist.Variant variant: master.variants) {
+            playlistGroups.put(variant.url.toString(), GROUP_VARIANT);
+        }
+        for (HlsMasterPlaylist.Rendition audio: master.audios) {
+            if (audio.url != null) {
+                playlistGroups.put(audio.url.toString(), GROUP_AUDIO);
+            }
+        }
+        for (HlsMasterPlaylist.Rendition subtitle: master.subtitles) {
+            if (subtitle.url != null) {
+                playlistGroups.put(subtitle.url.toString(), GROUP_SUBTITLE);
+            }
+        }
+    }
+
+    /**
+     * Stops buffering the playlist of the group the player has switched away from and drops what's recorded for it,
+     * its window would have a gap if the player switched back.
+     */
+    // Guarded by this
+    private void dropGroup(int group) {
+        List<String> evicted = new ArrayList<>();
+
+        Iterator<Playlist> iterator = playlists.values().iterator();
+        while (iterator.hasNext()) {
+            Playlist playlist = iterator.next();
+            if (playlist.group != group) {
+                continue;
+            }
+
+            Logger.d(TAG, "Stopped buffering, the player switched to another rendition", playlist.uri);
+            iterator.remove();
+
+            for (TimeshiftWindow.Segment segment: playlist.window.getSegments()) {
+                if (segment.isRecorded()) {
+                    evicted.add(segment.uri);
+                }
+                if (segment.initUri != null && recordedInitSegments.remove(segment.initUri)) {
+                    evicted.add(segment.initUri);
+                }
+            }
+        }
+
+        evict(evicted);
+    }
+
+    // Guarded by this
+    private void update(Playlist playlist, HlsMediaPlaylist mediaPlaylist) {
+        TimeshiftWindow window = playlist.window;
+        window.setHeader(mediaPlaylist.version, mediaPlaylist.targetDurationUs, mediaPlaylist.hasIndependentSegments);
+
+        int count = mediaPlaylist.segments.size();
+        if (playlist.recordFromSequence == C.INDEX_UNSET) {
+            playlist.recordFromSequence = mediaPlaylist.mediaSequence + Math.max(0, count - INITIAL_SEGMENTS);
+        }
+        playlist.firstAvailableSequence = mediaPlaylist.mediaSequence;
+        playlist.refreshedAtMs = SystemClock.elapsedRealtime();
+
+        for (int i = 0; i < count; i++) {
+            HlsMediaPlaylist.Segment segment = mediaPlaylist.segments.get(i);
+            HlsMediaPlaylist.Segment initSegment = segment.initializationSegment;
+
+            String initByteRange = null;
+            if (initSegment != null && initSegment.byterangeLength != C.LENGTH_UNSET) {
+                initByteRange = initSegment.byterangeLength + "@" + initSegment.byterangeOffset;
+            }
+
+            window.add(new TimeshiftWindow.Segment(
+                mediaPlaylist.mediaSequence + i,
+                segment.durationUs,
+                UriUtil.resolve(mediaPlaylist.baseUri, segment.url),
+                mediaPlaylist.discontinuitySequence + segment.relativeDiscontinuitySequence,
+                segment.fullSegmentEncryptionKeyUri != null ? UriUtil.resolve(mediaPlaylist.baseUri, segment.fullSegmentEncryptionKeyUri) : null,
+                segment.encryptionIV,
+                initSegment != null ? UriUtil.resolve(mediaPlaylist.baseUri, initSegment.url) : null,
+                initByteRange
+            ));
+        }
+
+        trim();
+    }
+
+    /**
+     * Bounds every window to the same duration, shortened as much as needed to fit all windows in maxBytes.
+     */
+    // Guarded by this
+    private void trim() {
+        long totalBytes = 0;
+        long longestDurationUs = 0;
+        for (Playlist playlist: playlists.values()) {
+            totalBytes += playlist.window.getBytes();
+            longestDurationUs = Math.max(longestDurationUs, playlist.window.getDurationUs());
+        }
+
+        long maxDurationUs = C.msToUs(maxDurationMs);
+        if (maxBytes > 0 && totalBytes > maxBytes) {
+            maxDurationUs = Math.min(maxDurationUs, (long) (longestDurationUs * ((double) maxBytes / totalBytes)));
+        }
+
+        List<String> evicted = new ArrayList<>();
+        for (Playlist playlist: playlists.values()) {
+            for (TimeshiftWindow.Segment segment: playlist.window.trim(maxDurationUs, playlist.firstAvailableSequence)) {
+                if (segment.isRecorded()) {
+                    evicted.add(segment.uri);
+                }
+            }
+        }
+
+        evict(evicted);
+    }
+
+    // Guarded by this
+    private void evict(List<String> keys) {
+        if (!keys.isEmpty() && cache != null) {
+            Cache openedCache = cache;
+            executor.execute(() -> {
+                for (String key: keys) {
+                    openedCache.removeResource(key);
+                }
+            });
+        }
+    }
+
+    private void schedulePoll(Playlist playlist, int attachedGeneration, long delayMs) {
+        executor.schedule(() -> poll(playlist, attachedGeneration), Math.max(delayMs, MIN_REFRESH_INTERVAL_MS), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Keeps the window advancing when the player doesn't refresh the playlist itself, e.g. while paused.
+     */
+    private void poll(Playlist playlist, int attachedGeneration) {
+        DataSource.Factory factory;
+        synchronized (this) {
+            if (!isActive(playlist, attachedGeneration)) {
+                return;
+            }
+            factory = upstreamFactory;
+        }
+
+        long delayMs;
+        try {
+            Uri uri = Uri.parse(playlist.uri);
+            HlsPlaylist parsed = new HlsPlaylistParser().parse(uri, new ByteArrayInputStream(load(factory.createDataSource(), uri)));
+            if (!(parsed instanceof HlsMediaPlaylist) || !isSupported((HlsMediaPlaylist) parsed)) {
+                Logger.w(TAG, "Stopped buffering, it's no longer a plain live playlist", playlist.uri);
+                return;
+            }
+
+            synchronized (this) {
+                if (!isActive(playlist, attachedGeneration)) {
+                    return;
+                }
+                update(playlist, (HlsMediaPlaylist) parsed);
+            }
+
+            delayMs = C.usToMs(((HlsMediaPlaylist) parsed).targetDurationUs);
+        } catch (IOException e) {
+            Logger.w(TAG, "Failed to refresh", playlist.uri, e.getMessage());
+            delayMs = FAILURE_RETRY_MS;
+        }
+
+        record(playlist, attachedGeneration);
+        schedulePoll(playlist, attachedGeneration, delayMs);
+    }
+
+    /**
+     * Downloads segments that are not recorded yet, one at a time.
+     * Runs on the executor, a segment the player is loading meanwhile is waited for and read from the cache.
+     */
+    private void record(Playlist playlist, int attachedGeneration) {
+        List<TimeshiftWindow.Segment> segments;
+        DataSource.Factory factory;
+        long recordFromSequence;
+        synchronized (this) {
+            if (!isActive(playlist, attachedGeneration)) {
+                return;
+            }
+            segments = playlist.window.getUnrecorded();
+            factory = upstreamFactory;
+            recordFromSequence = playlist.recordFromSequence;
+        }
+
+        byte[] buffer = null;
+
+        for (TimeshiftWindow.Segment segment: segments) {
+            if (segment.sequence < recordFromSequence) {
+                continue;
+            }
+
+            synchronized (this) {
+                if (segment.isRecorded() || !playlist.window.contains(segment)) {
+                    // Recorded by the player or an earlier pass or trimmed away while the previous segment was downloading
+                    continue;
+                }
+
+                if (!isActive(playlist, attachedGeneration) || !canWrite()) {
+                    return;
+                }
+            }
+
+            if (buffer == null) {
+                buffer = new byte[READ_BUFFER_SIZE];
+            }
+
+            try {
+                if (segment.initUri != null && !isInitSegmentRecorded(segment.initUri)) {
+                    onLoaded(segment.initUri, download(factory, segment.initUri, buffer), attachedGeneration);
+                }
+                onLoaded(segment.uri, download(factory, segment.uri, buffer), attachedGeneration);
+            } catch (IOException e) {
+                Logger.w(TAG, "Failed to record", segment.uri, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called by TimeshiftDataSource on a loader thread before loading a resource that's not a playlist.
+     * @return Whether the resource is a segment or an initialization section to write to the buffer as it's loaded
+     */
+    synchronized boolean shouldRecord(String uri, int attachedGeneration) {
+        if (attachedGeneration != generation) {
+            return false;
+        }
+
+        for (Playlist playlist: playlists.values()) {
+            TimeshiftWindow.Segment segment = playlist.window.find(uri);
+            if (segment == null) {
+                continue;
+            }
+
+            boolean recorded = uri.equals(segment.uri) ? segment.isRecorded() : recordedInitSegments.contains(uri);
+            return !recorded && segment.sequence >= playlist.recordFromSequence && canWrite();
+        }
+        return false;
+    }
+
+    /**
+     * Accounts a segment or an initialization section completely written to the buffer,
+     * by the player through TimeshiftDataSource or by the recorder, whichever finished first.
+     */
+    synchronized void onLoaded(String uri, long bytes, int attachedGeneration) {
+        if (attachedGeneration != generation) {
+            return;
+        }
+
+        for (Playlist playlist: playlists.values()) {
+            TimeshiftWindow.Segment segment = playlist.window.find(uri);
+            if (segment == null) {
+                continue;
+            }
+
+            if (!uri.equals(segment.uri)) {
+                if (recordedInitSegments.add(uri)) {
+                    writeBudget.onWritten(bytes);
+                }
+                return;
+            }
+
+            if (playlist.window.onRecorded(segment, bytes)) {
+                writeBudget.onWritten(bytes);
+                recording = true;
+                trim();
+                notifyUpdated();
+            }
+            return;
+        }
+    }
+
+    private synchronized boolean isInitSegmentRecorded(String uri) {
+        return recordedInitSegments.contains(uri);
+    }
+
+    // Guarded by this
+    private boolean isActive(Playlist playlist, int attachedGeneration) {
+        return attachedGeneration == generation && playlists.get(playlist.uri) == playlist;
+    }
+
+    // Guarded by this
+    private boolean canWrite() {
+        boolean canWrite = writeBudget.canWrite(SystemClock.elapsedRealtime());
+        if (!canWrite && recording) {
+            Logger.w(TAG, "Hourly write budget of {} bytes is spent, pausing recording", writeBudget.getMaxBytesPerHour());
+            recording = false;
+            notifyUpdated();
+        }
+        return canWrite;
+    }
+
+    // Guarded by this
+    private Cache openCache() {
+        if (cache == null) {
+            File root = context.getExternalFilesDir(null);
+            cache = new SimpleCache(new File(root != null ? root : context.getFilesDir(), DIRECTORY), new NoOpCacheEvictor(), new ExoDatabaseProvider(context));
+
+            // Whatever was recorded before the process died is of no use
+            executor.execute(this::clearCache);
+        }
+        return cache;
+    }
+
+    private synchronized @Nullable Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * Reads a resource through the cache, which writes it unless it's already there,
+     * waiting for the player if it's writing the resource.
+     * @return Bytes read
+     */
+    private long download(DataSource.Factory factory, String uri, byte[] buffer) throws IOException {
+        CacheDataSource dataSource = new CacheDataSource(getCache(), factory.createDataSource(), CacheDataSource.FLAG_BLOCK_ON_CACHE);
+        long total = 0;
+        try {
+            dataSource.open(new DataSpec(Uri.parse(uri)));
+            int read;
+            while ((read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                total += read;
+            }
+        } finally {
+            Util.closeQuietly(dataSource);
+        }
+        return total;
+    }
+
+    // Guarded by this
+    private void notifyUpdated() {
+        long durationUs = 0;
+        long bytes = 0;
+        for (Playlist playlist: playlists.values()) {
+            durationUs = Math.max(durationUs, playlist.window.getDurationUs());
+            bytes += playlist.window.getBytes();
+        }
+        listener.onTimeshiftUpdated(C.usToMs(durationUs), bytes, recording);
+    }
+
+    /**
+     * Removes everything but the resources of the stream being buffered.
+     */
+    private void clearCache() {
+        Cache openedCache;
+        Set<String> keys;
+        synchronized (this) {
+            if (cache == null) {
+                return;
+            }
+            openedCache = cache;
+            keys = new HashSet<>(cache.getKeys());
+            keys.removeAll(recordedInitSegments);
+            for (Playlist playlist: playlists.values()) {
+                for (TimeshiftWindow.Segment segment: playlist.window.getSegments()) {
+                    keys.remove(segment.uri);
+                }
+            }
+        }
+
+        for (String key: keys) {
+            openedCache.removeResource(key);
+        }
+    }
+
+    private static byte[] render(Playlist playlist) {
+        return playlist.window.render().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] load(DataSource dataSource, Uri uri) throws IOException {
+        DataSourceInputStream input = new DataSourceInputStream(dataSource, new DataSpec(uri));
+        try {
+            return Util.toByteArray(input);
+        } finally {
+            Util.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Event and VOD playlists already keep every segment, byte range segments and sample encryption are not supported.
+     */
+    private static boolean isSupported(HlsMediaPlaylist playlist) {
+        if (playlist.hasEndTag || playlist.playlistType == HlsMediaPlaylist.PLAYLIST_TYPE_EVENT || playlist.protectionSchemes != null) {
+            return false;
+        }
+
+        for (HlsMediaPlaylist.Segment segment: playlist.segments) {
+            if (segment.byterangeLength != C.LENGTH_UNSET || segment.drmInitData != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPlaylistPath(Uri uri) {
+        String path = uri.getPath();
+        return path != null && (path.endsWith(".m3u8") || path.endsWith(".m3u"));
+    }
+}
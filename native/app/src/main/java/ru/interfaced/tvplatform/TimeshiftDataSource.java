@@ -0,0 +1,127 @@
+package ru.interfaced.tvplatform;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves playlists rewritten by TimeshiftBuffer and segments it recorded.
+ * Segments the buffer wants are written to it as the player loads them, and a segment the recorder is downloading
+ * meanwhile is waited for and read from the buffer, so that nothing is fetched from the network twice.
+ * Anything else, e.g. encryption keys, is loaded from upstream without being written.
+ */
+class TimeshiftDataSource implements DataSource {
+    private final TimeshiftBuffer buffer;
+    private final DataSource upstream;
+    private final DataSource recordingSource;
+    private final DataSource segmentSource;
+    private final int generation;
+
+    private @Nullable DataSource current;
+
+    // Resource being written to the buffer by the current load, null when not recording
+    private @Nullable String recordingUri;
+    private long bytesRemaining;
+    private long bytesRead;
+    private boolean ended;
+
+    TimeshiftDataSource(TimeshiftBuffer buffer, DataSource upstream, Cache cache, int generation) {
+        this.buffer = buffer;
+        this.upstream = upstream;
+        this.generation = generation;
+
+        recordingSource = new CacheDataSource(
+            cache,
+            upstream,
+            new FileDataSource(),
+            new CacheDataSink(cache, CacheDataSink.DEFAULT_FRAGMENT_SIZE),
+            CacheDataSource.FLAG_BLOCK_ON_CACHE | CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
+            null
+        );
+        segmentSource = new CacheDataSource(cache, upstream, new FileDataSource(), null, CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR, null);
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        // Recorded bytes are not transferred and shouldn't affect bandwidth estimation
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        byte[] playlist = null;
+        if (dataSpec.position == 0 && dataSpec.length == C.LENGTH_UNSET) {
+            playlist = buffer.loadPlaylist(dataSpec.uri, upstream, generation);
+        }
+
+        recordingUri = null;
+        if (playlist != null) {
+            current = new ByteArrayDataSource(playlist);
+        } else if (buffer.shouldRecord(dataSpec.uri.toString(), generation)) {
+            current = recordingSource;
+            recordingUri = dataSpec.uri.toString();
+        } else {
+            current = segmentSource;
+        }
+
+        bytesRead = 0;
+        ended = false;
+        bytesRemaining = current.open(dataSpec);
+        return bytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int read = current.read(buffer, offset, readLength);
+        if (read == C.RESULT_END_OF_INPUT) {
+            ended = true;
+        } else {
+            bytesRead += read;
+        }
+        return read;
+    }
+
+    @Override
+    public @Nullable Uri getUri() {
+        return current != null ? current.getUri() : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return current != null ? current.getResponseHeaders() : upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current == null) {
+            return;
+        }
+
+        DataSource closed = current;
+        String recordedUri = recordingUri;
+        current = null;
+        recordingUri = null;
+
+        // Throws when the written data couldn't be committed, then it's not accounted
+        closed.close();
+
+        // Loads cancelled half way leave a partial span the recorder completes later
+        boolean complete = ended || (bytesRemaining != C.LENGTH_UNSET && bytesRead == bytesRemaining);
+        if (recordedUri != null && complete) {
+            buffer.onLoaded(recordedUri, bytesRead, generation);
+        }
+    }
+}
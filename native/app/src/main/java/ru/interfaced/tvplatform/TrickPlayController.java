@@ -0,0 +1,186 @@
+package ru.interfaced.tvplatform;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DVR-style fast forward and rewind for rates the decoder can't sustain.
+ * Steps through the content with sync frame seeks paced by the requested rate. Audio renderers are disabled while active.
+ * I-frame only renditions would play smoother, but HLS parsers of ExoPlayer 2.11 skip EXT-X-I-FRAME-STREAM-INF variants.
+ * All methods are expected to be called on the player application thread.
+ */
+class TrickPlayController {
+    private static final String TAG = "TrickPlayController";
+
+    /**
+     * Highest rate that is still handled by regular decoding with PlaybackParameters.
+     */
+    static final float MAX_DECODED_RATE = 2f;
+
+    static final float MAX_RATE = 64f;
+
+    private static final long STEP_INTERVAL_MS = 250;
+
+    interface Listener {
+        void onTrickPlayRateChanged(float rate);
+    }
+
+    private final SimpleExoPlayer player;
+    private final DefaultTrackSelector trackSelector;
+    private final SeekScheduler seekScheduler;
+    private final Listener listener;
+    private final Handler handler;
+
+    private boolean active = false;
+    private float rate = 1f;
+
+    private long anchorPositionMs;
+    private long anchorRealtimeMs;
+
+    private List<Integer> disabledAudioRenderers = new ArrayList<>();
+
+    private final Runnable stepRunnable = this::step;
+
+    TrickPlayController(SimpleExoPlayer player, DefaultTrackSelector trackSelector, SeekScheduler seekScheduler, Listener listener) {
+        this.player = player;
+        this.trackSelector = trackSelector;
+        this.seekScheduler = seekScheduler;
+        this.listener = listener;
+        this.handler = new Handler(player.getApplicationLooper());
+    }
+
+    static boolean requiresTrickPlay(float rate) {
+        return rate < 0 || rate > MAX_DECODED_RATE;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    float getRate() {
+        return rate;
+    }
+
+    /**
+     * @return Effective rate that was applied
+     */
+    float start(float requestedRate) {
+        float clampedRate = Math.max(-MAX_RATE, Math.min(MAX_RATE, requestedRate));
+
+        Logger.d(TAG, "Stepping through sync frames at {f}", Logger.f(clampedRate));
+
+        if (!active) {
+            disableAudio();
+            seekScheduler.scrubStart();
+        }
+
+        active = true;
+        anchorPositionMs = player.getCurrentPosition();
+        anchorRealtimeMs = SystemClock.elapsedRealtime();
+
+        handler.removeCallbacks(stepRunnable);
+        handler.postDelayed(stepRunnable, STEP_INTERVAL_MS);
+
+        rate = clampedRate;
+        return rate;
+    }
+
+    void stop() {
+        if (!active) {
+            return;
+        }
+
+        Logger.d(TAG, "Leaving trick play");
+
+        handler.removeCallbacks(stepRunnable);
+        seekScheduler.scrubEnd();
+
+        player.setPlaybackParameters(PlaybackParameters.DEFAULT);
+        restoreAudio();
+
+        active = false;
+        rate = 1f;
+    }
+
+    /**
+     * Leaves trick play when the media is reset. Restores audio renderers and playback parameters
+     * like stop does, but doesn't end scrubbing as the seek scheduler is reset along with the media.
+     */
+    void reset() {
+        handler.removeCallbacks(stepRunnable);
+
+        if (active) {
+            restoreAudio();
+            player.setPlaybackParameters(PlaybackParameters.DEFAULT);
+        }
+
+        active = false;
+        rate = 1f;
+    }
+
+    /**
+     * The page set state of a renderer on its own, it's not to be restored when trick play ends.
+     */
+    void onRendererOverridden(int rendererIndex) {
+        disabledAudioRenderers.remove(Integer.valueOf(rendererIndex));
+    }
+
+    private void step() {
+        if (!active) {
+            return;
+        }
+
+        long elapsedMs = SystemClock.elapsedRealtime() - anchorRealtimeMs;
+        long targetMs = anchorPositionMs + (long) (elapsedMs * rate);
+        long durationMs = player.getDuration();
+
+        boolean reachedStart = targetMs <= 0;
+        boolean reachedEnd = durationMs != C.TIME_UNSET && targetMs >= durationMs;
+
+        if (reachedStart || reachedEnd) {
+            seekScheduler.seekTo(reachedStart ? 0 : durationMs);
+            stop();
+            listener.onTrickPlayRateChanged(rate);
+            return;
+        }
+
+        seekScheduler.seekTo(targetMs);
+        handler.postDelayed(stepRunnable, STEP_INTERVAL_MS);
+    }
+
+    private void disableAudio() {
+        DefaultTrackSelector.Parameters parameters = trackSelector.getParameters();
+        DefaultTrackSelector.ParametersBuilder builder = trackSelector.buildUponParameters();
+
+        for (int i = 0; i < player.getRendererCount(); i++) {
+            if (player.getRendererType(i) == C.TRACK_TYPE_AUDIO && !parameters.getRendererDisabled(i)) {
+                builder.setRendererDisabled(i, true);
+                disabledAudioRenderers.add(i);
+            }
+        }
+
+        trackSelector.setParameters(builder);
+    }
+
+    private void restoreAudio() {
+        if (disabledAudioRenderers.isEmpty()) {
+            return;
+        }
+
+        DefaultTrackSelector.ParametersBuilder builder = trackSelector.buildUponParameters();
+        for (int rendererIndex: disabledAudioRenderers) {
+            builder.setRendererDisabled(rendererIndex, false);
+        }
+        trackSelector.setParameters(builder);
+
+        disabledAudioRenderers.clear();
+    }
+}
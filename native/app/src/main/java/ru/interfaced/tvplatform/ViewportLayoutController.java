@@ -0,0 +1,177 @@
+package ru.interfaced.tvplatform;
+
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.RelativeLayout;
+
+import com.google.android.exoplayer2.ui.AspectRatioFrameLayout;
+
+/**
+ * Collects viewport geometry changes and applies them together on the next frame.
+ * Setters can be called from any thread, values that didn't change since the last frame are skipped,
+ * so an animated area change costs at most one layout pass per frame.
+ * Must be created on the UI thread.
+ */
+class ViewportLayoutController implements Choreographer.FrameCallback, View.OnLayoutChangeListener {
+    private static final String TAG = "ViewportLayoutController";
+
+    private static final int UNSET = Integer.MIN_VALUE;
+
+    private final ViewGroup viewport;
+    private final AspectRatioFrameLayout videoContainer;
+    private final Choreographer choreographer;
+
+    // Pending state, guarded by this
+    private int pendingX = UNSET;
+    private int pendingY;
+    private int pendingWidth;
+    private int pendingHeight;
+    private int pendingRotation = UNSET;
+    private int pendingResizeMode = UNSET;
+    private float pendingAspectRatio = Float.NaN;
+    private boolean frameScheduled = false;
+
+    // Applied state, only accessed on UI thread
+    private int rotation = 0;
+    private int resizeMode = AspectRatioFrameLayout.RESIZE_MODE_FIT;
+    private float aspectRatio = 0;
+
+    ViewportLayoutController(ViewGroup viewport, AspectRatioFrameLayout videoContainer) {
+        this.viewport = viewport;
+        this.videoContainer = videoContainer;
+        this.choreographer = Choreographer.getInstance();
+
+        // Keep container centered by layout rather than by correcting its position after every aspect ratio change
+        RelativeLayout.LayoutParams containerParams = (RelativeLayout.LayoutParams) videoContainer.getLayoutParams();
+        containerParams.width = ViewGroup.LayoutParams.MATCH_PARENT;
+        containerParams.height = ViewGroup.LayoutParams.MATCH_PARENT;
+        containerParams.addRule(RelativeLayout.CENTER_IN_PARENT);
+        videoContainer.setLayoutParams(containerParams);
+        videoContainer.addOnLayoutChangeListener(this);
+    }
+
+    synchronized void setArea(int x, int y, int width, int height) {
+        pendingX = x;
+        pendingY = y;
+        pendingWidth = width;
+        pendingHeight = height;
+        scheduleFrame();
+    }
+
+    /**
+     * @param rotation Clockwise rotation in degrees, video is scaled to fit viewport after rotation
+     */
+    synchronized void setRotation(int rotation) {
+        pendingRotation = rotation;
+        scheduleFrame();
+    }
+
+    /**
+     * @param resizeMode One of AspectRatioFrameLayout.RESIZE_MODE_* constants
+     */
+    synchronized void setResizeMode(int resizeMode) {
+        pendingResizeMode = resizeMode;
+        scheduleFrame();
+    }
+
+    /**
+     * @param aspectRatio Width to height ratio or 0 to fill viewport
+     */
+    synchronized void setAspectRatio(float aspectRatio) {
+        pendingAspectRatio = aspectRatio;
+        scheduleFrame();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        int x, y, width, height, newRotation, newResizeMode;
+        float newAspectRatio;
+
+        synchronized (this) {
+            x = pendingX;
+            y = pendingY;
+            width = pendingWidth;
+            height = pendingHeight;
+            newRotation = pendingRotation;
+            newResizeMode = pendingResizeMode;
+            newAspectRatio = pendingAspectRatio;
+
+            pendingX = UNSET;
+            pendingRotation = UNSET;
+            pendingResizeMode = UNSET;
+            pendingAspectRatio = Float.NaN;
+            frameScheduled = false;
+        }
+
+        boolean layoutChanged = false;
+
+        if (x != UNSET) {
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) viewport.getLayoutParams();
+            if (params.width != width || params.height != height || params.leftMargin != x || params.topMargin != y) {
+                params.width = width;
+                params.height = height;
+                params.setMargins(x, y, 0, 0);
+                layoutChanged = true;
+            }
+        }
+
+        if (newResizeMode != UNSET && newResizeMode != resizeMode) {
+            resizeMode = newResizeMode;
+            videoContainer.setResizeMode(resizeMode);
+        }
+
+        if (!Float.isNaN(newAspectRatio) && newAspectRatio != aspectRatio) {
+            aspectRatio = newAspectRatio;
+            videoContainer.setAspectRatio(aspectRatio);
+        }
+
+        if (newRotation != UNSET && newRotation != rotation) {
+            rotation = newRotation;
+            videoContainer.setRotation(rotation);
+        }
+
+        if (layoutChanged) {
+            // Rotation scale is updated once the container is laid out with the new geometry
+            viewport.requestLayout();
+        } else {
+            updateRotationScale();
+        }
+    }
+
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+            updateRotationScale();
+        }
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled) {
+            return;
+        }
+        frameScheduled = true;
+
+        viewport.post(() -> choreographer.postFrameCallback(this));
+    }
+
+    private void updateRotationScale() {
+        boolean sideways = rotation % 180 != 0;
+        int horizontalDimension = sideways ? videoContainer.getHeight() : videoContainer.getWidth();
+        int verticalDimension = sideways ? videoContainer.getWidth() : videoContainer.getHeight();
+
+        float scale = 1f;
+        if (rotation != 0 && horizontalDimension != 0 && verticalDimension != 0) {
+            scale = Math.min(
+                (float) viewport.getWidth() / horizontalDimension,
+                (float) viewport.getHeight() / verticalDimension
+            );
+        }
+
+        if (videoContainer.getScaleX() != scale || videoContainer.getScaleY() != scale) {
+            Logger.d(TAG, "Scaling rotated video to {f}", Logger.f(scale));
+            videoContainer.setScaleX(scale);
+            videoContainer.setScaleY(scale);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ru.interfaced.tvplatform;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.MessageQueue;
+import android.view.ViewTreeObserver;
+
+import com.google.android.exoplayer2.offline.DownloadManager;
+
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Drives web interfaces the way WebView does: bridge calls come from a dedicated background thread
+ * while the main looper stays paused, so that everything an operation posts to the main thread
+ * can be counted before it runs.
+ * Requires paused looper mode.
+ */
+class BridgeSession {
+    static final Duration FRAME = Duration.ofMillis(16);
+
+    private static final long CALL_TIMEOUT_SECONDS = 10;
+    private static final long SETTLE_TIMEOUT_MS = 10000;
+    private static final long SETTLE_POLL_MS = 10;
+
+    /**
+     * Work caused by a scripted operation.
+     */
+    static class Cost {
+        final int mainThreadMessages;
+        final int scriptEvaluations;
+        final long allocatedBytes;
+
+        Cost(int mainThreadMessages, int scriptEvaluations, long allocatedBytes) {
+            this.mainThreadMessages = mainThreadMessages;
+            this.scriptEvaluations = scriptEvaluations;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        Cost plus(Cost other) {
+            return new Cost(
+                mainThreadMessages + other.mainThreadMessages,
+                scriptEvaluations + other.scriptEvaluations,
+                allocatedBytes + other.allocatedBytes
+            );
+        }
+
+        @Override
+        public String toString() {
+            return mainThreadMessages + " main thread messages, " +
+                scriptEvaluations + " script evaluations, " +
+                allocatedBytes + " bytes allocated";
+        }
+    }
+
+    final ActivityController<MainActivity> activityController;
+    final MainActivity activity;
+
+    private final HandlerThread bridgeThread;
+    private final Handler bridgeHandler;
+    private final AtomicInteger layoutPasses = new AtomicInteger();
+
+    BridgeSession() {
+        activityController = Robolectric.buildActivity(MainActivity.class).setup();
+        activity = activityController.get();
+
+        bridgeThread = new HandlerThread("JavaBridge");
+        bridgeThread.start();
+        bridgeHandler = new Handler(bridgeThread.getLooper());
+
+        ViewTreeObserver.OnGlobalLayoutListener layoutListener = layoutPasses::incrementAndGet;
+        activity.getWindow().getDecorView().getViewTreeObserver().addOnGlobalLayoutListener(layoutListener);
+
+        settleDownloads();
+        CountingShadowWebView.resetEvaluationCount();
+    }
+
+    Looper getBridgeLooper() {
+        return bridgeThread.getLooper();
+    }
+
+    /**
+     * Runs operation on the bridge thread and waits for it to complete.
+     * @return Bytes allocated by the operation
+     */
+    long call(Runnable operation) {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicLong allocated = new AtomicLong();
+
+        bridgeHandler.post(() -> {
+            long before = getAllocatedBytes();
+            try {
+                operation.run();
+            } finally {
+                allocated.set(getAllocatedBytes() - before);
+                done.countDown();
+            }
+        });
+
+        try {
+            assertTrue("Bridge call timed out", done.await(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+
+        return allocated.get();
+    }
+
+    /**
+     * Runs operation on the bridge thread, then lets the main thread process everything it caused.
+     */
+    Cost measure(Runnable operation) {
+        return measure(() -> call(operation), true);
+    }
+
+    /**
+     * Same as measure, but for operations that originate on the main thread, such as input or lifecycle.
+     */
+    Cost measureOnMainThread(Runnable operation) {
+        return measure(() -> {
+            long before = getAllocatedBytes();
+            operation.run();
+            return getAllocatedBytes() - before;
+        }, false);
+    }
+
+    void idleMainThread() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    /**
+     * Lets the main thread run for one display frame, including Choreographer callbacks and layout.
+     */
+    void nextFrame() {
+        shadowOf(Looper.getMainLooper()).idleFor(FRAME);
+    }
+
+    int getLayoutPasses() {
+        return layoutPasses.get();
+    }
+
+    void close() {
+        bridgeThread.quitSafely();
+        activityController.pause().stop().destroy();
+    }
+
+    /**
+     * Downloads open on a thread of their own and report to the main thread when the activity is created,
+     * waits for that to be over so that it doesn't count towards measured operations.
+     */
+    private void settleDownloads() {
+        DownloadManager downloadManager = DownloadController.getInstance(activity).getDownloadManager();
+        long deadlineMs = System.currentTimeMillis() + SETTLE_TIMEOUT_MS;
+
+        // Download interface starts the service once it's attached
+        while (!downloadManager.isInitialized() || shadowOf(activity.getApplication()).peekNextStartedService() == null) {
+            assertTrue("Downloads failed to initialize", System.currentTimeMillis() < deadlineMs);
+            idleMainThread();
+            try {
+                Thread.sleep(SETTLE_POLL_MS);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        idleMainThread();
+    }
+
+    private Cost measure(AllocationMeasuringOperation operation, boolean countPostedMessages) {
+        idleMainThread();
+
+        int messagesBefore = countPendingMainThreadMessages();
+        int evaluationsBefore = CountingShadowWebView.getEvaluationCount();
+
+        long allocated = operation.run();
+        int messages = countPendingMainThreadMessages() - messagesBefore;
+
+        idleMainThread();
+
+        return new Cost(
+            countPostedMessages ? messages : 0,
+            CountingShadowWebView.getEvaluationCount() - evaluationsBefore,
+            allocated
+        );
+    }
+
+    private interface AllocationMeasuringOperation {
+        long run();
+    }
+
+    private static long getAllocatedBytes() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Messages queued on the main looper, not counting sync barriers.
+     */
+    private static int countPendingMainThreadMessages() {
+        MessageQueue queue = Looper.getMainLooper().getQueue();
+        int count = 0;
+
+        synchronized (queue) {
+            Message message = ReflectionHelpers.getField(queue, "mMessages");
+            while (message != null) {
+                if (message.getTarget() != null) {
+                    count++;
+                }
+                message = ReflectionHelpers.getField(message, "next");
+            }
+        }
+
+        return count;
+    }
+}
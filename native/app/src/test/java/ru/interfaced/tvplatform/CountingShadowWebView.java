@@ -0,0 +1,33 @@
+package ru.interfaced.tvplatform;
+
+import android.webkit.ValueCallback;
+import android.webkit.WebView;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowWebView;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts scripts evaluated in any WebView.
+ */
+@Implements(WebView.class)
+public class CountingShadowWebView extends ShadowWebView {
+    private static final AtomicInteger evaluationCount = new AtomicInteger();
+
+    static int getEvaluationCount() {
+        return evaluationCount.get();
+    }
+
+    static void resetEvaluationCount() {
+        evaluationCount.set(0);
+    }
+
+    @Implementation
+    @Override
+    protected void evaluateJavascript(String script, ValueCallback<String> callback) {
+        evaluationCount.incrementAndGet();
+        super.evaluateJavascript(script, callback);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.interfaced.tvplatform;
+
+import android.view.MotionEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Main thread work and allocations caused by device interface calls and the events it dispatches.
+ * See PlayerWebInterfacePerformanceTest for how budgets are meant.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, shadows = CountingShadowWebView.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class DeviceWebInterfacePerformanceTest {
+    private static final int GETTER_CALLS = 1000;
+    private static final long GETTER_ALLOCATED_BYTES = 512;
+
+    private static final int HOVER_EVENTS = 200;
+    private static final int LIFECYCLE_CYCLES = 10;
+
+    private BridgeSession session;
+    private DeviceWebInterface deviceInterface;
+
+    @Before
+    public void setUp() {
+        session = new BridgeSession();
+        deviceInterface = new DeviceWebInterface(session.activity);
+    }
+
+    @After
+    public void tearDown() {
+        session.close();
+    }
+
+    @Test
+    public void gettersStayOnBridgeThread() {
+        session.measure(this::callGetters);
+
+        BridgeSession.Cost cost = session.measure(() -> {
+            for (int i = 0; i < GETTER_CALLS; i++) {
+                callGetters();
+            }
+        });
+
+        assertEquals("Getters: " + cost, 0, cost.mainThreadMessages);
+        assertEquals("Getters: " + cost, 0, cost.scriptEvaluations);
+        assertTrue("Getters: " + cost, cost.allocatedBytes <= GETTER_CALLS * GETTER_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void hoverStormNotifiesOnce() {
+        BridgeSession.Cost cost = session.measureOnMainThread(() -> {
+            for (int i = 0; i < HOVER_EVENTS; i++) {
+                MotionEvent event = MotionEvent.obtain(0, i, MotionEvent.ACTION_HOVER_MOVE, i, i, 0);
+                session.activity.dispatchGenericMotionEvent(event);
+                event.recycle();
+            }
+        });
+
+        assertTrue("Hover storm: " + cost, cost.scriptEvaluations <= 1);
+    }
+
+    @Test
+    public void lifecycleEvents() {
+        BridgeSession.Cost cost = session.measureOnMainThread(() -> {
+            for (int i = 0; i < LIFECYCLE_CYCLES; i++) {
+                session.activityController.pause().resume();
+            }
+        });
+
+        // Suspend and resume
+        assertTrue("Lifecycle: " + cost, cost.scriptEvaluations <= LIFECYCLE_CYCLES * 2);
+    }
+
+    private void callGetters() {
+        deviceInterface.getPlatformName();
+        deviceInterface.getManufacturer();
+        deviceInterface.getModel();
+        deviceInterface.getAndroidVersion();
+        deviceInterface.getPhysicalScreenWidth();
+        deviceInterface.getPhysicalScreenHeight();
+    }
+}
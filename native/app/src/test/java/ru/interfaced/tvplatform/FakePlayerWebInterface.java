@@ -0,0 +1,28 @@
+package ru.interfaced.tvplatform;
+
+import android.content.Context;
+import android.os.Looper;
+
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Player interface backed by a mock player.
+ * Tests deliver player callbacks themselves on the bridge thread, same as ExoPlayer does on its application thread.
+ */
+class FakePlayerWebInterface extends PlayerWebInterface {
+    final SimpleExoPlayer player = mock(SimpleExoPlayer.class);
+
+    FakePlayerWebInterface(Context context, Looper applicationLooper) {
+        super(context);
+        when(player.getApplicationLooper()).thenReturn(applicationLooper);
+    }
+
+    @Override
+    SimpleExoPlayer buildPlayer(DefaultTrackSelector trackSelector) {
+        return player;
+    }
+}
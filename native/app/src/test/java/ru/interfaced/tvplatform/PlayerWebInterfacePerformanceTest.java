@@ -0,0 +1,174 @@
+package ru.interfaced.tvplatform;
+
+import com.google.android.exoplayer2.Player;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Main thread work and allocations caused by scripted player sessions.
+ * Budgets describe current behaviour, any increase means batching or coalescing got lost.
+ * Allocation budgets are deliberately loose since they include logging and Robolectric overhead,
+ * they are meant to catch work that scales with the number of calls, not small changes.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, shadows = CountingShadowWebView.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PlayerWebInterfacePerformanceTest {
+    private static final int ZAPS = 20;
+
+    // Subtitle clear, stalled, ready and first frame events, shutter
+    private static final int ZAP_MAIN_THREAD_MESSAGES = 5;
+    // Stalled, ready and first frame events
+    private static final int ZAP_SCRIPT_EVALUATIONS = 3;
+    private static final long ZAP_ALLOCATED_BYTES = 64 * 1024;
+
+    private static final int SCRUB_STEPS = 100;
+    private static final int SCRUB_STEPS_PER_SEEK = 10;
+    private static final long SCRUB_STEP_ALLOCATED_BYTES = 1024;
+
+    private static final int ANIMATION_FRAMES = 30;
+    private static final long ANIMATION_FRAME_ALLOCATED_BYTES = 4 * 1024;
+
+    private BridgeSession session;
+    private FakePlayerWebInterface playerInterface;
+
+    @Before
+    public void setUp() {
+        session = new BridgeSession();
+        playerInterface = new FakePlayerWebInterface(session.activity, session.getBridgeLooper());
+
+        session.call(playerInterface::create);
+        session.nextFrame();
+    }
+
+    @After
+    public void tearDown() {
+        session.call(playerInterface::release);
+        session.close();
+    }
+
+    @Test
+    public void zapStorm() {
+        // First zap loads classes and warms up caches
+        session.measure(() -> zap(0));
+
+        BridgeSession.Cost total = new BridgeSession.Cost(0, 0, 0);
+        for (int i = 1; i <= ZAPS; i++) {
+            final int channel = i;
+            total = total.plus(session.measure(() -> zap(channel)));
+        }
+
+        assertTrue("Zap storm: " + total, total.mainThreadMessages <= ZAPS * ZAP_MAIN_THREAD_MESSAGES);
+        assertTrue("Zap storm: " + total, total.scriptEvaluations <= ZAPS * ZAP_SCRIPT_EVALUATIONS);
+        assertTrue("Zap storm: " + total, total.allocatedBytes <= ZAPS * ZAP_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void scrubbing() {
+        session.call(() -> {
+            playerInterface.scrubStart();
+            playerInterface.scrubEnd();
+        });
+        clearInvocations(playerInterface.player);
+
+        BridgeSession.Cost cost = session.measure(() -> {
+            playerInterface.scrubStart();
+
+            for (int i = 0; i < SCRUB_STEPS; i++) {
+                playerInterface.seekTo(i * 1000);
+
+                if (i % SCRUB_STEPS_PER_SEEK == SCRUB_STEPS_PER_SEEK - 1) {
+                    playerInterface.onSeekProcessed();
+                }
+            }
+
+            playerInterface.scrubEnd();
+            playerInterface.onSeekProcessed();
+        });
+
+        int processedSeeks = SCRUB_STEPS / SCRUB_STEPS_PER_SEEK + 1;
+
+        // Seeks arriving while one is in flight collapse into one, plus the exact seek on scrub end
+        verify(playerInterface.player, atMost(processedSeeks + 1)).seekTo(anyLong());
+
+        // Only seek processed events reach the page, individual steps are not posted anywhere
+        assertTrue("Scrubbing: " + cost, cost.mainThreadMessages <= processedSeeks);
+        assertTrue("Scrubbing: " + cost, cost.scriptEvaluations <= processedSeeks);
+        assertTrue("Scrubbing: " + cost, cost.allocatedBytes <= SCRUB_STEPS * SCRUB_STEP_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void areaAnimation() {
+        // Preview to fullscreen transition, page updates geometry several times per frame
+        animateArea(0, 1);
+
+        int layoutPassesBefore = session.getLayoutPasses();
+        BridgeSession.Cost total = new BridgeSession.Cost(0, 0, 0);
+
+        for (int frame = 1; frame <= ANIMATION_FRAMES; frame++) {
+            total = total.plus(animateArea(frame, ANIMATION_FRAMES));
+        }
+
+        int layoutPasses = session.getLayoutPasses() - layoutPassesBefore;
+
+        assertTrue("Area animation: " + layoutPasses + " layout passes", layoutPasses <= ANIMATION_FRAMES);
+        assertTrue("Area animation: " + total, total.mainThreadMessages <= ANIMATION_FRAMES);
+        assertEquals("Area animation: " + total, 0, total.scriptEvaluations);
+        assertTrue("Area animation: " + total, total.allocatedBytes <= ANIMATION_FRAMES * ANIMATION_FRAME_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void unchangedAreaSkipsLayout() {
+        session.measure(() -> playerInterface.setArea(0, 0, 1280, 720));
+        session.nextFrame();
+
+        int layoutPassesBefore = session.getLayoutPasses();
+
+        for (int frame = 0; frame < ANIMATION_FRAMES; frame++) {
+            session.measure(() -> playerInterface.setArea(0, 0, 1280, 720));
+            session.nextFrame();
+        }
+
+        assertEquals(0, session.getLayoutPasses() - layoutPassesBefore);
+    }
+
+    private void zap(int channel) {
+        playerInterface.setVideoURI("http://localhost/channel/" + channel + ".mp4");
+        playerInterface.start();
+
+        playerInterface.onPlayerStateChanged(true, Player.STATE_BUFFERING);
+        playerInterface.onPlayerStateChanged(true, Player.STATE_READY);
+        playerInterface.onRenderedFirstFrame();
+    }
+
+    private BridgeSession.Cost animateArea(int frame, int frames) {
+        float progress = (float) frame / frames;
+        int x = Math.round(100 * (1 - progress));
+        int y = Math.round(60 * (1 - progress));
+        int width = Math.round(640 + 640 * progress);
+        int height = Math.round(360 + 360 * progress);
+
+        BridgeSession.Cost cost = session.measure(() -> {
+            playerInterface.setArea(x, y, width, height);
+            playerInterface.setAspectRatio(16f / 9);
+            playerInterface.setArea(x, y, width, height);
+        });
+
+        session.nextFrame();
+
+        return cost;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.interfaced.tvplatform.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnumParserBenchmark {
+    private enum ResizeMode {
+        FIT,
+        FILL,
+        DEFAULT,
+        FIXED_HEIGHT,
+        FIXED_WIDTH,
+        FIXED_MIN
+    }
+
+    @Param({"fit", "fixed_min", "unknown"})
+    public String value;
+
+    @Benchmark
+    public ResizeMode parse() {
+        ResizeMode mode = EnumParser.parse(ResizeMode.class, value);
+        return mode != null ? mode : ResizeMode.DEFAULT;
+    }
+
+    /**
+     * Approach used before EnumParser, kept as a reference point.
+     */
+    @Benchmark
+    public ResizeMode valueOf() {
+        try {
+            return ResizeMode.valueOf(value.toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            return ResizeMode.DEFAULT;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.interfaced.tvplatform.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ErrorChainBenchmark {
+    private Throwable error;
+
+    @Setup
+    public void setUp() {
+        // Resembles a typical playback error: wrapper around a data source error around an IO error
+        IOException root = new IOException("Connection reset");
+        IOException source = new IOException("Response code: 404", root);
+        error = new RuntimeException(source);
+    }
+
+    @Benchmark
+    public String flatten() {
+        return ErrorChain.flatten(error);
+    }
+}
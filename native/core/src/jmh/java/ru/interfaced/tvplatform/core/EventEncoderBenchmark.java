@@ -0,0 +1,52 @@
+package ru.interfaced.tvplatform.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventEncoderBenchmark {
+    @Param({"none", "numbers", "strings"})
+    public String arguments;
+
+    private String argumentsJson;
+
+    @Setup
+    public void setUp() {
+        switch (arguments) {
+            case "numbers":
+                argumentsJson = "[1280,720,0,1.0]";
+                break;
+            case "strings":
+                argumentsJson = "[5,\"Media Error\",\"Response code: 404. Source error.\"]";
+                break;
+            default:
+                argumentsJson = "[]";
+        }
+    }
+
+    @Benchmark
+    public String message() {
+        return EventEncoder.toMessage("Player", "playback_rate_changed", argumentsJson);
+    }
+
+    @Benchmark
+    public String script() {
+        return EventEncoder.toScript("Player", "playback_rate_changed", argumentsJson);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.interfaced.tvplatform.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogRingBenchmark {
+    private LogRing ring;
+    private int x = 0;
+
+    @Setup
+    public void setUp() {
+        ring = new LogRing(2048);
+        for (int i = 0; i < 2048; i++) {
+            ring.write(i, LogRing.DEBUG, 1, "PlayerWebInterface", "setArea {} {} {} {}", 4, 0, 0, 1920, 1080);
+        }
+    }
+
+    @Benchmark
+    public void write() {
+        x++;
+        ring.write(x, LogRing.DEBUG, 1, "PlayerWebInterface", "setArea {} {} {} {}", 4, x, 0, 1920, 1080);
+    }
+
+    /**
+     * What the same record used to cost before the ring, for comparison.
+     */
+    @Benchmark
+    public String concatenate() {
+        x++;
+        return "setArea " + x + " " + 0 + " " + 1920 + " " + 1080;
+    }
+
+    @Benchmark
+    public String dump() {
+        return ring.dump();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.interfaced.tvplatform.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MediaFormatBenchmark {
+    @Param({
+        "https://cdn.example.com/live/channel-1/index.m3u8",
+        "https://cdn.example.com/vod/movie/manifest.mpd?token=0123456789abcdef0123456789abcdef",
+        "https://cdn.example.com/vod/movie.ism/Manifest",
+        "https://cdn.example.com/vod/movie.mp4"
+    })
+    public String uri;
+
+    @Benchmark
+    public MediaFormat detect() {
+        return MediaFormat.detect(uri);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.interfaced.tvplatform.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrackSnapshotBenchmark {
+    private static final int VIDEO_TRACKS = 6;
+    private static final int AUDIO_LANGUAGES = 3;
+    private static final int TEXT_LANGUAGES = 4;
+
+    private static final String[] LANGUAGES = {"en", "ru", "de", "fr"};
+
+    private final TrackSnapshotBuilder.Track track = new TrackSnapshotBuilder.Track();
+
+    /**
+     * Snapshot of a typical adaptive stream: video ladder, several audio and subtitle languages.
+     */
+    @Benchmark
+    public String adaptiveStream() {
+        TrackSnapshotBuilder builder = new TrackSnapshotBuilder();
+
+        builder.beginRenderer(0, "video", false, false).beginGroup(0);
+        for (int i = 0; i < VIDEO_TRACKS; i++) {
+            track.reset();
+            track.id = "video-" + i;
+            track.mimeType = "video/avc";
+            track.codecs = "avc1.640028";
+            track.bitrate = 800000 * (i + 1);
+            track.width = 320 * (i + 1);
+            track.height = 180 * (i + 1);
+            track.frameRate = 25f;
+            builder.addTrack(track, i, true, i == VIDEO_TRACKS - 1);
+        }
+        builder.endGroup().endRenderer();
+
+        builder.beginRenderer(1, "audio", false, false);
+        for (int i = 0; i < AUDIO_LANGUAGES; i++) {
+            track.reset();
+            track.id = "audio-" + i;
+            track.language = LANGUAGES[i];
+            track.mimeType = "audio/mp4a-latm";
+            track.codecs = "mp4a.40.2";
+            track.bitrate = 128000;
+            track.channelCount = 2;
+            track.sampleRate = 48000;
+            builder.beginGroup(i).addTrack(track, 0, true, i == 0).endGroup();
+        }
+        builder.endRenderer();
+
+        builder.beginRenderer(2, "text", false, true);
+        for (int i = 0; i < TEXT_LANGUAGES; i++) {
+            track.reset();
+            track.id = "text-" + i;
+            track.label = "Subtitles \"" + LANGUAGES[i] + "\"";
+            track.language = LANGUAGES[i];
+            track.mimeType = "text/vtt";
+            builder.beginGroup(i).addTrack(track, 0, true, false).endGroup();
+        }
+        builder.endRenderer();
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,147 @@
+package ru.interfaced.tvplatform.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Health scores of CDNs, built from exponentially weighted success rates and response latencies.
+ * CDNs never seen before score as healthy with a moderate latency, so that they get a chance to prove themselves.
+ * Scores can be serialized to persist them across sessions; when full, the least recently updated CDN is dropped.
+ * Callers pass the current wall clock time, it's kept with scores to tell how fresh they are.
+ * All methods are thread safe.
+ */
+public final class CdnHealth {
+    private static final float WEIGHT = 0.3f;
+    private static final float DEFAULT_LATENCY_MS = 500;
+    private static final int CAPACITY = 32;
+
+    private static final class Entry {
+        float successRate = 1;
+        float latencyMs = DEFAULT_LATENCY_MS;
+        long updatedAtMs;
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public synchronized void recordSuccess(String cdn, long latencyMs, long nowMs) {
+        Entry entry = getOrCreate(cdn, nowMs);
+        entry.successRate += WEIGHT * (1 - entry.successRate);
+        entry.latencyMs += WEIGHT * (latencyMs - entry.latencyMs);
+        entry.updatedAtMs = nowMs;
+    }
+
+    public synchronized void recordFailure(String cdn, long nowMs) {
+        Entry entry = getOrCreate(cdn, nowMs);
+        entry.successRate -= WEIGHT * entry.successRate;
+        entry.updatedAtMs = nowMs;
+    }
+
+    /**
+     * @return Score between 0 and 1, higher is better
+     */
+    public synchronized float getScore(String cdn) {
+        Entry entry = entries.get(cdn);
+        float successRate = entry != null ? entry.successRate : 1;
+        float latencyMs = entry != null ? entry.latencyMs : DEFAULT_LATENCY_MS;
+        return successRate / (1 + latencyMs / 1000);
+    }
+
+    /**
+     * @return Copy of cdns ordered from the healthiest, ties keep their order
+     */
+    public List<String> rank(List<String> cdns) {
+        List<String> ranked = new ArrayList<>(cdns);
+        Map<String, Float> scores = new LinkedHashMap<>();
+        for (String cdn: ranked) {
+            scores.put(cdn, getScore(cdn));
+        }
+        Collections.sort(ranked, Comparator.comparing(scores::get, Comparator.reverseOrder()));
+        return ranked;
+    }
+
+    /**
+     * @return Lines of tab separated name, success rate, latency and update time
+     */
+    public synchronized String serialize() {
+        StringBuilder builder = new StringBuilder(entries.size() * 48);
+        for (Map.Entry<String, Entry> entry: entries.entrySet()) {
+            Entry value = entry.getValue();
+            builder.append(entry.getKey()).append('\t')
+                .append(String.format(Locale.US, "%.4f", value.successRate)).append('\t')
+                .append(String.format(Locale.US, "%.1f", value.latencyMs)).append('\t')
+                .append(value.updatedAtMs).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Replaces scores with serialized ones, malformed lines are skipped.
+     */
+    public synchronized void restore(String serialized) {
+        entries.clear();
+
+        for (String line: serialized.split("\n")) {
+            String[] fields = line.split("\t");
+            if (fields.length != 4) {
+                continue;
+            }
+
+            try {
+                Entry entry = new Entry();
+                entry.successRate = Math.max(0, Math.min(1, Float.parseFloat(fields[1])));
+                entry.latencyMs = Math.max(0, Float.parseFloat(fields[2]));
+                entry.updatedAtMs = Long.parseLong(fields[3]);
+                entries.put(fields[0], entry);
+            } catch (NumberFormatException e) {
+                // Skip line
+            }
+        }
+
+        trim();
+    }
+
+    /**
+     * @return {name: {successRate, latencyMs, score, updatedAtMs}}
+     */
+    public synchronized String toJson() {
+        JsonWriter writer = new JsonWriter().beginObject();
+        for (Map.Entry<String, Entry> entry: entries.entrySet()) {
+            Entry value = entry.getValue();
+            writer.name(entry.getKey()).beginObject()
+                .name("successRate").value(value.successRate)
+                .name("latencyMs").value(value.latencyMs)
+                .name("score").value(value.successRate / (1 + value.latencyMs / 1000))
+                .name("updatedAtMs").value(value.updatedAtMs)
+                .endObject();
+        }
+        return writer.endObject().toString();
+    }
+
+    /**
+     * Moves the entry to the end, so that entries stay ordered from the least recently updated.
+     */
+    private Entry getOrCreate(String cdn, long nowMs) {
+        Entry entry = entries.remove(cdn);
+        if (entry == null) {
+            entry = new Entry();
+            entry.updatedAtMs = nowMs;
+        }
+        entries.put(cdn, entry);
+        trim();
+        return entry;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > CAPACITY && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
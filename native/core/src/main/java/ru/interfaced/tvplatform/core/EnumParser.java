@@ -0,0 +1,42 @@
+package ru.interfaced.tvplatform.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Case insensitive enum lookup by constant name.
+ * Unlike Enum.valueOf it neither allocates an upper cased copy of the input nor throws on unknown values,
+ * which matters for strings coming from JavaScript on every bridge call.
+ */
+public final class EnumParser {
+    private static final Map<Class<?>, Enum<?>[]> constantsCache = new ConcurrentHashMap<>();
+
+    private EnumParser() {}
+
+    /**
+     * @return Matching constant or null when value is null or doesn't match any constant
+     */
+    public static <E extends Enum<E>> E parse(Class<E> type, String value) {
+        if (value == null) {
+            return null;
+        }
+
+        for (Enum<?> constant: getConstants(type)) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return type.cast(constant);
+            }
+        }
+
+        return null;
+    }
+
+    private static Enum<?>[] getConstants(Class<? extends Enum<?>> type) {
+        Enum<?>[] constants = constantsCache.get(type);
+        if (constants == null) {
+            // getEnumConstants() returns a new copy every time
+            constants = type.getEnumConstants();
+            constantsCache.put(type, constants);
+        }
+        return constants;
+    }
+}
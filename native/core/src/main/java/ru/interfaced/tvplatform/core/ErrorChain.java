@@ -0,0 +1,38 @@
+package ru.interfaced.tvplatform.core;
+
+/**
+ * Builds a single human readable message out of an exception and its causes.
+ */
+public final class ErrorChain {
+    private static final int MAX_DEPTH = 16;
+
+    private ErrorChain() {}
+
+    /**
+     * Joins messages of the exception and all of its causes, outermost first.
+     * Messages that just repeat the one of the cause (as with exceptions wrapping cause.toString()) are skipped.
+     * @return Empty string when there are no messages
+     */
+    public static String flatten(Throwable throwable) {
+        StringBuilder builder = new StringBuilder();
+        String previous = null;
+        Throwable current = throwable;
+
+        for (int depth = 0; current != null && depth < MAX_DEPTH; depth++) {
+            String message = current.getMessage();
+
+            if (message != null && !message.isEmpty() && (previous == null || !previous.endsWith(message))) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(message).append('.');
+                previous = message;
+            }
+
+            Throwable cause = current.getCause();
+            current = cause == current ? null : cause;
+        }
+
+        return builder.toString();
+    }
+}
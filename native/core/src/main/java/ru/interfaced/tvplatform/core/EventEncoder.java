@@ -0,0 +1,47 @@
+package ru.interfaced.tvplatform.core;
+
+/**
+ * Encodes native events for delivery to web interfaces' onEvent hooks.
+ */
+public final class EventEncoder {
+    private static final String EMPTY_ARGUMENTS = "[]";
+
+    private EventEncoder() {}
+
+    /**
+     * @param argumentsJson JSON array of event arguments
+     * @return JSON message in form of {"context": ..., "event": ..., "args": [...]}
+     */
+    public static String toMessage(String context, String event, String argumentsJson) {
+        StringBuilder builder = new StringBuilder(40 + context.length() + event.length() + argumentsJson.length());
+
+        new JsonWriter(builder)
+            .beginObject()
+            .name("context").value(context)
+            .name("event").value(event)
+            .name("args").rawValue(argumentsJson)
+            .endObject();
+
+        return builder.toString();
+    }
+
+    /**
+     * @param argumentsJson JSON array of event arguments
+     * @return Script calling window[context].onEvent(event, ...arguments) if it's defined
+     */
+    public static String toScript(String context, String event, String argumentsJson) {
+        StringBuilder builder = new StringBuilder(64 + 2 * context.length() + event.length() + argumentsJson.length());
+
+        builder.append("window.").append(context).append(".onEvent && window.").append(context).append(".onEvent(");
+        JsonWriter.quote(builder, event);
+
+        if (argumentsJson.length() > EMPTY_ARGUMENTS.length()) {
+            // Array elements are spread as call arguments
+            builder.append(", ").append(argumentsJson, 1, argumentsJson.length() - 1);
+        }
+
+        builder.append(')');
+
+        return builder.toString();
+    }
+}
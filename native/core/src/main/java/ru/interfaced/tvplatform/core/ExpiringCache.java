@@ -0,0 +1,89 @@
+package ru.interfaced.tvplatform.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded map which entries expire at a given time.
+ * When full, the least recently used entry is evicted. Expired entries are dropped when looked up or on insertion.
+ * Callers pass the current time so that the cache has no clock of its own.
+ * All methods are thread safe.
+ */
+public final class ExpiringCache<K, V> {
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAtMs;
+
+        Entry(V value, long expiresAtMs) {
+            this.value = value;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public ExpiringCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(capacity, 0.75f, true);
+    }
+
+    public synchronized void put(K key, V value, long expiresAtMs, long nowMs) {
+        removeExpired(nowMs);
+        entries.put(key, new Entry<>(value, expiresAtMs));
+
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (entries.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return Value or null if absent or expired
+     */
+    public synchronized V get(K key, long nowMs) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMs <= nowMs) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Same as get, but also removes the entry.
+     */
+    public synchronized V take(K key, long nowMs) {
+        V value = get(key, nowMs);
+        if (value != null) {
+            entries.remove(key);
+        }
+        return value;
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void removeExpired(long nowMs) {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAtMs <= nowMs) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package ru.interfaced.tvplatform.core;
+
+/**
+ * Minimal streaming JSON writer.
+ * Writes straight into a StringBuilder without building intermediate objects and does not validate structure,
+ * callers are expected to produce well formed documents.
+ */
+public final class JsonWriter {
+    private final StringBuilder builder;
+    private boolean needsSeparator = false;
+
+    public JsonWriter() {
+        this(new StringBuilder(64));
+    }
+
+    public JsonWriter(StringBuilder builder) {
+        this.builder = builder;
+    }
+
+    public JsonWriter beginArray() {
+        separate();
+        builder.append('[');
+        needsSeparator = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        builder.append(']');
+        needsSeparator = true;
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        separate();
+        builder.append('{');
+        needsSeparator = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        builder.append('}');
+        needsSeparator = true;
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        separate();
+        quote(builder, name);
+        builder.append(':');
+        needsSeparator = false;
+        return this;
+    }
+
+    /**
+     * @param value Written as null when null
+     */
+    public JsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            builder.append("null");
+        } else {
+            quote(builder, value);
+        }
+        needsSeparator = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separate();
+        builder.append(value);
+        needsSeparator = true;
+        return this;
+    }
+
+    /**
+     * @param value Written as null when not finite
+     */
+    public JsonWriter value(float value) {
+        separate();
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            builder.append("null");
+        } else {
+            builder.append(value);
+        }
+        needsSeparator = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        separate();
+        builder.append(value);
+        needsSeparator = true;
+        return this;
+    }
+
+    /**
+     * Writes already encoded JSON as is.
+     */
+    public JsonWriter rawValue(String json) {
+        separate();
+        builder.append(json);
+        needsSeparator = true;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+    /**
+     * Appends value as a JSON string literal, escaping it the same way org.json does
+     * so that the output is also safe to embed into a script.
+     */
+    public static void quote(StringBuilder builder, String value) {
+        builder.append('"');
+
+        char previous = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    builder.append('\\').append(c);
+                    break;
+                case '/':
+                    // Prevents "</script>" sequences
+                    if (previous == '<') {
+                        builder.append('\\');
+                    }
+                    builder.append(c);
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    // Line and paragraph separators are valid JSON but not valid JavaScript string literal characters
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        appendUnicodeEscape(builder, c);
+                    } else {
+                        builder.append(c);
+                    }
+            }
+            previous = c;
+        }
+
+        builder.append('"');
+    }
+
+    private static void appendUnicodeEscape(StringBuilder builder, char c) {
+        final String hex = "0123456789abcdef";
+        builder.append("\\u")
+            .append(hex.charAt((c >> 12) & 0xf))
+            .append(hex.charAt((c >> 8) & 0xf))
+            .append(hex.charAt((c >> 4) & 0xf))
+            .append(hex.charAt(c & 0xf));
+    }
+
+    private void separate() {
+        if (needsSeparator) {
+            builder.append(',');
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ru.interfaced.tvplatform.core;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Fixed-size in-memory log of recent records, the oldest overwritten first.
+ * Records live in preallocated slots of primitive arrays: the message is a constant template
+ * and up to four numeric arguments are stored as they are, to be formatted only when the log is dumped.
+ * Writing a record therefore builds no strings and allocates nothing.
+ * Templates have {} placeholders for integer arguments, {f} for doubles encoded with encodeDouble
+ * and {b} for booleans encoded with encodeBoolean.
+ * Levels match android.util.Log priorities.
+ * Callers pass the wall clock time so that the ring has no clock of its own.
+ * All methods are thread safe.
+ */
+public final class LogRing {
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    public static final int MAX_ARGUMENTS = 4;
+
+    private static final String LEVELS = "??VDIWEA";
+
+    private final int capacity;
+    private final long[] timesMs;
+    private final long[] threadIds;
+    private final byte[] levels;
+    private final byte[] argumentCounts;
+    private final long[] arguments;
+    private final String[] tags;
+    private final String[] messages;
+
+    // Total number of records ever written, the next one goes to slot written % capacity
+    private long written = 0;
+
+    public LogRing(int capacity) {
+        this.capacity = capacity;
+        timesMs = new long[capacity];
+        threadIds = new long[capacity];
+        levels = new byte[capacity];
+        argumentCounts = new byte[capacity];
+        arguments = new long[capacity * MAX_ARGUMENTS];
+        tags = new String[capacity];
+        messages = new String[capacity];
+    }
+
+    public static long encodeDouble(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+
+    public static long encodeBoolean(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    /**
+     * @param argumentCount Number of meaningful arguments, the rest are ignored
+     */
+    public synchronized void write(
+        long timeMs,
+        int level,
+        long threadId,
+        String tag,
+        String message,
+        int argumentCount,
+        long argument0,
+        long argument1,
+        long argument2,
+        long argument3
+    ) {
+        int slot = (int) (written++ % capacity);
+        timesMs[slot] = timeMs;
+        threadIds[slot] = threadId;
+        levels[slot] = (byte) level;
+        argumentCounts[slot] = (byte) Math.min(argumentCount, MAX_ARGUMENTS);
+        tags[slot] = tag;
+        messages[slot] = message;
+
+        int offset = slot * MAX_ARGUMENTS;
+        arguments[offset] = argument0;
+        arguments[offset + 1] = argument1;
+        arguments[offset + 2] = argument2;
+        arguments[offset + 3] = argument3;
+    }
+
+    /**
+     * @return Number of records written since creation, including overwritten ones
+     */
+    public synchronized long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Formats kept records from the oldest in a logcat like layout: date, time, thread id, level, tag and message.
+     * Records are copied under the lock and formatted outside of it, writers are only held for the copy.
+     */
+    public String dump() {
+        long total;
+        int count;
+        long[] copyTimesMs = new long[capacity];
+        long[] copyThreadIds = new long[capacity];
+        byte[] copyLevels = new byte[capacity];
+        byte[] copyArgumentCounts = new byte[capacity];
+        long[] copyArguments = new long[capacity * MAX_ARGUMENTS];
+        String[] copyTags = new String[capacity];
+        String[] copyMessages = new String[capacity];
+
+        synchronized (this) {
+            total = written;
+            count = (int) Math.min(written, capacity);
+            System.arraycopy(timesMs, 0, copyTimesMs, 0, capacity);
+            System.arraycopy(threadIds, 0, copyThreadIds, 0, capacity);
+            System.arraycopy(levels, 0, copyLevels, 0, capacity);
+            System.arraycopy(argumentCounts, 0, copyArgumentCounts, 0, capacity);
+            System.arraycopy(arguments, 0, copyArguments, 0, arguments.length);
+            System.arraycopy(tags, 0, copyTags, 0, capacity);
+            System.arraycopy(messages, 0, copyMessages, 0, capacity);
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        StringBuilder builder = new StringBuilder(count * 64);
+        if (total > count) {
+            builder.append("--- ").append(total - count).append(" earlier records overwritten\n");
+        }
+
+        for (long index = total - count; index < total; index++) {
+            int slot = (int) (index % capacity);
+            int level = copyLevels[slot];
+
+            builder.append(dateFormat.format(new Date(copyTimesMs[slot])))
+                .append(' ').append(copyThreadIds[slot])
+                .append(' ').append(level >= 0 && level < LEVELS.length() ? LEVELS.charAt(level) : '?')
+                .append(' ').append(copyTags[slot]).append(": ");
+            appendMessage(builder, copyMessages[slot], copyArguments, slot * MAX_ARGUMENTS, copyArgumentCounts[slot]);
+            builder.append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Formats a single record, e.g. for logcat.
+     */
+    public static String format(String message, int argumentCount, long argument0, long argument1, long argument2, long argument3) {
+        if (argumentCount == 0) {
+            return message;
+        }
+
+        StringBuilder builder = new StringBuilder(message.length() + argumentCount * 8);
+        appendMessage(builder, message, new long[] {argument0, argument1, argument2, argument3}, 0, argumentCount);
+        return builder.toString();
+    }
+
+    private static void appendMessage(StringBuilder builder, String message, long[] arguments, int offset, int argumentCount) {
+        int argument = 0;
+        int start = 0;
+        while (argument < argumentCount) {
+            int placeholder = message.indexOf('{', start);
+            if (placeholder < 0) {
+                break;
+            }
+
+            if (message.startsWith("{}", placeholder)) {
+                builder.append(message, start, placeholder).append(arguments[offset + argument++]);
+                start = placeholder + 2;
+            } else if (message.startsWith("{f}", placeholder)) {
+                builder.append(message, start, placeholder).append(Double.longBitsToDouble(arguments[offset + argument++]));
+                start = placeholder + 3;
+            } else if (message.startsWith("{b}", placeholder)) {
+                builder.append(message, start, placeholder).append(arguments[offset + argument++] != 0);
+                start = placeholder + 3;
+            } else {
+                builder.append(message, start, placeholder + 1);
+                start = placeholder + 1;
+            }
+        }
+        builder.append(message, start, message.length());
+    }
+}
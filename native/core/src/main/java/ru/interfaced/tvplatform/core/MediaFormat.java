@@ -0,0 +1,108 @@
+package ru.interfaced.tvplatform.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Streaming formats recognised by the player.
+ */
+public enum MediaFormat {
+    AUTO,
+    DASH,
+    HLS,
+    SS,
+    RTMP;
+
+    /**
+     * Guesses format from uri scheme and path extension, query and fragment are ignored.
+     * @return AUTO when format can't be guessed
+     */
+    public static MediaFormat detect(String uri) {
+        if (uri.regionMatches(true, 0, "rtmp://", 0, "rtmp://".length())) {
+            return RTMP;
+        }
+
+        int end = uri.length();
+        int query = uri.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = uri.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+
+        if (endsWithIgnoreCase(uri, end, ".m3u8")) {
+            return HLS;
+        }
+        if (endsWithIgnoreCase(uri, end, ".mpd")) {
+            return DASH;
+        }
+        if (endsWithIgnoreCase(uri, end, ".ism") || endsWithIgnoreCase(uri, end, ".isml")) {
+            return SS;
+        }
+        // Smooth Streaming manifests are usually requested as .ism/Manifest
+        if (endsWithIgnoreCase(uri, end, ".ism/manifest") || endsWithIgnoreCase(uri, end, ".isml/manifest")) {
+            return SS;
+        }
+
+        return AUTO;
+    }
+
+    /**
+     * Maps a response Content-Type to a format, parameters such as charset are ignored.
+     * @return AUTO for anything that's not an adaptive streaming manifest
+     */
+    public static MediaFormat fromContentType(String contentType) {
+        int end = contentType.indexOf(';');
+        String mimeType = (end >= 0 ? contentType.substring(0, end) : contentType).trim().toLowerCase(Locale.US);
+
+        switch (mimeType) {
+            case "application/vnd.apple.mpegurl":
+            case "application/x-mpegurl":
+            case "audio/mpegurl":
+            case "audio/x-mpegurl":
+                return HLS;
+            case "application/dash+xml":
+                return DASH;
+            case "application/vnd.ms-sstr+xml":
+                return SS;
+            default:
+                return AUTO;
+        }
+    }
+
+    /**
+     * Recognises a manifest by its first bytes, for servers that don't send a meaningful Content-Type.
+     * @return AUTO when data doesn't start like a manifest
+     */
+    public static MediaFormat sniff(byte[] data, int length) {
+        int start = 0;
+        // Skip UTF-8 byte order mark and leading whitespace
+        if (length >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        while (start < length && Character.isWhitespace(data[start])) {
+            start++;
+        }
+
+        String head = new String(data, start, length - start, StandardCharsets.ISO_8859_1);
+        if (head.startsWith("#EXTM3U")) {
+            return HLS;
+        }
+        if (head.startsWith("<")) {
+            if (head.contains("<MPD")) {
+                return DASH;
+            }
+            if (head.contains("<SmoothStreamingMedia")) {
+                return SS;
+            }
+        }
+        return AUTO;
+    }
+
+    private static boolean endsWithIgnoreCase(String string, int end, String suffix) {
+        int start = end - suffix.length();
+        return start >= 0 && string.regionMatches(true, start, suffix, 0, suffix.length());
+    }
+}
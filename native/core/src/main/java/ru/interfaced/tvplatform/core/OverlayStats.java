@@ -0,0 +1,92 @@
+package ru.interfaced.tvplatform.core;
+
+/**
+ * Composition and video frame counts split between times the web overlay is shown and idle (hidden),
+ * to tell what hiding the overlay saves.
+ * UI frames are frames the application window composes, video frame counts come from the decoder.
+ * Video counters may be reset by the decoder, a counter going backwards is taken as restarting from zero.
+ * Callers pass the current time and counters so that stats have no clock of their own.
+ * All methods are thread safe.
+ */
+public final class OverlayStats {
+    private static final class Period {
+        long timeMs = 0;
+        long uiFrames = 0;
+        long uiFrameTimeNs = 0;
+        long videoFramesRendered = 0;
+        long videoFramesDropped = 0;
+    }
+
+    private final Period shown = new Period();
+    private final Period hidden = new Period();
+
+    private boolean idle = false;
+    private long periodStartMs;
+    private long periodStartRendered;
+    private long periodStartDropped;
+
+    public OverlayStats(long nowMs) {
+        periodStartMs = nowMs;
+    }
+
+    /**
+     * @param durationNs Time the frame took from input handling to being handed to the compositor
+     */
+    public synchronized void onUiFrame(long durationNs) {
+        Period period = idle ? hidden : shown;
+        period.uiFrames++;
+        period.uiFrameTimeNs += durationNs;
+    }
+
+    public synchronized void setIdle(boolean newIdle, long nowMs, long videoFramesRendered, long videoFramesDropped) {
+        if (newIdle == idle) {
+            return;
+        }
+
+        closePeriod(idle ? hidden : shown, nowMs, videoFramesRendered, videoFramesDropped);
+        idle = newIdle;
+    }
+
+    /**
+     * @return {idle, shown: {timeMs, uiFrames, uiFramesPerSecond, uiFrameMs, videoFramesRendered, videoFramesDropped},
+     *         hidden: {...}}, the current period included
+     */
+    public synchronized String toJson(long nowMs, long videoFramesRendered, long videoFramesDropped) {
+        long openTimeMs = Math.max(0, nowMs - periodStartMs);
+        long openRendered = delta(periodStartRendered, videoFramesRendered);
+        long openDropped = delta(periodStartDropped, videoFramesDropped);
+
+        JsonWriter writer = new JsonWriter().beginObject().name("idle").value(idle);
+        writer.name("shown");
+        writePeriod(writer, shown, idle ? 0 : openTimeMs, idle ? 0 : openRendered, idle ? 0 : openDropped);
+        writer.name("hidden");
+        writePeriod(writer, hidden, idle ? openTimeMs : 0, idle ? openRendered : 0, idle ? openDropped : 0);
+        return writer.endObject().toString();
+    }
+
+    private void closePeriod(Period period, long nowMs, long videoFramesRendered, long videoFramesDropped) {
+        period.timeMs += Math.max(0, nowMs - periodStartMs);
+        period.videoFramesRendered += delta(periodStartRendered, videoFramesRendered);
+        period.videoFramesDropped += delta(periodStartDropped, videoFramesDropped);
+
+        periodStartMs = nowMs;
+        periodStartRendered = videoFramesRendered;
+        periodStartDropped = videoFramesDropped;
+    }
+
+    private static long delta(long start, long current) {
+        return current >= start ? current - start : current;
+    }
+
+    private static void writePeriod(JsonWriter writer, Period period, long openTimeMs, long openRendered, long openDropped) {
+        long timeMs = period.timeMs + openTimeMs;
+        writer.beginObject()
+            .name("timeMs").value(timeMs)
+            .name("uiFrames").value(period.uiFrames)
+            .name("uiFramesPerSecond").value(timeMs > 0 ? period.uiFrames * 1000f / timeMs : 0f)
+            .name("uiFrameMs").value(period.uiFrames > 0 ? period.uiFrameTimeNs / 1e6f / period.uiFrames : 0f)
+            .name("videoFramesRendered").value(period.videoFramesRendered + openRendered)
+            .name("videoFramesDropped").value(period.videoFramesDropped + openDropped)
+            .endObject();
+    }
+}
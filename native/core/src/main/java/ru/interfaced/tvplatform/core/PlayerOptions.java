@@ -0,0 +1,68 @@
+package ru.interfaced.tvplatform.core;
+
+/**
+ * Option values the player bridge API takes as strings, to be parsed with EnumParser.
+ * Kept free of player types so that the app and the replay tool accept exactly the same values,
+ * the app maps them to ExoPlayer and view constants on its own.
+ */
+public final class PlayerOptions {
+    public enum VideoType {
+        SURFACE_VIEW,
+        TEXTURE_VIEW,
+        GL_SURFACE
+    }
+
+    public enum TunnelingMode {
+        OFF,
+        ON,
+        AUTO // Enabled when device has a tunneling decoder for the selected video codec
+    }
+
+    public enum FrameRateMatching {
+        OFF,
+        /**
+         * Only modes the display switches to without blanking, those the current mode lists as alternative
+         * refresh rates. They are known on Android 12 and newer only, before that the mode is never switched.
+         */
+        SEAMLESS_ONLY,
+        ALWAYS
+    }
+
+    public enum SeekMode {
+        EXACT,
+        CLOSEST_SYNC,
+        PREVIOUS_SYNC,
+        NEXT_SYNC
+    }
+
+    public enum Orientation {
+        LANDSCAPE (0),
+        LANDSCAPE_INVERSE (180),
+        PORTRAIT (90),
+        PORTRAIT_INVERSE (270);
+
+        public final int angle;
+
+        Orientation(int angle) {
+            this.angle = angle;
+        }
+    }
+
+    public enum ResizeMode {
+        FIT,
+        FILL,
+        ZOOM,
+        DEFAULT,
+        FIXED_HEIGHT,
+        FIXED_WIDTH,
+        FIXED_MIN,
+        FIXED_MAX
+    }
+
+    public enum DrmType {
+        PLAYREADY,
+        NONE
+    }
+
+    private PlayerOptions() {}
+}
@@ -0,0 +1,49 @@
+package ru.interfaced.tvplatform.core;
+
+/**
+ * Shared bandwidth budget for several concurrent transfers.
+ * Transfers report the bytes they moved and wait for the returned time, which keeps the total rate
+ * within the limit while allowing a short burst after an idle period.
+ * Callers pass the current time so that the limiter has no clock of its own.
+ */
+public final class RateLimiter {
+    private static final long SECOND_NS = 1000000000L;
+
+    /**
+     * How far ahead of the sustained rate transfers may get after being idle.
+     */
+    private static final long BURST_NS = SECOND_NS / 4;
+
+    private long bytesPerSecond = 0;
+
+    // Time by which all bytes reported so far would have been transferred at the sustained rate
+    private long theoreticalTimeNs = Long.MIN_VALUE;
+
+    /**
+     * @param bytesPerSecond 0 or less to disable the limit
+     */
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+        theoreticalTimeNs = Long.MIN_VALUE;
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @param bytes Number of bytes just transferred
+     * @param nowNs Current monotonic time
+     * @return How long the caller should wait before transferring more, in nanoseconds
+     */
+    public synchronized long onTransferred(long bytes, long nowNs) {
+        if (bytesPerSecond == 0 || bytes <= 0) {
+            return 0;
+        }
+
+        long costNs = bytes * SECOND_NS / bytesPerSecond;
+        theoreticalTimeNs = Math.max(theoreticalTimeNs, nowNs) + costNs;
+
+        return Math.max(0, theoreticalTimeNs - BURST_NS - nowNs);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.interfaced.tvplatform.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Timeline of startup milestones on a monotonic clock, relative to an origin such as process start.
+ * Only the first occurrence of each milestone is kept, so that milestones passed again later,
+ * e.g. on every channel switch, don't distort the startup picture.
+ * Once finished, further marks are ignored and the timeline stays as reported.
+ * Callers pass timestamps so that the trace has no clock of its own.
+ * All methods are thread safe.
+ */
+public final class StartupTrace {
+    private static final int MAX_MARKS = 64;
+
+    private final long originNs;
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> timesNs = new ArrayList<>();
+    private final Set<String> seen = new HashSet<>();
+    private boolean finished = false;
+
+    public StartupTrace(long originNs) {
+        this.originNs = originNs;
+    }
+
+    /**
+     * @return Whether the mark was recorded
+     */
+    public synchronized boolean mark(String name, long timeNs) {
+        if (finished || names.size() == MAX_MARKS || !seen.add(name)) {
+            return false;
+        }
+
+        names.add(name);
+        timesNs.add(timeNs);
+        return true;
+    }
+
+    /**
+     * Records the final mark and freezes the timeline.
+     * @return Whether the trace got finished by this call
+     */
+    public synchronized boolean finish(String name, long timeNs) {
+        if (finished) {
+            return false;
+        }
+
+        if (seen.add(name)) {
+            names.add(name);
+            timesNs.add(timeNs);
+        }
+        finished = true;
+        return true;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return {finished, marks: [{name, timeMs, deltaMs}]} with times in milliseconds since origin
+     *         and deltas since the previous mark
+     */
+    public synchronized String toJson() {
+        JsonWriter writer = new JsonWriter()
+            .beginObject()
+            .name("finished").value(finished)
+            .name("marks").beginArray();
+
+        long previousNs = originNs;
+        for (int i = 0; i < names.size(); i++) {
+            long timeNs = timesNs.get(i);
+            writer.beginObject()
+                .name("name").value(names.get(i))
+                .name("timeMs").value(toMs(timeNs - originNs))
+                .name("deltaMs").value(toMs(timeNs - previousNs))
+                .endObject();
+            previousNs = timeNs;
+        }
+
+        return writer.endArray().endObject().toString();
+    }
+
+    /**
+     * @return Single line of name=milliseconds pairs, for logs
+     */
+    public synchronized String toLogLine() {
+        StringBuilder builder = new StringBuilder(names.size() * 24);
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(names.get(i)).append('=').append(String.format(Locale.US, "%.1f", toMs(timesNs.get(i) - originNs)));
+        }
+        return builder.toString();
+    }
+
+    private static float toMs(long ns) {
+        return ns / 1000000f;
+    }
+}
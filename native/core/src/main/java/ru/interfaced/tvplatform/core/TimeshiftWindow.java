@@ -0,0 +1,253 @@
+package ru.interfaced.tvplatform.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Sliding window of live HLS media segments kept for timeshift.
+ * Segments are appended as the live playlist advances, the oldest ones are dropped by trim,
+ * and the window is rendered back as a live media playlist spanning every segment still in it.
+ * Not thread safe.
+ */
+public final class TimeshiftWindow {
+    /**
+     * Segments to keep regardless of bounds, so that the player always has a playable live edge.
+     */
+    private static final int MIN_SEGMENTS = 3;
+
+    public static final class Segment {
+        public final long sequence;
+        public final long durationUs;
+        public final String uri;
+        public final int discontinuitySequence;
+
+        // Null when segment is not encrypted
+        public final String keyUri;
+        public final String keyIv;
+
+        // Null when segment has no initialization section
+        public final String initUri;
+        public final String initByteRange;
+
+        long bytes = 0;
+        boolean recorded = false;
+
+        public Segment(
+            long sequence,
+            long durationUs,
+            String uri,
+            int discontinuitySequence,
+            String keyUri,
+            String keyIv,
+            String initUri,
+            String initByteRange
+        ) {
+            this.sequence = sequence;
+            this.durationUs = durationUs;
+            this.uri = uri;
+            this.discontinuitySequence = discontinuitySequence;
+            this.keyUri = keyUri;
+            this.keyIv = keyIv;
+            this.initUri = initUri;
+            this.initByteRange = initByteRange;
+        }
+
+        public boolean isRecorded() {
+            return recorded;
+        }
+    }
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+    private int version = 3;
+    private long targetDurationUs = 0;
+    private boolean independentSegments = false;
+
+    private long durationUs = 0;
+    private long bytes = 0;
+
+    /**
+     * Playlist level attributes to render, taken from the latest upstream playlist.
+     */
+    public void setHeader(int version, long targetDurationUs, boolean independentSegments) {
+        this.version = version;
+        this.targetDurationUs = Math.max(this.targetDurationUs, targetDurationUs);
+        this.independentSegments = independentSegments;
+    }
+
+    /**
+     * Appends a segment if it's newer than every segment in the window.
+     * @return Whether segment was added
+     */
+    public boolean add(Segment segment) {
+        Segment last = segments.peekLast();
+        if (last != null && segment.sequence <= last.sequence) {
+            return false;
+        }
+
+        segments.addLast(segment);
+        durationUs += segment.durationUs;
+        return true;
+    }
+
+    /**
+     * Marks a segment recorded, the segment may have already left the window.
+     * @return Whether the segment wasn't recorded before
+     */
+    public boolean onRecorded(Segment segment, long segmentBytes) {
+        if (segment.recorded) {
+            return false;
+        }
+
+        segment.recorded = true;
+        segment.bytes = segmentBytes;
+        if (segments.contains(segment)) {
+            bytes += segmentBytes;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the oldest segments until the window is no longer than maxDurationUs,
+     * along with leading segments that were never recorded and are no longer available upstream.
+     * @param firstAvailableSequence Sequence number of the first segment in the latest upstream playlist
+     * @return Dropped segments, oldest first
+     */
+    public List<Segment> trim(long maxDurationUs, long firstAvailableSequence) {
+        List<Segment> evicted = new ArrayList<>();
+
+        while (segments.size() > MIN_SEGMENTS) {
+            Segment first = segments.peekFirst();
+            if (durationUs <= maxDurationUs && (first.recorded || first.sequence >= firstAvailableSequence)) {
+                break;
+            }
+
+            Segment segment = segments.removeFirst();
+            durationUs -= segment.durationUs;
+            bytes -= segment.bytes;
+            evicted.add(segment);
+        }
+
+        return evicted;
+    }
+
+    /**
+     * @return Segments in the window that are yet to be recorded, oldest first
+     */
+    public List<Segment> getUnrecorded() {
+        List<Segment> unrecorded = new ArrayList<>();
+        for (Segment segment: segments) {
+            if (!segment.recorded) {
+                unrecorded.add(segment);
+            }
+        }
+        return unrecorded;
+    }
+
+    public List<Segment> getSegments() {
+        return new ArrayList<>(segments);
+    }
+
+    /**
+     * @return Segment with the uri, or with the uri as initialization section, null if there's none
+     */
+    public Segment find(String uri) {
+        for (Segment segment: segments) {
+            if (segment.uri.equals(uri) || uri.equals(segment.initUri)) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    public boolean contains(Segment segment) {
+        Segment first = segments.peekFirst();
+        return first != null && segment.sequence >= first.sequence && segments.contains(segment);
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    /**
+     * @return Bytes of recorded segments in the window
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getTargetDurationUs() {
+        return targetDurationUs;
+    }
+
+    /**
+     * Renders the window as a live media playlist with absolute segment uris.
+     */
+    public String render() {
+        StringBuilder builder = new StringBuilder(128 + segments.size() * 96);
+
+        Segment first = segments.peekFirst();
+
+        builder.append("#EXTM3U\n");
+        builder.append("#EXT-X-VERSION:").append(version).append('\n');
+        builder.append("#EXT-X-TARGETDURATION:").append((targetDurationUs + 999999) / 1000000).append('\n');
+        builder.append("#EXT-X-MEDIA-SEQUENCE:").append(first != null ? first.sequence : 0).append('\n');
+        if (first != null && first.discontinuitySequence != 0) {
+            builder.append("#EXT-X-DISCONTINUITY-SEQUENCE:").append(first.discontinuitySequence).append('\n');
+        }
+        if (independentSegments) {
+            builder.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        }
+
+        Segment previous = null;
+        for (Segment segment: segments) {
+            if (previous != null && segment.discontinuitySequence != previous.discontinuitySequence) {
+                builder.append("#EXT-X-DISCONTINUITY\n");
+            }
+
+            if (previous == null ? segment.keyUri != null :
+                !equal(segment.keyUri, previous.keyUri) || !equal(segment.keyIv, previous.keyIv)) {
+                appendKey(builder, segment);
+            }
+
+            if (segment.initUri != null && (previous == null ||
+                !segment.initUri.equals(previous.initUri) || !equal(segment.initByteRange, previous.initByteRange))) {
+                builder.append("#EXT-X-MAP:URI=\"").append(segment.initUri).append('"');
+                if (segment.initByteRange != null) {
+                    builder.append(",BYTERANGE=\"").append(segment.initByteRange).append('"');
+                }
+                builder.append('\n');
+            }
+
+            builder.append("#EXTINF:").append(String.format(Locale.US, "%.3f", segment.durationUs / 1000000.0)).append(",\n");
+            builder.append(segment.uri).append('\n');
+
+            previous = segment;
+        }
+
+        return builder.toString();
+    }
+
+    private static void appendKey(StringBuilder builder, Segment segment) {
+        if (segment.keyUri == null) {
+            builder.append("#EXT-X-KEY:METHOD=NONE\n");
+            return;
+        }
+
+        builder.append("#EXT-X-KEY:METHOD=AES-128,URI=\"").append(segment.keyUri).append('"');
+        if (segment.keyIv != null) {
+            builder.append(",IV=").append(segment.keyIv.startsWith("0x") ? "" : "0x").append(segment.keyIv);
+        }
+        builder.append('\n');
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
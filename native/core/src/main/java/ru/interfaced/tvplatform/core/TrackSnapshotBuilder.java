@@ -0,0 +1,132 @@
+package ru.interfaced.tvplatform.core;
+
+/**
+ * Serialises available tracks into the JSON structure returned by getTracks:
+ * an array of renderers, each having groups of tracks.
+ * Calls are expected to be properly nested: beginRenderer, beginGroup, addTrack..., endGroup, ..., endRenderer.
+ */
+public final class TrackSnapshotBuilder {
+    /**
+     * Marks absent numeric values, same as ExoPlayer Format.NO_VALUE.
+     */
+    public static final int NO_VALUE = -1;
+
+    /**
+     * Track description, meant to be reused between addTrack calls.
+     */
+    public static final class Track {
+        public String id;
+        public String label;
+        public String language;
+        public String mimeType;
+        public String codecs;
+        public int bitrate = NO_VALUE;
+        public int width = NO_VALUE;
+        public int height = NO_VALUE;
+        public float frameRate = NO_VALUE;
+        public int channelCount = NO_VALUE;
+        public int sampleRate = NO_VALUE;
+        // Compressed audio sent to the audio output undecoded
+        public boolean passthrough = false;
+
+        public void reset() {
+            id = null;
+            label = null;
+            language = null;
+            mimeType = null;
+            codecs = null;
+            bitrate = NO_VALUE;
+            width = NO_VALUE;
+            height = NO_VALUE;
+            frameRate = NO_VALUE;
+            channelCount = NO_VALUE;
+            sampleRate = NO_VALUE;
+            passthrough = false;
+        }
+    }
+
+    private final StringBuilder builder = new StringBuilder(1024);
+    private final JsonWriter writer = new JsonWriter(builder);
+
+    public TrackSnapshotBuilder() {
+        writer.beginArray();
+    }
+
+    public TrackSnapshotBuilder beginRenderer(int rendererIndex, String type, boolean disabled, boolean overridden) {
+        writer.beginObject()
+            .name("renderer").value(rendererIndex)
+            .name("type").value(type)
+            .name("disabled").value(disabled)
+            .name("overridden").value(overridden)
+            .name("groups").beginArray();
+        return this;
+    }
+
+    public TrackSnapshotBuilder endRenderer() {
+        writer.endArray().endObject();
+        return this;
+    }
+
+    public TrackSnapshotBuilder beginGroup(int groupIndex) {
+        writer.beginObject()
+            .name("index").value(groupIndex)
+            .name("tracks").beginArray();
+        return this;
+    }
+
+    public TrackSnapshotBuilder endGroup() {
+        writer.endArray().endObject();
+        return this;
+    }
+
+    public TrackSnapshotBuilder addTrack(Track track, int trackIndex, boolean supported, boolean selected) {
+        writer.beginObject();
+
+        optString("id", track.id);
+        optString("label", track.label);
+        optString("language", track.language);
+        optString("mimeType", track.mimeType);
+        optString("codecs", track.codecs);
+
+        if (track.bitrate != NO_VALUE) {
+            writer.name("bitrate").value(track.bitrate);
+        }
+        if (track.width != NO_VALUE && track.height != NO_VALUE) {
+            writer.name("width").value(track.width);
+            writer.name("height").value(track.height);
+        }
+        if (track.frameRate != NO_VALUE) {
+            writer.name("frameRate").value(track.frameRate);
+        }
+        if (track.channelCount != NO_VALUE) {
+            writer.name("channelCount").value(track.channelCount);
+        }
+        if (track.sampleRate != NO_VALUE) {
+            writer.name("sampleRate").value(track.sampleRate);
+        }
+        if (track.passthrough) {
+            writer.name("passthrough").value(true);
+        }
+
+        writer.name("index").value(trackIndex)
+            .name("supported").value(supported)
+            .name("selected").value(selected)
+            .endObject();
+
+        return this;
+    }
+
+    /**
+     * Completes the snapshot, builder can't be used afterwards.
+     */
+    public String build() {
+        writer.endArray();
+        return builder.toString();
+    }
+
+    private void optString(String name, String value) {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.interfaced.tvplatform.core;
+
+import java.util.Locale;
+
+/**
+ * Reduces uris to patterns shared by streams served the same way, e.g. all channels of one CDN.
+ * Scheme, user info, port, query and fragment are dropped, the host is kept
+ * and path segments containing digits, such as channel ids, session tokens and dates, become wildcards.
+ * A file extension starting with a letter, e.g. m3u8 or mp4, is kept and its digits don't count.
+ */
+public final class UriPattern {
+    private static final char WILDCARD = '*';
+
+    private UriPattern() {}
+
+    public static String of(String uri) {
+        int end = uri.length();
+        int query = uri.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = uri.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+
+        int authorityStart = uri.indexOf("//");
+        authorityStart = authorityStart >= 0 && authorityStart < end ? authorityStart + 2 : 0;
+
+        int pathStart = uri.indexOf('/', authorityStart);
+        if (pathStart < 0 || pathStart > end) {
+            pathStart = end;
+        }
+
+        String authority = uri.substring(authorityStart, pathStart);
+        int userInfo = authority.lastIndexOf('@');
+        if (userInfo >= 0) {
+            authority = authority.substring(userInfo + 1);
+        }
+        int port = authority.lastIndexOf(':');
+        if (port >= 0 && authority.indexOf(']', port) < 0) {
+            authority = authority.substring(0, port);
+        }
+
+        StringBuilder builder = new StringBuilder(end - authorityStart);
+        builder.append(authority.toLowerCase(Locale.US));
+
+        int segmentStart = pathStart;
+        while (segmentStart < end) {
+            int segmentEnd = uri.indexOf('/', segmentStart + 1);
+            if (segmentEnd < 0 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+
+            builder.append('/');
+            int nameEnd = findExtension(uri, segmentStart + 1, segmentEnd);
+            if (containsDigit(uri, segmentStart + 1, nameEnd)) {
+                builder.append(WILDCARD).append(uri, nameEnd, segmentEnd);
+            } else {
+                builder.append(uri, segmentStart + 1, segmentEnd);
+            }
+
+            segmentStart = segmentEnd;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @return Index of the dot before the extension, end if there's none
+     */
+    private static int findExtension(String string, int start, int end) {
+        int dot = string.lastIndexOf('.', end - 1);
+        if (dot <= start || dot + 1 >= end || !Character.isLetter(string.charAt(dot + 1))) {
+            return end;
+        }
+        return dot;
+    }
+
+    private static boolean containsDigit(String string, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = string.charAt(i);
+            if (c >= '0' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.interfaced.tvplatform.core;
+
+/**
+ * Hourly budget of bytes written to flash storage, shared by everything that writes for one feature,
+ * so that writing can be held off for the rest of the hour once the budget is spent.
+ * Callers pass the current time so that the budget has no clock of its own.
+ * Not thread safe.
+ */
+public final class WriteBudget {
+    private static final long HOUR_MS = 60 * 60 * 1000;
+
+    private long maxBytesPerHour = 0;
+    private long periodStartMs = -HOUR_MS;
+    private long periodBytes = 0;
+    private long totalBytes = 0;
+
+    /**
+     * @param maxBytesPerHour 0 for unlimited
+     */
+    public void setMaxBytesPerHour(long maxBytesPerHour) {
+        this.maxBytesPerHour = Math.max(0, maxBytesPerHour);
+    }
+
+    public long getMaxBytesPerHour() {
+        return maxBytesPerHour;
+    }
+
+    /**
+     * @param nowMs Current monotonic time
+     * @return Whether writing now stays within the hourly budget
+     */
+    public boolean canWrite(long nowMs) {
+        if (nowMs - periodStartMs >= HOUR_MS) {
+            periodStartMs = nowMs;
+            periodBytes = 0;
+        }
+        return maxBytesPerHour == 0 || periodBytes < maxBytesPerHour;
+    }
+
+    public void onWritten(long bytes) {
+        periodBytes += bytes;
+        totalBytes += bytes;
+    }
+
+    /**
+     * @return Bytes written since creation
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+}
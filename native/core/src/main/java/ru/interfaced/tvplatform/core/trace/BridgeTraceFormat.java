@@ -0,0 +1,35 @@
+package ru.interfaced.tvplatform.core.trace;
+
+/**
+ * Bridge trace file layout.
+ *
+ * File starts with MAGIC followed by VERSION byte, then records follow until the end of the stream.
+ * Every record starts with its type byte:
+ * - NAME: varint id, string. Defines a name that later records refer to by id, written once per name.
+ * - CALL: varlong time delta, varint interface name id, varint method name id, varlong duration, varint argument count, values.
+ * - EVENT: varlong time delta, varint context name id, varint event name id, string arguments JSON.
+ * Times are microseconds, deltas are zigzag encoded and relative to the previous call or event record.
+ * Records are ordered by time except for ones arriving later than the writer's reorder window, which
+ * are written as they come with negative deltas.
+ * Version 1 had unsigned deltas clamped to keep time from decreasing.
+ * Values start with a tag byte: null, false, true, varlong (zigzag encoded integer), double (8 bytes) or string.
+ * Strings are varint byte length followed by UTF-8 bytes.
+ */
+final class BridgeTraceFormat {
+    static final byte[] MAGIC = {'Z', 'B', 'B', 'T'};
+    static final int VERSION = 2;
+    static final int VERSION_UNSIGNED_DELTAS = 1;
+
+    static final int RECORD_NAME = 0;
+    static final int RECORD_CALL = 1;
+    static final int RECORD_EVENT = 2;
+
+    static final int VALUE_NULL = 0;
+    static final int VALUE_FALSE = 1;
+    static final int VALUE_TRUE = 2;
+    static final int VALUE_INTEGER = 3;
+    static final int VALUE_DOUBLE = 4;
+    static final int VALUE_STRING = 5;
+
+    private BridgeTraceFormat() {}
+}
@@ -0,0 +1,159 @@
+package ru.interfaced.tvplatform.core.trace;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads traces written by BridgeTraceWriter.
+ */
+public final class BridgeTraceReader implements Closeable {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final DataInputStream input;
+    private final List<String> names = new ArrayList<>();
+
+    private final boolean signedDeltas;
+    private long timeUs = 0;
+
+    public BridgeTraceReader(InputStream stream) throws IOException {
+        input = new DataInputStream(new BufferedInputStream(stream));
+
+        byte[] magic = new byte[BridgeTraceFormat.MAGIC.length];
+        input.readFully(magic);
+        if (!Arrays.equals(magic, BridgeTraceFormat.MAGIC)) {
+            throw new IOException("Not a bridge trace");
+        }
+
+        int version = input.readUnsignedByte();
+        if (version != BridgeTraceFormat.VERSION && version != BridgeTraceFormat.VERSION_UNSIGNED_DELTAS) {
+            throw new IOException("Unsupported bridge trace version " + version);
+        }
+        signedDeltas = version != BridgeTraceFormat.VERSION_UNSIGNED_DELTAS;
+    }
+
+    /**
+     * @return Next record or null at the end of the trace
+     */
+    public BridgeTraceRecord next() throws IOException {
+        while (true) {
+            int type;
+            try {
+                type = input.readUnsignedByte();
+            } catch (EOFException e) {
+                return null;
+            }
+
+            switch (type) {
+                case BridgeTraceFormat.RECORD_NAME:
+                    readName();
+                    break;
+                case BridgeTraceFormat.RECORD_CALL:
+                    return readCall();
+                case BridgeTraceFormat.RECORD_EVENT:
+                    return readEvent();
+                default:
+                    throw new IOException("Unknown record type " + type);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private void readName() throws IOException {
+        int id = (int) readVarLong();
+        String name = readString();
+
+        if (id != names.size()) {
+            throw new IOException("Unexpected name id " + id);
+        }
+        names.add(name);
+    }
+
+    private BridgeTraceRecord readCall() throws IOException {
+        timeUs += readTimeDelta();
+        String interfaceName = getName(readVarLong());
+        String method = getName(readVarLong());
+        long durationUs = readVarLong();
+
+        int count = (int) readVarLong();
+        Object[] arguments = count == 0 ? NO_ARGUMENTS : new Object[count];
+        for (int i = 0; i < count; i++) {
+            arguments[i] = readValue();
+        }
+
+        return new BridgeTraceRecord(BridgeTraceRecord.Type.CALL, timeUs, interfaceName, method, arguments, null, durationUs);
+    }
+
+    private BridgeTraceRecord readEvent() throws IOException {
+        timeUs += readTimeDelta();
+        String context = getName(readVarLong());
+        String event = getName(readVarLong());
+        String argumentsJson = readString();
+
+        return new BridgeTraceRecord(BridgeTraceRecord.Type.EVENT, timeUs, context, event, NO_ARGUMENTS, argumentsJson, 0);
+    }
+
+    private long readTimeDelta() throws IOException {
+        long encoded = readVarLong();
+        return signedDeltas ? (encoded >>> 1) ^ -(encoded & 1) : encoded;
+    }
+
+    private Object readValue() throws IOException {
+        int tag = input.readUnsignedByte();
+        switch (tag) {
+            case BridgeTraceFormat.VALUE_NULL:
+                return null;
+            case BridgeTraceFormat.VALUE_FALSE:
+                return false;
+            case BridgeTraceFormat.VALUE_TRUE:
+                return true;
+            case BridgeTraceFormat.VALUE_INTEGER: {
+                long encoded = readVarLong();
+                return (encoded >>> 1) ^ -(encoded & 1);
+            }
+            case BridgeTraceFormat.VALUE_DOUBLE:
+                return input.readDouble();
+            case BridgeTraceFormat.VALUE_STRING:
+                return readString();
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private String getName(long id) throws IOException {
+        if (id < 0 || id >= names.size()) {
+            throw new IOException("Undefined name id " + id);
+        }
+        return names.get((int) id);
+    }
+
+    private String readString() throws IOException {
+        int length = (int) readVarLong();
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,68 @@
+package ru.interfaced.tvplatform.core.trace;
+
+import java.util.Arrays;
+
+/**
+ * Single call or event read from a bridge trace.
+ */
+public final class BridgeTraceRecord {
+    public enum Type {
+        /**
+         * JavaScript called a native interface method.
+         */
+        CALL,
+
+        /**
+         * Native side dispatched an event to JavaScript.
+         */
+        EVENT
+    }
+
+    public final Type type;
+
+    /**
+     * Microseconds since the start of the trace.
+     */
+    public final long timeUs;
+
+    /**
+     * Interface name for calls, event context for events.
+     */
+    public final String target;
+
+    /**
+     * Method name for calls, event name for events.
+     */
+    public final String name;
+
+    /**
+     * Call arguments: null, Boolean, Long, Double or String values. Empty for events.
+     */
+    public final Object[] arguments;
+
+    /**
+     * Event arguments as JSON array, null for calls.
+     */
+    public final String argumentsJson;
+
+    /**
+     * How long the call took as seen by JavaScript, 0 for events.
+     */
+    public final long durationUs;
+
+    BridgeTraceRecord(Type type, long timeUs, String target, String name, Object[] arguments, String argumentsJson, long durationUs) {
+        this.type = type;
+        this.timeUs = timeUs;
+        this.target = target;
+        this.name = name;
+        this.arguments = arguments;
+        this.argumentsJson = argumentsJson;
+        this.durationUs = durationUs;
+    }
+
+    @Override
+    public String toString() {
+        return timeUs + "us " + type + " " + target + "." + name + " " +
+            (type == Type.CALL ? Arrays.toString(arguments) + " " + durationUs + "us" : argumentsJson);
+    }
+}
@@ -0,0 +1,207 @@
+package ru.interfaced.tvplatform.core.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Writes bridge traffic in a compact binary form, see BridgeTraceFormat.
+ * Interface, method and event names are written once and referred to by id afterwards.
+ * Calls reach the writer in batches up to seconds after they happened while events are written as dispatched,
+ * so records are held for REORDER_WINDOW_US and written sorted by time. Records arriving even later
+ * keep their time through negative deltas rather than being moved.
+ * Methods are synchronized since calls and events are recorded from different threads.
+ */
+public final class BridgeTraceWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How long records are held to be sorted, well above the page's call batching interval.
+     */
+    public static final long REORDER_WINDOW_US = 5000000;
+
+    private static final class PendingRecord {
+        final long timeUs;
+        final long sequence;
+        final boolean call;
+        final String target;
+        final String name;
+        final List<?> arguments;
+        final String argumentsJson;
+        final long durationUs;
+
+        PendingRecord(long timeUs, long sequence, boolean call, String target, String name, List<?> arguments, String argumentsJson, long durationUs) {
+            this.timeUs = timeUs;
+            this.sequence = sequence;
+            this.call = call;
+            this.target = target;
+            this.name = name;
+            this.arguments = arguments;
+            this.argumentsJson = argumentsJson;
+            this.durationUs = durationUs;
+        }
+    }
+
+    private final DataOutputStream output;
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    // Ties are kept in arrival order
+    private final PriorityQueue<PendingRecord> pending = new PriorityQueue<>(
+        (a, b) -> a.timeUs != b.timeUs ? Long.compare(a.timeUs, b.timeUs) : Long.compare(a.sequence, b.sequence)
+    );
+
+    private long sequence = 0;
+    private long newestTimeUs = Long.MIN_VALUE;
+    private long lastTimeUs = 0;
+
+    public BridgeTraceWriter(OutputStream stream) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        output.write(BridgeTraceFormat.MAGIC);
+        output.writeByte(BridgeTraceFormat.VERSION);
+    }
+
+    /**
+     * @param timeUs Time since the start of the trace
+     * @param arguments Null, Boolean, Number or String values, anything else is written as its string representation.
+     *                  Held until written, must not be modified afterwards.
+     */
+    public synchronized void writeCall(long timeUs, String interfaceName, String method, List<?> arguments, long durationUs) throws IOException {
+        add(new PendingRecord(timeUs, sequence++, true, interfaceName, method, arguments, null, durationUs));
+    }
+
+    /**
+     * @param timeUs Time since the start of the trace
+     * @param argumentsJson JSON array of event arguments
+     */
+    public synchronized void writeEvent(long timeUs, String context, String event, String argumentsJson) throws IOException {
+        add(new PendingRecord(timeUs, sequence++, false, context, event, null, argumentsJson, 0));
+    }
+
+    /**
+     * Writes all held records, ones that turn up later with earlier times get negative deltas.
+     */
+    public synchronized void flush() throws IOException {
+        drain(Long.MAX_VALUE);
+        output.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            drain(Long.MAX_VALUE);
+        } finally {
+            output.close();
+        }
+    }
+
+    private void add(PendingRecord record) throws IOException {
+        pending.add(record);
+        newestTimeUs = Math.max(newestTimeUs, record.timeUs);
+        drain(newestTimeUs - REORDER_WINDOW_US);
+    }
+
+    /**
+     * Writes held records with times up to and including the given one.
+     */
+    private void drain(long untilTimeUs) throws IOException {
+        while (!pending.isEmpty() && pending.peek().timeUs <= untilTimeUs) {
+            PendingRecord record = pending.poll();
+            if (record.call) {
+                writeCallRecord(record);
+            } else {
+                writeEventRecord(record);
+            }
+        }
+    }
+
+    private void writeCallRecord(PendingRecord record) throws IOException {
+        int interfaceId = defineName(record.target);
+        int methodId = defineName(record.name);
+
+        output.writeByte(BridgeTraceFormat.RECORD_CALL);
+        writeTime(record.timeUs);
+        writeVarLong(interfaceId);
+        writeVarLong(methodId);
+        writeVarLong(Math.max(0, record.durationUs));
+        writeVarLong(record.arguments.size());
+        for (Object argument: record.arguments) {
+            writeValue(argument);
+        }
+    }
+
+    private void writeEventRecord(PendingRecord record) throws IOException {
+        int contextId = defineName(record.target);
+        int eventId = defineName(record.name);
+
+        output.writeByte(BridgeTraceFormat.RECORD_EVENT);
+        writeTime(record.timeUs);
+        writeVarLong(contextId);
+        writeVarLong(eventId);
+        writeString(record.argumentsJson);
+    }
+
+    private int defineName(String name) throws IOException {
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        id = nameIds.size();
+        nameIds.put(name, id);
+
+        output.writeByte(BridgeTraceFormat.RECORD_NAME);
+        writeVarLong(id);
+        writeString(name);
+
+        return id;
+    }
+
+    private void writeTime(long timeUs) throws IOException {
+        long delta = timeUs - lastTimeUs;
+        writeVarLong((delta << 1) ^ (delta >> 63));
+        lastTimeUs = timeUs;
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(BridgeTraceFormat.VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            output.writeByte((Boolean) value ? BridgeTraceFormat.VALUE_TRUE : BridgeTraceFormat.VALUE_FALSE);
+        } else if (value instanceof Number) {
+            Number number = (Number) value;
+            double doubleValue = number.doubleValue();
+            long longValue = number.longValue();
+
+            if (doubleValue == longValue) {
+                output.writeByte(BridgeTraceFormat.VALUE_INTEGER);
+                writeVarLong((longValue << 1) ^ (longValue >> 63));
+            } else {
+                output.writeByte(BridgeTraceFormat.VALUE_DOUBLE);
+                output.writeDouble(doubleValue);
+            }
+        } else {
+            output.writeByte(BridgeTraceFormat.VALUE_STRING);
+            writeString(value.toString());
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        output.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+}
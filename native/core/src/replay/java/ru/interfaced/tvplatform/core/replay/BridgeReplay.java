@@ -0,0 +1,82 @@
+package ru.interfaced.tvplatform.core.replay;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import ru.interfaced.tvplatform.core.EventEncoder;
+import ru.interfaced.tvplatform.core.trace.BridgeTraceReader;
+import ru.interfaced.tvplatform.core.trace.BridgeTraceRecord;
+
+/**
+ * Replays a bridge trace recorded on a device against FakePlayer and reports timings.
+ * Player calls go through the same platform independent logic the app uses, see FakePlayer for what is modelled,
+ * events are encoded for both transports; other interfaces' calls are only accounted with their device timings.
+ * Usage: BridgeReplay <trace file> [speed]
+ * Without speed, records are replayed as fast as possible, otherwise original pacing is reproduced
+ * with time scaled by speed, e.g. 10 replays a 2 hour session in 12 minutes.
+ */
+public final class BridgeReplay {
+    private static final String PLAYER_INTERFACE = "Player";
+
+    private final FakePlayer player = new FakePlayer();
+    private final ReplayStatistics statistics = new ReplayStatistics();
+
+    // Keeps results observable so that replayed work isn't optimised away
+    private int sink = 0;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: BridgeReplay <trace file> [speed]");
+            System.exit(1);
+        }
+
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+
+        BridgeReplay replay = new BridgeReplay();
+        long replayStartNs = System.nanoTime();
+        try (BridgeTraceReader reader = new BridgeTraceReader(new FileInputStream(args[0]))) {
+            replay.run(reader, speed);
+        }
+        replay.statistics.print(System.out, System.nanoTime() - replayStartNs);
+    }
+
+    private void run(BridgeTraceReader reader, double speed) throws IOException, InterruptedException {
+        long startNs = System.nanoTime();
+
+        BridgeTraceRecord record;
+        while ((record = reader.next()) != null) {
+            if (speed > 0) {
+                long delayNs = (long) (record.timeUs * 1000 / speed) - (System.nanoTime() - startNs);
+                if (delayNs > 0) {
+                    Thread.sleep(delayNs / 1000000, (int) (delayNs % 1000000));
+                }
+            }
+
+            if (record.type == BridgeTraceRecord.Type.CALL) {
+                replayCall(record);
+            } else {
+                replayEvent(record);
+            }
+        }
+    }
+
+    private void replayCall(BridgeTraceRecord record) {
+        long startNs = System.nanoTime();
+        if (PLAYER_INTERFACE.equals(record.target)) {
+            Object result = player.call(record.name, record.arguments, record.timeUs / 1000);
+            sink += result != null ? result.hashCode() : 0;
+        }
+        long replayNs = System.nanoTime() - startNs;
+
+        statistics.addCall(record.target + "." + record.name, record.timeUs, record.durationUs, replayNs);
+    }
+
+    private void replayEvent(BridgeTraceRecord record) {
+        long startNs = System.nanoTime();
+        sink += EventEncoder.toMessage(record.target, record.name, record.argumentsJson).length();
+        sink += EventEncoder.toScript(record.target, record.name, record.argumentsJson).length();
+        long replayNs = System.nanoTime() - startNs;
+
+        statistics.addEvent(record.target + "." + record.name, record.timeUs, replayNs);
+    }
+}
@@ -0,0 +1,221 @@
+package ru.interfaced.tvplatform.core.replay;
+
+import ru.interfaced.tvplatform.core.EnumParser;
+import ru.interfaced.tvplatform.core.ExpiringCache;
+import ru.interfaced.tvplatform.core.LogRing;
+import ru.interfaced.tvplatform.core.MediaFormat;
+import ru.interfaced.tvplatform.core.PlayerOptions.DrmType;
+import ru.interfaced.tvplatform.core.PlayerOptions.FrameRateMatching;
+import ru.interfaced.tvplatform.core.PlayerOptions.Orientation;
+import ru.interfaced.tvplatform.core.PlayerOptions.ResizeMode;
+import ru.interfaced.tvplatform.core.PlayerOptions.SeekMode;
+import ru.interfaced.tvplatform.core.PlayerOptions.TunnelingMode;
+import ru.interfaced.tvplatform.core.PlayerOptions.VideoType;
+import ru.interfaced.tvplatform.core.TrackSnapshotBuilder;
+import ru.interfaced.tvplatform.core.UriPattern;
+
+/**
+ * Player state model standing in for ExoPlayer during replay.
+ * Setters run the same platform independent parsing, format detection, probe cache lookups and logging
+ * as PlayerWebInterface, getters answer from the state replayed so far and tracks are built the way the app builds them.
+ * Everything that lives in app classes built on ExoPlayer, such as seek coalescing, track selection,
+ * CDN routing and prefetching, is not modelled, those calls only update the replayed state.
+ */
+final class FakePlayer {
+    private static final String TAG = "PlayerWebInterface";
+
+    private static final float DURATION_MS = 3600000f;
+    private static final String[] LANGUAGES = {"en", "ru", "de"};
+
+    // Same as MediaFormatProbe
+    private static final int PROBE_CACHE_CAPACITY = 64;
+    private static final long PROBE_RESULT_TTL_MS = 60 * 60 * 1000;
+
+    // Same as Logger
+    private static final int LOG_CAPACITY = 2048;
+
+    private final TrackSnapshotBuilder.Track track = new TrackSnapshotBuilder.Track();
+    private final ExpiringCache<String, MediaFormat> probedFormats = new ExpiringCache<>(PROBE_CACHE_CAPACITY);
+    private final LogRing log = new LogRing(LOG_CAPACITY);
+
+    private boolean created = false;
+    private boolean playing = false;
+    private String uri = "";
+    private MediaFormat desiredFormat = MediaFormat.AUTO;
+    private MediaFormat format = MediaFormat.AUTO;
+    private VideoType videoType = VideoType.SURFACE_VIEW;
+    private TunnelingMode tunnelingMode = TunnelingMode.OFF;
+    private FrameRateMatching frameRateMode = FrameRateMatching.OFF;
+    private SeekMode seekMode = SeekMode.EXACT;
+    private int position = 0;
+    private float playbackRate = 1;
+    private int volume = 100;
+    private boolean muted = false;
+    private boolean subtitlesVisible = false;
+
+    /**
+     * @param nowMs Time of the call in the trace
+     * @return Value to be returned to JavaScript, null for void methods and for methods that are not modelled
+     */
+    Object call(String method, Object[] arguments, long nowMs) {
+        switch (method) {
+            case "create":
+                created = true;
+                return null;
+            case "destroy":
+                created = false;
+                playing = false;
+                return null;
+            case "setVideoType":
+                videoType = parse(VideoType.class, arguments, videoType);
+                return null;
+            case "getVideoType":
+                return videoType.name();
+            case "setTunnelingMode":
+                tunnelingMode = parse(TunnelingMode.class, arguments, tunnelingMode);
+                return null;
+            case "getTunnelingMode":
+                return tunnelingMode.name();
+            case "isTunnelingActive":
+                return tunnelingMode == TunnelingMode.ON;
+            case "setFrameRateMatching":
+                frameRateMode = parse(FrameRateMatching.class, arguments, frameRateMode);
+                return null;
+            case "getFrameRateMatching":
+                return frameRateMode.name();
+            case "setSeekMode":
+                seekMode = parse(SeekMode.class, arguments, seekMode);
+                return null;
+            case "getSeekMode":
+                return seekMode.name();
+            case "setOrientation":
+                parse(Orientation.class, arguments, Orientation.LANDSCAPE);
+                return null;
+            case "setResizeMode":
+                parse(ResizeMode.class, arguments, ResizeMode.DEFAULT);
+                return null;
+            case "setDRM":
+                parse(DrmType.class, arguments, DrmType.NONE);
+                return null;
+            case "setMediaType":
+                desiredFormat = parse(MediaFormat.class, arguments, MediaFormat.AUTO);
+                return null;
+            case "setVideoURI":
+                uri = String.valueOf(argument(arguments, 0));
+                log.write(nowMs, LogRing.DEBUG, 0, TAG, "Playing: " + uri, 0, 0, 0, 0, 0);
+                format = desiredFormat != MediaFormat.AUTO ? desiredFormat : resolveFormat(uri, nowMs);
+                position = 0;
+                return null;
+            case "getVideoURI":
+                return uri;
+            case "start":
+            case "restart":
+                playing = created;
+                return null;
+            case "pause":
+            case "stop":
+                playing = false;
+                return null;
+            case "seekTo":
+                position = intArgument(arguments, 0, position);
+                return null;
+            case "getCurrentPosition":
+                return position;
+            case "getDuration":
+                return created ? DURATION_MS : 0f;
+            case "isLiveStream":
+                return false;
+            case "getPlaybackRate":
+                return playbackRate;
+            case "setPlaybackRate":
+                playbackRate = (float) doubleArgument(arguments, 0, playbackRate);
+                return null;
+            case "getVolume":
+                return volume;
+            case "setVolume":
+                volume = Math.max(0, Math.min(100, intArgument(arguments, 0, volume)));
+                return null;
+            case "getMuted":
+                return muted;
+            case "setMuted":
+                muted = Boolean.TRUE.equals(argument(arguments, 0));
+                return null;
+            case "getSubtitlesVisible":
+                return subtitlesVisible;
+            case "setSubtitlesVisible":
+                subtitlesVisible = Boolean.TRUE.equals(argument(arguments, 0));
+                return null;
+            case "getTracks":
+                return buildTracks();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Detects format by uri or looks up the one probed for its pattern.
+     * There's no network to probe with, a probe is taken to resolve to the detected format.
+     */
+    private MediaFormat resolveFormat(String uri, long nowMs) {
+        MediaFormat detected = MediaFormat.detect(uri);
+        if (detected != MediaFormat.AUTO || !(uri.startsWith("http://") || uri.startsWith("https://"))) {
+            return detected;
+        }
+
+        String pattern = UriPattern.of(uri);
+        MediaFormat probed = probedFormats.get(pattern, nowMs);
+        if (probed == null) {
+            probed = detected;
+            probedFormats.put(pattern, probed, nowMs + PROBE_RESULT_TTL_MS, nowMs);
+        }
+        return probed;
+    }
+
+    private String buildTracks() {
+        TrackSnapshotBuilder builder = new TrackSnapshotBuilder();
+
+        builder.beginRenderer(0, "video", false, false).beginGroup(0);
+        for (int i = 0; i < 4; i++) {
+            track.reset();
+            track.id = "video-" + i;
+            track.mimeType = "video/avc";
+            track.bitrate = 1000000 * (i + 1);
+            track.width = 480 * (i + 1);
+            track.height = 270 * (i + 1);
+            builder.addTrack(track, i, true, i == 3);
+        }
+        builder.endGroup().endRenderer();
+
+        builder.beginRenderer(1, "audio", false, false);
+        for (int i = 0; i < LANGUAGES.length; i++) {
+            track.reset();
+            track.id = "audio-" + i;
+            track.language = LANGUAGES[i];
+            track.mimeType = "audio/mp4a-latm";
+            track.channelCount = 2;
+            builder.beginGroup(i).addTrack(track, 0, true, i == 0).endGroup();
+        }
+        builder.endRenderer();
+
+        return builder.build();
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, Object[] arguments, E fallback) {
+        E value = EnumParser.parse(type, String.valueOf(argument(arguments, 0)));
+        return value != null ? value : fallback;
+    }
+
+    private static Object argument(Object[] arguments, int index) {
+        return index < arguments.length ? arguments[index] : null;
+    }
+
+    private static int intArgument(Object[] arguments, int index, int fallback) {
+        Object value = argument(arguments, index);
+        return value instanceof Number ? ((Number) value).intValue() : fallback;
+    }
+
+    private static double doubleArgument(Object[] arguments, int index, double fallback) {
+        Object value = argument(arguments, index);
+        return value instanceof Number ? ((Number) value).doubleValue() : fallback;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.interfaced.tvplatform.core.replay;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects per call and per event timings of a replay and prints them as a table.
+ */
+final class ReplayStatistics {
+    private static final long SECOND_US = 1000000;
+
+    private static final class Entry {
+        final String name;
+        int count = 0;
+        long[] deviceUs = new long[16];
+        long[] replayNs = new long[16];
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        void add(long deviceDurationUs, long replayDurationNs) {
+            if (count == deviceUs.length) {
+                deviceUs = Arrays.copyOf(deviceUs, count * 2);
+                replayNs = Arrays.copyOf(replayNs, count * 2);
+            }
+            deviceUs[count] = deviceDurationUs;
+            replayNs[count] = replayDurationNs;
+            count++;
+        }
+
+        long deviceTotalUs() {
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                total += deviceUs[i];
+            }
+            return total;
+        }
+    }
+
+    private final Map<String, Entry> calls = new HashMap<>();
+    private final Map<String, Entry> events = new HashMap<>();
+
+    private long durationUs = 0;
+    private int callCount = 0;
+    private int eventCount = 0;
+
+    // Busiest one second windows
+    private long windowStartUs = 0;
+    private int windowRecords = 0;
+    private int peakRecordsPerSecond = 0;
+
+    void addCall(String name, long timeUs, long deviceDurationUs, long replayDurationNs) {
+        callCount++;
+        calls.computeIfAbsent(name, Entry::new).add(deviceDurationUs, replayDurationNs);
+        onRecord(timeUs);
+    }
+
+    void addEvent(String name, long timeUs, long replayDurationNs) {
+        eventCount++;
+        events.computeIfAbsent(name, Entry::new).add(0, replayDurationNs);
+        onRecord(timeUs);
+    }
+
+    void print(PrintStream out, long replayWallTimeNs) {
+        out.printf(Locale.US, "Trace: %.1f s, %d calls, %d events, peak %d records per second%n",
+            durationUs / (double) SECOND_US, callCount, eventCount, peakRecordsPerSecond);
+        out.printf(Locale.US, "Replayed in %.1f ms%n%n", replayWallTimeNs / 1e6);
+
+        out.println("Calls (device time is measured by the page around the bridge call)");
+        out.printf(Locale.US, "%-36s %8s %12s %10s %10s %10s %12s %12s%n",
+            "method", "count", "device ms", "mean us", "p99 us", "max us", "replay ns", "p99 ns");
+        for (Entry entry: sorted(calls)) {
+            long[] device = Arrays.copyOf(entry.deviceUs, entry.count);
+            long[] replay = Arrays.copyOf(entry.replayNs, entry.count);
+            Arrays.sort(device);
+            Arrays.sort(replay);
+
+            out.printf(Locale.US, "%-36s %8d %12.1f %10d %10d %10d %12d %12d%n",
+                entry.name, entry.count, entry.deviceTotalUs() / 1000.0, entry.deviceTotalUs() / entry.count,
+                percentile(device, 0.99), device[entry.count - 1], mean(replay), percentile(replay, 0.99));
+        }
+
+        out.println();
+        out.println("Events (replay time is encoding both as a channel message and as a script)");
+        out.printf(Locale.US, "%-36s %8s %12s %12s%n", "event", "count", "replay ns", "p99 ns");
+        for (Entry entry: sorted(events)) {
+            long[] replay = Arrays.copyOf(entry.replayNs, entry.count);
+            Arrays.sort(replay);
+
+            out.printf(Locale.US, "%-36s %8d %12d %12d%n", entry.name, entry.count, mean(replay), percentile(replay, 0.99));
+        }
+    }
+
+    private void onRecord(long timeUs) {
+        durationUs = Math.max(durationUs, timeUs);
+
+        if (timeUs - windowStartUs >= SECOND_US) {
+            windowStartUs = timeUs;
+            windowRecords = 0;
+        }
+        windowRecords++;
+        peakRecordsPerSecond = Math.max(peakRecordsPerSecond, windowRecords);
+    }
+
+    private static List<Entry> sorted(Map<String, Entry> entries) {
+        List<Entry> list = new ArrayList<>(entries.values());
+        list.sort(Comparator.comparingLong(Entry::deviceTotalUs).reversed().thenComparing(entry -> -entry.count));
+        return list;
+    }
+
+    private static long mean(long[] values) {
+        long total = 0;
+        for (long value: values) {
+            total += value;
+        }
+        return total / values.length;
+    }
+
+    private static long percentile(long[] sortedValues, double fraction) {
+        return sortedValues[Math.min(sortedValues.length - 1, (int) (sortedValues.length * fraction))];
+    }
+}
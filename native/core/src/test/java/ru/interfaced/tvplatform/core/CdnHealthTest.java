@@ -0,0 +1,106 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CdnHealthTest {
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void unknownCdnScoresAsHealthy() {
+        assertEquals(1 / 1.5f, new CdnHealth().getScore("a"), DELTA);
+    }
+
+    @Test
+    public void failuresAndLatencyLowerScore() {
+        CdnHealth health = new CdnHealth();
+        health.recordSuccess("fast", 100, 0);
+        health.recordSuccess("slow", 2000, 0);
+        health.recordFailure("failing", 0);
+
+        assertTrue(health.getScore("fast") > health.getScore("unknown"));
+        assertTrue(health.getScore("slow") < health.getScore("unknown"));
+        assertTrue(health.getScore("failing") < health.getScore("unknown"));
+    }
+
+    @Test
+    public void rankOrdersFromHealthiestAndKeepsTies() {
+        CdnHealth health = new CdnHealth();
+        health.recordSuccess("fast", 100, 0);
+        health.recordFailure("failing", 0);
+
+        assertEquals(
+            Arrays.asList("fast", "b", "a", "failing"),
+            health.rank(Arrays.asList("failing", "b", "fast", "a"))
+        );
+    }
+
+    @Test
+    public void serializeWritesLinesFromLeastRecentlyUpdated() {
+        CdnHealth health = new CdnHealth();
+        health.recordSuccess("a", 100, 1000);
+        health.recordFailure("b", 2000);
+        health.recordSuccess("a", 100, 3000);
+
+        assertEquals(
+            "b\t0.7000\t500.0\t2000\n" +
+            "a\t1.0000\t296.0\t3000\n",
+            health.serialize()
+        );
+    }
+
+    @Test
+    public void restoreRoundTrip() {
+        CdnHealth health = new CdnHealth();
+        health.recordSuccess("a", 100, 1000);
+        health.recordFailure("b", 2000);
+        String serialized = health.serialize();
+
+        CdnHealth restored = new CdnHealth();
+        restored.restore(serialized);
+
+        assertEquals(serialized, restored.serialize());
+        assertEquals(health.getScore("a"), restored.getScore("a"), DELTA);
+        assertEquals(health.getScore("b"), restored.getScore("b"), DELTA);
+    }
+
+    @Test
+    public void restoreSkipsMalformedLinesAndClamps() {
+        CdnHealth health = new CdnHealth();
+        health.recordSuccess("old", 100, 0);
+
+        health.restore(
+            "a\t1.5\t-10\t1000\n" +
+            "b\tx\t100\t1000\n" +
+            "c\t0.5\t100\n" +
+            "\n" +
+            "d\t0.5\t100.0\t2000\n"
+        );
+
+        assertEquals(
+            "a\t1.0000\t0.0\t1000\n" +
+            "d\t0.5000\t100.0\t2000\n",
+            health.serialize()
+        );
+    }
+
+    @Test
+    public void restoreKeepsMostRecentlyUpdated() {
+        StringBuilder serialized = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            serialized.append("cdn").append(i).append("\t1.0\t100.0\t").append(i).append('\n');
+        }
+
+        CdnHealth health = new CdnHealth();
+        health.restore(serialized.toString());
+
+        String[] lines = health.serialize().split("\n");
+        assertEquals(32, lines.length);
+        assertTrue(lines[0].startsWith("cdn8\t"));
+        assertTrue(lines[31].startsWith("cdn39\t"));
+    }
+}
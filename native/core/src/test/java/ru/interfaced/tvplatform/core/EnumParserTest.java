@@ -0,0 +1,23 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EnumParserTest {
+    @Test
+    public void ignoresCase() {
+        assertEquals(PlayerOptions.SeekMode.CLOSEST_SYNC, EnumParser.parse(PlayerOptions.SeekMode.class, "closest_sync"));
+        assertEquals(PlayerOptions.SeekMode.EXACT, EnumParser.parse(PlayerOptions.SeekMode.class, "EXACT"));
+        assertEquals(PlayerOptions.ResizeMode.FIT, EnumParser.parse(PlayerOptions.ResizeMode.class, "Fit"));
+    }
+
+    @Test
+    public void unknownValues() {
+        assertNull(EnumParser.parse(PlayerOptions.SeekMode.class, null));
+        assertNull(EnumParser.parse(PlayerOptions.SeekMode.class, ""));
+        assertNull(EnumParser.parse(PlayerOptions.SeekMode.class, "fit"));
+        assertNull(EnumParser.parse(PlayerOptions.SeekMode.class, " exact"));
+    }
+}
@@ -0,0 +1,51 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class ErrorChainTest {
+    @Test
+    public void joinsMessagesOutermostFirst() {
+        Throwable error = new RuntimeException("Playback failed", new IOException("Load failed", new IOException("Timeout")));
+
+        assertEquals("Playback failed. Load failed. Timeout.", ErrorChain.flatten(error));
+    }
+
+    @Test
+    public void skipsMessagesRepeatingTheCause() {
+        // Message of a wrapper created with a cause is cause.toString()
+        Throwable error = new RuntimeException(new IOException("Timeout"));
+
+        assertEquals("java.io.IOException: Timeout.", ErrorChain.flatten(error));
+    }
+
+    @Test
+    public void skipsDuplicateMessages() {
+        Throwable error = new IOException("Timeout", new IOException("Timeout"));
+
+        assertEquals("Timeout.", ErrorChain.flatten(error));
+    }
+
+    @Test
+    public void skipsMissingMessages() {
+        Throwable error = new RuntimeException("Playback failed", new IllegalStateException((String) null));
+
+        assertEquals("Playback failed.", ErrorChain.flatten(error));
+        assertEquals("", ErrorChain.flatten(new IOException()));
+    }
+
+    @Test
+    public void includesInnermostCause() {
+        Throwable error = new IOException("Wrapper");
+        Throwable innermost = error;
+        for (int i = 0; i < 5; i++) {
+            innermost.initCause(new IOException("Cause " + i));
+            innermost = innermost.getCause();
+        }
+
+        assertEquals("Wrapper. Cause 0. Cause 1. Cause 2. Cause 3. Cause 4.", ErrorChain.flatten(error));
+    }
+}
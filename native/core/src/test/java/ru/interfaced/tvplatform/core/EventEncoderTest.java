@@ -0,0 +1,39 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventEncoderTest {
+    @Test
+    public void toMessage() {
+        assertEquals(
+            "{\"context\":\"player\",\"event\":\"state\",\"args\":[1,\"a\"]}",
+            EventEncoder.toMessage("player", "state", "[1,\"a\"]")
+        );
+    }
+
+    @Test
+    public void toMessageQuotesNames() {
+        assertEquals(
+            "{\"context\":\"player\",\"event\":\"a\\\"b\",\"args\":[]}",
+            EventEncoder.toMessage("player", "a\"b", "[]")
+        );
+    }
+
+    @Test
+    public void toScriptSpreadsArguments() {
+        assertEquals(
+            "window.player.onEvent && window.player.onEvent(\"state\", 1,\"a\")",
+            EventEncoder.toScript("player", "state", "[1,\"a\"]")
+        );
+    }
+
+    @Test
+    public void toScriptWithoutArguments() {
+        assertEquals(
+            "window.player.onEvent && window.player.onEvent(\"state\")",
+            EventEncoder.toScript("player", "state", "[]")
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExpiringCacheTest {
+    @Test
+    public void getBeforeExpiry() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(4);
+        cache.put("a", "1", 1000, 0);
+
+        assertEquals("1", cache.get("a", 999));
+        assertNull(cache.get("b", 999));
+    }
+
+    @Test
+    public void getAtExpiryDropsEntry() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(4);
+        cache.put("a", "1", 1000, 0);
+
+        assertNull(cache.get("a", 1000));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void putDropsExpiredEntries() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(4);
+        cache.put("a", "1", 100, 0);
+        cache.put("b", "2", 1000, 0);
+        cache.put("c", "3", 1000, 500);
+
+        assertEquals(2, cache.size());
+        assertEquals("2", cache.get("b", 500));
+    }
+
+    @Test
+    public void putEvictsLeastRecentlyUsed() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2);
+        cache.put("a", "1", 1000, 0);
+        cache.put("b", "2", 1000, 0);
+        cache.get("a", 0);
+        cache.put("c", "3", 1000, 0);
+
+        assertEquals("1", cache.get("a", 0));
+        assertNull(cache.get("b", 0));
+        assertEquals("3", cache.get("c", 0));
+    }
+
+    @Test
+    public void putReplacesValue() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2);
+        cache.put("a", "1", 100, 0);
+        cache.put("a", "2", 1000, 0);
+
+        assertEquals("2", cache.get("a", 500));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void takeRemovesEntry() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2);
+        cache.put("a", "1", 1000, 0);
+
+        assertEquals("1", cache.take("a", 0));
+        assertNull(cache.take("a", 0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void removeAndClear() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(4);
+        cache.put("a", "1", 1000, 0);
+        cache.put("b", "2", 1000, 0);
+
+        cache.remove("a");
+        assertNull(cache.get("a", 0));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
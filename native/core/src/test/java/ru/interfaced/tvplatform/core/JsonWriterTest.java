@@ -0,0 +1,66 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonWriterTest {
+    @Test
+    public void writesNestedStructures() {
+        String json = new JsonWriter()
+            .beginObject()
+            .name("a").value(1)
+            .name("b").beginArray().value(true).value("x").value((String) null).endArray()
+            .name("c").beginObject().endObject()
+            .name("d").rawValue("[1,2]")
+            .endObject()
+            .toString();
+
+        assertEquals("{\"a\":1,\"b\":[true,\"x\",null],\"c\":{},\"d\":[1,2]}", json);
+    }
+
+    @Test
+    public void writesNonFiniteFloatsAsNull() {
+        String json = new JsonWriter()
+            .beginArray()
+            .value(1.5f)
+            .value(Float.NaN)
+            .value(Float.POSITIVE_INFINITY)
+            .endArray()
+            .toString();
+
+        assertEquals("[1.5,null,null]", json);
+    }
+
+    @Test
+    public void quoteEscapesQuotesAndBackslashes() {
+        assertEquals("\"a\\\"b\\\\c\"", quote("a\"b\\c"));
+    }
+
+    @Test
+    public void quoteEscapesControlCharacters() {
+        assertEquals("\"\\b\\t\\n\\f\\r\\u0001\\u001f\"", quote("\b\t\n\f\r\u0001\u001f"));
+    }
+
+    @Test
+    public void quoteEscapesScriptEnd() {
+        assertEquals("\"<\\/script> a/b\"", quote("</script> a/b"));
+    }
+
+    @Test
+    public void quoteEscapesLineSeparators() {
+        assertEquals("\"\\u2028\\u2029\"", quote(new String(new char[] {0x2028, 0x2029})));
+    }
+
+    @Test
+    public void quoteKeepsUnicode() {
+        String value = new String(new char[] {0x43f, 0x440, 0x438, 0x432, 0x435, 0x442});
+        assertEquals("\"" + value + "\"", quote(value));
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder();
+        JsonWriter.quote(builder, value);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogRingTest {
+    @Test
+    public void formatWithoutArguments() {
+        assertEquals("Buffering {}", LogRing.format("Buffering {}", 0, 1, 0, 0, 0));
+    }
+
+    @Test
+    public void formatIntegers() {
+        assertEquals(
+            "Size 1920x1080, bitrate -1",
+            LogRing.format("Size {}x{}, bitrate {}", 3, 1920, 1080, -1, 0)
+        );
+    }
+
+    @Test
+    public void formatDoubles() {
+        assertEquals(
+            "Speed 1.5, frames 30",
+            LogRing.format("Speed {f}, frames {}", 2, LogRing.encodeDouble(1.5), 30, 0, 0)
+        );
+    }
+
+    @Test
+    public void formatBooleans() {
+        assertEquals(
+            "State 3, playing true, loading false",
+            LogRing.format("State {}, playing {b}, loading {b}", 3, 3, LogRing.encodeBoolean(true), LogRing.encodeBoolean(false), 0)
+        );
+    }
+
+    @Test
+    public void formatKeepsLoneBraces() {
+        assertEquals("{x} 1 {", LogRing.format("{x} {} {", 1, 1, 0, 0, 0));
+    }
+
+    @Test
+    public void formatLeavesExtraPlaceholders() {
+        assertEquals("1 {} {}", LogRing.format("{} {} {}", 1, 1, 2, 3, 0));
+    }
+
+    @Test
+    public void formatIgnoresExtraArguments() {
+        assertEquals("1 and 2 ", LogRing.format("{} and {} ", 4, 1, 2, 3, 4));
+    }
+
+    @Test
+    public void dumpFormatsRecords() {
+        LogRing ring = new LogRing(4);
+        ring.write(1000, LogRing.INFO, 7, "Player", "State {}", 1, 3, 0, 0, 0);
+        ring.write(2000, LogRing.ERROR, 8, "Bridge", "Failed", 0, 0, 0, 0, 0);
+
+        assertEquals(
+            time(1000) + " 7 I Player: State 3\n" +
+            time(2000) + " 8 E Bridge: Failed\n",
+            ring.dump()
+        );
+    }
+
+    @Test
+    public void dumpReportsOverwrittenRecords() {
+        LogRing ring = new LogRing(2);
+        for (int i = 0; i < 5; i++) {
+            ring.write(i, LogRing.DEBUG, 1, "Tag", "Record {}", 1, i, 0, 0, 0);
+        }
+
+        assertEquals(5, ring.getWrittenCount());
+        assertEquals(
+            "--- 3 earlier records overwritten\n" +
+            time(3) + " 1 D Tag: Record 3\n" +
+            time(4) + " 1 D Tag: Record 4\n",
+            ring.dump()
+        );
+    }
+
+    @Test
+    public void dumpEmpty() {
+        assertEquals("", new LogRing(4).dump());
+    }
+
+    private static String time(long timeMs) {
+        return new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US).format(new Date(timeMs));
+    }
+}
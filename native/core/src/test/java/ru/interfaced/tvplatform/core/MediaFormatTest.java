@@ -0,0 +1,72 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class MediaFormatTest {
+    @Test
+    public void detectByExtension() {
+        assertEquals(MediaFormat.HLS, MediaFormat.detect("http://a/live/index.m3u8"));
+        assertEquals(MediaFormat.HLS, MediaFormat.detect("http://a/live/INDEX.M3U8"));
+        assertEquals(MediaFormat.DASH, MediaFormat.detect("http://a/vod/manifest.mpd"));
+        assertEquals(MediaFormat.SS, MediaFormat.detect("http://a/vod/movie.ism"));
+        assertEquals(MediaFormat.SS, MediaFormat.detect("http://a/vod/movie.isml"));
+        assertEquals(MediaFormat.RTMP, MediaFormat.detect("RTMP://a/live/stream"));
+        assertEquals(MediaFormat.AUTO, MediaFormat.detect("http://a/live/stream"));
+        assertEquals(MediaFormat.AUTO, MediaFormat.detect("http://a/video.mp4"));
+    }
+
+    @Test
+    public void detectIgnoresQueryAndFragment() {
+        assertEquals(MediaFormat.HLS, MediaFormat.detect("http://a/index.m3u8?token=1.mpd"));
+        assertEquals(MediaFormat.DASH, MediaFormat.detect("http://a/manifest.mpd#t=10"));
+        assertEquals(MediaFormat.AUTO, MediaFormat.detect("http://a/stream?format=.m3u8"));
+    }
+
+    @Test
+    public void detectSmoothStreamingManifest() {
+        assertEquals(MediaFormat.SS, MediaFormat.detect("http://a/vod/movie.ism/Manifest"));
+        assertEquals(MediaFormat.SS, MediaFormat.detect("http://a/live/channel.isml/manifest?filter=1"));
+    }
+
+    @Test
+    public void fromContentType() {
+        assertEquals(MediaFormat.HLS, MediaFormat.fromContentType("application/vnd.apple.mpegurl"));
+        assertEquals(MediaFormat.HLS, MediaFormat.fromContentType("Application/X-MpegURL; charset=UTF-8"));
+        assertEquals(MediaFormat.HLS, MediaFormat.fromContentType("audio/mpegurl"));
+        assertEquals(MediaFormat.DASH, MediaFormat.fromContentType(" application/dash+xml "));
+        assertEquals(MediaFormat.SS, MediaFormat.fromContentType("application/vnd.ms-sstr+xml"));
+        assertEquals(MediaFormat.AUTO, MediaFormat.fromContentType("video/mp2t"));
+        assertEquals(MediaFormat.AUTO, MediaFormat.fromContentType(""));
+    }
+
+    @Test
+    public void sniff() {
+        assertEquals(MediaFormat.HLS, sniff("#EXTM3U\n#EXT-X-VERSION:3\n"));
+        assertEquals(MediaFormat.HLS, sniff("\r\n  #EXTM3U\n"));
+        assertEquals(MediaFormat.DASH, sniff("<?xml version=\"1.0\"?>\n<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\">"));
+        assertEquals(MediaFormat.SS, sniff("<?xml version=\"1.0\"?><SmoothStreamingMedia MajorVersion=\"2\">"));
+        assertEquals(MediaFormat.AUTO, sniff("<html><body>Not found</body></html>"));
+        assertEquals(MediaFormat.AUTO, sniff(""));
+    }
+
+    @Test
+    public void sniffSkipsByteOrderMark() {
+        byte[] data = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '#', 'E', 'X', 'T', 'M', '3', 'U'};
+        assertEquals(MediaFormat.HLS, MediaFormat.sniff(data, data.length));
+    }
+
+    @Test
+    public void sniffReadsOnlyLength() {
+        byte[] data = "#EXTM3U".getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals(MediaFormat.AUTO, MediaFormat.sniff(data, 4));
+    }
+
+    private static MediaFormat sniff(String data) {
+        byte[] bytes = data.getBytes(StandardCharsets.ISO_8859_1);
+        return MediaFormat.sniff(bytes, bytes.length);
+    }
+}
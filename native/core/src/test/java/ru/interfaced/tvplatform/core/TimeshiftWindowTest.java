@@ -0,0 +1,195 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimeshiftWindowTest {
+    private static final long SEGMENT_DURATION_US = 4000000;
+
+    @Test
+    public void addKeepsSequenceOrder() {
+        TimeshiftWindow window = new TimeshiftWindow();
+
+        assertTrue(window.add(segment(10)));
+        assertTrue(window.add(segment(12)));
+        assertFalse(window.add(segment(12)));
+        assertFalse(window.add(segment(11)));
+
+        assertEquals(2, window.getSegments().size());
+        assertEquals(2 * SEGMENT_DURATION_US, window.getDurationUs());
+    }
+
+    @Test
+    public void onRecordedCountsBytesOnce() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        TimeshiftWindow.Segment segment = segment(1);
+        window.add(segment);
+
+        assertTrue(window.onRecorded(segment, 1000));
+        assertFalse(window.onRecorded(segment, 1000));
+
+        assertTrue(segment.isRecorded());
+        assertEquals(1000, window.getBytes());
+        assertTrue(window.getUnrecorded().isEmpty());
+    }
+
+    @Test
+    public void onRecordedAfterEvictionDoesNotCountBytes() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        TimeshiftWindow.Segment evicted = segment(1);
+        window.add(evicted);
+        addSegments(window, 2, 4);
+        window.trim(0, 2);
+
+        assertTrue(window.onRecorded(evicted, 1000));
+        assertEquals(0, window.getBytes());
+    }
+
+    @Test
+    public void trimDropsOldestBeyondDuration() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        addSegments(window, 10, 6);
+        for (TimeshiftWindow.Segment segment: window.getSegments()) {
+            window.onRecorded(segment, 100);
+        }
+
+        List<TimeshiftWindow.Segment> evicted = window.trim(3 * SEGMENT_DURATION_US, 0);
+
+        assertEquals(sequences(10, 11, 12), sequencesOf(evicted));
+        assertEquals(sequences(13, 14, 15), sequencesOf(window.getSegments()));
+        assertEquals(3 * SEGMENT_DURATION_US, window.getDurationUs());
+        assertEquals(300, window.getBytes());
+    }
+
+    @Test
+    public void trimKeepsMinimumSegments() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        addSegments(window, 10, 5);
+
+        window.trim(0, Long.MAX_VALUE);
+
+        assertEquals(sequences(12, 13, 14), sequencesOf(window.getSegments()));
+    }
+
+    @Test
+    public void trimDropsLeadingUnrecordedUnavailableSegments() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        addSegments(window, 1, 6);
+        window.onRecorded(window.getSegments().get(2), 100);
+
+        List<TimeshiftWindow.Segment> evicted = window.trim(Long.MAX_VALUE, 5);
+
+        // Recorded segment 3 stops trimming although 4 is unavailable as well
+        assertEquals(sequences(1, 2), sequencesOf(evicted));
+        assertEquals(sequences(4, 5, 6), sequencesOf(window.getUnrecorded()));
+    }
+
+    @Test
+    public void trimKeepsAvailableSegmentsWithinDuration() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        addSegments(window, 1, 6);
+
+        assertTrue(window.trim(Long.MAX_VALUE, 1).isEmpty());
+        assertEquals(6, window.getSegments().size());
+    }
+
+    @Test
+    public void findMatchesSegmentAndInitializationUri() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        TimeshiftWindow.Segment segment = new TimeshiftWindow.Segment(
+            1, SEGMENT_DURATION_US, "http://a/1.m4s", 0, null, null, "http://a/init.mp4", null
+        );
+        window.add(segment);
+
+        assertSame(segment, window.find("http://a/1.m4s"));
+        assertSame(segment, window.find("http://a/init.mp4"));
+        assertNull(window.find("http://a/2.m4s"));
+        assertTrue(window.contains(segment));
+        assertFalse(window.contains(segment(2)));
+    }
+
+    @Test
+    public void renderEmpty() {
+        assertEquals(
+            "#EXTM3U\n" +
+            "#EXT-X-VERSION:3\n" +
+            "#EXT-X-TARGETDURATION:0\n" +
+            "#EXT-X-MEDIA-SEQUENCE:0\n",
+            new TimeshiftWindow().render()
+        );
+    }
+
+    @Test
+    public void renderWritesTagsOnChange() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        window.setHeader(6, 3500000, true);
+        window.add(new TimeshiftWindow.Segment(100, 3500000, "http://a/100.m4s", 1, "http://a/key", "0001", "http://a/init.mp4", null));
+        window.add(new TimeshiftWindow.Segment(101, 3500000, "http://a/101.m4s", 1, "http://a/key", "0001", "http://a/init.mp4", null));
+        window.add(new TimeshiftWindow.Segment(102, 3000000, "http://a/102.m4s", 2, null, null, "http://a/init2.mp4", "720@0"));
+
+        assertEquals(
+            "#EXTM3U\n" +
+            "#EXT-X-VERSION:6\n" +
+            "#EXT-X-TARGETDURATION:4\n" +
+            "#EXT-X-MEDIA-SEQUENCE:100\n" +
+            "#EXT-X-DISCONTINUITY-SEQUENCE:1\n" +
+            "#EXT-X-INDEPENDENT-SEGMENTS\n" +
+            "#EXT-X-KEY:METHOD=AES-128,URI=\"http://a/key\",IV=0x0001\n" +
+            "#EXT-X-MAP:URI=\"http://a/init.mp4\"\n" +
+            "#EXTINF:3.500,\n" +
+            "http://a/100.m4s\n" +
+            "#EXTINF:3.500,\n" +
+            "http://a/101.m4s\n" +
+            "#EXT-X-DISCONTINUITY\n" +
+            "#EXT-X-KEY:METHOD=NONE\n" +
+            "#EXT-X-MAP:URI=\"http://a/init2.mp4\",BYTERANGE=\"720@0\"\n" +
+            "#EXTINF:3.000,\n" +
+            "http://a/102.m4s\n",
+            window.render()
+        );
+    }
+
+    @Test
+    public void renderKeepsLongestTargetDuration() {
+        TimeshiftWindow window = new TimeshiftWindow();
+        window.setHeader(3, 6000000, false);
+        window.setHeader(3, 4000000, false);
+
+        assertEquals(6000000, window.getTargetDurationUs());
+        assertTrue(window.render().contains("#EXT-X-TARGETDURATION:6\n"));
+    }
+
+    private static TimeshiftWindow.Segment segment(long sequence) {
+        return new TimeshiftWindow.Segment(sequence, SEGMENT_DURATION_US, "http://a/" + sequence + ".ts", 0, null, null, null, null);
+    }
+
+    private static void addSegments(TimeshiftWindow window, long firstSequence, int count) {
+        for (int i = 0; i < count; i++) {
+            window.add(segment(firstSequence + i));
+        }
+    }
+
+    private static List<Long> sequences(long... sequences) {
+        List<Long> list = new ArrayList<>();
+        for (long sequence: sequences) {
+            list.add(sequence);
+        }
+        return list;
+    }
+
+    private static List<Long> sequencesOf(List<TimeshiftWindow.Segment> segments) {
+        List<Long> list = new ArrayList<>();
+        for (TimeshiftWindow.Segment segment: segments) {
+            list.add(segment.sequence);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackSnapshotBuilderTest {
+    @Test
+    public void empty() {
+        assertEquals("[]", new TrackSnapshotBuilder().build());
+    }
+
+    @Test
+    public void writesRenderersGroupsAndTracks() {
+        TrackSnapshotBuilder builder = new TrackSnapshotBuilder();
+        TrackSnapshotBuilder.Track track = new TrackSnapshotBuilder.Track();
+
+        track.id = "1";
+        track.mimeType = "video/avc";
+        track.bitrate = 1000000;
+        track.width = 1920;
+        track.height = 1080;
+        track.frameRate = 25;
+        builder.beginRenderer(0, "video", false, true).beginGroup(0).addTrack(track, 0, true, true);
+
+        track.reset();
+        track.language = "en";
+        track.channelCount = 6;
+        track.sampleRate = 48000;
+        track.passthrough = true;
+        builder.addTrack(track, 1, false, false).endGroup().endRenderer();
+
+        builder.beginRenderer(1, "text", true, false).endRenderer();
+
+        assertEquals(
+            "[{\"renderer\":0,\"type\":\"video\",\"disabled\":false,\"overridden\":true,\"groups\":[" +
+                "{\"index\":0,\"tracks\":[" +
+                    "{\"id\":\"1\",\"mimeType\":\"video/avc\",\"bitrate\":1000000,\"width\":1920,\"height\":1080," +
+                    "\"frameRate\":25.0,\"index\":0,\"supported\":true,\"selected\":true}," +
+                    "{\"language\":\"en\",\"channelCount\":6,\"sampleRate\":48000,\"passthrough\":true," +
+                    "\"index\":1,\"supported\":false,\"selected\":false}" +
+                "]}" +
+            "]}," +
+            "{\"renderer\":1,\"type\":\"text\",\"disabled\":true,\"overridden\":false,\"groups\":[]}]",
+            builder.build()
+        );
+    }
+
+    @Test
+    public void skipsSizeWithoutBothDimensions() {
+        TrackSnapshotBuilder builder = new TrackSnapshotBuilder();
+        TrackSnapshotBuilder.Track track = new TrackSnapshotBuilder.Track();
+        track.height = 720;
+
+        builder.beginRenderer(0, "video", false, false).beginGroup(0).addTrack(track, 0, true, false).endGroup().endRenderer();
+
+        assertEquals(
+            "[{\"renderer\":0,\"type\":\"video\",\"disabled\":false,\"overridden\":false,\"groups\":[" +
+                "{\"index\":0,\"tracks\":[{\"index\":0,\"supported\":true,\"selected\":false}]}" +
+            "]}]",
+            builder.build()
+        );
+    }
+}
@@ -0,0 +1,61 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UriPatternTest {
+    @Test
+    public void dropsSchemeUserInfoPortQueryAndFragment() {
+        assertEquals(
+            "cdn.example.com/live/*/index.m3u8",
+            UriPattern.of("http://User@CDN.Example.com:8080/live/ch123/index.m3u8?t=1#start")
+        );
+    }
+
+    @Test
+    public void replacesSegmentsWithDigits() {
+        assertEquals(
+            "cdn.example.com/*/*/playlist.m3u8",
+            UriPattern.of("https://cdn.example.com/2020-01-01/a1b2c3/playlist.m3u8")
+        );
+    }
+
+    @Test
+    public void keepsExtensions() {
+        assertEquals("cdn.example.com/live/*.ts", UriPattern.of("http://cdn.example.com/live/segment42.ts"));
+        assertEquals("cdn.example.com/live/*", UriPattern.of("http://cdn.example.com/live/1.2"));
+        assertEquals("cdn.example.com/live/*", UriPattern.of("http://cdn.example.com/live/.m3u8"));
+    }
+
+    @Test
+    public void keepsPathCase() {
+        assertEquals("cdn.example.com/Live/Index.m3u8", UriPattern.of("https://CDN.example.com/Live/Index.m3u8"));
+    }
+
+    @Test
+    public void hostOnly() {
+        assertEquals("cdn.example.com", UriPattern.of("https://cdn.example.com"));
+        assertEquals("cdn.example.com", UriPattern.of("https://cdn.example.com?token=1"));
+        assertEquals("cdn.example.com/", UriPattern.of("https://cdn.example.com/"));
+    }
+
+    @Test
+    public void keepsIpv6Host() {
+        assertEquals("[::1]/live", UriPattern.of("http://[::1]/live"));
+        assertEquals("[::1]/live", UriPattern.of("http://[::1]:8080/live"));
+    }
+
+    @Test
+    public void queryWithSlashes() {
+        assertEquals("cdn.example.com/index.m3u8", UriPattern.of("http://cdn.example.com/index.m3u8?next=/a/1"));
+    }
+
+    @Test
+    public void sameStreamsShareAPattern() {
+        assertEquals(
+            UriPattern.of("http://cdn.example.com/live/ch1/index.m3u8?session=abc"),
+            UriPattern.of("http://cdn.example.com/live/ch42/index.m3u8?session=def")
+        );
+    }
+}
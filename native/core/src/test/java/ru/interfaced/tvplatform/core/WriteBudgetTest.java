@@ -0,0 +1,45 @@
+package ru.interfaced.tvplatform.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBudgetTest {
+    private static final long HOUR_MS = 60 * 60 * 1000;
+
+    @Test
+    public void unlimitedByDefault() {
+        WriteBudget budget = new WriteBudget();
+        budget.onWritten(Long.MAX_VALUE / 2);
+
+        assertTrue(budget.canWrite(0));
+    }
+
+    @Test
+    public void spentBudgetHoldsWritesForTheRestOfTheHour() {
+        WriteBudget budget = new WriteBudget();
+        budget.setMaxBytesPerHour(1000);
+
+        assertTrue(budget.canWrite(0));
+        budget.onWritten(600);
+        assertTrue(budget.canWrite(1000));
+        budget.onWritten(600);
+
+        assertFalse(budget.canWrite(2000));
+        assertFalse(budget.canWrite(HOUR_MS - 1));
+        assertTrue(budget.canWrite(HOUR_MS));
+        assertEquals(1200, budget.getTotalBytes());
+    }
+
+    @Test
+    public void negativeLimitMeansUnlimited() {
+        WriteBudget budget = new WriteBudget();
+        budget.setMaxBytesPerHour(-1);
+
+        assertEquals(0, budget.getMaxBytesPerHour());
+        budget.onWritten(1000);
+        assertTrue(budget.canWrite(0));
+    }
+}
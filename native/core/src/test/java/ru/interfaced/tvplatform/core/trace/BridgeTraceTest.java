@@ -0,0 +1,136 @@
+package ru.interfaced.tvplatform.core.trace;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BridgeTraceTest {
+    @Test
+    public void roundTrip() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BridgeTraceWriter writer = new BridgeTraceWriter(output)) {
+            writer.writeCall(1000, "player", "play", Arrays.asList("http://a/index.m3u8", 5, 1.5, true, null), 200);
+            writer.writeEvent(2000, "player", "stateChanged", "[\"playing\"]");
+            writer.writeCall(3000, "player", "getPosition", Collections.emptyList(), 50);
+        }
+
+        List<BridgeTraceRecord> records = read(output.toByteArray());
+        assertEquals(3, records.size());
+
+        BridgeTraceRecord play = records.get(0);
+        assertEquals(BridgeTraceRecord.Type.CALL, play.type);
+        assertEquals(1000, play.timeUs);
+        assertEquals("player", play.target);
+        assertEquals("play", play.name);
+        assertArrayEquals(new Object[] {"http://a/index.m3u8", 5L, 1.5, true, null}, play.arguments);
+        assertNull(play.argumentsJson);
+        assertEquals(200, play.durationUs);
+
+        BridgeTraceRecord event = records.get(1);
+        assertEquals(BridgeTraceRecord.Type.EVENT, event.type);
+        assertEquals(2000, event.timeUs);
+        assertEquals("player", event.target);
+        assertEquals("stateChanged", event.name);
+        assertEquals(0, event.arguments.length);
+        assertEquals("[\"playing\"]", event.argumentsJson);
+        assertEquals(0, event.durationUs);
+
+        BridgeTraceRecord position = records.get(2);
+        assertEquals(3000, position.timeUs);
+        assertEquals("getPosition", position.name);
+        assertEquals(0, position.arguments.length);
+        assertEquals(50, position.durationUs);
+    }
+
+    @Test
+    public void valuesOfOtherTypesAreWrittenAsStrings() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BridgeTraceWriter writer = new BridgeTraceWriter(output)) {
+            writer.writeCall(0, "device", "set", Arrays.asList(Long.MIN_VALUE, -0.25, 'x', Arrays.asList(1, 2)), 0);
+        }
+
+        BridgeTraceRecord record = read(output.toByteArray()).get(0);
+        assertArrayEquals(new Object[] {Long.MIN_VALUE, -0.25, "x", "[1, 2]"}, record.arguments);
+    }
+
+    @Test
+    public void recordsWithinReorderWindowAreSorted() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BridgeTraceWriter writer = new BridgeTraceWriter(output)) {
+            writer.writeEvent(3000000, "player", "timeupdate", "[]");
+            writer.writeCall(1000000, "player", "seek", Collections.singletonList(10), 0);
+            writer.writeCall(1000000, "player", "play", Collections.emptyList(), 0);
+            writer.writeEvent(2000000, "player", "seeked", "[]");
+        }
+
+        List<BridgeTraceRecord> records = read(output.toByteArray());
+        assertEquals(Arrays.asList("seek", "play", "seeked", "timeupdate"), namesOf(records));
+        assertEquals(Arrays.asList(1000000L, 1000000L, 2000000L, 3000000L), timesOf(records));
+    }
+
+    @Test
+    public void lateRecordsKeepTheirTime() throws IOException {
+        long lateUs = BridgeTraceWriter.REORDER_WINDOW_US * 3;
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BridgeTraceWriter writer = new BridgeTraceWriter(output)) {
+            writer.writeEvent(lateUs, "player", "first", "[]");
+            writer.writeEvent(lateUs * 2, "player", "second", "[]");
+            writer.writeCall(lateUs / 2, "player", "late", Collections.emptyList(), 0);
+        }
+
+        List<BridgeTraceRecord> records = read(output.toByteArray());
+        assertEquals(Arrays.asList("first", "late", "second"), namesOf(records));
+        assertEquals(Arrays.asList(lateUs, lateUs / 2, lateUs * 2), timesOf(records));
+    }
+
+    @Test
+    public void emptyTrace() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BridgeTraceWriter(output).close();
+
+        assertEquals(0, read(output.toByteArray()).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        new BridgeTraceReader(new ByteArrayInputStream("#EXTM3U\n".getBytes("UTF-8")));
+    }
+
+    private static List<BridgeTraceRecord> read(byte[] trace) throws IOException {
+        List<BridgeTraceRecord> records = new ArrayList<>();
+        try (BridgeTraceReader reader = new BridgeTraceReader(new ByteArrayInputStream(trace))) {
+            BridgeTraceRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static List<String> namesOf(List<BridgeTraceRecord> records) {
+        List<String> names = new ArrayList<>();
+        for (BridgeTraceRecord record: records) {
+            names.add(record.name);
+        }
+        return names;
+    }
+
+    private static List<Long> timesOf(List<BridgeTraceRecord> records) {
+        List<Long> times = new ArrayList<>();
+        for (BridgeTraceRecord record: records) {
+            times.add(record.timeUs);
+        }
+        return times;
+    }
+}